@@ -14,6 +14,7 @@ import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.SecurityContext;
 
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Path("/folders")
@@ -37,10 +38,7 @@ public class FolderController {
     public Response getRootFolders(@Context SecurityContext securityContext) {
         Long userId = getUserId(securityContext);
         List<Folder> folders = folderService.getRootFolders(userId);
-        List<FolderDTO> dtos = folders.stream()
-                .map(f -> toDTO(f, userId))
-                .collect(Collectors.toList());
-        return Response.ok(dtos).build();
+        return Response.ok(toDTOs(folders, userId)).build();
     }
 
     @GET
@@ -58,10 +56,7 @@ public class FolderController {
                                   @Context SecurityContext securityContext) {
         Long userId = getUserId(securityContext);
         List<Folder> subfolders = folderService.getSubfolders(folderId, userId);
-        List<FolderDTO> dtos = subfolders.stream()
-                .map(f -> toDTO(f, userId))
-                .collect(Collectors.toList());
-        return Response.ok(dtos).build();
+        return Response.ok(toDTOs(subfolders, userId)).build();
     }
 
     @POST
@@ -106,7 +101,21 @@ public class FolderController {
         return Response.ok(new CountResponse(count)).build();
     }
 
+    /**
+     * Converte una lista di cartelle contando le note di tutte in un'unica query
+     */
+    private List<FolderDTO> toDTOs(List<Folder> folders, Long userId) {
+        Map<Long, Long> counts = folderService.countNotesByFolders(folders, userId);
+        return folders.stream()
+                .map(folder -> withCount(folder, counts.getOrDefault(folder.id, 0L)))
+                .collect(Collectors.toList());
+    }
+
     private FolderDTO toDTO(Folder folder, Long userId) {
+        return withCount(folder, folderService.countNotesByFolder(folder.id, userId));
+    }
+
+    private FolderDTO withCount(Folder folder, long notesCount) {
         FolderDTO dto = new FolderDTO();
         dto.id = folder.id;
         dto.name = folder.name;
@@ -116,7 +125,7 @@ public class FolderController {
         dto.parentId = folder.parent != null ? folder.parent.id : null;
         dto.isShared = folder.isShared;
         dto.createdAt = folder.createdAt;
-        dto.notesCount = folderService.countNotesByFolder(folder.id, userId);
+        dto.notesCount = notesCount;
         return dto;
     }
 
@@ -6,12 +6,18 @@ import com.unibo.notes.dto.NoteDTO;
 import com.unibo.notes.dto.NoteListResponse;
 import com.unibo.notes.dto.NoteStatsDTO;
 import com.unibo.notes.dto.NoteVersionDTO;
+import com.unibo.notes.dto.VersionHistoryResponse;
 import com.unibo.notes.dto.UpdateNoteRequest;
 import com.unibo.notes.entity.Note;
+import com.unibo.notes.repository.NoteDTOPage;
+import com.unibo.notes.repository.NotePage;
 import com.unibo.notes.service.NoteService;
 import com.unibo.notes.service.PermissionService;
 import com.unibo.notes.service.VersionService;
+import com.unibo.notes.util.BatchStream;
+import com.unibo.notes.util.PageCursor;
 import io.smallrye.jwt.auth.principal.JWTCallerPrincipal;
+import io.smallrye.mutiny.Multi;
 import jakarta.inject.Inject;
 import jakarta.validation.Valid;
 import jakarta.ws.rs.*;
@@ -19,8 +25,12 @@ import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.SecurityContext;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.resteasy.reactive.RestStreamElementType;
+import org.jboss.resteasy.reactive.common.util.RestMediaType;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Path("/notes")
@@ -38,6 +48,9 @@ public class NoteController {
     @Inject
     PermissionService permissionService;
 
+    @ConfigProperty(name = "notes.stream.batch-size", defaultValue = "100")
+    int streamBatchSize;
+
     private Long getUserId(SecurityContext securityContext) {
         if (securityContext.getUserPrincipal() == null) {
             throw new SecurityException("No authentication token");
@@ -48,16 +61,42 @@ public class NoteController {
 
     @GET
     public Response getAllNotes(@QueryParam("folderId") Long folderId,
+                                @QueryParam("cursor") String cursor,
+                                @QueryParam("limit") Integer limit,
+                                @QueryParam("includeTotal") boolean includeTotal,
                                 @Context SecurityContext securityContext) {
         Long userId = getUserId(securityContext);
-        List<Note> notes;
-        if (folderId != null) {
-            notes = noteService.getNotesByFolder(folderId, userId);
-        } else {
-            notes = noteService.getAllNotesByUser(userId);
-        }
-        List<NoteDTO> noteDTOs = notes.stream().map(this::toDTO).collect(Collectors.toList());
-        return Response.ok(new NoteListResponse(noteDTOs)).build();
+        return notesPage(userId, folderId, cursor, limit, includeTotal);
+    }
+
+    /**
+     * Tutte le note in streaming (Accept: application/x-ndjson), una per riga,
+     * lette a blocchi e scritte man mano che vengono convertite
+     */
+    @GET
+    @Produces(RestMediaType.APPLICATION_NDJSON)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    public Multi<NoteDTO> streamAllNotes(@QueryParam("folderId") Long folderId,
+                                         @Context SecurityContext securityContext) {
+        return notesStream(getUserId(securityContext), folderId);
+    }
+
+    /**
+     * Come sopra, come Server-Sent Events (Accept: text/event-stream): un evento per nota
+     */
+    @GET
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    public Multi<NoteDTO> streamAllNotesAsEvents(@QueryParam("folderId") Long folderId,
+                                                 @Context SecurityContext securityContext) {
+        return notesStream(getUserId(securityContext), folderId);
+    }
+
+    private Multi<NoteDTO> notesStream(Long userId, Long folderId) {
+        return BatchStream.of(after -> {
+            NoteDTOPage page = noteService.listNotes(userId, folderId, after, streamBatchSize);
+            return new BatchStream.Batch<>(page.notes, page.nextCursor);
+        });
     }
 
     @GET
@@ -87,11 +126,21 @@ public class NoteController {
     @GET
     @Path("/folder/{folderId}")
     public Response getNotesByFolder(@PathParam("folderId") Long folderId,
+                                     @QueryParam("cursor") String cursor,
+                                     @QueryParam("limit") Integer limit,
+                                     @QueryParam("includeTotal") boolean includeTotal,
                                      @Context SecurityContext securityContext) {
         Long userId = getUserId(securityContext);
-        List<Note> notes = noteService.getNotesByFolder(folderId, userId);
-        List<NoteDTO> noteDTOs = notes.stream().map(this::toDTO).collect(Collectors.toList());
-        return Response.ok(new NoteListResponse(noteDTOs)).build();
+        return notesPage(userId, folderId, cursor, limit, includeTotal);
+    }
+
+    private Response notesPage(Long userId, Long folderId, String cursor, Integer limit, boolean includeTotal) {
+        PageCursor after = PageCursor.decode(cursor);
+        int pageSize = PageCursor.clampLimit(limit);
+        // Proiezione in sola lettura: owner, cartella e permessi (tutte note dell'utente) nella stessa query
+        NoteDTOPage page = noteService.listNotes(userId, folderId, after, pageSize);
+        Long total = page.total(after, includeTotal, () -> noteService.countNotes(userId, folderId));
+        return Response.ok(NoteListResponse.ofPage(page.notes, pageSize, page.nextCursor, total)).build();
     }
 
     @POST
@@ -99,7 +148,7 @@ public class NoteController {
                                @Context SecurityContext securityContext) {
         Long userId = getUserId(securityContext);
         Note note = noteService.createNote(request, userId);
-        return Response.status(Response.Status.CREATED).entity(toDTO(note)).build();
+        return Response.status(Response.Status.CREATED).entity(toDTO(note, userId)).build();
     }
 
     @PUT
@@ -109,7 +158,7 @@ public class NoteController {
                                @Context SecurityContext securityContext) {
         Long userId = getUserId(securityContext);
         Note note = noteService.updateNote(noteId, request, userId);
-        return Response.ok(toDTO(note)).build();
+        return Response.ok(toDTO(note, userId)).build();
     }
 
     @DELETE
@@ -128,7 +177,7 @@ public class NoteController {
                              @Context SecurityContext securityContext) {
         Long userId = getUserId(securityContext);
         Note note = noteService.moveNoteToFolder(noteId, request.folderId, userId);
-        return Response.ok(toDTO(note)).build();
+        return Response.ok(toDTO(note, userId)).build();
     }
 
     @POST
@@ -137,17 +186,22 @@ public class NoteController {
                              @Context SecurityContext securityContext) {
         Long userId = getUserId(securityContext);
         Note copy = noteService.copyNote(noteId, userId);
-        return Response.status(Response.Status.CREATED).entity(toDTO(copy)).build();
+        return Response.status(Response.Status.CREATED).entity(toDTO(copy, userId)).build();
     }
 
     @GET
     @Path("/search")
     public Response searchNotes(@QueryParam("q") String keyword,
+                                @QueryParam("cursor") String cursor,
+                                @QueryParam("limit") Integer limit,
+                                @QueryParam("includeTotal") boolean includeTotal,
                                 @Context SecurityContext securityContext) {
         Long userId = getUserId(securityContext);
-        List<Note> notes = noteService.searchNotes(keyword, userId);
-        List<NoteDTO> noteDTOs = notes.stream().map(this::toDTO).collect(Collectors.toList());
-        return Response.ok(new NoteListResponse(noteDTOs)).build();
+        PageCursor after = PageCursor.decode(cursor);
+        int pageSize = PageCursor.clampLimit(limit);
+        NotePage page = noteService.searchNotesPage(keyword, userId, after, pageSize);
+        Long total = page.total(after, includeTotal, () -> noteService.countSearchNotes(keyword, userId));
+        return Response.ok(NoteListResponse.ofPage(toDTOs(page.notes, userId), pageSize, page.nextCursor, total)).build();
     }
 
     @GET
@@ -159,6 +213,23 @@ public class NoteController {
         return Response.ok(versions).build();
     }
 
+    /**
+     * Cronologia paginata (keyset, dalla più recente) con i soli metadati delle versioni:
+     * il contenuto di una versione si legge da /versions/{versionNumber}
+     */
+    @GET
+    @Path("/{noteId}/versions/history")
+    public Response getVersionHistory(@PathParam("noteId") Long noteId,
+                                      @QueryParam("cursor") String cursor,
+                                      @QueryParam("limit") Integer limit,
+                                      @QueryParam("includeTotal") boolean includeTotal,
+                                      @Context SecurityContext securityContext) {
+        Long userId = getUserId(securityContext);
+        VersionHistoryResponse history = versionService.getVersionHistory(noteId, userId,
+                PageCursor.decode(cursor), PageCursor.clampLimit(limit), includeTotal);
+        return Response.ok(history).build();
+    }
+
     @GET
     @Path("/{noteId}/versions/{versionNumber}")
     public Response getSpecificVersion(@PathParam("noteId") Long noteId,
@@ -176,14 +247,25 @@ public class NoteController {
                                    @Context SecurityContext securityContext) {
         Long userId = getUserId(securityContext);
         Note note = versionService.restoreVersion(noteId, versionNumber, userId);
-        return Response.ok(toDTO(note)).build();
+        return Response.ok(toDTO(note, userId)).build();
     }
 
-    private NoteDTO toDTO(Note note) {
-        return toDTO(note, null);
+    /**
+     * Converte una lista di note risolvendo i permessi di tutte in un'unica query
+     */
+    private List<NoteDTO> toDTOs(List<Note> notes, Long userId) {
+        Map<Long, PermissionService.Access> access = permissionService.resolveAccess(
+                notes.stream().map(note -> note.id).toList(), userId);
+        return notes.stream()
+                .map(note -> toDTO(note, access.getOrDefault(note.id, PermissionService.Access.NONE)))
+                .collect(Collectors.toList());
     }
 
     private NoteDTO toDTO(Note note, Long userId) {
+        return toDTO(note, permissionService.getAccess(note.id, userId));
+    }
+
+    private NoteDTO toDTO(Note note, PermissionService.Access access) {
         NoteDTO dto = new NoteDTO();
         dto.id = note.id;
         dto.title = note.title;
@@ -197,10 +279,9 @@ public class NoteController {
         dto.folderName = note.folder != null ? note.folder.name : null;
 
         // Determina i permessi basati sull'utente
-        boolean isOwner = note.owner != null && userId != null && note.owner.id.equals(userId);
-        dto.isShared = !isOwner && userId != null;
-        dto.canEdit = isOwner || (userId != null && permissionService.hasWritePermission(note.id, userId));
-        dto.canDelete = isOwner;
+        dto.isShared = !access.isOwner();
+        dto.canEdit = access.canWrite();
+        dto.canDelete = access.isOwner();
         return dto;
     }
 
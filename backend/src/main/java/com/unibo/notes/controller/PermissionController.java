@@ -1,12 +1,12 @@
 package com.unibo.notes.controller;
 
 import io.quarkus.security.Authenticated;
-import com.unibo.notes.dto.NoteDTO;
 import com.unibo.notes.dto.NoteListResponse;
 import com.unibo.notes.dto.PermissionDTO;
 import com.unibo.notes.dto.ShareNoteRequest;
-import com.unibo.notes.entity.Note;
+import com.unibo.notes.repository.NoteDTOPage;
 import com.unibo.notes.service.PermissionService;
+import com.unibo.notes.util.PageCursor;
 import io.smallrye.jwt.auth.principal.JWTCallerPrincipal;
 import jakarta.inject.Inject;
 import jakarta.validation.Valid;
@@ -17,7 +17,6 @@ import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.SecurityContext;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Path("/permissions")
 @Produces(MediaType.APPLICATION_JSON)
@@ -82,13 +81,16 @@ public class PermissionController {
 
     @GET
     @Path("/shared-with-me")
-    public Response getSharedNotes(@Context SecurityContext securityContext) {
+    public Response getSharedNotes(@QueryParam("cursor") String cursor,
+                                   @QueryParam("limit") Integer limit,
+                                   @QueryParam("includeTotal") boolean includeTotal,
+                                   @Context SecurityContext securityContext) {
         Long userId = getUserId(securityContext);
-        List<Note> sharedNotes = permissionService.getSharedNotes(userId);
-        List<NoteDTO> noteDTOs = sharedNotes.stream()
-                .map(note -> toDTO(note, userId))
-                .collect(Collectors.toList());
-        return Response.ok(new NoteListResponse(noteDTOs)).build();
+        PageCursor after = PageCursor.decode(cursor);
+        int pageSize = PageCursor.clampLimit(limit);
+        NoteDTOPage page = permissionService.listSharedNotes(userId, after, pageSize);
+        Long total = page.total(after, includeTotal, () -> permissionService.countSharedNotes(userId));
+        return Response.ok(NoteListResponse.ofPage(page.notes, pageSize, page.nextCursor, total)).build();
     }
 
     @DELETE
@@ -99,23 +101,4 @@ public class PermissionController {
         permissionService.leaveNote(noteId, userId);
         return Response.noContent().build();
     }
-
-    private NoteDTO toDTO(Note note, Long userId) {
-        NoteDTO dto = new NoteDTO();
-        dto.id = note.id;
-        dto.title = note.title;
-        dto.content = note.content;
-        dto.ownerId = note.owner != null ? note.owner.id : null;
-        dto.ownerUsername = note.owner != null ? note.owner.username : null;
-        dto.createdAt = note.createdAt;
-        dto.setUpdatedAt(note.updatedAt);
-        dto.setVersion(note.version);
-        dto.folderId = note.folder != null ? note.folder.id : null;
-        dto.folderName = note.folder != null ? note.folder.name : null;
-        dto.isShared = true;
-        // Controlla se l'utente ha permesso di scrittura
-        dto.canEdit = permissionService.hasWritePermission(note.id, userId);
-        dto.canDelete = false;
-        return dto;
-    }
 }
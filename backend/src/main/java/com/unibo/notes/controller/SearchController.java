@@ -1,23 +1,52 @@
 package com.unibo.notes.controller;
 
 import io.quarkus.security.Authenticated;
+import com.unibo.notes.dto.SearchCriteria;
+import com.unibo.notes.dto.SearchFacets;
+import com.unibo.notes.entity.Folder;
 import com.unibo.notes.entity.Note;
+import com.unibo.notes.entity.User;
+import com.unibo.notes.exception.ValidationException;
+import com.unibo.notes.repository.NotePage;
+import com.unibo.notes.search.Bm25Ranker;
+import com.unibo.notes.search.Highlighter;
+import com.unibo.notes.search.SearchDeadline;
+import com.unibo.notes.search.SearchMetrics;
+import com.unibo.notes.search.SearchQuery;
+import com.unibo.notes.search.SearchQueryParser;
+import com.unibo.notes.search.SearchTrace;
+import com.unibo.notes.search.SuggestionIndex;
+import com.unibo.notes.search.Terms;
+import com.unibo.notes.search.TextAnalyzer;
 import com.unibo.notes.service.NoteService;
 import com.unibo.notes.service.PermissionService;
+import com.unibo.notes.service.UnifiedSearchService;
+import com.unibo.notes.util.BatchStream;
+import com.unibo.notes.util.PageCursor;
 import io.smallrye.jwt.auth.principal.JWTCallerPrincipal;
+import io.smallrye.mutiny.Multi;
+import io.vertx.core.http.HttpServerRequest;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.SecurityContext;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.resteasy.reactive.RestStreamElementType;
+import org.jboss.resteasy.reactive.common.util.RestMediaType;
 
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 @Path("/search")
 @Produces(MediaType.APPLICATION_JSON)
@@ -25,12 +54,45 @@ import java.util.List;
 @Authenticated
 public class SearchController {
 
+    private static final int EXCERPT_LENGTH = 100;
+    private static final int MAX_SUGGESTIONS = 50;
+    // Distanza di Levenshtein massima della ricerca fuzzy
+    private static final int MAX_FUZZY_EDITS = 2;
+
     @Inject
     NoteService noteService;
 
+    @Inject
+    SearchQueryParser queryParser;
+
     @Inject
     PermissionService permissionService;
 
+    @Inject
+    UnifiedSearchService unifiedSearchService;
+
+    @Inject
+    SuggestionIndex suggestionIndex;
+
+    @Inject
+    Bm25Ranker ranker;
+
+    @Inject
+    TextAnalyzer textAnalyzer;
+
+    @Inject
+    SearchMetrics searchMetrics;
+
+    @ConfigProperty(name = "notes.search.timeout-ms", defaultValue = "3000")
+    long searchTimeoutMillis;
+
+    @ConfigProperty(name = "notes.stream.batch-size", defaultValue = "100")
+    int streamBatchSize;
+
+    // Il dettaglio espone JPQL e piano della query: solo dove abilitato esplicitamente
+    @ConfigProperty(name = "notes.search.debug.enabled", defaultValue = "false")
+    boolean debugEnabled;
+
     private Long getUserId(SecurityContext securityContext) {
         if (securityContext.getUserPrincipal() == null) {
             throw new SecurityException("No authentication token");
@@ -41,100 +103,387 @@ public class SearchController {
 
     @GET
     public Response search(
-            @QueryParam("q") String query,
+            @BeanParam SearchFilters filters,
             @QueryParam("types") String types,
-            @QueryParam("author") String author,
-            @QueryParam("folderId") Long folderId,
-            @QueryParam("createdFrom") String createdFrom,
-            @QueryParam("createdTo") String createdTo,
-            @QueryParam("modifiedFrom") String modifiedFrom,
-            @QueryParam("modifiedTo") String modifiedTo,
-            @QueryParam("includeShared") @DefaultValue("true") boolean includeShared,
-            @QueryParam("includeArchived") @DefaultValue("false") boolean includeArchived,
-            @QueryParam("sortBy") @DefaultValue("relevance") String sortBy,
-            @QueryParam("sortOrder") @DefaultValue("desc") String sortOrder,
-            @Context SecurityContext securityContext) {
+            @QueryParam("cursor") String cursor,
+            @QueryParam("limit") Integer limit,
+            @QueryParam("includeTotal") boolean includeTotal,
+            @QueryParam("facets") boolean includeFacets,
+            @QueryParam("debug") boolean debug,
+            @Context SecurityContext securityContext,
+            @Context HttpServerRequest httpRequest) {
 
         Long userId = getUserId(securityContext);
-        long startTime = System.currentTimeMillis();
+        if (debug && !debugEnabled) {
+            throw new ValidationException("debug is not enabled on this server");
+        }
 
-        // Parse date filters
-        LocalDateTime createdFromDate = parseDateTime(createdFrom);
-        LocalDateTime createdToDate = parseDateTime(createdTo);
-        LocalDateTime modifiedFromDate = parseDateTime(modifiedFrom);
-        LocalDateTime modifiedToDate = parseDateTime(modifiedTo);
+        SearchCriteria criteria = toCriteria(filters, userId);
+        SearchTrace trace = criteria.trace;
+        // Chi digita veloce abbandona le ricerche precedenti: il lavoro in corso viene annullato
+        criteria.deadline = SearchDeadline.after(searchTimeoutMillis);
+        SearchDeadline deadline = criteria.deadline;
+        cancelOnDisconnect(httpRequest, deadline);
+
+        // Paginazione keyset
+        criteria.after = PageCursor.decode(cursor);
+        criteria.limit = PageCursor.clampLimit(limit);
+
+        trace.plan("sort", criteria.sort.name().toLowerCase(Locale.ROOT) + (criteria.ascending ? " asc" : " desc"));
+        trace.plan("structured", criteria.query != null);
+        trace.plan("scope", criteria.history ? "history" : "notes");
+
+        Set<UnifiedSearchService.Type> searchTypes = parseTypes(types);
+        if (!searchTypes.equals(EnumSet.of(UnifiedSearchService.Type.NOTE))) {
+            return unifiedSearch(criteria, searchTypes, includeFacets, debug);
+        }
 
         // Use advanced search with all filters
-        List<Note> notes = noteService.advancedSearch(
-            userId,
-            query,
-            author,
-            folderId,
-            createdFromDate,
-            createdToDate,
-            modifiedFromDate,
-            modifiedToDate,
-            includeShared
-        );
+        NotePage page = noteService.advancedSearch(criteria);
+        List<Note> notes = page.notes;
+
+        // Permessi di tutti i risultati in un'unica query
+        Map<Long, PermissionService.Access> access = trace.time(SearchTrace.Stage.PERMISSIONS,
+                () -> permissionService.resolveAccess(notes.stream().map(note -> note.id).toList(), userId));
+
+        // Automa dei termini compilato una volta per tutta la pagina di risultati
+        // Con la ricerca fuzzy vengono evidenziate anche le varianti trovate
+        Highlighter highlighter = trace.time(SearchTrace.Stage.HIGHLIGHT,
+                () -> Highlighter.compileTerms(highlightTerms(criteria)));
+        Bm25Ranker.Query rankQuery = page.scores == null && criteria.hasKeyword()
+                ? trace.time(SearchTrace.Stage.RANKING, () -> ranker.compile(criteria.rankingText(), criteria.variants))
+                : null;
 
         List<SearchResultDTO> results = new ArrayList<>();
 
+        long mappingStart = System.nanoTime();
+        long highlightBefore = trace.nanos(SearchTrace.Stage.HIGHLIGHT);
         for (Note note : notes) {
-            SearchResultDTO dto = new SearchResultDTO();
-            dto.id = note.id.toString();
-            dto.type = "note";
-            dto.title = note.title;
-            dto.excerpt = note.content != null && note.content.length() > 100
-                ? note.content.substring(0, 100) + "..."
-                : (note.content != null ? note.content : "");
-            dto.relevanceScore = query != null && !query.trim().isEmpty()
-                ? calculateRelevance(note, query) : 1.0;
-            dto.lastModified = note.updatedAt;
-            dto.ownerUsername = note.owner != null ? note.owner.username : null;
-            dto.folderName = note.folder != null ? note.folder.name : null;
-            dto.createdAt = note.createdAt;
-            dto.matches = new ArrayList<>();
-
-            // Check ownership and permissions
-            boolean isOwner = note.owner != null && note.owner.id.equals(userId);
-            dto.isShared = !isOwner;
-            dto.canEdit = isOwner || permissionService.hasWritePermission(note.id, userId);
-            dto.canDelete = isOwner;
-
-            // Add title match if found
-            if (query != null && !query.trim().isEmpty() &&
-                note.title.toLowerCase().contains(query.toLowerCase())) {
-                SearchMatchDTO match = new SearchMatchDTO();
-                match.field = "title";
-                match.value = note.title;
-                match.highlights = new ArrayList<>();
-                dto.matches.add(match);
+            SearchResultDTO dto = noteResult(note, access, highlighter, relevance(note, page, rankQuery), trace);
+            dto.matchedVersions = page.versions != null ? page.versions.get(note.id) : null;
+            results.add(dto);
+        }
+        addMapping(trace, mappingStart, highlightBefore);
+
+        // Le faccette non cambiano tra le pagine: calcolate solo sulla prima (e non dopo la scadenza)
+        SearchFacets facets = includeFacets && criteria.after == null && !deadline.isTimedOut()
+                ? trace.time(SearchTrace.Stage.FACETS, () -> noteService.searchFacets(criteria)) : null;
+
+        SearchResponseDTO response = new SearchResponseDTO();
+        response.results = results;
+        response.total = page.total(criteria.after, includeTotal, () -> noteService.countSearch(criteria));
+        response.nextCursor = page.nextCursor;
+        response.hasMore = page.hasMore();
+        response.suggestions = new ArrayList<>();
+        response.facets = facets;
+        finish(response, criteria, debug);
+
+        return Response.ok(response).build();
+    }
+
+    /**
+     * Variante in streaming (Accept: application/x-ndjson): tutte le note trovate, una per riga,
+     * lette a blocchi con il cursore e scritte man mano, senza totale né faccette.
+     * Se il client si disconnette la query in corso viene annullata.
+     */
+    @GET
+    @Produces(RestMediaType.APPLICATION_NDJSON)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    public Multi<SearchResultDTO> streamSearch(@BeanParam SearchFilters filters,
+                                               @Context SecurityContext securityContext) {
+        return resultStream(toCriteria(filters, getUserId(securityContext)));
+    }
+
+    /**
+     * Come sopra, come Server-Sent Events (Accept: text/event-stream): un evento per risultato
+     */
+    @GET
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    public Multi<SearchResultDTO> streamSearchAsEvents(@BeanParam SearchFilters filters,
+                                                       @Context SecurityContext securityContext) {
+        return resultStream(toCriteria(filters, getUserId(securityContext)));
+    }
+
+    private Multi<SearchResultDTO> resultStream(SearchCriteria criteria) {
+        criteria.limit = streamBatchSize;
+        NoteService.SearchStream stream = noteService.streamSearch(criteria);
+        return BatchStream.of(after -> {
+            NotePage page = stream.next(after);
+            Map<Long, PermissionService.Access> access = permissionService.resolveAccess(
+                    page.notes.stream().map(note -> note.id).toList(), criteria.userId);
+            Highlighter highlighter = Highlighter.compileTerms(highlightTerms(criteria));
+            Bm25Ranker.Query rankQuery = page.scores == null && criteria.hasKeyword()
+                    ? ranker.compile(criteria.rankingText(), criteria.variants) : null;
+
+            List<SearchResultDTO> results = new ArrayList<>(page.notes.size());
+            for (Note note : page.notes) {
+                SearchResultDTO dto = noteResult(note, access, highlighter, relevance(note, page, rankQuery),
+                        criteria.trace);
+                dto.matchedVersions = page.versions != null ? page.versions.get(note.id) : null;
+                results.add(dto);
             }
+            return new BatchStream.Batch<>(results, page.nextCursor);
+        }).onCancellation().invoke(criteria.deadline::cancel);
+    }
+
+    /**
+     * Filtri della ricerca comuni alla risposta paginata e allo streaming
+     */
+    private SearchCriteria toCriteria(SearchFilters filters, Long userId) {
+        SearchCriteria criteria = new SearchCriteria();
+        criteria.userId = userId;
+        criteria.keyword = filters.query;
+        // Operatori, frasi, campi e date: compilati in un unico piano (parsing in cache per testo)
+        SearchQuery parsed = criteria.trace.time(SearchTrace.Stage.PARSE, () -> queryParser.parse(filters.query));
+        if (parsed != null && parsed.root == null) {
+            criteria.keyword = null;
+        } else if (parsed != null && !parsed.isSimple()) {
+            criteria.query = parsed;
+        }
+        criteria.author = filters.author;
+        criteria.folderId = filters.folderId;
+        criteria.includeShared = filters.includeShared;
+        criteria.sort = parseSort(filters.sortBy);
+        criteria.ascending = parseAscending(filters.sortOrder);
+        criteria.fuzzy = parseFuzzy(filters.fuzzy);
+        criteria.history = parseHistoryScope(filters.scope);
+        if (criteria.history && !criteria.hasKeyword()) {
+            throw new ValidationException("scope=history requires q");
+        }
+
+        // Parse date filters
+        criteria.createdFrom = parseDateTime(filters.createdFrom);
+        criteria.createdTo = parseDateTime(filters.createdTo);
+        criteria.modifiedFrom = parseDateTime(filters.modifiedFrom);
+        criteria.modifiedTo = parseDateTime(filters.modifiedTo);
+        return criteria;
+    }
+
+    // Tempo del ciclo sui risultati al netto dell'evidenziazione, già contata a parte
+    private static void addMapping(SearchTrace trace, long mappingStart, long highlightBefore) {
+        long highlighting = trace.nanos(SearchTrace.Stage.HIGHLIGHT) - highlightBefore;
+        trace.add(SearchTrace.Stage.MAPPING, Math.max(0, System.nanoTime() - mappingStart - highlighting));
+    }
+
+    // Connessione chiusa (HTTP/1.1) o stream annullato dal client con RST_STREAM (HTTP/2):
+    // nel secondo caso la connessione resta aperta e arriva solo un'eccezione sulla richiesta
+    private static void cancelOnDisconnect(HttpServerRequest httpRequest, SearchDeadline deadline) {
+        httpRequest.response().closeHandler(closed -> deadline.cancel());
+        httpRequest.exceptionHandler(error -> deadline.cancel());
+    }
 
-            // Add content match if found
-            if (query != null && !query.trim().isEmpty() &&
-                note.content != null && note.content.toLowerCase().contains(query.toLowerCase())) {
-                SearchMatchDTO match = new SearchMatchDTO();
-                match.field = "content";
-                match.value = note.content;
-                match.highlights = new ArrayList<>();
-                dto.matches.add(match);
+    // Tempo totale, metriche e log delle ricerche lente; fasi e piano nella risposta solo con debug=true
+    private void finish(SearchResponseDTO response, SearchCriteria criteria, boolean debug) {
+        SearchTrace trace = criteria.trace;
+        response.timedOut = criteria.deadline.isTimedOut();
+        trace.plan("results", response.results.size());
+        if (response.timedOut) {
+            trace.plan("timedOut", criteria.deadline.isCancelled() ? "cancelled" : "deadline");
+        }
+        response.truncated = criteria.truncated;
+        if (response.truncated) {
+            trace.plan("truncated", true);
+        }
+        searchMetrics.record(trace);
+        response.took = trace.elapsedMillis();
+        if (debug) {
+            response.debug = new SearchDebugDTO();
+            response.debug.stages = trace.breakdownMillis();
+            response.debug.plan = trace.plan();
+        }
+    }
+
+    /**
+     * Più tipi nella stessa richiesta: eseguiti in parallelo e uniti in un'unica classifica.
+     * Senza cursore: ogni tipo restituisce solo i suoi migliori risultati.
+     */
+    private Response unifiedSearch(SearchCriteria criteria, Set<UnifiedSearchService.Type> types,
+                                   boolean includeFacets, boolean debug) {
+        if (criteria.after != null) {
+            throw new ValidationException("cursor is only supported when searching notes only");
+        }
+        SearchTrace trace = criteria.trace;
+        trace.plan("types", types);
+        UnifiedSearchService.Result unified = unifiedSearchService.search(criteria, types);
+
+        List<Long> noteIds = new ArrayList<>();
+        for (UnifiedSearchService.Hit hit : unified.hits) {
+            if (hit.item instanceof Note note) {
+                noteIds.add(note.id);
             }
+        }
+        Map<Long, PermissionService.Access> access = trace.time(SearchTrace.Stage.PERMISSIONS,
+                () -> permissionService.resolveAccess(noteIds, criteria.userId));
+        Highlighter highlighter = trace.time(SearchTrace.Stage.HIGHLIGHT,
+                () -> Highlighter.compileTerms(highlightTerms(criteria)));
 
-            results.add(dto);
+        List<SearchResultDTO> results = new ArrayList<>(unified.hits.size());
+        long mappingStart = System.nanoTime();
+        long highlightBefore = trace.nanos(SearchTrace.Stage.HIGHLIGHT);
+        for (UnifiedSearchService.Hit hit : unified.hits) {
+            if (hit.item instanceof Note note) {
+                results.add(noteResult(note, access, highlighter, hit.score, trace));
+            } else if (hit.item instanceof Folder folder) {
+                SearchResultDTO dto = otherResult("folder", folder.id, folder.name, highlighter, hit.score, trace);
+                dto.excerpt = folder.description;
+                dto.createdAt = folder.createdAt;
+                dto.folderName = folder.name;
+                results.add(dto);
+            } else if (hit.item instanceof User user) {
+                results.add(otherResult("collaborator", user.id, user.username, highlighter, hit.score, trace));
+            }
         }
+        addMapping(trace, mappingStart, highlightBefore);
 
-        long took = System.currentTimeMillis() - startTime;
+        SearchFacets facets = includeFacets && types.contains(UnifiedSearchService.Type.NOTE)
+                && !criteria.deadline.isTimedOut()
+                ? trace.time(SearchTrace.Stage.FACETS, () -> noteService.searchFacets(criteria)) : null;
 
         SearchResponseDTO response = new SearchResponseDTO();
         response.results = results;
-        response.total = results.size();
-        response.took = took;
+        response.total = unified.hasMore ? null : (long) results.size();
+        response.hasMore = unified.hasMore;
         response.suggestions = new ArrayList<>();
-
+        response.facets = facets;
+        finish(response, criteria, debug);
         return Response.ok(response).build();
     }
 
+    private SearchResultDTO noteResult(Note note, Map<Long, PermissionService.Access> access,
+                                       Highlighter highlighter, double relevance, SearchTrace trace) {
+        long highlightStart = System.nanoTime();
+        List<Highlighter.Span> titleHits = highlighter != null ? highlighter.find(note.title) : List.of();
+        List<Highlighter.Span> contentHits = highlighter != null ? highlighter.find(note.content) : List.of();
+        String excerpt = Highlighter.excerpt(note.content, contentHits, EXCERPT_LENGTH);
+        List<SearchMatchDTO> matches = new ArrayList<>();
+        if (!titleHits.isEmpty()) {
+            matches.add(toMatch("title", note.title, titleHits));
+        }
+        if (!contentHits.isEmpty()) {
+            matches.add(toMatch("content", note.content, contentHits));
+        }
+        trace.add(SearchTrace.Stage.HIGHLIGHT, System.nanoTime() - highlightStart);
+
+        SearchResultDTO dto = new SearchResultDTO();
+        dto.id = note.id.toString();
+        dto.type = "note";
+        dto.title = note.title;
+        dto.excerpt = excerpt;
+        dto.relevanceScore = relevance;
+        dto.lastModified = note.updatedAt;
+        dto.ownerUsername = note.owner != null ? note.owner.username : null;
+        dto.folderName = note.folder != null ? note.folder.name : null;
+        dto.createdAt = note.createdAt;
+        dto.matches = matches;
+
+        // Check ownership and permissions
+        PermissionService.Access noteAccess = access.getOrDefault(note.id, PermissionService.Access.NONE);
+        dto.isShared = !noteAccess.isOwner();
+        dto.canEdit = noteAccess.canWrite();
+        dto.canDelete = noteAccess.isOwner();
+        return dto;
+    }
+
+    // Cartelle e collaboratori: un solo campo (il nome) in cui evidenziare
+    private SearchResultDTO otherResult(String type, Long id, String name, Highlighter highlighter, double relevance,
+                                        SearchTrace trace) {
+        SearchResultDTO dto = new SearchResultDTO();
+        dto.id = id.toString();
+        dto.type = type;
+        dto.title = name;
+        dto.relevanceScore = relevance;
+        dto.matches = new ArrayList<>();
+        long highlightStart = System.nanoTime();
+        List<Highlighter.Span> nameHits = highlighter != null ? highlighter.find(name) : List.of();
+        if (!nameHits.isEmpty()) {
+            dto.matches.add(toMatch("title", name, nameHits));
+        }
+        trace.add(SearchTrace.Stage.HIGHLIGHT, System.nanoTime() - highlightStart);
+        return dto;
+    }
+
+    // Tipi separati da virgola; senza il parametro solo le note
+    private Set<UnifiedSearchService.Type> parseTypes(String types) {
+        Set<UnifiedSearchService.Type> parsed = EnumSet.noneOf(UnifiedSearchService.Type.class);
+        if (types == null || types.isBlank()) {
+            parsed.add(UnifiedSearchService.Type.NOTE);
+            return parsed;
+        }
+        for (String type : types.split(",")) {
+            switch (type.trim().toLowerCase(Locale.ROOT)) {
+                case "note", "notes" -> parsed.add(UnifiedSearchService.Type.NOTE);
+                case "folder", "folders" -> parsed.add(UnifiedSearchService.Type.FOLDER);
+                case "collaborator", "collaborators", "user", "users" ->
+                        parsed.add(UnifiedSearchService.Type.COLLABORATOR);
+                case "" -> {
+                }
+                default -> throw new ValidationException("Invalid type: " + type.trim());
+            }
+        }
+        if (parsed.isEmpty()) {
+            parsed.add(UnifiedSearchService.Type.NOTE);
+        }
+        return parsed;
+    }
+
+    private SearchCriteria.Sort parseSort(String sortBy) {
+        switch (sortBy.trim().toLowerCase(Locale.ROOT)) {
+            case "relevance":
+                return SearchCriteria.Sort.RELEVANCE;
+            case "title":
+                return SearchCriteria.Sort.TITLE;
+            case "created":
+                return SearchCriteria.Sort.CREATED;
+            // "date" è il valore storico del frontend
+            case "modified":
+            case "date":
+                return SearchCriteria.Sort.MODIFIED;
+            default:
+                throw new ValidationException("Invalid sortBy: " + sortBy);
+        }
+    }
+
+    // Accetta anche true/false, inviati dalle versioni precedenti del frontend
+    private int parseFuzzy(String fuzzy) {
+        if (fuzzy == null || fuzzy.isBlank() || "false".equalsIgnoreCase(fuzzy)) {
+            return 0;
+        }
+        if ("true".equalsIgnoreCase(fuzzy)) {
+            return 1;
+        }
+        try {
+            int edits = Integer.parseInt(fuzzy.trim());
+            if (edits >= 0 && edits <= MAX_FUZZY_EDITS) {
+                return edits;
+            }
+        } catch (NumberFormatException e) {
+            // gestito sotto
+        }
+        throw new ValidationException("Invalid fuzzy: must be between 0 and " + MAX_FUZZY_EDITS);
+    }
+
+    private boolean parseHistoryScope(String scope) {
+        switch (scope.trim().toLowerCase(Locale.ROOT)) {
+            case "notes":
+                return false;
+            case "history":
+                return true;
+            default:
+                throw new ValidationException("Invalid scope: " + scope);
+        }
+    }
+
+    private boolean parseAscending(String sortOrder) {
+        if ("asc".equalsIgnoreCase(sortOrder)) {
+            return true;
+        }
+        if ("desc".equalsIgnoreCase(sortOrder)) {
+            return false;
+        }
+        throw new ValidationException("Invalid sortOrder: " + sortOrder);
+    }
+
     private LocalDateTime parseDateTime(String dateStr) {
         if (dateStr == null || dateStr.trim().isEmpty()) {
             return null;
@@ -162,37 +511,107 @@ public class SearchController {
     @Path("/suggestions")
     public Response getSuggestions(
             @QueryParam("q") String query,
+            @QueryParam("limit") @DefaultValue("10") int limit,
             @Context SecurityContext securityContext) {
-        // Simple suggestions - return empty for now
-        return Response.ok(new ArrayList<String>()).build();
+        Long userId = getUserId(securityContext);
+        // Solo indice in memoria: chiamato ad ogni tasto premuto, non deve toccare il database
+        List<String> suggestions = suggestionIndex.suggest(userId, query, Math.min(Math.max(limit, 1), MAX_SUGGESTIONS));
+        return Response.ok(suggestions).build();
     }
 
-    private double calculateRelevance(Note note, String query) {
-        double score = 0.0;
-        String lowerQuery = query.toLowerCase();
-
-        // Title match is worth more
-        if (note.title.toLowerCase().contains(lowerQuery)) {
-            score += 2.0;
-            if (note.title.toLowerCase().startsWith(lowerQuery)) {
-                score += 1.0;
-            }
+    private SearchMatchDTO toMatch(String field, String value, List<Highlighter.Span> spans) {
+        SearchMatchDTO match = new SearchMatchDTO();
+        match.field = field;
+        match.value = value;
+        match.highlights = new ArrayList<>(spans.size());
+        for (Highlighter.Span span : spans) {
+            HighlightDTO highlight = new HighlightDTO();
+            highlight.start = span.start;
+            highlight.end = span.end;
+            match.highlights.add(highlight);
         }
+        return match;
+    }
 
-        // Content match
-        if (note.content.toLowerCase().contains(lowerQuery)) {
-            score += 1.0;
+    private Set<String> highlightTerms(SearchCriteria criteria) {
+        // Parole della query e termini analizzati (radici), più le varianti fuzzy
+        Set<String> terms = new LinkedHashSet<>(Terms.tokenize(criteria.rankingText()));
+        terms.addAll(textAnalyzer.terms(criteria.rankingText()));
+        if (criteria.hasVariants()) {
+            criteria.variants.values().forEach(terms::addAll);
         }
+        return terms;
+    }
 
-        return score;
+    // Punteggio BM25: già calcolato se la pagina è ordinata per rilevanza
+    private double relevance(Note note, NotePage page, Bm25Ranker.Query rankQuery) {
+        if (page.scores != null) {
+            return page.scores.getOrDefault(note.id, 0.0);
+        }
+        return rankQuery != null ? rankQuery.score(note.title, note.content) : 1.0;
     }
 
     // DTOs for search response
+    public static class SearchFilters {
+        @QueryParam("q")
+        public String query;
+        @QueryParam("author")
+        public String author;
+        @QueryParam("folderId")
+        public Long folderId;
+        @QueryParam("createdFrom")
+        public String createdFrom;
+        @QueryParam("createdTo")
+        public String createdTo;
+        @QueryParam("modifiedFrom")
+        public String modifiedFrom;
+        @QueryParam("modifiedTo")
+        public String modifiedTo;
+        @QueryParam("includeShared")
+        @DefaultValue("true")
+        public boolean includeShared;
+        @QueryParam("includeArchived")
+        @DefaultValue("false")
+        public boolean includeArchived;
+        @QueryParam("sortBy")
+        @DefaultValue("relevance")
+        public String sortBy;
+        @QueryParam("sortOrder")
+        @DefaultValue("desc")
+        public String sortOrder;
+        @QueryParam("fuzzy")
+        public String fuzzy;
+        @QueryParam("scope")
+        @DefaultValue("notes")
+        public String scope;
+    }
+
     public static class SearchResponseDTO {
         public List<SearchResultDTO> results;
-        public int total;
+        // Null se non richiesto (includeTotal=false) e non ricavabile dalla pagina
+        public Long total;
         public long took;
+        public String nextCursor;
+        public boolean hasMore;
         public List<String> suggestions;
+        // Solo sulla prima pagina
+        public SearchFacets facets;
+        // Scadenza raggiunta, senza faccette. Se scade la ricerca sull'indice (notes.search.mode=lucene)
+        // i risultati sono quelli trovati fino a quel momento; se scade una query sul database
+        // la pagina è vuota, perché il database non restituisce righe parziali
+        public boolean timedOut;
+        // Più di notes.search.max-hits note corrispondono alla keyword (ricerca full-text di PostgreSQL):
+        // le pagine contengono solo le più pertinenti, conviene restringere la ricerca
+        public boolean truncated;
+        // Solo con debug=true
+        public SearchDebugDTO debug;
+    }
+
+    public static class SearchDebugDTO {
+        // Millisecondi per fase (parse, query, ranking, hydration, permissions, mapping, highlight, facets)
+        public Map<String, Double> stages;
+        // Percorso eseguito, hit dell'indice, candidati, JPQL
+        public Map<String, Object> plan;
     }
 
     public static class SearchResultDTO {
@@ -209,6 +628,8 @@ public class SearchController {
         public boolean isShared;
         public boolean canEdit;
         public boolean canDelete;
+        // Versioni passate corrispondenti alla query (solo con scope=history)
+        public List<Long> matchedVersions;
     }
 
     public static class SearchMatchDTO {
@@ -31,6 +31,31 @@ public class NoteDTO {
 
     public List<CollaboratorDTO> collaborators;
 
+    public NoteDTO() {
+    }
+
+    /**
+     * Costruttore delle query di proiezione (SELECT new ...): le liste leggono solo queste colonne,
+     * senza caricare entità gestite dalla sessione
+     */
+    public NoteDTO(Long id, String title, String content, Long ownerId, String ownerUsername,
+                   LocalDateTime createdAt, LocalDateTime updatedAt, Long version, Long folderId, String folderName,
+                   boolean isShared, boolean canEdit, boolean canDelete) {
+        this.id = id;
+        this.title = title;
+        this.content = content;
+        this.ownerId = ownerId;
+        this.ownerUsername = ownerUsername;
+        this.createdAt = createdAt;
+        setUpdatedAt(updatedAt);
+        setVersion(version);
+        this.folderId = folderId;
+        this.folderName = folderName;
+        this.isShared = isShared;
+        this.canEdit = canEdit;
+        this.canDelete = canDelete;
+    }
+
     /**
      * Imposta entrambi updatedAt e modifiedAt per compatibilità
      */
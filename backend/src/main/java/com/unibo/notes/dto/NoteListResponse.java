@@ -8,21 +8,34 @@ import java.util.List;
  */
 public class NoteListResponse {
     public List<NoteDTO> notes;
-    public int total;
+    // Null se non richiesto (includeTotal=false) e non ricavabile dalla pagina
+    public Long total;
     public int page;
     public int limit;
+    // Paginazione keyset: cursore da passare come ?cursor= per la pagina successiva
+    public String nextCursor;
+    public boolean hasMore;
 
     public NoteListResponse(List<NoteDTO> notes) {
         this.notes = notes;
-        this.total = notes != null ? notes.size() : 0;
+        this.total = (long) (notes != null ? notes.size() : 0);
         this.page = 1;
-        this.limit = this.total;
+        this.limit = notes != null ? notes.size() : 0;
     }
 
     public NoteListResponse(List<NoteDTO> notes, int page, int limit, int total) {
         this.notes = notes;
-        this.total = total;
+        this.total = (long) total;
         this.page = page;
         this.limit = limit;
     }
+
+    public static NoteListResponse ofPage(List<NoteDTO> notes, int limit, String nextCursor, Long total) {
+        NoteListResponse response = new NoteListResponse(notes);
+        response.limit = limit;
+        response.total = total;
+        response.nextCursor = nextCursor;
+        response.hasMore = nextCursor != null;
+        return response;
+    }
 }
@@ -0,0 +1,43 @@
+package com.unibo.notes.dto;
+
+import com.unibo.notes.util.BinaryDelta;
+
+import java.time.LocalDateTime;
+
+/**
+ * Voce della cronologia delle versioni, senza contenuto (si legge con GET /versions/{versionNumber}).
+ */
+public class NoteVersionSummaryDTO {
+    public Long id;
+    public Long noteId;
+    public Long versionNumber;
+    public String modifiedByUsername;
+    public LocalDateTime modifiedAt;
+    // Dimensione del contenuto in byte (UTF-8)
+    public int size;
+    // false se la versione è salvata come differenza dallo snapshot baseVersionNumber
+    public boolean snapshot;
+    public Long baseVersionNumber;
+    // Byte salvati per la versione: la differenza, oppure il contenuto dello snapshot
+    public int storedBytes;
+
+    public NoteVersionSummaryDTO() {
+    }
+
+    /**
+     * Costruttore della query di proiezione: per le differenze la dimensione del contenuto
+     * è scritta in testa alla differenza stessa
+     */
+    public NoteVersionSummaryDTO(Long id, Long noteId, Long versionNumber, String modifiedByUsername,
+                                 LocalDateTime modifiedAt, Integer snapshotSize, byte[] delta, Long baseVersionNumber) {
+        this.id = id;
+        this.noteId = noteId;
+        this.versionNumber = versionNumber;
+        this.modifiedByUsername = modifiedByUsername != null ? modifiedByUsername : "Unknown";
+        this.modifiedAt = modifiedAt;
+        this.snapshot = delta == null;
+        this.baseVersionNumber = baseVersionNumber;
+        this.size = snapshot ? snapshotSize : BinaryDelta.targetLength(delta);
+        this.storedBytes = snapshot ? snapshotSize : delta.length;
+    }
+}
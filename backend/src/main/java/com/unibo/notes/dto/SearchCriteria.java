@@ -0,0 +1,84 @@
+package com.unibo.notes.dto;
+
+import com.unibo.notes.search.SearchDeadline;
+import com.unibo.notes.search.SearchQuery;
+import com.unibo.notes.search.SearchTrace;
+import com.unibo.notes.util.PageCursor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Filtri della ricerca avanzata (/search), condivisi tra controller, servizio e repository.
+ */
+public class SearchCriteria {
+
+    public enum Sort {
+        /** Punteggio BM25, dal più rilevante (solo con keyword, altrimenti data di modifica) */
+        RELEVANCE,
+        /** Titolo, con la collation italiana del database */
+        TITLE,
+        /** Data di creazione */
+        CREATED,
+        /** Data di modifica */
+        MODIFIED
+    }
+
+    public Long userId;
+    public String keyword;
+    // Query strutturata (operatori, frasi, campi, date), mai vuota; null se la keyword è fatta solo di parole
+    public SearchQuery query;
+    // Id di cartelle e autori della query, risolti dal servizio per l'indice
+    public SearchQuery.Bindings bindings;
+    public String author;
+    public Long folderId;
+    public LocalDateTime createdFrom;
+    public LocalDateTime createdTo;
+    public LocalDateTime modifiedFrom;
+    public LocalDateTime modifiedTo;
+    public boolean includeShared = true;
+    public Sort sort = Sort.MODIFIED;
+    // Ignorato per RELEVANCE
+    public boolean ascending = false;
+
+    // Distanza massima della ricerca fuzzy (0 = solo termini esatti)
+    public int fuzzy = 0;
+    // Varianti di ogni termine della keyword nel dizionario dell'utente, risolte dal servizio
+    public Map<String, List<String>> variants = Map.of();
+    // Le stesse varianti come parole del dizionario (minuscole, con accenti e desinenze) per il LIKE,
+    // che confronta il testo grezzo delle note e non i termini analizzati
+    public List<String> surfaceVariants = List.of();
+
+    // scope=history: la keyword viene cercata nelle versioni passate delle note
+    public boolean history = false;
+
+    // Paginazione keyset
+    public PageCursor after;
+    public int limit = PageCursor.DEFAULT_LIMIT;
+
+    // Tempi per fase e piano eseguito, per istogrammi, log delle ricerche lente e debug=true
+    public SearchTrace trace = new SearchTrace();
+    // Scadenza della richiesta e annullamento alla disconnessione del client
+    public SearchDeadline deadline = SearchDeadline.none();
+    // Impostato dalla ricerca: più di notes.search.max-hits corrispondenze full-text (PostgreSQL),
+    // le pagine coprono solo le più pertinenti
+    public boolean truncated;
+
+    public boolean hasKeyword() {
+        return keyword != null && !keyword.trim().isEmpty();
+    }
+
+    /** Testo usato per ranking ed evidenziazione: per una query strutturata, i soli termini non negati */
+    public String rankingText() {
+        return query != null ? query.rankingText() : keyword;
+    }
+
+    public boolean hasVariants() {
+        return !variants.isEmpty();
+    }
+
+    public boolean isRanked() {
+        return sort == Sort.RELEVANCE && hasKeyword();
+    }
+}
@@ -0,0 +1,30 @@
+package com.unibo.notes.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Conteggi dei risultati di una ricerca per cartella, autore e mese di modifica,
+ * ordinati dal più numeroso
+ */
+public class SearchFacets {
+
+    public static class Count {
+        // Id della cartella o dell'autore, "yyyy-MM" per i mesi; null = note senza cartella
+        public String key;
+        public String label;
+        public long count;
+
+        public Count() {}
+
+        public Count(String key, String label, long count) {
+            this.key = key;
+            this.label = label;
+            this.count = count;
+        }
+    }
+
+    public List<Count> folders = new ArrayList<>();
+    public List<Count> authors = new ArrayList<>();
+    public List<Count> months = new ArrayList<>();
+}
@@ -0,0 +1,24 @@
+package com.unibo.notes.dto;
+
+import java.util.List;
+
+/**
+ * Pagina della cronologia delle versioni di una nota, dalla più recente.
+ */
+public class VersionHistoryResponse {
+    public List<NoteVersionSummaryDTO> versions;
+    // Null se non richiesto (includeTotal=false)
+    public Long total;
+    public int limit;
+    // Paginazione keyset: cursore da passare come ?cursor= per la pagina successiva
+    public String nextCursor;
+    public boolean hasMore;
+
+    public VersionHistoryResponse(List<NoteVersionSummaryDTO> versions, int limit, String nextCursor, Long total) {
+        this.versions = versions;
+        this.limit = limit;
+        this.nextCursor = nextCursor;
+        this.hasMore = nextCursor != null;
+        this.total = total;
+    }
+}
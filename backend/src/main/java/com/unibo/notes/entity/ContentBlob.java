@@ -0,0 +1,41 @@
+package com.unibo.notes.entity;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Contenuto condiviso tra versioni, indirizzato dal suo hash: contenuti uguali (copie, ripristini,
+ * salvataggi senza modifiche) sono salvati una volta sola.
+ */
+@Entity
+@Table(name = "content_blobs",
+        indexes = @Index(name = "uk_content_blobs_hash", columnList = "hash", unique = true))
+public class ContentBlob extends PanacheEntityBase {
+
+    private static final ZoneId ROME_ZONE = ZoneId.of("Europe/Rome");
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    public Long id;
+
+    // SHA-256 del contenuto in UTF-8, esadecimale
+    @Column(nullable = false, length = 64)
+    public String hash;
+
+    @Column(nullable = false, length = 280)
+    public String content;
+
+    // Versioni che puntano al blob; a zero il blob viene eliminato dalla raccolta periodica
+    @Column(name = "ref_count", nullable = false)
+    public long refCount;
+
+    @Column(name = "created_at", nullable = false)
+    public LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now(ROME_ZONE);
+    }
+}
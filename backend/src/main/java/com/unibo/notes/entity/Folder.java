@@ -10,8 +10,11 @@ import java.util.Set;
 
 @Entity
 @Table(name = "folders")
+@NamedEntityGraph(name = Folder.WITH_OWNER, attributeNodes = @NamedAttributeNode("owner"))
 public class Folder extends PanacheEntityBase {
 
+    public static final String WITH_OWNER = "Folder.withOwner";
+
     private static final ZoneId ROME_ZONE = ZoneId.of("Europe/Rome");
 
     @Id
@@ -3,15 +3,30 @@ package com.unibo.notes.entity;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
 import java.util.HashSet;
 import java.util.Set;
 
 @Entity
-@Table(name = "notes")
+@Table(name = "notes", indexes = {
+        // Paginazione keyset delle liste: owner + (updated_at, id) decrescenti
+        @Index(name = "idx_notes_owner_updated", columnList = "owner_id, updated_at DESC, id DESC"),
+        // Ordinamenti per data di creazione e titolo, percorribili in entrambe le direzioni
+        @Index(name = "idx_notes_owner_created", columnList = "owner_id, created_at, id"),
+        @Index(name = "idx_notes_owner_title", columnList = "owner_id, title, id")
+})
+// Piano di caricamento delle liste di entità: proprietario e cartella nella stessa query
+@NamedEntityGraph(name = Note.WITH_OWNER_AND_FOLDER, attributeNodes = {
+        @NamedAttributeNode("owner"),
+        @NamedAttributeNode("folder")
+})
 public class Note extends PanacheEntityBase {
 
+    public static final String WITH_OWNER_AND_FOLDER = "Note.withOwnerAndFolder";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     public Long id;
@@ -40,6 +55,11 @@ public class Note extends PanacheEntityBase {
     @Column(name = "last_modified_by")
     public Long lastModifiedBy;
 
+    // Numero dell'ultima versione salvata: il default riempie le note esistenti quando la colonna viene aggiunta
+    @Column(name = "last_version_number", nullable = false)
+    @ColumnDefault("0")
+    public long lastVersionNumber;
+
     @OneToMany(mappedBy = "note", cascade = CascadeType.ALL, orphanRemoval = true)
     public Set<NotePermission> permissions = new HashSet<>();
 
@@ -51,12 +71,27 @@ public class Note extends PanacheEntityBase {
 
     @PrePersist
     protected void onCreate() {
-        createdAt = LocalDateTime.now(ROME_ZONE);
-        updatedAt = LocalDateTime.now(ROME_ZONE);
+        createdAt = now();
+        updatedAt = now();
     }
 
     @PreUpdate
     protected void onUpdate() {
-        updatedAt = LocalDateTime.now(ROME_ZONE);
+        updatedAt = now();
+    }
+
+    /**
+     * Riserva il numero della prossima versione. Il contatore viene scritto con l'UPDATE (o l'INSERT)
+     * della nota, che controlla @Version: due salvataggi concorrenti non ottengono lo stesso numero,
+     * il secondo fallisce con un conflitto di versione.
+     */
+    public long nextVersionNumber() {
+        return ++lastVersionNumber;
+    }
+
+    // Stessa precisione del database (microsecondi): il cursore di paginazione
+    // costruito dall'entità in memoria deve coincidere con il valore salvato
+    private static LocalDateTime now() {
+        return LocalDateTime.now(ROME_ZONE).truncatedTo(ChronoUnit.MICROS);
     }
 }
\ No newline at end of file
@@ -7,9 +7,14 @@ import java.time.ZoneId;
 
 @Entity
 @Table(name = "note_permissions",
-        uniqueConstraints = @UniqueConstraint(columnNames = {"note_id", "user_id"}))
+        uniqueConstraints = @UniqueConstraint(columnNames = {"note_id", "user_id"}),
+        indexes = @Index(name = "idx_note_permissions_user", columnList = "user_id"))
+// Lista dei collaboratori di una nota: l'utente di ogni permesso nella stessa query
+@NamedEntityGraph(name = NotePermission.WITH_USER, attributeNodes = @NamedAttributeNode("user"))
 public class NotePermission extends PanacheEntityBase {
 
+    public static final String WITH_USER = "NotePermission.withUser";
+
     private static final ZoneId ROME_ZONE = ZoneId.of("Europe/Rome");
 
     @Id
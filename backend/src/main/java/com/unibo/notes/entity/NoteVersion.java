@@ -6,7 +6,13 @@ import java.time.LocalDateTime;
 import java.time.ZoneId;
 
 @Entity
-@Table(name = "note_versions")
+@Table(name = "note_versions",
+        // Un numero per versione di ogni nota; serve anche la lettura di una versione e della cronologia
+        indexes = {
+                @Index(name = "uk_note_versions_note_number", columnList = "note_id, version_number", unique = true),
+                // Riferimenti ai blob, per la raccolta dei blob non più usati
+                @Index(name = "idx_note_versions_blob", columnList = "blob_id")
+        })
 public class NoteVersion extends PanacheEntityBase {
 
     private static final ZoneId ROME_ZONE = ZoneId.of("Europe/Rome");
@@ -18,9 +24,21 @@ public class NoteVersion extends PanacheEntityBase {
     @Column(name = "note_id", nullable = false)
     public Long noteId;
 
-    @Column(nullable = false, length = 280)
+    // Contenuto completo in linea, solo per gli snapshot salvati prima dei blob (spostati poi da BlobCollector)
+    @Column(length = 280)
     public String content;
 
+    // Contenuto completo (snapshot) condiviso in content_blobs; null se la versione è una differenza
+    @Column(name = "blob_id")
+    public Long blobId;
+
+    // Differenza binaria (BinaryDelta) dal contenuto dello snapshot baseId della stessa nota
+    @Column(name = "delta", length = 2048)
+    public byte[] delta;
+
+    @Column(name = "base_id")
+    public Long baseId;
+
     @Column(name = "version_number", nullable = false)
     public Long versionNumber;
 
@@ -34,4 +52,8 @@ public class NoteVersion extends PanacheEntityBase {
     protected void onCreate() {
         modifiedAt = LocalDateTime.now(ROME_ZONE);
     }
+
+    public boolean isSnapshot() {
+        return delta == null;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,114 @@
+package com.unibo.notes.repository;
+
+import com.unibo.notes.entity.ContentBlob;
+import io.quarkus.hibernate.orm.panache.PanacheRepository;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+@ApplicationScoped
+public class ContentBlobRepository implements PanacheRepository<ContentBlob> {
+
+    private static final ZoneId ROME_ZONE = ZoneId.of("Europe/Rome");
+
+    // Ogni giro in più richiede un'altra transazione che crea o elimina lo stesso blob nel frattempo
+    private static final int MAX_ACQUIRE_ATTEMPTS = 3;
+
+    public Optional<Long> findIdByHash(String hash) {
+        return getEntityManager()
+                .createQuery("SELECT b.id FROM ContentBlob b WHERE b.hash = :hash", Long.class)
+                .setParameter("hash", hash)
+                .getResultStream()
+                .findFirst();
+    }
+
+    public Optional<String> findContent(Long id) {
+        return getEntityManager()
+                .createQuery("SELECT b.content FROM ContentBlob b WHERE b.id = :id", String.class)
+                .setParameter("id", id)
+                .getResultStream()
+                .findFirst();
+    }
+
+    /**
+     * Contenuti dei blob per id, in una sola query
+     */
+    public Map<Long, String> findContents(Collection<Long> ids) {
+        Map<Long, String> contents = new HashMap<>();
+        if (ids.isEmpty()) {
+            return contents;
+        }
+        getEntityManager()
+                .createQuery("SELECT b.id, b.content FROM ContentBlob b WHERE b.id IN :ids", Object[].class)
+                .setParameter("ids", ids)
+                .getResultList()
+                .forEach(row -> contents.put((Long) row[0], (String) row[1]));
+        return contents;
+    }
+
+    /**
+     * Aggiunge un riferimento al blob con questo hash, se esiste
+     */
+    public Optional<Long> referenceByHash(String hash) {
+        if (update("refCount = refCount + 1 where hash = ?1", hash) == 0) {
+            return Optional.empty();
+        }
+        return findIdByHash(hash);
+    }
+
+    /**
+     * Riferimento al blob con questo hash, creato se manca. Con ON CONFLICT DO NOTHING un salvataggio
+     * concorrente dello stesso contenuto non fallisce sull'indice univoco: l'INSERT attende l'altra
+     * transazione e, se questa ha creato il blob, si riprova con l'incremento. Anche un blob eliminato
+     * dalla raccolta tra un passo e l'altro porta a un nuovo giro, al massimo MAX_ACQUIRE_ATTEMPTS.
+     */
+    public Long acquire(String hash, String content) {
+        for (int attempt = 0; attempt < MAX_ACQUIRE_ATTEMPTS; attempt++) {
+            Optional<Long> existing = referenceByHash(hash);
+            if (existing.isPresent()) {
+                return existing.get();
+            }
+            int inserted = getEntityManager()
+                    .createNativeQuery("INSERT INTO content_blobs (hash, content, ref_count, created_at)"
+                            + " VALUES (:hash, :content, 1, :createdAt) ON CONFLICT DO NOTHING")
+                    .setParameter("hash", hash)
+                    .setParameter("content", content)
+                    .setParameter("createdAt", LocalDateTime.now(ROME_ZONE))
+                    .executeUpdate();
+            if (inserted > 0) {
+                return findIdByHash(hash)
+                        .orElseThrow(() -> new IllegalStateException("Missing content blob " + hash));
+            }
+        }
+        throw new IllegalStateException("Content blob " + hash + " not acquired after "
+                + MAX_ACQUIRE_ATTEMPTS + " attempts");
+    }
+
+    /**
+     * Rilascia i riferimenti ai blob delle versioni versionIds, prima della loro eliminazione
+     */
+    public int releaseVersions(Collection<Long> versionIds) {
+        return getEntityManager()
+                .createQuery("UPDATE ContentBlob b SET b.refCount = b.refCount"
+                        + " - (SELECT COUNT(v.id) FROM NoteVersion v WHERE v.blobId = b.id AND v.id IN :ids)"
+                        + " WHERE b.id IN (SELECT v.blobId FROM NoteVersion v WHERE v.id IN :ids)")
+                .setParameter("ids", versionIds)
+                .executeUpdate();
+    }
+
+    /**
+     * Elimina i blob senza riferimenti. Il controllo sulle versioni copre contatori disallineati;
+     * un blob appena riacquisito (refCount > 0) resta.
+     */
+    public int deleteUnreferenced() {
+        return getEntityManager()
+                .createQuery("DELETE FROM ContentBlob b WHERE b.refCount <= 0"
+                        + " AND NOT EXISTS (SELECT v.id FROM NoteVersion v WHERE v.blobId = b.id)")
+                .executeUpdate();
+    }
+}
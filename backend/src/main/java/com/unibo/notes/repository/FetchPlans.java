@@ -0,0 +1,20 @@
+package com.unibo.notes.repository;
+
+import io.quarkus.hibernate.orm.panache.PanacheQuery;
+import jakarta.persistence.EntityManager;
+import org.hibernate.jpa.SpecHints;
+
+/**
+ * Piani di caricamento per endpoint: i grafi con nome dichiarati sulle entità (Note.WITH_OWNER_AND_FOLDER...)
+ * applicati come fetch graph, così le associazioni LAZY usate dalla mappatura in DTO arrivano
+ * con la query principale invece che con una query per riga.
+ */
+final class FetchPlans {
+
+    private FetchPlans() {
+    }
+
+    static <T> PanacheQuery<T> withGraph(PanacheQuery<T> query, EntityManager entityManager, String graph) {
+        return query.withHint(SpecHints.HINT_SPEC_FETCH_GRAPH, entityManager.getEntityGraph(graph));
+    }
+}
@@ -5,7 +5,11 @@ import com.unibo.notes.entity.User;
 import io.quarkus.hibernate.orm.panache.PanacheRepository;
 import jakarta.enterprise.context.ApplicationScoped;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 
 @ApplicationScoped
@@ -16,7 +20,17 @@ public class FolderRepository implements PanacheRepository<Folder> {
     }
 
     public List<Folder> findByOwnerId(Long ownerId) {
-        return list("owner.id", ownerId);
+        return FetchPlans.withGraph(find("owner.id", ownerId), getEntityManager(), Folder.WITH_OWNER).list();
+    }
+
+    /**
+     * Cartelle dell'utente con la parola nel nome o nella descrizione (ricerca unificata)
+     */
+    public List<Folder> searchByNameOrDescription(Long ownerId, String query, int limit) {
+        return find("owner.id = ?1 and (lower(name) like ?2 or lower(description) like ?2)",
+                ownerId, "%" + query.toLowerCase(Locale.ROOT) + "%")
+                .page(0, limit)
+                .list();
     }
 
     public List<Folder> findRootFoldersByOwnerId(Long ownerId) {
@@ -51,6 +65,24 @@ public class FolderRepository implements PanacheRepository<Folder> {
                 .getSingleResult();
     }
 
+    /**
+     * Numero di note dell'utente per ciascuna cartella, in una sola query (le cartelle vuote mancano)
+     */
+    public Map<Long, Long> countNotesByFolders(Collection<Long> folderIds, Long ownerId) {
+        Map<Long, Long> counts = new HashMap<>();
+        if (folderIds.isEmpty()) {
+            return counts;
+        }
+        getEntityManager()
+                .createQuery("SELECT n.folder.id, COUNT(n) FROM Note n"
+                        + " WHERE n.folder.id IN :folderIds AND n.owner.id = :ownerId GROUP BY n.folder.id", Object[].class)
+                .setParameter("folderIds", folderIds)
+                .setParameter("ownerId", ownerId)
+                .getResultList()
+                .forEach(row -> counts.put((Long) row[0], (Long) row[1]));
+        return counts;
+    }
+
     public boolean existsByNameAndOwner(String name, Long ownerId) {
         return count("lower(name) = lower(?1) and owner.id = ?2", name, ownerId) > 0;
     }
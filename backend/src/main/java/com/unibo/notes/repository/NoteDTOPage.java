@@ -0,0 +1,46 @@
+package com.unibo.notes.repository;
+
+import com.unibo.notes.dto.NoteDTO;
+import com.unibo.notes.util.PageCursor;
+
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * Pagina keyset di note lette con una query di proiezione, già nella forma della risposta.
+ */
+public class NoteDTOPage {
+
+    public final List<NoteDTO> notes;
+    public final String nextCursor;
+
+    public NoteDTOPage(List<NoteDTO> notes, String nextCursor) {
+        this.notes = notes;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Come NotePage.of: la riga in più letta con limit + 1 indica che esiste una pagina successiva
+     */
+    public static NoteDTOPage of(List<NoteDTO> fetched, int limit, NoteOrder order) {
+        if (fetched.size() <= limit) {
+            return new NoteDTOPage(fetched, null);
+        }
+        List<NoteDTO> notes = fetched.subList(0, limit);
+        return new NoteDTOPage(notes, order.cursorFor(notes.get(limit - 1)).encode());
+    }
+
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+
+    /**
+     * Totale per la risposta, con le stesse regole di NotePage.total
+     */
+    public Long total(PageCursor after, boolean requested, LongSupplier count) {
+        if (after == null && !hasMore()) {
+            return (long) notes.size();
+        }
+        return requested ? count.getAsLong() : null;
+    }
+}
@@ -0,0 +1,82 @@
+package com.unibo.notes.repository;
+
+import com.unibo.notes.dto.NoteDTO;
+import com.unibo.notes.entity.Note;
+import com.unibo.notes.exception.ValidationException;
+import com.unibo.notes.util.PageCursor;
+
+import java.util.Map;
+
+/**
+ * Ordinamento delle liste di note con l'id come spareggio, e relativa condizione keyset.
+ * Ogni campo ha un indice composito (owner_id, campo, id) che il database
+ * può percorrere in entrambe le direzioni.
+ */
+public final class NoteOrder {
+
+    /** Ordinamento predefinito: dalla nota modificata più di recente */
+    public static final NoteOrder RECENT = new NoteOrder(PageCursor.UPDATED_AT, false);
+
+    public final String field;
+    public final boolean ascending;
+
+    private NoteOrder(String field, boolean ascending) {
+        this.field = field;
+        this.ascending = ascending;
+    }
+
+    public static NoteOrder byModified(boolean ascending) {
+        return new NoteOrder(PageCursor.UPDATED_AT, ascending);
+    }
+
+    public static NoteOrder byCreated(boolean ascending) {
+        return new NoteOrder(PageCursor.CREATED_AT, ascending);
+    }
+
+    /**
+     * Il confronto sul titolo segue la collation della colonna (italiana su PostgreSQL)
+     */
+    public static NoteOrder byTitle(boolean ascending) {
+        return new NoteOrder(PageCursor.TITLE, ascending);
+    }
+
+    public String orderBy() {
+        String direction = ascending ? " ASC" : " DESC";
+        return " ORDER BY n." + field + direction + ", n.id" + direction;
+    }
+
+    /**
+     * Aggiunge la condizione "dopo il cursore"; il cursore deve riferirsi allo stesso campo
+     */
+    public void appendKeyset(StringBuilder query, Map<String, Object> params, PageCursor after) {
+        if (after == null) {
+            return;
+        }
+        if (after.isOffset() || !field.equals(after.field)) {
+            throw new ValidationException("Invalid cursor");
+        }
+        String comparison = ascending ? " > " : " < ";
+        query.append(" AND (n.").append(field).append(comparison).append(":afterValue")
+                .append(" OR (n.").append(field).append(" = :afterValue AND n.id").append(comparison).append(":afterId))");
+        params.put("afterValue", after.value);
+        params.put("afterId", after.id);
+    }
+
+    public PageCursor cursorFor(NoteDTO note) {
+        Object value = switch (field) {
+            case PageCursor.CREATED_AT -> note.createdAt;
+            case PageCursor.TITLE -> note.title;
+            default -> note.updatedAt;
+        };
+        return new PageCursor(field, value, note.id);
+    }
+
+    public PageCursor cursorFor(Note note) {
+        Object value = switch (field) {
+            case PageCursor.CREATED_AT -> note.createdAt;
+            case PageCursor.TITLE -> note.title;
+            default -> note.updatedAt;
+        };
+        return new PageCursor(field, value, note.id);
+    }
+}
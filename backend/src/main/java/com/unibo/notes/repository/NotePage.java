@@ -0,0 +1,64 @@
+package com.unibo.notes.repository;
+
+import com.unibo.notes.entity.Note;
+import com.unibo.notes.util.PageCursor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Una pagina di note ottenuta con paginazione keyset, con il cursore della pagina successiva
+ * (null se questa è l'ultima).
+ */
+public class NotePage {
+
+    public final List<Note> notes;
+    public final String nextCursor;
+    // Punteggio di rilevanza per id, solo se la pagina è ordinata per rilevanza
+    public final Map<Long, Double> scores;
+    // Numeri delle versioni passate corrispondenti alla query, per id (solo con scope=history)
+    public final Map<Long, List<Long>> versions;
+
+    public NotePage(List<Note> notes, String nextCursor) {
+        this(notes, nextCursor, null);
+    }
+
+    public NotePage(List<Note> notes, String nextCursor, Map<Long, Double> scores) {
+        this(notes, nextCursor, scores, null);
+    }
+
+    public NotePage(List<Note> notes, String nextCursor, Map<Long, Double> scores, Map<Long, List<Long>> versions) {
+        this.notes = notes;
+        this.nextCursor = nextCursor;
+        this.scores = scores;
+        this.versions = versions;
+    }
+
+    /**
+     * Costruisce la pagina da una query eseguita con limit + 1 righe:
+     * la riga in più indica che esiste una pagina successiva.
+     */
+    public static NotePage of(List<Note> fetched, int limit, NoteOrder order) {
+        if (fetched.size() <= limit) {
+            return new NotePage(fetched, null);
+        }
+        List<Note> notes = fetched.subList(0, limit);
+        return new NotePage(notes, order.cursorFor(notes.get(limit - 1)).encode());
+    }
+
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+
+    /**
+     * Totale per la risposta: gratuito se la prima pagina è anche l'ultima,
+     * altrimenti calcolato con la query di conteggio solo se richiesto (null in caso contrario).
+     */
+    public Long total(PageCursor after, boolean requested, LongSupplier count) {
+        if (after == null && !hasMore()) {
+            return (long) notes.size();
+        }
+        return requested ? count.getAsLong() : null;
+    }
+}
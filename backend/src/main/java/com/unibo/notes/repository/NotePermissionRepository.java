@@ -5,26 +5,49 @@ import com.unibo.notes.entity.NotePermission.PermissionType;
 import io.quarkus.hibernate.orm.panache.PanacheRepository;
 import jakarta.enterprise.context.ApplicationScoped;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @ApplicationScoped
 public class NotePermissionRepository implements PanacheRepository<NotePermission> {
 
+    /**
+     * Collaboratori di una nota, con l'utente di ogni permesso caricato nella stessa query
+     */
     public List<NotePermission> findByNoteId(Long noteId) {
-        return list("note.id", noteId);
+        return FetchPlans.withGraph(find("note.id", noteId), getEntityManager(), NotePermission.WITH_USER).list();
     }
 
     public List<NotePermission> findByUserId(Long userId) {
         return list("user.id", userId);
     }
 
+    public List<Long> findNoteIdsByUserId(Long userId) {
+        return getEntityManager()
+                .createQuery("SELECT p.note.id FROM NotePermission p WHERE p.user.id = :userId", Long.class)
+                .setParameter("userId", userId)
+                .getResultList();
+    }
+
+    public List<Long> findUserIdsByNoteId(Long noteId) {
+        return getEntityManager()
+                .createQuery("SELECT p.user.id FROM NotePermission p WHERE p.note.id = :noteId", Long.class)
+                .setParameter("noteId", noteId)
+                .getResultList();
+    }
+
     /**
-     * Trova permessi per userId con note e owner caricati eagerly
+     * Per ogni nota richiesta: id, id del proprietario e permesso esplicito dell'utente (null se assente)
      */
-    public List<NotePermission> findByUserIdWithNotes(Long userId) {
-        return find("SELECT p FROM NotePermission p LEFT JOIN FETCH p.note n LEFT JOIN FETCH n.owner WHERE p.user.id = ?1", userId)
-                .list();
+    public List<Object[]> findAccessRows(Collection<Long> noteIds, Long userId) {
+        return getEntityManager()
+                .createQuery("SELECT n.id, n.owner.id, p.permission FROM Note n"
+                        + " LEFT JOIN NotePermission p ON p.note.id = n.id AND p.user.id = :userId"
+                        + " WHERE n.id IN :noteIds", Object[].class)
+                .setParameter("userId", userId)
+                .setParameter("noteIds", noteIds)
+                .getResultList();
     }
 
     public Optional<NotePermission> findByNoteIdAndUserId(Long noteId, Long userId) {
@@ -1,12 +1,24 @@
 package com.unibo.notes.repository;
 
+import com.unibo.notes.dto.NoteDTO;
+import com.unibo.notes.dto.SearchCriteria;
 import com.unibo.notes.entity.Note;
+import com.unibo.notes.entity.NotePermission;
 import com.unibo.notes.entity.User;
+import com.unibo.notes.exception.ValidationException;
+import com.unibo.notes.search.SearchMode;
+import com.unibo.notes.search.SearchQuery;
+import com.unibo.notes.util.PageCursor;
+import io.quarkus.hibernate.orm.panache.PanacheQuery;
 import io.quarkus.hibernate.orm.panache.PanacheRepository;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.persistence.Query;
+import jakarta.persistence.TypedQuery;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.jpa.HibernateHints;
 
-import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -15,12 +27,80 @@ import java.util.Optional;
 @ApplicationScoped
 public class NoteRepository implements PanacheRepository<Note> {
 
+    // I termini cercati sono testo letterale: % e _ non fanno da jolly
+    private static final String LIKE_ESCAPE = " ESCAPE '\\'";
+
+    // Match full-text (tsvector italiano + inglese) oppure substring servita dagli indici pg_trgm
+    private static final String FULL_TEXT_MATCH =
+            "(n.search_vector @@ (websearch_to_tsquery('italian', :keyword) || websearch_to_tsquery('english', :keyword))"
+                    + " OR lower(n.title) LIKE :pattern" + LIKE_ESCAPE + " OR lower(n.content) LIKE :pattern" + LIKE_ESCAPE + ")";
+
+    private static final String FULL_TEXT_RANK =
+            "ts_rank(n.search_vector, websearch_to_tsquery('italian', :keyword) || websearch_to_tsquery('english', :keyword))";
+
+    // Colonne di NoteDTO; seguono isShared, canEdit e canDelete della vista
+    private static final String NOTE_DTO_SELECT = "SELECT new com.unibo.notes.dto.NoteDTO(n.id, n.title, n.content,"
+            + " o.id, o.username, n.createdAt, n.updatedAt, n.version, f.id, f.name, ";
+
+    @ConfigProperty(name = "notes.search.mode", defaultValue = "lucene")
+    SearchMode searchMode;
+
+    @ConfigProperty(name = "quarkus.datasource.db-kind", defaultValue = "postgresql")
+    String dbKind;
+
+    @ConfigProperty(name = "notes.search.max-hits", defaultValue = "1000")
+    int maxSearchHits;
+
     public List<Note> findByOwner(User owner) {
-        return list("owner", owner);
+        return withOwnerAndFolder(find("owner", owner)).list();
     }
 
     public List<Note> findByOwnerId(Long ownerId) {
-        return list("owner.id", ownerId);
+        return withOwnerAndFolder(find("owner.id", ownerId)).list();
+    }
+
+    public long countByOwnerAndFolder(Long ownerId, Long folderId) {
+        if (folderId == null) {
+            return countByOwner(ownerId);
+        }
+        return count("folder.id = ?1 and owner.id = ?2", folderId, ownerId);
+    }
+
+    /**
+     * Lista delle note dell'utente (tutte o di una cartella) come proiezione su NoteDTO:
+     * un'unica query con owner e cartella in join, nessuna entità nella sessione
+     */
+    public NoteDTOPage findDTOPageByOwnerId(Long ownerId, Long folderId, PageCursor after, int limit) {
+        Map<String, Object> params = new HashMap<>();
+        StringBuilder query = new StringBuilder(NOTE_DTO_SELECT + "FALSE, TRUE, TRUE)"
+                + " FROM Note n JOIN n.owner o LEFT JOIN n.folder f WHERE n.owner.id = :ownerId");
+        params.put("ownerId", ownerId);
+        if (folderId != null) {
+            query.append(" AND n.folder.id = :folderId");
+            params.put("folderId", folderId);
+        }
+        return dtoPage(query, params, after, limit);
+    }
+
+    /**
+     * Note condivise con l'utente come proiezione su NoteDTO: il permesso viene letto nella stessa query
+     */
+    public NoteDTOPage findSharedDTOPage(Long userId, PageCursor after, int limit) {
+        Map<String, Object> params = new HashMap<>();
+        StringBuilder query = new StringBuilder(NOTE_DTO_SELECT
+                + "TRUE, CASE WHEN p.permission = :write THEN TRUE ELSE FALSE END, FALSE)"
+                + " FROM NotePermission p JOIN p.note n JOIN n.owner o LEFT JOIN n.folder f WHERE p.user.id = :userId");
+        params.put("userId", userId);
+        params.put("write", NotePermission.PermissionType.WRITE);
+        return dtoPage(query, params, after, limit);
+    }
+
+    private NoteDTOPage dtoPage(StringBuilder query, Map<String, Object> params, PageCursor after, int limit) {
+        NoteOrder.RECENT.appendKeyset(query, params, after);
+        query.append(NoteOrder.RECENT.orderBy());
+        TypedQuery<NoteDTO> select = getEntityManager().createQuery(query.toString(), NoteDTO.class);
+        params.forEach(select::setParameter);
+        return NoteDTOPage.of(select.setMaxResults(limit + 1).getResultList(), limit, NoteOrder.RECENT);
     }
 
     public Optional<Note> findByIdAndOwner(Long noteId, Long ownerId) {
@@ -35,11 +115,107 @@ public class NoteRepository implements PanacheRepository<Note> {
                 .firstResultOptional();
     }
 
-    public List<Note> searchByContent(String keyword, Long ownerId) {
-        return list("(lower(title) like lower(?1) or lower(content) like lower(?1)) and owner.id = ?2",
+    // Le pagine di entità vengono mappate in DTO con username del proprietario e nome della cartella
+    private PanacheQuery<Note> withOwnerAndFolder(PanacheQuery<Note> query) {
+        return FetchPlans.withGraph(query, getEntityManager(), Note.WITH_OWNER_AND_FOLDER);
+    }
+
+    public boolean isPostgres() {
+        return "postgresql".equals(dbKind);
+    }
+
+    /**
+     * Modalità POSTGRES attiva: su altri database (H2 nei test) si usa il LIKE
+     */
+    public boolean isPostgresFullText() {
+        return searchMode == SearchMode.POSTGRES && isPostgres();
+    }
+
+    public NotePage searchByContent(String keyword, Long ownerId, PageCursor after, int limit) {
+        if (isPostgresFullText()) {
+            return searchByContentFullText(keyword, ownerId, after, limit);
+        }
+        return searchByContentLike(keyword, ownerId, after, limit);
+    }
+
+    public long countSearchByContent(String keyword, Long ownerId) {
+        if (isPostgresFullText()) {
+            Query count = getEntityManager()
+                    .createNativeQuery("SELECT COUNT(*) FROM notes n WHERE n.owner_id = :ownerId AND " + FULL_TEXT_MATCH)
+                    .setParameter("ownerId", ownerId)
+                    .setParameter("keyword", keyword)
+                    .setParameter("pattern", likePattern(keyword));
+            return ((Number) count.getSingleResult()).longValue();
+        }
+        return count("(lower(title) like lower(?1) or lower(content) like lower(?1)) and owner.id = ?2",
                 "%" + keyword + "%", ownerId);
     }
 
+    public NotePage searchByContentLike(String keyword, Long ownerId, PageCursor after, int limit) {
+        Map<String, Object> params = new HashMap<>();
+        StringBuilder query = new StringBuilder("SELECT n FROM Note n"
+                + " WHERE (lower(n.title) like lower(:keyword) or lower(n.content) like lower(:keyword))"
+                + " AND n.owner.id = :ownerId");
+        params.put("keyword", "%" + keyword + "%");
+        params.put("ownerId", ownerId);
+        NoteOrder.RECENT.appendKeyset(query, params, after);
+        query.append(NoteOrder.RECENT.orderBy());
+
+        return NotePage.of(withOwnerAndFolder(find(query.toString(), params)).page(0, limit + 1).list(),
+                limit, NoteOrder.RECENT);
+    }
+
+    @SuppressWarnings("unchecked")
+    public NotePage searchByContentFullText(String keyword, Long ownerId, PageCursor after, int limit) {
+        if (after != null && !PageCursor.UPDATED_AT.equals(after.field)) {
+            throw new ValidationException("Invalid cursor");
+        }
+        String keyset = after != null
+                ? " AND (n.updated_at < :afterUpdatedAt OR (n.updated_at = :afterUpdatedAt AND n.id < :afterId))"
+                : "";
+        Query query = getEntityManager()
+                .createNativeQuery("SELECT n.* FROM notes n WHERE n.owner_id = :ownerId AND " + FULL_TEXT_MATCH
+                        + keyset + " ORDER BY n.updated_at DESC, n.id DESC LIMIT :limit", Note.class)
+                .setParameter("ownerId", ownerId)
+                .setParameter("keyword", keyword)
+                .setParameter("pattern", likePattern(keyword))
+                .setParameter("limit", limit + 1);
+        if (after != null) {
+            query.setParameter("afterUpdatedAt", after.value);
+            query.setParameter("afterId", after.id);
+        }
+        return NotePage.of(query.getResultList(), limit, NoteOrder.RECENT);
+    }
+
+    /**
+     * Id delle note visibili all'utente che corrispondono alla keyword, dal più pertinente
+     * (al massimo maxHits)
+     */
+    @SuppressWarnings("unchecked")
+    public List<Long> fullTextNoteIds(Long userId, String keyword, boolean includeShared, int maxHits) {
+        String access = includeShared
+                ? "(n.owner_id = :userId OR n.id IN (SELECT p.note_id FROM note_permissions p WHERE p.user_id = :userId))"
+                : "n.owner_id = :userId";
+        List<Number> ids = getEntityManager()
+                .createNativeQuery("SELECT n.id FROM notes n WHERE " + access + " AND " + FULL_TEXT_MATCH
+                        + " ORDER BY " + FULL_TEXT_RANK + " DESC LIMIT :maxHits")
+                .setParameter("userId", userId)
+                .setParameter("keyword", keyword)
+                .setParameter("pattern", likePattern(keyword))
+                .setParameter("maxHits", maxHits)
+                .getResultList();
+        return ids.stream().map(Number::longValue).toList();
+    }
+
+    // LIKE "contiene" con % e _ dell'utente presi alla lettera (da usare con LIKE_ESCAPE)
+    private static String containsPattern(String text) {
+        return "%" + text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+
+    private static String likePattern(String keyword) {
+        return containsPattern(keyword.trim().toLowerCase());
+    }
+
     public List<Note> findByTag(String tagName, Long ownerId) {
         return list("select distinct n from Note n join n.tags t where lower(t.name) = lower(?1) and n.owner.id = ?2",
                 tagName, ownerId);
@@ -50,65 +226,301 @@ public class NoteRepository implements PanacheRepository<Note> {
     }
 
     /**
-     * Advanced search with multiple filters
+     * Advanced search with multiple filters, paginata con keyset su (updatedAt, id).
+     * Se noteIds non è null la keyword è già stata risolta dall'indice full-text
+     * e la ricerca è ristretta a quegli id.
+     */
+    public NotePage advancedSearch(SearchCriteria criteria, Collection<Long> noteIds) {
+        Map<String, Object> params = new HashMap<>();
+        String filters = searchFilters(criteria, noteIds, params);
+        if (filters == null) {
+            return new NotePage(new ArrayList<>(), null);
+        }
+
+        StringBuilder query = new StringBuilder("SELECT DISTINCT n FROM Note n LEFT JOIN FETCH n.owner LEFT JOIN FETCH n.folder")
+                .append(filters);
+        NoteOrder order = orderOf(criteria);
+        order.appendKeyset(query, params, criteria.after);
+        query.append(order.orderBy());
+        criteria.trace.plan("jpql", query.toString());
+
+        PanacheQuery<Note> notes = find(query.toString(), params).page(0, criteria.limit + 1);
+        int timeout = criteria.deadline.queryTimeoutSeconds();
+        if (timeout > 0) {
+            // La scadenza della ricerca arriva al database: la query viene interrotta anche lì
+            notes.withHint(HibernateHints.HINT_TIMEOUT, timeout);
+        }
+        return NotePage.of(notes.list(), criteria.limit, order);
+    }
+
+    /**
+     * Id dei risultati della ricerca avanzata da passare al ranking: oltre maxHits restano
+     * i più recenti, così i candidati non dipendono dall'ordine scelto dal database
+     */
+    public List<Long> advancedSearchIds(SearchCriteria criteria, Collection<Long> noteIds, int maxHits) {
+        Map<String, Object> params = new HashMap<>();
+        String filters = searchFilters(criteria, noteIds, params);
+        if (filters == null) {
+            return new ArrayList<>();
+        }
+        String jpql = "SELECT DISTINCT n.id, n.updatedAt FROM Note n" + filters + " ORDER BY n.updatedAt DESC, n.id DESC";
+        criteria.trace.plan("jpql", jpql);
+        TypedQuery<Object[]> query = getEntityManager().createQuery(jpql, Object[].class);
+        params.forEach(query::setParameter);
+        int timeout = criteria.deadline.queryTimeoutSeconds();
+        if (timeout > 0) {
+            query.setHint(HibernateHints.HINT_TIMEOUT, timeout);
+        }
+        List<Long> ids = new ArrayList<>();
+        for (Object[] row : query.setMaxResults(maxHits).getResultList()) {
+            ids.add((Long) row[0]);
+        }
+        return ids;
+    }
+
+    /**
+     * Titolo e contenuto dei candidati, senza caricare le entità
      */
-    public List<Note> advancedSearch(Long userId, String keyword, String author,
-                                      Long folderId, LocalDateTime createdFrom,
-                                      LocalDateTime createdTo, LocalDateTime modifiedFrom,
-                                      LocalDateTime modifiedTo, boolean includeShared) {
-        StringBuilder query = new StringBuilder("SELECT DISTINCT n FROM Note n LEFT JOIN FETCH n.owner LEFT JOIN FETCH n.folder");
+    public List<Object[]> findSearchTexts(Collection<Long> noteIds) {
+        return getEntityManager()
+                .createQuery("SELECT n.id, n.title, n.content FROM Note n WHERE n.id IN :noteIds", Object[].class)
+                .setParameter("noteIds", noteIds)
+                .getResultList();
+    }
+
+    public List<Note> findByIdsWithOwnerAndFolder(Collection<Long> noteIds) {
+        return find("SELECT n FROM Note n LEFT JOIN FETCH n.owner LEFT JOIN FETCH n.folder WHERE n.id IN ?1", noteIds)
+                .list();
+    }
+
+    /**
+     * Numero totale di risultati della ricerca avanzata (calcolato solo se richiesto)
+     */
+    public long countAdvancedSearch(SearchCriteria criteria, Collection<Long> noteIds) {
+        Map<String, Object> params = new HashMap<>();
+        String filters = searchFilters(criteria, noteIds, params);
+        if (filters == null) {
+            return 0;
+        }
+        return countQuery("SELECT COUNT(DISTINCT n.id) FROM Note n" + filters, params);
+    }
+
+    /** Dimensioni delle faccette della ricerca */
+    public enum Facet {
+        // Righe [folderId, folderName, conteggio]; folderId null = note senza cartella
+        FOLDER("f.id, f.name", " LEFT JOIN n.folder f"),
+        // Righe [ownerId, username, conteggio]
+        AUTHOR("o.id, o.username", " JOIN n.owner o"),
+        // Righe [anno, mese, conteggio] della data di modifica
+        MONTH("year(n.updatedAt), month(n.updatedAt)", "");
+
+        final String groupBy;
+        final String join;
+
+        Facet(String groupBy, String join) {
+            this.groupBy = groupBy;
+            this.join = join;
+        }
+    }
 
-        if (includeShared) {
+    /**
+     * Conteggi dei risultati della ricerca avanzata raggruppati per una dimensione
+     */
+    public List<Object[]> searchFacetCounts(SearchCriteria criteria, Collection<Long> noteIds, Facet facet) {
+        Map<String, Object> params = new HashMap<>();
+        String filters = searchFilters(criteria, noteIds, params);
+        if (filters == null) {
+            return List.of();
+        }
+        TypedQuery<Object[]> query = getEntityManager().createQuery(
+                "SELECT " + facet.groupBy + ", COUNT(DISTINCT n.id) FROM Note n" + facet.join + filters
+                        + " GROUP BY " + facet.groupBy,
+                Object[].class);
+        params.forEach(query::setParameter);
+        return query.getResultList();
+    }
+
+    /**
+     * Costruisce join e condizioni WHERE della ricerca avanzata.
+     * Restituisce null se la ricerca full-text non ha prodotto risultati.
+     */
+    private String searchFilters(SearchCriteria criteria, Collection<Long> noteIds, Map<String, Object> params) {
+        StringBuilder query = new StringBuilder();
+
+        if (criteria.includeShared) {
             query.append(" LEFT JOIN NotePermission p ON p.note.id = n.id AND p.user.id = :userId");
         }
+        boolean structured = noteIds == null && criteria.query != null;
+        if (structured && !criteria.query.folderNames().isEmpty()) {
+            query.append(" LEFT JOIN n.folder qf");
+        }
 
         query.append(" WHERE (n.owner.id = :userId");
-        if (includeShared) {
+        if (criteria.includeShared) {
             query.append(" OR p.user.id = :userId");
         }
         query.append(")");
 
-        Map<String, Object> params = new HashMap<>();
-        params.put("userId", userId);
+        params.put("userId", criteria.userId);
 
-        if (keyword != null && !keyword.trim().isEmpty()) {
-            query.append(" AND (LOWER(n.title) LIKE LOWER(:keyword) OR LOWER(n.content) LIKE LOWER(:keyword))");
-            params.put("keyword", "%" + keyword.trim() + "%");
+        if (noteIds != null) {
+            query.append(" AND n.id IN :noteIds");
+            params.put("noteIds", noteIds);
+        } else if (structured) {
+            // Query strutturata: tutto l'albero in questa stessa WHERE (su PostgreSQL i LIKE usano gli indici pg_trgm)
+            query.append(" AND ");
+            appendQuery(criteria.query.root, query, params);
+        } else if (criteria.hasKeyword() && isPostgresFullText()) {
+            // websearch_to_tsquery: "a b or c" = (a AND b) OR c
+            StringBuilder keyword = new StringBuilder(criteria.keyword.trim());
+            for (List<String> variants : criteria.variants.values()) {
+                variants.forEach(variant -> keyword.append(" or ").append(variant));
+            }
+            // Una riga in più dice se le corrispondenze sono più di maxSearchHits: quelle oltre
+            // non compaiono in nessuna pagina, e la risposta lo segnala
+            List<Long> fullTextIds = fullTextNoteIds(criteria.userId, keyword.toString(),
+                    criteria.includeShared, maxSearchHits + 1);
+            if (fullTextIds.isEmpty()) {
+                return null;
+            }
+            if (fullTextIds.size() > maxSearchHits) {
+                criteria.truncated = true;
+                fullTextIds = fullTextIds.subList(0, maxSearchHits);
+            }
+            query.append(" AND n.id IN :fullTextIds");
+            params.put("fullTextIds", fullTextIds);
+        } else if (criteria.hasKeyword()) {
+            query.append(" AND (LOWER(n.title) LIKE :keyword").append(LIKE_ESCAPE)
+                    .append(" OR LOWER(n.content) LIKE :keyword").append(LIKE_ESCAPE);
+            params.put("keyword", containsPattern(criteria.keyword.trim().toLowerCase()));
+            // Ricerca fuzzy: basta una delle varianti, confrontate come parole del dizionario
+            // (i termini analizzati, senza accenti e desinenze, non compaiono nel testo grezzo)
+            int i = 0;
+            for (String variant : criteria.surfaceVariants) {
+                String name = "variant" + i++;
+                query.append(" OR LOWER(n.title) LIKE :").append(name).append(LIKE_ESCAPE)
+                        .append(" OR LOWER(n.content) LIKE :").append(name).append(LIKE_ESCAPE);
+                params.put(name, containsPattern(variant));
+            }
+            query.append(")");
         }
 
-        if (author != null && !author.trim().isEmpty()) {
-            query.append(" AND LOWER(n.owner.username) LIKE LOWER(:author)");
-            params.put("author", "%" + author.trim() + "%");
+        if (criteria.author != null && !criteria.author.trim().isEmpty()) {
+            query.append(" AND LOWER(n.owner.username) LIKE :author").append(LIKE_ESCAPE);
+            params.put("author", containsPattern(criteria.author.trim().toLowerCase()));
         }
 
-        if (folderId != null) {
+        if (criteria.folderId != null) {
             query.append(" AND n.folder.id = :folderId");
-            params.put("folderId", folderId);
+            params.put("folderId", criteria.folderId);
         }
 
-        if (createdFrom != null) {
+        if (criteria.createdFrom != null) {
             query.append(" AND n.createdAt >= :createdFrom");
-            params.put("createdFrom", createdFrom);
+            params.put("createdFrom", criteria.createdFrom);
         }
 
-        if (createdTo != null) {
+        if (criteria.createdTo != null) {
             query.append(" AND n.createdAt <= :createdTo");
-            params.put("createdTo", createdTo);
+            params.put("createdTo", criteria.createdTo);
         }
 
-        if (modifiedFrom != null) {
+        if (criteria.modifiedFrom != null) {
             query.append(" AND n.updatedAt >= :modifiedFrom");
-            params.put("modifiedFrom", modifiedFrom);
+            params.put("modifiedFrom", criteria.modifiedFrom);
         }
 
-        if (modifiedTo != null) {
+        if (criteria.modifiedTo != null) {
             query.append(" AND n.updatedAt <= :modifiedTo");
-            params.put("modifiedTo", modifiedTo);
+            params.put("modifiedTo", criteria.modifiedTo);
         }
 
-        query.append(" ORDER BY n.updatedAt DESC");
+        return query.toString();
+    }
+
+    private static void appendQuery(SearchQuery.Node node, StringBuilder query, Map<String, Object> params) {
+        if (node instanceof SearchQuery.Text text) {
+            String name = "q" + params.size();
+            params.put(name, containsPattern(text.text));
+            String like = " LIKE :" + name + LIKE_ESCAPE;
+            switch (text.field) {
+                case TITLE -> query.append("LOWER(n.title)").append(like);
+                // Sempre vero o falso anche per le note senza cartella, così -folder: le include
+                case FOLDER -> query.append("(qf.id IS NOT NULL AND LOWER(qf.name)").append(like).append(")");
+                case AUTHOR -> query.append("LOWER(n.owner.username)").append(like);
+                default -> query.append("(LOWER(n.title)").append(like)
+                        .append(" OR LOWER(n.content)").append(like).append(")");
+            }
+        } else if (node instanceof SearchQuery.DateRange range) {
+            String field = range.field == SearchQuery.DateField.CREATED ? "n.createdAt" : "n.updatedAt";
+            query.append("(1 = 1");
+            if (range.from != null) {
+                String name = "q" + params.size();
+                params.put(name, range.from);
+                query.append(" AND ").append(field).append(" >= :").append(name);
+            }
+            if (range.to != null) {
+                String name = "q" + params.size();
+                params.put(name, range.to);
+                query.append(" AND ").append(field).append(" < :").append(name);
+            }
+            query.append(")");
+        } else if (node instanceof SearchQuery.Not not) {
+            query.append("NOT ");
+            appendQuery(not.child, query, params);
+        } else {
+            boolean and = node instanceof SearchQuery.And;
+            List<SearchQuery.Node> children = and ? ((SearchQuery.And) node).children : ((SearchQuery.Or) node).children;
+            query.append("(");
+            for (int i = 0; i < children.size(); i++) {
+                if (i > 0) {
+                    query.append(and ? " AND " : " OR ");
+                }
+                appendQuery(children.get(i), query, params);
+            }
+            query.append(")");
+        }
+    }
+
+    /**
+     * Cartelle visibili all'utente (con almeno una sua nota o una nota condivisa con lui) il cui nome contiene name
+     */
+    public List<Long> findVisibleFolderIds(Long userId, String name) {
+        return getEntityManager().createQuery("SELECT DISTINCT f.id FROM Note n JOIN n.folder f"
+                        + " LEFT JOIN NotePermission p ON p.note.id = n.id AND p.user.id = :userId"
+                        + " WHERE (n.owner.id = :userId OR p.user.id = :userId) AND LOWER(f.name) LIKE :name"
+                        + LIKE_ESCAPE, Long.class)
+                .setParameter("userId", userId)
+                .setParameter("name", containsPattern(name))
+                .getResultList();
+    }
+
+    /**
+     * Proprietari delle note visibili all'utente il cui username contiene name
+     */
+    public List<Long> findVisibleOwnerIds(Long userId, String name) {
+        return getEntityManager().createQuery("SELECT DISTINCT o.id FROM Note n JOIN n.owner o"
+                        + " LEFT JOIN NotePermission p ON p.note.id = n.id AND p.user.id = :userId"
+                        + " WHERE (n.owner.id = :userId OR p.user.id = :userId) AND LOWER(o.username) LIKE :name"
+                        + LIKE_ESCAPE, Long.class)
+                .setParameter("userId", userId)
+                .setParameter("name", containsPattern(name))
+                .getResultList();
+    }
+
+    // Rilevanza: i candidati vengono ordinati dal ranking, qui basta un ordine stabile
+    private static NoteOrder orderOf(SearchCriteria criteria) {
+        return switch (criteria.sort) {
+            case TITLE -> NoteOrder.byTitle(criteria.ascending);
+            case CREATED -> NoteOrder.byCreated(criteria.ascending);
+            case MODIFIED -> NoteOrder.byModified(criteria.ascending);
+            case RELEVANCE -> NoteOrder.RECENT;
+        };
+    }
 
-        var panacheQuery = find(query.toString(), params);
-        return panacheQuery.list();
+    private long countQuery(String query, Map<String, Object> params) {
+        TypedQuery<Long> count = getEntityManager().createQuery(query, Long.class);
+        params.forEach(count::setParameter);
+        return count.getSingleResult();
     }
-}
\ No newline at end of file
+}
@@ -1,10 +1,14 @@
 package com.unibo.notes.repository;
 
+import com.unibo.notes.dto.NoteVersionSummaryDTO;
 import com.unibo.notes.entity.NoteVersion;
+import com.unibo.notes.util.PageCursor;
 import io.quarkus.hibernate.orm.panache.PanacheRepository;
-import io.quarkus.panache.common.Sort;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.persistence.Query;
+import jakarta.persistence.TypedQuery;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -23,22 +27,163 @@ public class NoteVersionRepository implements PanacheRepository<NoteVersion> {
         return find("noteId = ?1 order by versionNumber desc", noteId).firstResultOptional();
     }
 
-    public long getNextVersionNumber(Long noteId) {
-        NoteVersion latest = find("noteId = ?1", Sort.by("versionNumber", Sort.Direction.Descending), noteId)
-                .firstResult();
-        return (latest != null) ? latest.versionNumber + 1 : 1L;
+    /**
+     * Pagina della cronologia come proiezione, dalla più recente, senza leggere il contenuto delle
+     * differenze; autori e numero dello snapshot di base nella stessa query. Legge limit + 1 righe:
+     * l'ultima indica che esiste una pagina successiva.
+     */
+    public List<NoteVersionSummaryDTO> findHistoryPage(Long noteId, PageCursor after, int limit) {
+        TypedQuery<NoteVersionSummaryDTO> query = getEntityManager().createQuery(
+                "SELECT new com.unibo.notes.dto.NoteVersionSummaryDTO(v.id, v.noteId, v.versionNumber, u.username,"
+                        + " v.modifiedAt, octet_length(COALESCE(v.content, b.content)), v.delta, base.versionNumber)"
+                        + " FROM NoteVersion v LEFT JOIN User u ON u.id = v.modifiedBy"
+                        + " LEFT JOIN ContentBlob b ON b.id = v.blobId LEFT JOIN NoteVersion base ON base.id = v.baseId"
+                        + " WHERE v.noteId = :noteId" + (after != null ? " AND v.versionNumber < :before" : "")
+                        + " ORDER BY v.versionNumber DESC", NoteVersionSummaryDTO.class)
+                .setParameter("noteId", noteId);
+        if (after != null) {
+            query.setParameter("before", after.value);
+        }
+        return query.setMaxResults(limit + 1).getResultList();
     }
 
-    public long countByNoteId(Long noteId) {
-        return count("noteId = ?1", noteId);
+    /**
+     * Ultimo snapshot (versione con il contenuto completo) della nota: la base delle nuove differenze
+     */
+    public Optional<NoteVersion> findLatestSnapshot(Long noteId) {
+        return find("noteId = ?1 and delta is null order by versionNumber desc", noteId).firstResultOptional();
+    }
+
+    public Optional<String> findSnapshotContent(Long versionId) {
+        return getEntityManager()
+                .createQuery("SELECT COALESCE(v.content, b.content) FROM NoteVersion v"
+                        + " LEFT JOIN ContentBlob b ON b.id = v.blobId WHERE v.id = :id AND v.delta IS NULL", String.class)
+                .setParameter("id", versionId)
+                .getResultStream()
+                .findFirst();
+    }
+
+    /**
+     * Blocco di versioni per la ricostruzione dell'indice, in keyset sull'id: righe
+     * [id, noteId, ownerId, versionNumber, content, delta, baseId], solo per note esistenti.
+     * Il contenuto degli snapshot è già letto dal blob.
+     */
+    public List<Object[]> findIndexBatch(long afterId, int limit) {
+        return getEntityManager()
+                .createQuery("SELECT v.id, v.noteId, n.owner.id, v.versionNumber, COALESCE(v.content, b.content),"
+                        + " v.delta, v.baseId FROM NoteVersion v JOIN Note n ON n.id = v.noteId"
+                        + " LEFT JOIN ContentBlob b ON b.id = v.blobId WHERE v.id > :afterId ORDER BY v.id",
+                        Object[].class)
+                .setParameter("afterId", afterId)
+                .setMaxResults(limit)
+                .getResultList();
     }
 
-    public void deleteOldVersions(Long noteId, int keepLast) {
-        List<NoteVersion> versions = findByNoteId(noteId);
-        if (versions.size() > keepLast) {
-            // Keep only the last N versions
-            List<NoteVersion> toDelete = versions.subList(keepLast, versions.size());
-            delete("id in ?1", toDelete.stream().map(v -> v.id).toList());
+    /**
+     * Versioni delle note visibili all'utente candidate a contenere tutte le parole, dalla più recente:
+     * righe [noteId, versionNumber, id, content, delta, baseId]. Gli snapshot sono già filtrati,
+     * le differenze vanno ricostruite e verificate (VersionStorage.searchContent).
+     * Solo quando l'indice delle versioni non è attivo.
+     */
+    public List<Object[]> searchContent(Long userId, boolean includeShared, List<String> words, int offset, int limit) {
+        StringBuilder query = new StringBuilder("SELECT v.noteId, v.versionNumber, v.id, COALESCE(v.content, b.content),"
+                + " v.delta, v.baseId FROM NoteVersion v JOIN Note n ON n.id = v.noteId"
+                + " LEFT JOIN ContentBlob b ON b.id = v.blobId WHERE (n.owner.id = :userId");
+        if (includeShared) {
+            query.append(" OR EXISTS (SELECT p.id FROM NotePermission p WHERE p.note.id = n.id AND p.user.id = :userId)");
         }
+        query.append(")");
+        if (!words.isEmpty()) {
+            query.append(" AND (v.delta IS NOT NULL OR (");
+            for (int i = 0; i < words.size(); i++) {
+                query.append(i > 0 ? " AND " : "").append("LOWER(COALESCE(v.content, b.content)) LIKE :word").append(i);
+            }
+            query.append("))");
+        }
+        query.append(" ORDER BY v.modifiedAt DESC, v.id DESC");
+
+        TypedQuery<Object[]> typed = getEntityManager().createQuery(query.toString(), Object[].class)
+                .setParameter("userId", userId);
+        for (int i = 0; i < words.size(); i++) {
+            typed.setParameter("word" + i, "%" + words.get(i) + "%");
+        }
+        return typed.setFirstResult(offset).setMaxResults(limit).getResultList();
+    }
+
+    /**
+     * Snapshot salvati con il contenuto in linea (prima dei blob), dal più vecchio
+     */
+    public List<NoteVersion> findInlineSnapshots(int limit) {
+        return find("content is not null and delta is null order by id").page(0, limit).list();
+    }
+
+    /**
+     * Id delle versioni della nota oltre le ultime keepLast, senza caricare le entità
+     */
+    public List<Long> findIdsBeyond(Long noteId, int keepLast) {
+        return getEntityManager()
+                .createQuery("SELECT v.id FROM NoteVersion v WHERE v.noteId = :noteId ORDER BY v.versionNumber DESC",
+                        Long.class)
+                .setParameter("noteId", noteId)
+                .setFirstResult(keepLast)
+                .getResultList();
+    }
+
+    /**
+     * Fino a limit note con versioni, in ordine di id dopo afterNoteId, con il numero delle loro versioni:
+     * righe [noteId, versioni] da cui la pulizia periodica compone i blocchi
+     */
+    public List<Object[]> countVersionsAfter(long afterNoteId, int limit) {
+        return getEntityManager()
+                .createQuery("SELECT v.noteId, COUNT(v.id) FROM NoteVersion v WHERE v.noteId > :after"
+                        + " GROUP BY v.noteId ORDER BY v.noteId", Object[].class)
+                .setParameter("after", afterNoteId)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * Id delle versioni scadute delle note con id in (afterNoteId, untilNoteId].
+     * Restano le ultime keepLast di ogni nota, tutte quelle successive a dailyBefore e, prima,
+     * l'ultima di ogni giorno fino a maxAgeBefore (null = senza limite). Le versioni delle note
+     * eliminate sono tutte scadute.
+     */
+    @SuppressWarnings("unchecked")
+    public List<Long> findExpired(long afterNoteId, long untilNoteId, int keepLast,
+                                      LocalDateTime dailyBefore, LocalDateTime maxAgeBefore) {
+        Query query = getEntityManager().createNativeQuery("SELECT r.id FROM ("
+                + " SELECT v.id, v.note_id, v.modified_at, n.id AS existing,"
+                + " ROW_NUMBER() OVER (PARTITION BY v.note_id ORDER BY v.version_number DESC) AS recent,"
+                + " ROW_NUMBER() OVER (PARTITION BY v.note_id, CAST(v.modified_at AS DATE)"
+                + " ORDER BY v.version_number DESC) AS in_day"
+                + " FROM note_versions v LEFT JOIN notes n ON n.id = v.note_id"
+                + " WHERE v.note_id > :after AND v.note_id <= :until) r"
+                + " WHERE r.existing IS NULL OR (r.recent > :keepLast AND r.modified_at < :dailyBefore"
+                + " AND (r.in_day > 1" + (maxAgeBefore != null ? " OR r.modified_at < :maxAgeBefore" : "") + "))"
+                + " ORDER BY r.id")
+                .setParameter("after", afterNoteId)
+                .setParameter("until", untilNoteId)
+                .setParameter("keepLast", keepLast)
+                .setParameter("dailyBefore", dailyBefore);
+        if (maxAgeBefore != null) {
+            query.setParameter("maxAgeBefore", maxAgeBefore);
+        }
+        return ((List<Number>) query.getResultList()).stream().map(Number::longValue).toList();
+    }
+
+    /**
+     * Differenze delle note con id in (afterNoteId, untilNoteId]: righe [id, baseId, noteId]
+     */
+    public List<Object[]> findDeltaBases(long afterNoteId, long untilNoteId) {
+        return getEntityManager()
+                .createQuery("SELECT v.id, v.baseId, v.noteId FROM NoteVersion v"
+                        + " WHERE v.noteId > :after AND v.noteId <= :until AND v.baseId IS NOT NULL", Object[].class)
+                .setParameter("after", afterNoteId)
+                .setParameter("until", untilNoteId)
+                .getResultList();
+    }
+
+    public long countByNoteId(Long noteId) {
+        return count("noteId = ?1", noteId);
     }
 }
\ No newline at end of file
@@ -4,7 +4,11 @@ import com.unibo.notes.entity.User;
 import io.quarkus.hibernate.orm.panache.PanacheRepository;
 import jakarta.enterprise.context.ApplicationScoped;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 
 @ApplicationScoped
@@ -18,6 +22,22 @@ public class UserRepository implements PanacheRepository<User> {
         return find("email", email).firstResultOptional();
     }
 
+    /**
+     * Username per id, in una sola query
+     */
+    public Map<Long, String> findUsernames(Collection<Long> ids) {
+        Map<Long, String> usernames = new HashMap<>();
+        if (ids.isEmpty()) {
+            return usernames;
+        }
+        getEntityManager()
+                .createQuery("SELECT u.id, u.username FROM User u WHERE u.id IN :ids", Object[].class)
+                .setParameter("ids", ids)
+                .getResultList()
+                .forEach(row -> usernames.put((Long) row[0], (String) row[1]));
+        return usernames;
+    }
+
     public boolean existsByUsername(String username) {
         return count("username", username) > 0;
     }
@@ -26,6 +46,20 @@ public class UserRepository implements PanacheRepository<User> {
         return count("email", email) > 0;
     }
 
+    /**
+     * Collaboratori dell'utente (con cui condivide note, in un verso o nell'altro)
+     * il cui username contiene la parola
+     */
+    public List<User> searchCollaborators(Long userId, String query, int limit) {
+        return find("SELECT u FROM User u WHERE lower(u.username) LIKE ?2 AND u.id <> ?1 AND ("
+                        + "EXISTS (SELECT p.id FROM NotePermission p WHERE p.user.id = u.id AND p.note.owner.id = ?1)"
+                        + " OR EXISTS (SELECT p.id FROM NotePermission p WHERE p.note.owner.id = u.id AND p.user.id = ?1))"
+                        + " ORDER BY u.username",
+                userId, "%" + query.toLowerCase(Locale.ROOT) + "%")
+                .page(0, limit)
+                .list();
+    }
+
     public List<User> searchByUsername(String query, Long excludeUserId) {
         return find("lower(username) like lower(?1) and id != ?2", "%" + query + "%", excludeUserId)
                 .page(0, 10)
@@ -0,0 +1,211 @@
+package com.unibo.notes.search;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.apache.lucene.analysis.CharArrayMap;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Ranking BM25 dei risultati di ricerca, con peso diverso per titolo e contenuto.
+ * Le statistiche del corpus arrivano da TermStatistics; tra i candidati si tengono
+ * solo i migliori K con un heap limitato, senza ordinare l'intero insieme.
+ * Nella ricerca fuzzy le varianti dei termini contano meno, e le note trovate solo
+ * tramite varianti seguono sempre quelle con almeno un termine esatto.
+ */
+@ApplicationScoped
+public class Bm25Ranker {
+
+    /** Nota candidata con il testo necessario al calcolo del punteggio */
+    public static final class Candidate {
+        public final Long id;
+        public final String title;
+        public final String content;
+
+        public Candidate(Long id, String title, String content) {
+            this.id = id;
+            this.title = title;
+            this.content = content;
+        }
+    }
+
+    public static final class ScoredNote {
+        public final Long id;
+        public final double score;
+        // Almeno un termine della query trovato senza errori
+        public final boolean exact;
+
+        public ScoredNote(Long id, double score, boolean exact) {
+            this.id = id;
+            this.score = score;
+            this.exact = exact;
+        }
+    }
+
+    // Peso di un termine trovato come variante fuzzy rispetto al termine esatto
+    static final double FUZZY_WEIGHT = 0.5;
+
+    // Prima le corrispondenze esatte; a parità di punteggio vince l'id più alto (la nota più recente)
+    private static final Comparator<ScoredNote> WORST_FIRST = Comparator
+            .comparing((ScoredNote scored) -> scored.exact)
+            .thenComparingDouble(scored -> scored.score)
+            .thenComparing(scored -> scored.id);
+
+    @Inject
+    TermStatistics statistics;
+
+    @Inject
+    TextAnalyzer textAnalyzer;
+
+    @ConfigProperty(name = "notes.search.bm25.k1", defaultValue = "1.2")
+    double k1;
+
+    @ConfigProperty(name = "notes.search.bm25.b", defaultValue = "0.75")
+    double b;
+
+    @ConfigProperty(name = "notes.search.bm25.title-boost", defaultValue = "2.0")
+    double titleBoost;
+
+    @ConfigProperty(name = "notes.search.bm25.content-boost", defaultValue = "1.0")
+    double contentBoost;
+
+    /**
+     * Query compilata: termini e IDF sono calcolati una volta e riusati per ogni nota
+     */
+    public final class Query {
+        // Termini esatti (i primi exactTerms) seguiti dalle varianti fuzzy
+        private final String[] terms;
+        private final int exactTerms;
+        // Termine -> indice, interrogabile direttamente con il buffer dell'analizzatore
+        private final CharArrayMap<Integer> termIndex;
+        private final double[] idf;
+        private final double averageTitleLength;
+        private final double averageContentLength;
+
+        private Query(String[] terms, int exactTerms, TermStatistics.Snapshot snapshot) {
+            this.terms = terms;
+            this.exactTerms = exactTerms;
+            this.termIndex = new CharArrayMap<>(terms.length, false);
+            for (int i = 0; i < terms.length; i++) {
+                termIndex.put(terms[i], i);
+            }
+            this.idf = new double[terms.length];
+            long n = Math.max(snapshot.documentCount, 1);
+            for (int i = 0; i < terms.length; i++) {
+                long df = Math.max(snapshot.documentFrequency(terms[i]), 1);
+                idf[i] = Math.log(1 + (n - df + 0.5) / (df + 0.5));
+                if (i >= exactTerms) {
+                    idf[i] *= FUZZY_WEIGHT;
+                }
+            }
+            this.averageTitleLength = Math.max(snapshot.averageTitleLength, 1);
+            this.averageContentLength = Math.max(snapshot.averageContentLength, 1);
+        }
+
+        public double score(String title, String content) {
+            return evaluate(null, title, content).score;
+        }
+
+        private ScoredNote evaluate(Long id, String title, String content) {
+            int[] titleFrequency = new int[terms.length];
+            int[] contentFrequency = new int[terms.length];
+            int titleLength = frequencies(title, titleFrequency);
+            int contentLength = frequencies(content, contentFrequency);
+
+            double score = 0;
+            boolean exact = false;
+            for (int i = 0; i < terms.length; i++) {
+                score += idf[i] * (titleBoost * saturate(titleFrequency[i], titleLength, averageTitleLength)
+                        + contentBoost * saturate(contentFrequency[i], contentLength, averageContentLength));
+                exact |= i < exactTerms && titleFrequency[i] + contentFrequency[i] > 0;
+            }
+            return new ScoredNote(id, score, exact);
+        }
+
+        // Conta le occorrenze dei termini della query nel testo; restituisce il numero di termini del testo
+        private int frequencies(String text, int[] frequency) {
+            int[] length = new int[1];
+            int last = exactTerms - 1;
+            textAnalyzer.analyze(text, (buffer, termLength, position) -> {
+                length[0]++;
+                Integer index = termIndex.get(buffer, 0, termLength);
+                if (index != null) {
+                    frequency[index]++;
+                }
+                // L'ultimo termine vale anche come prefisso (ricerca durante la digitazione)
+                if (last >= 0 && (index == null || index != last) && startsWith(buffer, termLength, terms[last])) {
+                    frequency[last]++;
+                }
+            });
+            return length[0];
+        }
+
+        private boolean startsWith(char[] buffer, int length, String prefix) {
+            if (length < prefix.length()) {
+                return false;
+            }
+            for (int i = 0; i < prefix.length(); i++) {
+                if (buffer[i] != prefix.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private double saturate(int frequency, int length, double averageLength) {
+            if (frequency == 0) {
+                return 0;
+            }
+            return frequency * (k1 + 1) / (frequency + k1 * (1 - b + b * length / averageLength));
+        }
+    }
+
+    public Query compile(String keyword) {
+        return compile(keyword, Map.of());
+    }
+
+    /**
+     * Query con le varianti fuzzy dei termini (termine -> varianti), pesate FUZZY_WEIGHT
+     */
+    public Query compile(String keyword, Map<String, List<String>> variants) {
+        Set<String> terms = new LinkedHashSet<>(textAnalyzer.terms(keyword));
+        int exactTerms = terms.size();
+        Set<String> all = new LinkedHashSet<>(terms);
+        for (String term : terms) {
+            all.addAll(variants.getOrDefault(term, List.of()));
+        }
+        String[] array = all.toArray(new String[0]);
+        return new Query(array, exactTerms, statistics.snapshot(all));
+    }
+
+    /**
+     * I migliori k candidati per punteggio, dal più rilevante
+     */
+    public List<ScoredNote> top(Query query, List<Candidate> candidates, int k) {
+        if (k <= 0) {
+            return List.of();
+        }
+        PriorityQueue<ScoredNote> best = new PriorityQueue<>(Math.min(k, candidates.size()) + 1, WORST_FIRST);
+        for (Candidate candidate : candidates) {
+            best.add(query.evaluate(candidate.id, candidate.title, candidate.content));
+            if (best.size() > k) {
+                best.poll();
+            }
+        }
+
+        List<ScoredNote> ranked = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            ranked.add(best.poll());
+        }
+        Collections.reverse(ranked);
+        return ranked;
+    }
+}
@@ -0,0 +1,243 @@
+package com.unibo.notes.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Evidenziatore multi-termine basato su un automa Aho-Corasick.
+ * L'automa viene compilato una volta per query e trova tutte le occorrenze dei termini
+ * in un solo passaggio sul testo, senza copie in minuscolo per ogni nota.
+ * Il confronto ignora maiuscole e accenti (TextAnalyzer.normalize, che non cambia gli offset).
+ */
+public final class Highlighter {
+
+    /** Intervallo evidenziato [start, end) nel testo originale */
+    public static final class Span {
+        public final int start;
+        public final int end;
+
+        Span(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private static final String ELLIPSIS = "...";
+
+    // Figli di ogni stato: caratteri ordinati per la ricerca binaria
+    private char[][] childChars;
+    private int[][] childStates;
+    private int[] childCount;
+    private int[] fail;
+    // Lunghezza del termine più lungo che termina in questo stato (0 = nessuno)
+    private int[] matchLength;
+    private int states;
+    // I termini sono radici: l'evidenziazione si estende fino alla fine della parola
+    private final boolean wholeWords;
+
+    private Highlighter(Set<String> terms, boolean wholeWords) {
+        this.wholeWords = wholeWords;
+        int capacity = 1;
+        for (String term : terms) {
+            capacity += term.length();
+        }
+        childChars = new char[capacity][];
+        childStates = new int[capacity][];
+        childCount = new int[capacity];
+        fail = new int[capacity];
+        matchLength = new int[capacity];
+        states = 1;
+
+        for (String term : terms) {
+            int state = 0;
+            for (int i = 0; i < term.length(); i++) {
+                char c = term.charAt(i);
+                int next = child(state, c);
+                if (next < 0) {
+                    next = states++;
+                    addChild(state, c, next);
+                }
+                state = next;
+            }
+            matchLength[state] = Math.max(matchLength[state], term.length());
+        }
+
+        buildFailureLinks();
+    }
+
+    /**
+     * Compila la query: i termini sono le parole separate da spazi, confrontate senza
+     * distinzione tra maiuscole e minuscole. Restituisce null se la query è vuota.
+     */
+    public static Highlighter compile(String query) {
+        if (query == null || query.isBlank()) {
+            return null;
+        }
+        Set<String> terms = new LinkedHashSet<>();
+        for (String term : query.trim().split("\\s+")) {
+            terms.add(normalize(term));
+        }
+        return new Highlighter(terms, false);
+    }
+
+    private static String normalize(String term) {
+        StringBuilder normalized = new StringBuilder(term.length());
+        for (int i = 0; i < term.length(); i++) {
+            normalized.append(TextAnalyzer.normalize(term.charAt(i)));
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Compila termini già analizzati (radici, es. "appunt"): ogni occorrenza viene estesa
+     * fino alla fine della parola, così "appunti" e "appunto" vengono evidenziati per intero.
+     * Restituisce null se non ci sono termini.
+     */
+    public static Highlighter compileTerms(Collection<String> analyzedTerms) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (String term : analyzedTerms) {
+            if (!term.isEmpty()) {
+                terms.add(normalize(term));
+            }
+        }
+        return terms.isEmpty() ? null : new Highlighter(terms, true);
+    }
+
+    /**
+     * Tutte le occorrenze dei termini nel testo, ordinate e con le sovrapposizioni unite
+     */
+    public List<Span> find(CharSequence text) {
+        List<Span> spans = new ArrayList<>();
+        if (text == null) {
+            return spans;
+        }
+
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = TextAnalyzer.normalize(text.charAt(i));
+            int next = child(state, c);
+            while (next < 0 && state != 0) {
+                state = fail[state];
+                next = child(state, c);
+            }
+            state = next < 0 ? 0 : next;
+
+            if (matchLength[state] > 0) {
+                int end = i + 1;
+                while (wholeWords && end < text.length() && Character.isLetterOrDigit(text.charAt(end))) {
+                    end++;
+                }
+                addSpan(spans, i + 1 - matchLength[state], end);
+            }
+        }
+        return spans;
+    }
+
+    /**
+     * Estratto di al massimo maxLength caratteri centrato sulla prima occorrenza,
+     * allineato ai confini di parola. Senza occorrenze restituisce l'inizio del testo.
+     */
+    public static String excerpt(String text, List<Span> spans, int maxLength) {
+        if (text == null) {
+            return "";
+        }
+        if (text.length() <= maxLength) {
+            return text;
+        }
+        if (spans.isEmpty()) {
+            return text.substring(0, maxLength) + ELLIPSIS;
+        }
+
+        Span first = spans.get(0);
+        int center = (first.start + first.end) / 2;
+        int start = Math.max(0, center - maxLength / 2);
+        int end = Math.min(text.length(), start + maxLength);
+        start = Math.max(0, end - maxLength);
+
+        // Non tagliare le parole a metà (ma senza escludere l'occorrenza)
+        if (start > 0) {
+            int space = text.indexOf(' ', start);
+            if (space >= 0 && space < first.start) {
+                start = space + 1;
+            }
+        }
+        if (end < text.length()) {
+            int space = text.lastIndexOf(' ', end);
+            if (space > first.end) {
+                end = space;
+            }
+        }
+
+        return (start > 0 ? ELLIPSIS : "") + text.substring(start, end) + (end < text.length() ? ELLIPSIS : "");
+    }
+
+    private static void addSpan(List<Span> spans, int start, int end) {
+        // Un termine più lungo può iniziare prima degli intervalli già trovati
+        while (!spans.isEmpty() && spans.get(spans.size() - 1).end >= start) {
+            Span last = spans.remove(spans.size() - 1);
+            start = Math.min(start, last.start);
+            end = Math.max(end, last.end);
+        }
+        spans.add(new Span(start, end));
+    }
+
+    private int child(int state, char c) {
+        char[] chars = childChars[state];
+        if (chars == null) {
+            return -1;
+        }
+        int index = Arrays.binarySearch(chars, 0, childCount[state], c);
+        return index >= 0 ? childStates[state][index] : -1;
+    }
+
+    private void addChild(int state, char c, int next) {
+        int count = childCount[state];
+        if (childChars[state] == null) {
+            childChars[state] = new char[2];
+            childStates[state] = new int[2];
+        } else if (count == childChars[state].length) {
+            childChars[state] = Arrays.copyOf(childChars[state], count * 2);
+            childStates[state] = Arrays.copyOf(childStates[state], count * 2);
+        }
+        int index = -(Arrays.binarySearch(childChars[state], 0, count, c) + 1);
+        System.arraycopy(childChars[state], index, childChars[state], index + 1, count - index);
+        System.arraycopy(childStates[state], index, childStates[state], index + 1, count - index);
+        childChars[state][index] = c;
+        childStates[state][index] = next;
+        childCount[state] = count + 1;
+    }
+
+    private void buildFailureLinks() {
+        // Visita in ampiezza: il fallimento di uno stato è già calcolato per i livelli precedenti
+        int[] queue = new int[states];
+        int head = 0;
+        int tail = 0;
+        for (int i = 0; i < childCount[0]; i++) {
+            int next = childStates[0][i];
+            fail[next] = 0;
+            queue[tail++] = next;
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            for (int i = 0; i < childCount[state]; i++) {
+                char c = childChars[state][i];
+                int next = childStates[state][i];
+
+                int f = fail[state];
+                int target = child(f, c);
+                while (target < 0 && f != 0) {
+                    f = fail[f];
+                    target = child(f, c);
+                }
+                fail[next] = target < 0 ? 0 : target;
+                // Il termine più lungo che termina qui può arrivare dalla catena di fallimento
+                matchLength[next] = Math.max(matchLength[next], matchLength[fail[next]]);
+                queue[tail++] = next;
+            }
+        }
+    }
+}
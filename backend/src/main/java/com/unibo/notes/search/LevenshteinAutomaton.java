@@ -0,0 +1,57 @@
+package com.unibo.notes.search;
+
+/**
+ * Automa di Levenshtein per un termine e una distanza massima: accetta tutte le parole
+ * entro maxEdits inserimenti, cancellazioni o sostituzioni.
+ * Lo stato è la riga corrente della matrice delle distanze (limitata a maxEdits + 1):
+ * il DFA viene esplorato solo negli stati raggiunti visitando il dizionario,
+ * e un ramo viene abbandonato appena nessuna sua estensione può più essere accettata.
+ */
+final class LevenshteinAutomaton {
+
+    private final char[] term;
+    private final int maxEdits;
+
+    LevenshteinAutomaton(String term, int maxEdits) {
+        this.term = term.toCharArray();
+        this.maxEdits = maxEdits;
+    }
+
+    int[] start() {
+        int[] state = new int[term.length + 1];
+        for (int i = 0; i < state.length; i++) {
+            state[i] = Math.min(i, maxEdits + 1);
+        }
+        return state;
+    }
+
+    int[] step(int[] state, char c) {
+        int[] next = new int[state.length];
+        next[0] = Math.min(state[0] + 1, maxEdits + 1);
+        for (int i = 1; i < state.length; i++) {
+            int cost = term[i - 1] == c ? 0 : 1;
+            int distance = Math.min(state[i - 1] + cost, Math.min(state[i] + 1, next[i - 1] + 1));
+            next[i] = Math.min(distance, maxEdits + 1);
+        }
+        return next;
+    }
+
+    /** Distanza della parola letta finora dal termine, se entro maxEdits */
+    boolean isMatch(int[] state) {
+        return state[state.length - 1] <= maxEdits;
+    }
+
+    int distance(int[] state) {
+        return state[state.length - 1];
+    }
+
+    /** Qualche estensione della parola letta finora può ancora essere accettata */
+    boolean canMatch(int[] state) {
+        for (int distance : state) {
+            if (distance <= maxEdits) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
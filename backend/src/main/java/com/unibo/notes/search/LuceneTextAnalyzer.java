@@ -0,0 +1,106 @@
+package com.unibo.notes.search;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+
+import java.io.IOException;
+
+/**
+ * Adattatore Lucene della catena di TextAnalyzer: l'indice full-text usa esattamente
+ * gli stessi termini di statistiche BM25, ranking ed evidenziazione.
+ * Il tokenizer legge a blocchi e filtra direttamente il buffer dell'attributo del termine.
+ */
+final class LuceneTextAnalyzer extends Analyzer {
+
+    private final TextAnalyzer textAnalyzer;
+
+    LuceneTextAnalyzer(TextAnalyzer textAnalyzer) {
+        this.textAnalyzer = textAnalyzer;
+    }
+
+    @Override
+    protected TokenStreamComponents createComponents(String fieldName) {
+        return new TokenStreamComponents(new ChainTokenizer());
+    }
+
+    private final class ChainTokenizer extends Tokenizer {
+
+        private final CharTermAttribute termAttribute = addAttribute(CharTermAttribute.class);
+        private final OffsetAttribute offsetAttribute = addAttribute(OffsetAttribute.class);
+        private final PositionIncrementAttribute positionAttribute = addAttribute(PositionIncrementAttribute.class);
+
+        private final char[] ioBuffer = new char[4096];
+        private int bufferLength;
+        private int bufferIndex;
+        // Offset nel testo del primo carattere del buffer
+        private int bufferOffset;
+        private int finalOffset;
+
+        @Override
+        public boolean incrementToken() throws IOException {
+            clearAttributes();
+            int increment = 1;
+            while (true) {
+                int length = 0;
+                int start = -1;
+                char[] term = termAttribute.buffer();
+                while (true) {
+                    if (bufferIndex >= bufferLength) {
+                        bufferOffset += bufferLength;
+                        bufferLength = input.read(ioBuffer);
+                        bufferIndex = 0;
+                        if (bufferLength <= 0) {
+                            bufferLength = 0;
+                            break;
+                        }
+                    }
+                    char c = ioBuffer[bufferIndex++];
+                    if (Character.isLetterOrDigit(c)) {
+                        if (length == 0) {
+                            start = bufferOffset + bufferIndex - 1;
+                        }
+                        if (length == term.length) {
+                            term = termAttribute.resizeBuffer(length + 1);
+                        }
+                        term[length++] = c;
+                    } else if (length > 0) {
+                        break;
+                    }
+                }
+                if (length == 0) {
+                    finalOffset = correctOffset(bufferOffset + bufferIndex);
+                    return false;
+                }
+
+                int filtered = textAnalyzer.filter(term, length);
+                if (filtered == 0) {
+                    // Termine scartato (stop word): la posizione resta vuota
+                    increment++;
+                    continue;
+                }
+                termAttribute.setLength(filtered);
+                offsetAttribute.setOffset(correctOffset(start), correctOffset(start + length));
+                positionAttribute.setPositionIncrement(increment);
+                return true;
+            }
+        }
+
+        @Override
+        public void end() throws IOException {
+            super.end();
+            offsetAttribute.setOffset(finalOffset, finalOffset);
+        }
+
+        @Override
+        public void reset() throws IOException {
+            super.reset();
+            bufferLength = 0;
+            bufferIndex = 0;
+            bufferOffset = 0;
+            finalOffset = 0;
+        }
+    }
+}
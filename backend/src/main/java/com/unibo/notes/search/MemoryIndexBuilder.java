@@ -0,0 +1,85 @@
+package com.unibo.notes.search;
+
+import com.unibo.notes.entity.Note;
+import com.unibo.notes.repository.NoteRepository;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Transactional;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Popola gli indici in memoria all'avvio (statistiche BM25 e suggerimenti):
+ * note a blocchi, poi condivisioni e cartelle.
+ * Dopo l'avvio gli indici sono mantenuti da NoteIndexer ad ogni commit.
+ */
+@ApplicationScoped
+public class MemoryIndexBuilder {
+
+    private static final Logger LOGGER = Logger.getLogger(MemoryIndexBuilder.class.getName());
+
+    @Inject
+    SuggestionIndex suggestionIndex;
+
+    @Inject
+    TermStatistics termStatistics;
+
+    @Inject
+    NoteRepository noteRepository;
+
+    @ConfigProperty(name = "notes.search.index.batch-size", defaultValue = "500")
+    int batchSize;
+
+    void onStart(@Observes StartupEvent event) {
+        rebuild();
+    }
+
+    @Transactional
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        suggestionIndex.clear();
+        termStatistics.clear();
+        EntityManager em = noteRepository.getEntityManager();
+
+        long lastId = 0;
+        long notes = 0;
+        while (true) {
+            List<Note> batch = noteRepository.find("SELECT n FROM Note n WHERE n.id > ?1 ORDER BY n.id", lastId)
+                    .page(0, batchSize)
+                    .list();
+            if (batch.isEmpty()) {
+                break;
+            }
+
+            Map<Long, Note> changes = new LinkedHashMap<>();
+            for (Note note : batch) {
+                changes.put(note.id, note);
+            }
+            termStatistics.apply(changes);
+            suggestionIndex.applyNotes(changes);
+
+            notes += batch.size();
+            lastId = batch.get(batch.size() - 1).id;
+            em.clear();
+        }
+
+        // Solo colonne scalari: nessuna entità caricata
+        em.createQuery("SELECT p.note.id, o.username, u.id, u.username FROM NotePermission p"
+                        + " JOIN p.user u JOIN p.note.owner o", Object[].class)
+                .getResultStream()
+                .forEach(row -> suggestionIndex.noteShared((Long) row[0], (String) row[1], (Long) row[2], (String) row[3]));
+
+        em.createQuery("SELECT f.owner.id, f.name FROM Folder f", Object[].class)
+                .getResultStream()
+                .forEach(row -> suggestionIndex.folderChanged((Long) row[0], null, (String) row[1]));
+
+        LOGGER.info("In-memory indexes built: " + notes + " notes in " + (System.currentTimeMillis() - start) + " ms");
+    }
+}
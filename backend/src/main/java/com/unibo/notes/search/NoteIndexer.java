@@ -0,0 +1,220 @@
+package com.unibo.notes.search;
+
+import com.unibo.notes.entity.Note;
+import com.unibo.notes.entity.NoteVersion;
+import com.unibo.notes.entity.User;
+import com.unibo.notes.repository.NotePermissionRepository;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Accoda le modifiche alle note nella transazione corrente e le applica
+ * agli indici (full-text, versioni, statistiche BM25 e suggerimenti) solo dopo il commit:
+ * un rollback non lascia tracce negli indici.
+ * Al commit invalida anche la cache delle ricerche degli utenti che vedono le note modificate.
+ */
+@ApplicationScoped
+public class NoteIndexer {
+
+    private static final Logger LOGGER = Logger.getLogger(NoteIndexer.class.getName());
+
+    private static final Object PENDING_KEY = NoteIndexer.class.getName() + ".pending";
+
+    @Inject
+    TransactionSynchronizationRegistry txRegistry;
+
+    @Inject
+    NoteSearchIndex searchIndex;
+
+    @Inject
+    VersionSearchIndex versionIndex;
+
+    @Inject
+    SuggestionIndex suggestionIndex;
+
+    @Inject
+    TermStatistics termStatistics;
+
+    @Inject
+    SearchCache searchCache;
+
+    @Inject
+    NotePermissionRepository permissionRepository;
+
+    public void reindex(Note note) {
+        Set<Long> users = readers(note);
+        searchCache.invalidate(users);
+        enqueue(pending -> {
+            pending.notes.put(note.id, note);
+            pending.users.addAll(users);
+        });
+    }
+
+    /**
+     * Da chiamare prima di eliminare la nota: i lettori vengono letti dai permessi
+     */
+    public void remove(Note note) {
+        Long noteId = note.id;
+        Set<Long> users = readers(note);
+        searchCache.invalidate(users);
+        enqueue(pending -> {
+            pending.notes.put(noteId, null);
+            pending.users.addAll(users);
+        });
+    }
+
+    /**
+     * Nuova versione della nota, da rendere ricercabile con scope=history
+     * (il contenuto è quello della nota: la versione può essere salvata come differenza)
+     */
+    public void versionSaved(Note note, NoteVersion version) {
+        VersionSearchIndex.IndexedVersion indexed = new VersionSearchIndex.IndexedVersion(
+                version.id, note.id, note.owner.id, version.versionNumber, note.content);
+        enqueue(pending -> pending.versions.add(indexed));
+    }
+
+    public void versionsDeleted(Note note, Collection<Long> versionIds) {
+        if (versionIds.isEmpty()) {
+            return;
+        }
+        Set<Long> users = readers(note);
+        searchCache.invalidate(users);
+        enqueue(pending -> {
+            pending.deletedVersions.addAll(versionIds);
+            pending.users.addAll(users);
+        });
+    }
+
+    /**
+     * Versioni di più note eliminate dalla pulizia periodica: le ricerche in cache che le citano
+     * scadono con il proprio TTL (una versione eliminata non viene più restituita dal servizio)
+     */
+    public void versionsExpired(Collection<Long> versionIds) {
+        if (versionIds.isEmpty()) {
+            return;
+        }
+        enqueue(pending -> pending.deletedVersions.addAll(versionIds));
+    }
+
+    public void shared(Note note, User user) {
+        // Valori letti ora: dopo il commit le entità non sono più gestite
+        Long noteId = note.id;
+        String ownerUsername = note.owner.username;
+        Long userId = user.id;
+        String username = user.username;
+        searchCache.invalidate(Set.of(userId));
+        enqueue(pending -> {
+            pending.updates.add(() -> suggestionIndex.noteShared(noteId, ownerUsername, userId, username));
+            pending.users.add(userId);
+        });
+    }
+
+    public void unshared(Long noteId, Long userId) {
+        searchCache.invalidate(Set.of(userId));
+        enqueue(pending -> {
+            pending.updates.add(() -> suggestionIndex.noteUnshared(noteId, userId));
+            pending.users.add(userId);
+        });
+    }
+
+    public void folderChanged(Long ownerId, String oldName, String newName) {
+        enqueue(pending -> pending.updates.add(() -> suggestionIndex.folderChanged(ownerId, oldName, newName)));
+    }
+
+    // Proprietario e utenti con cui la nota è condivisa
+    private Set<Long> readers(Note note) {
+        Set<Long> users = new HashSet<>();
+        users.add(note.owner.id);
+        if (searchCache.isEnabled()) {
+            users.addAll(permissionRepository.findUserIdsByNoteId(note.id));
+        }
+        return users;
+    }
+
+    private void enqueue(Consumer<Pending> change) {
+        // Fuori da una transazione aggiorna subito gli indici
+        if (txRegistry.getTransactionStatus() != Status.STATUS_ACTIVE) {
+            Pending immediate = new Pending();
+            change.accept(immediate);
+            immediate.apply();
+            return;
+        }
+
+        Pending pending = (Pending) txRegistry.getResource(PENDING_KEY);
+        if (pending == null) {
+            pending = new Pending();
+            txRegistry.putResource(PENDING_KEY, pending);
+            txRegistry.registerInterposedSynchronization(pending);
+        }
+        change.accept(pending);
+    }
+
+    private class Pending implements Synchronization {
+
+        // L'ultima operazione sulla stessa nota vince
+        final Map<Long, Note> notes = new LinkedHashMap<>();
+        final List<VersionSearchIndex.IndexedVersion> versions = new ArrayList<>();
+        final Set<Long> deletedVersions = new HashSet<>();
+        final List<Runnable> updates = new ArrayList<>();
+        // Utenti le cui ricerche in cache non sono più valide: invalidate subito e di nuovo a fine transazione
+        final Set<Long> users = new HashSet<>();
+
+        @Override
+        public void beforeCompletion() {
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            // Anche in caso di rollback: le ricerche fatte durante la transazione
+            // possono aver messo in cache dati mai confermati
+            searchCache.invalidate(users);
+            if (status == Status.STATUS_COMMITTED) {
+                apply();
+            }
+        }
+
+        void apply() {
+            try {
+                if (searchIndex.isEnabled()) {
+                    searchIndex.apply(notes);
+                }
+            } catch (RuntimeException e) {
+                // Il dato è già salvato: l'indice verrà riallineato dal mass indexer
+                LOGGER.severe("Search index update failed for notes " + notes.keySet() + ": " + e.getMessage());
+            }
+            try {
+                if (versionIndex.isEnabled()) {
+                    Set<Long> deletedNotes = new HashSet<>();
+                    notes.forEach((id, note) -> {
+                        if (note == null) {
+                            deletedNotes.add(id);
+                        }
+                    });
+                    versionIndex.apply(versions, deletedVersions, deletedNotes);
+                }
+            } catch (RuntimeException e) {
+                LOGGER.severe("History index update failed for notes " + notes.keySet() + ": " + e.getMessage());
+            }
+            try {
+                termStatistics.apply(notes);
+                suggestionIndex.applyNotes(notes);
+                updates.forEach(Runnable::run);
+            } catch (RuntimeException e) {
+                LOGGER.severe("In-memory index update failed for notes " + notes.keySet() + ": " + e.getMessage());
+            }
+        }
+    }
+}
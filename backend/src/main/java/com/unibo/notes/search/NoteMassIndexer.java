@@ -0,0 +1,178 @@
+package com.unibo.notes.search;
+
+import com.unibo.notes.entity.Note;
+import com.unibo.notes.repository.NoteRepository;
+import com.unibo.notes.repository.NoteVersionRepository;
+import com.unibo.notes.service.VersionStorage;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Ricostruisce gli indici full-text (note e versioni) leggendo le tabelle a blocchi, ognuno nella
+ * propria transazione. All'avvio la ricostruzione gira su un thread in background se un indice è vuoto,
+ * non è stato chiuso regolarmente, è stato costruito con un'altra catena di analisi o se richiesto
+ * da configurazione; durante la ricostruzione l'indice esistente continua a servire le ricerche.
+ * Lo stesso thread salva gli indici su disco (commit) a intervalli regolari.
+ */
+@ApplicationScoped
+public class NoteMassIndexer {
+
+    private static final Logger LOGGER = Logger.getLogger(NoteMassIndexer.class.getName());
+
+    @Inject
+    NoteSearchIndex searchIndex;
+
+    @Inject
+    VersionSearchIndex versionIndex;
+
+    @Inject
+    NoteRepository noteRepository;
+
+    @Inject
+    NoteVersionRepository versionRepository;
+
+    @Inject
+    VersionStorage versionStorage;
+
+    @ConfigProperty(name = "notes.search.index.rebuild-on-start", defaultValue = "false")
+    boolean rebuildOnStart;
+
+    @ConfigProperty(name = "notes.search.index.batch-size", defaultValue = "500")
+    int batchSize;
+
+    @ConfigProperty(name = "notes.search.index.commit-interval-seconds", defaultValue = "30")
+    long commitIntervalSeconds;
+
+    private ScheduledExecutorService executor;
+
+    void onStart(@Observes StartupEvent event) {
+        if (!searchIndex.isEnabled()) {
+            return;
+        }
+        boolean notes = rebuildOnStart || searchIndex.isEmpty() || searchIndex.isUncleanShutdown()
+                || searchIndex.isAnalysisChanged();
+        boolean history = versionIndex.isEnabled() && (rebuildOnStart || versionIndex.isEmpty()
+                || versionIndex.isUncleanShutdown() || versionIndex.isAnalysisChanged());
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "search-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (notes || history) {
+            executor.execute(() -> rebuildSafely(notes, history));
+        }
+        if (commitIntervalSeconds > 0) {
+            executor.scheduleWithFixedDelay(this::commitSafely, commitIntervalSeconds, commitIntervalSeconds,
+                    TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void rebuildSafely(boolean notes, boolean history) {
+        try {
+            if (notes) {
+                rebuild();
+            }
+            if (history) {
+                rebuildHistory();
+            }
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Search index rebuild failed", e);
+        }
+    }
+
+    private void commitSafely() {
+        try {
+            searchIndex.commit();
+            versionIndex.commit();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Search index commit failed", e);
+        }
+    }
+
+    public synchronized long rebuild() {
+        long start = System.currentTimeMillis();
+        searchIndex.startRebuild();
+
+        long lastId = 0;
+        long indexed = 0;
+        while (true) {
+            long after = lastId;
+            // Keyset sull'id: ogni blocco costa uguale anche su tabelle grandi
+            List<Long> ids = QuarkusTransaction.requiringNew().call(() -> {
+                List<Note> batch = noteRepository.find(
+                                "SELECT n FROM Note n JOIN FETCH n.owner LEFT JOIN FETCH n.folder WHERE n.id > ?1 ORDER BY n.id",
+                                after)
+                        .page(0, batchSize)
+                        .list();
+                Map<Long, Note> changes = new LinkedHashMap<>();
+                for (Note note : batch) {
+                    changes.put(note.id, note);
+                }
+                searchIndex.apply(changes);
+                return List.copyOf(changes.keySet());
+            });
+            if (ids.isEmpty()) {
+                break;
+            }
+            indexed += ids.size();
+            lastId = ids.get(ids.size() - 1);
+        }
+        searchIndex.finishRebuild();
+
+        LOGGER.info("Search index rebuilt: " + indexed + " notes in " + (System.currentTimeMillis() - start) + " ms");
+        return indexed;
+    }
+
+    public synchronized long rebuildHistory() {
+        long start = System.currentTimeMillis();
+        versionIndex.startRebuild();
+
+        long lastId = 0;
+        long indexed = 0;
+        while (true) {
+            long after = lastId;
+            List<Long> ids = QuarkusTransaction.requiringNew().call(() -> {
+                List<Object[]> batch = versionRepository.findIndexBatch(after, batchSize);
+                List<VersionSearchIndex.IndexedVersion> versions = new ArrayList<>(batch.size());
+                for (Object[] row : batch) {
+                    String content = versionStorage.content((Long) row[0], (String) row[4], (byte[]) row[5], (Long) row[6]);
+                    versions.add(new VersionSearchIndex.IndexedVersion((Long) row[0], (Long) row[1], (Long) row[2],
+                            (Long) row[3], content));
+                }
+                versionIndex.apply(versions, List.of(), List.of());
+                return versions.stream().map(version -> version.id).toList();
+            });
+            if (ids.isEmpty()) {
+                break;
+            }
+            indexed += ids.size();
+            lastId = ids.get(ids.size() - 1);
+        }
+        versionIndex.finishRebuild();
+
+        LOGGER.info("History index rebuilt: " + indexed + " versions in " + (System.currentTimeMillis() - start) + " ms");
+        return indexed;
+    }
+}
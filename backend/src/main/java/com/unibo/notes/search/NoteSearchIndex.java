@@ -0,0 +1,470 @@
+package com.unibo.notes.search;
+
+import com.unibo.notes.entity.Note;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.MatchNoDocsQuery;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Indice full-text delle note (titolo e contenuto) su una directory Lucene locale.
+ * Contiene solo i campi necessari a filtrare e ordinare: le note vengono poi
+ * caricate dal database a partire dagli id restituiti.
+ * I termini, in indice e in query, vengono dalla catena di TextAnalyzer.
+ */
+@ApplicationScoped
+public class NoteSearchIndex {
+
+    private static final Logger LOGGER = Logger.getLogger(NoteSearchIndex.class.getName());
+
+    static final String ID = "id";
+    static final String OWNER_ID = "ownerId";
+    static final String FOLDER_ID = "folderId";
+    static final String TITLE = "title";
+    static final String CONTENT = "content";
+    static final String CREATED_AT = "createdAt";
+    static final String UPDATED_AT = "updatedAt";
+    // Generazione del documento: a fine ricostruzione restano solo quelli dell'ultima
+    static final String GENERATION = "generation";
+
+    // Le varianti fuzzy pesano meno del termine digitato
+    private static final float FUZZY_BOOST = 0.5f;
+
+    @ConfigProperty(name = "notes.search.mode", defaultValue = "lucene")
+    SearchMode mode;
+
+    @ConfigProperty(name = "notes.search.index.directory", defaultValue = "data/search-index")
+    String indexDirectory;
+
+    @ConfigProperty(name = "notes.search.index.in-memory", defaultValue = "false")
+    boolean inMemory;
+
+    // Voce dei metadati del commit con la catena di analisi usata per costruire l'indice
+    private static final String ANALYSIS_KEY = "analysis";
+    // Voce dei metadati scritta "true" solo dall'ultimo commit prima della chiusura
+    private static final String CLEAN_KEY = "clean";
+
+    @Inject
+    TextAnalyzer textAnalyzer;
+
+    private Analyzer analyzer;
+    private boolean analysisChanged;
+    private boolean uncleanShutdown;
+    private Directory directory;
+    private IndexWriter writer;
+    private SearcherManager searcherManager;
+    private volatile String generation = UUID.randomUUID().toString();
+
+    @PostConstruct
+    void open() {
+        if (!isEnabled()) {
+            return;
+        }
+        try {
+            analyzer = new LuceneTextAnalyzer(textAnalyzer);
+            directory = inMemory ? new ByteBuffersDirectory() : FSDirectory.open(Path.of(indexDirectory));
+            IndexWriterConfig config = new IndexWriterConfig(analyzer)
+                    .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+            writer = new IndexWriter(directory, config);
+
+            // Un indice costruito con un'altra catena di analisi ha termini diversi: va ricostruito
+            String indexedWith = null;
+            String clean = null;
+            Iterable<Map.Entry<String, String>> commitData = writer.getLiveCommitData();
+            if (commitData != null) {
+                for (Map.Entry<String, String> entry : commitData) {
+                    if (ANALYSIS_KEY.equals(entry.getKey())) {
+                        indexedWith = entry.getValue();
+                    }
+                    if (CLEAN_KEY.equals(entry.getKey())) {
+                        clean = entry.getValue();
+                    }
+                }
+            }
+            analysisChanged = writer.getDocStats().numDocs > 0 && !textAnalyzer.signature().equals(indexedWith);
+            // I commit sono periodici: senza chiusura regolare le ultime modifiche possono mancare
+            uncleanShutdown = writer.getDocStats().numDocs > 0 && !"true".equals(clean);
+            writer.setLiveCommitData(commitData(false));
+            writer.commit();
+
+            searcherManager = new SearcherManager(writer, null);
+            LOGGER.info("Search index opened at " + (inMemory ? "memory" : indexDirectory)
+                    + " (" + writer.getDocStats().numDocs + " documents)");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open search index", e);
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.setLiveCommitData(commitData(true));
+            writer.commit();
+            searcherManager.close();
+            writer.close();
+            directory.close();
+        } catch (IOException e) {
+            LOGGER.warning("Error closing search index: " + e.getMessage());
+        }
+    }
+
+    public boolean isEnabled() {
+        return mode == SearchMode.LUCENE;
+    }
+
+    public boolean isEmpty() {
+        return writer.getDocStats().numDocs == 0;
+    }
+
+    /**
+     * L'indice su disco è stato costruito con una catena di analisi diversa da quella configurata
+     */
+    public boolean isAnalysisChanged() {
+        return analysisChanged;
+    }
+
+    /**
+     * L'applicazione non ha chiuso l'indice all'ultimo arresto: va riallineato con il database
+     */
+    public boolean isUncleanShutdown() {
+        return uncleanShutdown;
+    }
+
+    private Iterable<Map.Entry<String, String>> commitData(boolean clean) {
+        return Map.of(ANALYSIS_KEY, textAnalyzer.signature(), CLEAN_KEY, Boolean.toString(clean)).entrySet();
+    }
+
+    /**
+     * Applica in blocco aggiornamenti e cancellazioni (valore null = nota eliminata)
+     * e rende visibili le modifiche alle ricerche successive.
+     */
+    public void apply(Map<Long, Note> changes) {
+        if (!isEnabled() || changes.isEmpty()) {
+            return;
+        }
+        try {
+            for (Map.Entry<Long, Note> change : changes.entrySet()) {
+                Term idTerm = new Term(ID, change.getKey().toString());
+                if (change.getValue() == null) {
+                    writer.deleteDocuments(idTerm);
+                } else {
+                    writer.updateDocument(idTerm, toDocument(change.getValue()));
+                }
+            }
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot update search index", e);
+        }
+    }
+
+    /**
+     * Inizio di una ricostruzione: da qui i documenti scritti, dalla ricostruzione o dalle modifiche
+     * in corso, appartengono a una nuova generazione. Quelli vecchi restano e continuano a servire
+     * le ricerche finché non vengono sostituiti o eliminati da finishRebuild.
+     */
+    public void startRebuild() {
+        generation = UUID.randomUUID().toString();
+    }
+
+    /**
+     * Fine della ricostruzione: elimina i documenti delle generazioni precedenti, cioè quelli che
+     * la ricostruzione non ha riscritto, e salva tutto con un solo commit
+     */
+    public void finishRebuild() {
+        try {
+            writer.deleteDocuments(new BooleanQuery.Builder()
+                    .add(new MatchAllDocsQuery(), Occur.MUST)
+                    .add(new TermQuery(new Term(GENERATION, generation)), Occur.MUST_NOT)
+                    .build());
+            writer.commit();
+            analysisChanged = false;
+            uncleanShutdown = false;
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot finish search index rebuild", e);
+        }
+    }
+
+    /**
+     * Rende persistenti le modifiche: le ricerche le vedono già dopo apply, il commit (con fsync)
+     * viene fatto a intervalli e alla chiusura. Dopo un arresto brusco il mass indexer riallinea l'indice.
+     */
+    public void commit() {
+        if (writer == null || !writer.hasUncommittedChanges()) {
+            return;
+        }
+        try {
+            writer.commit();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot commit search index", e);
+        }
+    }
+
+    /**
+     * Restituisce gli id delle note visibili all'utente che contengono tutti i termini
+     * della keyword (l'ultimo anche come prefisso) o una loro variante fuzzy, ordinati per pertinenza,
+     * con il punteggio BM25 dell'indice.
+     */
+    public Map<Long, Double> search(Long userId, Collection<Long> sharedNoteIds, String keyword,
+                             Map<String, List<String>> variants, Long folderId, LocalDateTime createdFrom, LocalDateTime createdTo,
+                             LocalDateTime modifiedFrom, LocalDateTime modifiedTo, int maxHits,
+                             SearchDeadline deadline) {
+        List<String> terms = textAnalyzer.terms(keyword);
+        if (terms.isEmpty()) {
+            return Map.of();
+        }
+
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        query.add(accessFilter(userId, sharedNoteIds), Occur.FILTER);
+
+        for (int i = 0; i < terms.size(); i++) {
+            String term = terms.get(i);
+            BooleanQuery.Builder termQuery = new BooleanQuery.Builder()
+                    .add(new TermQuery(new Term(TITLE, term)), Occur.SHOULD)
+                    .add(new TermQuery(new Term(CONTENT, term)), Occur.SHOULD);
+            if (i == terms.size() - 1) {
+                // L'utente sta ancora digitando l'ultima parola
+                termQuery.add(new PrefixQuery(new Term(TITLE, term)), Occur.SHOULD);
+                termQuery.add(new PrefixQuery(new Term(CONTENT, term)), Occur.SHOULD);
+            }
+            for (String variant : variants.getOrDefault(term, List.of())) {
+                termQuery.add(new BoostQuery(new TermQuery(new Term(TITLE, variant)), FUZZY_BOOST), Occur.SHOULD);
+                termQuery.add(new BoostQuery(new TermQuery(new Term(CONTENT, variant)), FUZZY_BOOST), Occur.SHOULD);
+            }
+            query.add(termQuery.build(), Occur.MUST);
+        }
+
+        addFilters(query, folderId, createdFrom, createdTo, modifiedFrom, modifiedTo);
+        return topHits(query.build(), maxHits, deadline);
+    }
+
+    /**
+     * Come sopra, per una query strutturata: l'intero albero diventa un'unica query Lucene.
+     * Cartelle e autori sono già risolti in id (bindings).
+     */
+    public Map<Long, Double> search(Long userId, Collection<Long> sharedNoteIds, SearchQuery searchQuery,
+                             SearchQuery.Bindings bindings, Long folderId, LocalDateTime createdFrom,
+                             LocalDateTime createdTo, LocalDateTime modifiedFrom, LocalDateTime modifiedTo,
+                             int maxHits, SearchDeadline deadline) {
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        query.add(accessFilter(userId, sharedNoteIds), Occur.FILTER);
+        query.add(compile(searchQuery.root, bindings), Occur.MUST);
+        addFilters(query, folderId, createdFrom, createdTo, modifiedFrom, modifiedTo);
+        return topHits(query.build(), maxHits, deadline);
+    }
+
+    private Query compile(SearchQuery.Node node, SearchQuery.Bindings bindings) {
+        if (node instanceof SearchQuery.Text text) {
+            return compileText(text, bindings);
+        }
+        if (node instanceof SearchQuery.DateRange range) {
+            String field = range.field == SearchQuery.DateField.CREATED ? CREATED_AT : UPDATED_AT;
+            long lower = range.from != null ? toMillis(range.from) : Long.MIN_VALUE;
+            long upper = range.to != null ? toMillis(range.to) - 1 : Long.MAX_VALUE;
+            return LongPoint.newRangeQuery(field, lower, upper);
+        }
+        if (node instanceof SearchQuery.Not not) {
+            return new BooleanQuery.Builder()
+                    .add(new MatchAllDocsQuery(), Occur.MUST)
+                    .add(compile(not.child, bindings), Occur.MUST_NOT)
+                    .build();
+        }
+        if (node instanceof SearchQuery.And and) {
+            BooleanQuery.Builder query = new BooleanQuery.Builder();
+            boolean positive = false;
+            for (SearchQuery.Node child : and.children) {
+                if (child instanceof SearchQuery.Not not) {
+                    query.add(compile(not.child, bindings), Occur.MUST_NOT);
+                } else {
+                    query.add(compile(child, bindings), Occur.MUST);
+                    positive = true;
+                }
+            }
+            if (!positive) {
+                query.add(new MatchAllDocsQuery(), Occur.MUST);
+            }
+            return query.build();
+        }
+        SearchQuery.Or or = (SearchQuery.Or) node;
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        for (SearchQuery.Node child : or.children) {
+            query.add(compile(child, bindings), Occur.SHOULD);
+        }
+        return query.build();
+    }
+
+    private Query compileText(SearchQuery.Text text, SearchQuery.Bindings bindings) {
+        switch (text.field) {
+            case FOLDER:
+                return idFilter(FOLDER_ID, bindings.folders.get(text.text));
+            case AUTHOR:
+                return idFilter(OWNER_ID, bindings.authors.get(text.text));
+            default:
+                break;
+        }
+        List<String> terms = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        textAnalyzer.analyze(text.text, (buffer, length, position) -> {
+            terms.add(new String(buffer, 0, length));
+            positions.add(position);
+        });
+        if (terms.isEmpty()) {
+            return new MatchNoDocsQuery();
+        }
+        BooleanQuery.Builder query = new BooleanQuery.Builder()
+                .add(textQuery(TITLE, terms, positions), Occur.SHOULD);
+        if (text.field == SearchQuery.Field.ANY) {
+            query.add(textQuery(CONTENT, terms, positions), Occur.SHOULD);
+        }
+        return query.build();
+    }
+
+    // Più termini (frase o parola composta) devono comparire in sequenza, con i buchi delle stop word
+    private static Query textQuery(String field, List<String> terms, List<Integer> positions) {
+        if (terms.size() == 1) {
+            return new TermQuery(new Term(field, terms.get(0)));
+        }
+        PhraseQuery.Builder phrase = new PhraseQuery.Builder();
+        for (int i = 0; i < terms.size(); i++) {
+            phrase.add(new Term(field, terms.get(i)), positions.get(i));
+        }
+        return phrase.build();
+    }
+
+    private static Query idFilter(String field, Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return new MatchNoDocsQuery();
+        }
+        List<BytesRef> values = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            values.add(new BytesRef(id.toString()));
+        }
+        return new TermInSetQuery(field, values);
+    }
+
+    private void addFilters(BooleanQuery.Builder query, Long folderId, LocalDateTime createdFrom,
+                            LocalDateTime createdTo, LocalDateTime modifiedFrom, LocalDateTime modifiedTo) {
+        if (folderId != null) {
+            query.add(new TermQuery(new Term(FOLDER_ID, folderId.toString())), Occur.FILTER);
+        }
+        addRange(query, CREATED_AT, createdFrom, createdTo);
+        addRange(query, UPDATED_AT, modifiedFrom, modifiedTo);
+    }
+
+    // Alla scadenza Lucene interrompe la raccolta e restituisce i documenti trovati fino a quel momento
+    private Map<Long, Double> topHits(Query query, int maxHits, SearchDeadline deadline) {
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                // Searcher per richiesta sullo stesso reader: il timeout non tocca quello condiviso
+                IndexSearcher timed = new IndexSearcher(searcher.getIndexReader());
+                timed.setTimeout(deadline);
+                TopDocs topDocs = timed.search(query, maxHits);
+                if (timed.timedOut()) {
+                    deadline.markTimedOut();
+                }
+                StoredFields storedFields = searcher.storedFields();
+                Map<Long, Double> hits = new LinkedHashMap<>();
+                for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+                    hits.put(Long.valueOf(storedFields.document(scoreDoc.doc).get(ID)), (double) scoreDoc.score);
+                }
+                return hits;
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Search index query failed", e);
+        }
+    }
+
+    private Query accessFilter(Long userId, Collection<Long> sharedNoteIds) {
+        BooleanQuery.Builder access = new BooleanQuery.Builder()
+                .add(new TermQuery(new Term(OWNER_ID, userId.toString())), Occur.SHOULD);
+        if (sharedNoteIds != null && !sharedNoteIds.isEmpty()) {
+            access.add(idFilter(ID, sharedNoteIds), Occur.SHOULD);
+        }
+        return access.build();
+    }
+
+    private void addRange(BooleanQuery.Builder query, String field, LocalDateTime from, LocalDateTime to) {
+        if (from == null && to == null) {
+            return;
+        }
+        long lower = from != null ? toMillis(from) : Long.MIN_VALUE;
+        long upper = to != null ? toMillis(to) : Long.MAX_VALUE;
+        query.add(LongPoint.newRangeQuery(field, lower, upper), Occur.FILTER);
+    }
+
+    private Document toDocument(Note note) {
+        Document doc = new Document();
+        doc.add(new StringField(GENERATION, generation, Field.Store.NO));
+        doc.add(new StringField(ID, note.id.toString(), Field.Store.YES));
+        doc.add(new StringField(OWNER_ID, note.owner.id.toString(), Field.Store.NO));
+        if (note.folder != null) {
+            doc.add(new StringField(FOLDER_ID, note.folder.id.toString(), Field.Store.NO));
+        }
+        doc.add(new TextField(TITLE, note.title, Field.Store.NO));
+        doc.add(new TextField(CONTENT, note.content, Field.Store.NO));
+        addTimestamp(doc, CREATED_AT, note.createdAt);
+        addTimestamp(doc, UPDATED_AT, note.updatedAt);
+        return doc;
+    }
+
+    private void addTimestamp(Document doc, String field, LocalDateTime value) {
+        if (value != null) {
+            long millis = toMillis(value);
+            doc.add(new LongPoint(field, millis));
+            doc.add(new NumericDocValuesField(field, millis));
+        }
+    }
+
+    private static long toMillis(LocalDateTime value) {
+        return value.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+}
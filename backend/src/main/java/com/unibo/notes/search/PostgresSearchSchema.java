@@ -0,0 +1,117 @@
+package com.unibo.notes.search;
+
+import com.unibo.notes.repository.NoteRepository;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Transactional;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Crea (se mancanti) la colonna tsvector e gli indici usati dalla modalità POSTGRES.
+ * Hibernate non gestisce colonne generate né collation, quindi il DDL è applicato all'avvio.
+ * Su PostgreSQL, in qualsiasi modalità, il titolo usa la collation italiana per l'ordinamento.
+ */
+@ApplicationScoped
+public class PostgresSearchSchema {
+
+    private static final Logger LOGGER = Logger.getLogger(PostgresSearchSchema.class.getName());
+
+    // Italiano e inglese: gli appunti mescolano le due lingue (collation it_IT)
+    private static final List<String> DDL = List.of(
+            "CREATE EXTENSION IF NOT EXISTS pg_trgm",
+            "ALTER TABLE notes ADD COLUMN IF NOT EXISTS search_vector tsvector GENERATED ALWAYS AS ("
+                    + "setweight(to_tsvector('italian', coalesce(title, '')), 'A') || "
+                    + "setweight(to_tsvector('english', coalesce(title, '')), 'A') || "
+                    + "setweight(to_tsvector('italian', coalesce(content, '')), 'B') || "
+                    + "setweight(to_tsvector('english', coalesce(content, '')), 'B')) STORED",
+            "CREATE INDEX IF NOT EXISTS idx_notes_search_vector ON notes USING GIN (search_vector)",
+            "CREATE INDEX IF NOT EXISTS idx_notes_title_trgm ON notes USING GIN (lower(title) gin_trgm_ops)",
+            "CREATE INDEX IF NOT EXISTS idx_notes_content_trgm ON notes USING GIN (lower(content) gin_trgm_ops)"
+    );
+
+    @Inject
+    NoteRepository noteRepository;
+
+    @ConfigProperty(name = "notes.search.title-collation", defaultValue = "it-IT-x-icu")
+    String titleCollation;
+
+    void onStart(@Observes StartupEvent event) {
+        // Prima la collation: la colonna generata dipende dal titolo
+        if (noteRepository.isPostgres()) {
+            applyTitleCollation();
+        }
+        if (noteRepository.isPostgresFullText()) {
+            createSchema();
+        }
+    }
+
+    /**
+     * Imposta la collation del titolo solo se diversa da quella attuale: il cambio
+     * ricostruisce gli indici sul titolo, compreso (owner_id, title, id) usato per l'ordinamento
+     */
+    @Transactional
+    public void applyTitleCollation() {
+        EntityManager em = noteRepository.getEntityManager();
+        // Tabella risolta dal search_path, come per le query dell'applicazione
+        List<?> columns = em.createNativeQuery(
+                        "SELECT a.attname, coll.collname, format_type(a.atttypid, a.atttypmod)"
+                                + " FROM pg_attribute a LEFT JOIN pg_collation coll ON coll.oid = a.attcollation"
+                                + " WHERE a.attrelid = to_regclass('notes') AND a.attname IN ('title', 'search_vector')"
+                                + " AND NOT a.attisdropped")
+                .getResultList();
+        Object[] title = null;
+        boolean hasSearchVector = false;
+        for (Object column : columns) {
+            Object[] row = (Object[]) column;
+            if ("title".equals(row[0])) {
+                title = row;
+            } else {
+                hasSearchVector = true;
+            }
+        }
+        if (title == null) {
+            return;
+        }
+        List<String> statements = collationStatements((String) title[1], (String) title[2], hasSearchVector, titleCollation);
+        for (String statement : statements) {
+            em.createNativeQuery(statement).executeUpdate();
+        }
+        if (!statements.isEmpty()) {
+            LOGGER.info("Note title collation changed from " + title[1] + " to " + titleCollation);
+        }
+    }
+
+    /**
+     * DDL per portare il titolo alla collation richiesta; vuoto se la ha già. Il tipo della colonna
+     * resta quello attuale (la lunghezza è quella della mappatura creata da Hibernate).
+     */
+    static List<String> collationStatements(String currentCollation, String columnType, boolean hasSearchVector,
+                                            String collation) {
+        if (collation.equals(currentCollation)) {
+            return List.of();
+        }
+        List<String> statements = new ArrayList<>();
+        if (hasSearchVector) {
+            // Una colonna usata da una colonna generata non può cambiare tipo: viene ricreata da createSchema
+            statements.add("ALTER TABLE notes DROP COLUMN search_vector");
+        }
+        statements.add("ALTER TABLE notes ALTER COLUMN title TYPE " + columnType + " COLLATE \"" + collation + "\"");
+        return statements;
+    }
+
+    @Transactional
+    public void createSchema() {
+        EntityManager em = noteRepository.getEntityManager();
+        for (String statement : DDL) {
+            em.createNativeQuery(statement).executeUpdate();
+        }
+        LOGGER.info("PostgreSQL full-text search schema ready");
+    }
+}
@@ -0,0 +1,232 @@
+package com.unibo.notes.search;
+
+import com.unibo.notes.dto.SearchCriteria;
+import com.unibo.notes.dto.SearchFacets;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache LRU dei risultati di ricerca, per utente e parametri normalizzati.
+ * Conserva solo id, punteggi e cursore: le entità vengono ricaricate per id ad ogni hit.
+ * Le faccette, uguali per tutte le pagine e gli ordinamenti, hanno una voce propria.
+ *
+ * L'invalidazione incrementa la generazione dell'utente: le voci calcolate con una
+ * generazione precedente vengono ignorate, anche se salvate dopo l'invalidazione.
+ */
+@ApplicationScoped
+public class SearchCache {
+
+    /** Pagina di risultati in cache */
+    public static final class CachedPage {
+        public final List<Long> noteIds;
+        public final Map<Long, Double> scores;
+        public final String nextCursor;
+        public final Map<Long, List<Long>> versions;
+        public final boolean truncated;
+
+        public CachedPage(List<Long> noteIds, Map<Long, Double> scores, String nextCursor) {
+            this(noteIds, scores, nextCursor, null, false);
+        }
+
+        public CachedPage(List<Long> noteIds, Map<Long, Double> scores, String nextCursor,
+                          Map<Long, List<Long>> versions, boolean truncated) {
+            this.noteIds = noteIds;
+            this.scores = scores;
+            this.nextCursor = nextCursor;
+            this.versions = versions;
+            this.truncated = truncated;
+        }
+    }
+
+    private static final class Entry {
+        final Object value;
+        final long generation;
+        final long expiresAt;
+
+        Entry(Object value, long generation, long expiresAt) {
+            this.value = value;
+            this.generation = generation;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    @ConfigProperty(name = "notes.search.cache.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "notes.search.cache.max-entries", defaultValue = "10000")
+    int maxEntries;
+
+    @ConfigProperty(name = "notes.search.cache.ttl-seconds", defaultValue = "300")
+    long ttlSeconds;
+
+    @Inject
+    MeterRegistry registry;
+
+    private final Map<Long, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    // LinkedHashMap in ordine di accesso: l'elemento più vecchio è il meno usato
+    private Map<String, Entry> entries;
+
+    @PostConstruct
+    void init() {
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        FunctionCounter.builder("notes.search.cache.hits", hits, AtomicLong::get).register(registry);
+        FunctionCounter.builder("notes.search.cache.misses", misses, AtomicLong::get).register(registry);
+        FunctionCounter.builder("notes.search.cache.evictions", evictions, AtomicLong::get)
+                .tag("cause", "size").register(registry);
+        FunctionCounter.builder("notes.search.cache.evictions", expirations, AtomicLong::get)
+                .tag("cause", "expired").register(registry);
+        FunctionCounter.builder("notes.search.cache.invalidations", invalidations, AtomicLong::get).register(registry);
+        Gauge.builder("notes.search.cache.size", this, SearchCache::size).register(registry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Generazione corrente dell'utente: va letta prima di calcolare il risultato da salvare
+     */
+    public long generation(Long userId) {
+        return generations.computeIfAbsent(userId, id -> new AtomicLong()).get();
+    }
+
+    public CachedPage get(SearchCriteria criteria) {
+        return (CachedPage) lookup(key(criteria), criteria.userId);
+    }
+
+    public void put(SearchCriteria criteria, long generation, CachedPage page) {
+        store(key(criteria), criteria.userId, generation, page);
+    }
+
+    public SearchFacets getFacets(SearchCriteria criteria) {
+        return (SearchFacets) lookup(facetsKey(criteria), criteria.userId);
+    }
+
+    public void putFacets(SearchCriteria criteria, long generation, SearchFacets facets) {
+        store(facetsKey(criteria), criteria.userId, generation, facets);
+    }
+
+    private Object lookup(String key, Long userId) {
+        long generation = generation(userId);
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry == null || entry.generation != generation) {
+                if (entry != null) {
+                    entries.remove(key);
+                }
+                misses.incrementAndGet();
+                return null;
+            }
+            if (entry.expiresAt < System.currentTimeMillis()) {
+                entries.remove(key);
+                expirations.incrementAndGet();
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return entry.value;
+        }
+    }
+
+    private void store(String key, Long userId, long generation, Object value) {
+        // Risultato calcolato prima di un'invalidazione: già vecchio
+        if (generation != generation(userId)) {
+            return;
+        }
+        Entry entry = new Entry(value, generation, System.currentTimeMillis() + ttlSeconds * 1000);
+        synchronized (this) {
+            entries.put(key, entry);
+        }
+    }
+
+    /**
+     * Invalida tutte le ricerche degli utenti indicati (le voci vengono rimosse
+     * pigramente alla lettura successiva o dall'LRU)
+     */
+    public void invalidate(Collection<Long> userIds) {
+        for (Long userId : userIds) {
+            generations.computeIfAbsent(userId, id -> new AtomicLong()).incrementAndGet();
+            invalidations.incrementAndGet();
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Chiave normalizzata: spazi e maiuscole della keyword non generano voci diverse
+     */
+    static String key(SearchCriteria criteria) {
+        return filtersKey(criteria)
+                + "|" + criteria.sort
+                + "|" + criteria.ascending
+                + "|" + (criteria.after != null ? criteria.after.encode() : "")
+                + "|" + criteria.limit;
+    }
+
+    // Le faccette dipendono solo dai filtri, non da ordinamento e pagina
+    static String facetsKey(SearchCriteria criteria) {
+        return "facets|" + filtersKey(criteria);
+    }
+
+    private static String filtersKey(SearchCriteria criteria) {
+        return criteria.userId
+                // Nelle query strutturate le maiuscole distinguono gli operatori dalle parole
+                + "|" + (criteria.query != null ? collapse(criteria.keyword) : normalize(criteria.keyword))
+                + "|" + normalize(criteria.author)
+                + "|" + criteria.folderId
+                + "|" + criteria.createdFrom
+                + "|" + criteria.createdTo
+                + "|" + criteria.modifiedFrom
+                + "|" + criteria.modifiedTo
+                + "|" + criteria.includeShared
+                + "|" + criteria.fuzzy
+                + "|" + criteria.history;
+    }
+
+    private static String normalize(String value) {
+        return collapse(value).toLowerCase(Locale.ROOT);
+    }
+
+    private static String collapse(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.trim().replaceAll("\\s+", " ");
+    }
+}
@@ -0,0 +1,114 @@
+package com.unibo.notes.search;
+
+import org.apache.lucene.index.QueryTimeout;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Scadenza di una ricerca: limita la ricerca sugli indici (QueryTimeout di Lucene, risultati parziali)
+ * e diventa il timeout JDBC delle query. Annullata quando il client chiude la connessione:
+ * l'azione registrata interrompe la query ancora in corso sul database.
+ */
+public final class SearchDeadline implements QueryTimeout {
+
+    private static final Logger LOGGER = Logger.getLogger(SearchDeadline.class.getName());
+
+    private final boolean bounded;
+    private final long deadlineNanos;
+    // Una sola azione alla volta: la ricerca (o il blocco dello stream) in corso
+    private final AtomicReference<Runnable> cancelAction = new AtomicReference<>();
+    private volatile boolean cancelled;
+    private volatile boolean timedOut;
+
+    private SearchDeadline(boolean bounded, long deadlineNanos) {
+        this.bounded = bounded;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /** Nessun limite di tempo, solo l'annullamento */
+    public static SearchDeadline none() {
+        return new SearchDeadline(false, 0);
+    }
+
+    /** Scadenza tra millis millisecondi (0 o meno = nessun limite) */
+    public static SearchDeadline after(long millis) {
+        return millis > 0 ? new SearchDeadline(true, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis)) : none();
+    }
+
+    public boolean isExpired() {
+        return cancelled || (bounded && System.nanoTime() - deadlineNanos >= 0);
+    }
+
+    @Override
+    public boolean shouldExit() {
+        return isExpired();
+    }
+
+    public long remainingMillis() {
+        if (!bounded) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()));
+    }
+
+    /**
+     * Timeout JDBC in secondi (la granularità di Statement.setQueryTimeout), arrotondato per eccesso
+     * e almeno 1; 0 se non c'è limite
+     */
+    public int queryTimeoutSeconds() {
+        if (!bounded) {
+            return 0;
+        }
+        return (int) Math.max(1, (remainingMillis() + 999) / 1000);
+    }
+
+    /**
+     * Azione eseguita all'annullamento (subito se la ricerca è già annullata); sostituisce quella
+     * registrata in precedenza
+     */
+    public void onCancel(Runnable action) {
+        cancelAction.set(action);
+        if (cancelled) {
+            run(action);
+        }
+    }
+
+    /** Ricerca finita: l'azione non serve più e non deve trattenere la sessione */
+    public void clearCancel(Runnable action) {
+        cancelAction.compareAndSet(action, null);
+    }
+
+    /** Il client non aspetta più la risposta: si interrompe il lavoro ancora in corso */
+    public void cancel() {
+        cancelled = true;
+        timedOut = true;
+        Runnable action = cancelAction.get();
+        if (action != null) {
+            run(action);
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /** Una fase è stata interrotta: i risultati sono parziali */
+    public void markTimedOut() {
+        timedOut = true;
+    }
+
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    private static void run(Runnable action) {
+        try {
+            action.run();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.FINE, "Search cancellation failed", e);
+        }
+    }
+}
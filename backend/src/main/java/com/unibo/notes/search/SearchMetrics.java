@@ -0,0 +1,67 @@
+package com.unibo.notes.search;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Istogrammi di latenza della ricerca (totale e per fase) e log delle ricerche lente:
+ * sopra la soglia viene scritto il dettaglio delle fasi con il piano eseguito,
+ * per capire se il tempo è speso nel database o in CPU.
+ */
+@ApplicationScoped
+public class SearchMetrics {
+
+    private static final Logger LOGGER = Logger.getLogger(SearchMetrics.class.getName());
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "notes.search.slow-query.threshold-ms", defaultValue = "500")
+    long slowThresholdMillis;
+
+    private final Map<SearchTrace.Stage, Timer> stageTimers = new EnumMap<>(SearchTrace.Stage.class);
+    private Timer total;
+
+    @PostConstruct
+    void init() {
+        total = Timer.builder("notes.search.duration")
+                .publishPercentileHistogram()
+                .register(registry);
+        for (SearchTrace.Stage stage : SearchTrace.Stage.values()) {
+            stageTimers.put(stage, Timer.builder("notes.search.stage.duration")
+                    .tag("stage", stage.label())
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+    }
+
+    /**
+     * Registra la ricerca conclusa; restituisce true se è oltre la soglia delle ricerche lente
+     */
+    public boolean record(SearchTrace trace) {
+        long elapsed = trace.elapsedNanos();
+        total.record(elapsed, TimeUnit.NANOSECONDS);
+        for (SearchTrace.Stage stage : SearchTrace.Stage.values()) {
+            long nanos = trace.nanos(stage);
+            if (nanos > 0) {
+                stageTimers.get(stage).record(nanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        boolean slow = elapsed >= TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis);
+        if (slow) {
+            LOGGER.warning("Slow search: " + TimeUnit.NANOSECONDS.toMillis(elapsed) + " ms, stages (ms) "
+                    + trace.breakdownMillis() + ", plan " + trace.plan());
+        }
+        return slow;
+    }
+}
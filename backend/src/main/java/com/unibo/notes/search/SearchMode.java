@@ -0,0 +1,13 @@
+package com.unibo.notes.search;
+
+/**
+ * Motore usato per la ricerca full-text delle note (proprietà notes.search.mode).
+ */
+public enum SearchMode {
+    /** Indice Lucene locale aggiornato ad ogni commit */
+    LUCENE,
+    /** Colonna tsvector generata e indici pg_trgm (solo PostgreSQL, altrimenti LIKE) */
+    POSTGRES,
+    /** Scansione LIKE sulla tabella notes (comportamento storico) */
+    LIKE
+}
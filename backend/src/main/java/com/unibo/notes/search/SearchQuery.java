@@ -0,0 +1,155 @@
+package com.unibo.notes.search;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Query di /search analizzata da SearchQueryParser: albero di AND/OR/NOT su termini,
+ * frasi, campi (title:, folder:, author:) e intervalli di date.
+ * È immutabile e condivisa tra le richieste tramite la cache del parser; viene compilata
+ * in un'unica query Lucene (NoteSearchIndex) oppure in un'unica clausola WHERE (NoteRepository).
+ */
+public final class SearchQuery {
+
+    public enum Field {
+        /** Titolo o contenuto */
+        ANY,
+        TITLE,
+        /** Nome della cartella (sottostringa) */
+        FOLDER,
+        /** Username del proprietario (sottostringa) */
+        AUTHOR
+    }
+
+    public enum DateField {
+        CREATED,
+        MODIFIED
+    }
+
+    public interface Node {
+    }
+
+    /** Parola o frase, in minuscolo */
+    public static final class Text implements Node {
+        public final Field field;
+        public final String text;
+        public final boolean phrase;
+
+        Text(Field field, String text, boolean phrase) {
+            this.field = field;
+            this.text = text;
+            this.phrase = phrase;
+        }
+    }
+
+    /** Intervallo [from, to): un estremo null è aperto */
+    public static final class DateRange implements Node {
+        public final DateField field;
+        public final LocalDateTime from;
+        public final LocalDateTime to;
+
+        DateRange(DateField field, LocalDateTime from, LocalDateTime to) {
+            this.field = field;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    public static final class And implements Node {
+        public final List<Node> children;
+
+        And(List<Node> children) {
+            this.children = List.copyOf(children);
+        }
+    }
+
+    public static final class Or implements Node {
+        public final List<Node> children;
+
+        Or(List<Node> children) {
+            this.children = List.copyOf(children);
+        }
+    }
+
+    public static final class Not implements Node {
+        public final Node child;
+
+        Not(Node child) {
+            this.child = child;
+        }
+    }
+
+    /**
+     * Id di cartelle e autori corrispondenti ai filtri folder: e author:, risolti per l'utente
+     * prima di interrogare l'indice (che conosce solo gli id)
+     */
+    public static final class Bindings {
+        public final Map<String, List<Long>> folders;
+        public final Map<String, List<Long>> authors;
+
+        public Bindings(Map<String, List<Long>> folders, Map<String, List<Long>> authors) {
+            this.folders = folders;
+            this.authors = authors;
+        }
+    }
+
+    // Null se la query non contiene nulla di ricercabile (es. solo parentesi)
+    public final Node root;
+    private final boolean simple;
+    private final String rankingText;
+    private final Set<String> folderNames = new LinkedHashSet<>();
+    private final Set<String> authorNames = new LinkedHashSet<>();
+
+    SearchQuery(Node root, boolean simple) {
+        this.root = root;
+        this.simple = simple;
+        List<String> positive = new ArrayList<>();
+        collect(root, false, positive);
+        this.rankingText = String.join(" ", positive);
+    }
+
+    /**
+     * Solo parole separate da spazi: la ricerca segue il percorso a keyword
+     * (tutti i termini, l'ultimo anche come prefisso, con ricerca fuzzy)
+     */
+    public boolean isSimple() {
+        return simple;
+    }
+
+    /** Testo dei termini non negati su titolo e contenuto, per ranking ed evidenziazione */
+    public String rankingText() {
+        return rankingText;
+    }
+
+    public Set<String> folderNames() {
+        return folderNames;
+    }
+
+    public Set<String> authorNames() {
+        return authorNames;
+    }
+
+    private void collect(Node node, boolean negated, List<String> positive) {
+        if (node instanceof Text text) {
+            switch (text.field) {
+                case FOLDER -> folderNames.add(text.text);
+                case AUTHOR -> authorNames.add(text.text);
+                default -> {
+                    if (!negated) {
+                        positive.add(text.text);
+                    }
+                }
+            }
+        } else if (node instanceof And and) {
+            and.children.forEach(child -> collect(child, negated, positive));
+        } else if (node instanceof Or or) {
+            or.children.forEach(child -> collect(child, negated, positive));
+        } else if (node instanceof Not not) {
+            collect(not.child, !negated, positive);
+        }
+    }
+}
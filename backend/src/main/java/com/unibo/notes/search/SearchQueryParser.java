@@ -0,0 +1,305 @@
+package com.unibo.notes.search;
+
+import com.unibo.notes.exception.ValidationException;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Parser del linguaggio di ricerca:
+ * <pre>
+ *   analisi AND (limiti OR derivate) NOT integrali
+ *   "serie di Taylor" -bozza
+ *   title:esame folder:università author:mario
+ *   created:2024-01-01..2024-03-31 modified:2024-05 modified:..2024-06-15
+ * </pre>
+ * Gli operatori vanno in maiuscolo; tra due termini senza operatore vale AND.
+ * Il parser è tollerante (virgolette e parentesi non chiuse vengono chiuse a fine query),
+ * tranne che per le date non valide. Le query analizzate restano in una cache LRU per testo.
+ */
+@ApplicationScoped
+public class SearchQueryParser {
+
+    private enum TokenType { WORD, PHRASE, DATE, LPAREN, RPAREN, AND, OR, NOT }
+
+    private static final class Token {
+        final TokenType type;
+        final String text;
+        // Prefisso di campo (title, folder, ...), null se assente
+        final String field;
+
+        Token(TokenType type, String text, String field) {
+            this.type = type;
+            this.text = text;
+            this.field = field;
+        }
+    }
+
+    private static final Map<String, SearchQuery.Field> TEXT_FIELDS = Map.of(
+            "title", SearchQuery.Field.TITLE,
+            "folder", SearchQuery.Field.FOLDER,
+            "author", SearchQuery.Field.AUTHOR);
+
+    private static final Map<String, SearchQuery.DateField> DATE_FIELDS = Map.of(
+            "created", SearchQuery.DateField.CREATED,
+            "modified", SearchQuery.DateField.MODIFIED,
+            "updated", SearchQuery.DateField.MODIFIED);
+
+    private static final String RANGE = "..";
+
+    @ConfigProperty(name = "notes.search.query-cache.max-entries", defaultValue = "1000")
+    int maxEntries;
+
+    private Map<String, SearchQuery> cache;
+
+    @PostConstruct
+    void init() {
+        cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SearchQuery> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Query analizzata, dalla cache se già vista; null se il testo è vuoto
+     */
+    public SearchQuery parse(String query) {
+        if (query == null || query.isBlank()) {
+            return null;
+        }
+        String key = query.trim();
+        synchronized (cache) {
+            SearchQuery cached = cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        SearchQuery parsed = new Parser(tokenize(key)).parse();
+        synchronized (cache) {
+            cache.put(key, parsed);
+        }
+        return parsed;
+    }
+
+    private static List<Token> tokenize(String query) {
+        List<Token> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < query.length()) {
+            char c = query.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(') {
+                tokens.add(new Token(TokenType.LPAREN, null, null));
+                i++;
+            } else if (c == ')') {
+                tokens.add(new Token(TokenType.RPAREN, null, null));
+                i++;
+            } else if (c == '"') {
+                i = readPhrase(query, i, null, tokens);
+            } else if (c == '-' && i + 1 < query.length() && !Character.isWhitespace(query.charAt(i + 1))) {
+                tokens.add(new Token(TokenType.NOT, null, null));
+                i++;
+            } else {
+                int start = i;
+                while (i < query.length() && !Character.isWhitespace(query.charAt(i))
+                        && "()\"".indexOf(query.charAt(i)) < 0) {
+                    i++;
+                }
+                String word = query.substring(start, i);
+                int colon = word.indexOf(':');
+                String field = colon > 0 ? word.substring(0, colon).toLowerCase(Locale.ROOT) : null;
+
+                if (field != null && DATE_FIELDS.containsKey(field)) {
+                    tokens.add(new Token(TokenType.DATE, word.substring(colon + 1), field));
+                } else if (field != null && TEXT_FIELDS.containsKey(field)) {
+                    String value = word.substring(colon + 1);
+                    if (value.isEmpty() && i < query.length() && query.charAt(i) == '"') {
+                        i = readPhrase(query, i, field, tokens);
+                    } else if (!value.isEmpty()) {
+                        tokens.add(new Token(TokenType.WORD, value, field));
+                    }
+                } else if (word.equals("AND")) {
+                    tokens.add(new Token(TokenType.AND, null, null));
+                } else if (word.equals("OR")) {
+                    tokens.add(new Token(TokenType.OR, null, null));
+                } else if (word.equals("NOT")) {
+                    tokens.add(new Token(TokenType.NOT, null, null));
+                } else {
+                    tokens.add(new Token(TokenType.WORD, word, null));
+                }
+            }
+        }
+        return tokens;
+    }
+
+    // Legge una frase tra virgolette a partire da start; restituisce la posizione successiva
+    private static int readPhrase(String query, int start, String field, List<Token> tokens) {
+        int end = query.indexOf('"', start + 1);
+        String phrase = query.substring(start + 1, end < 0 ? query.length() : end).trim();
+        if (!phrase.isEmpty()) {
+            tokens.add(new Token(TokenType.PHRASE, phrase, field));
+        }
+        return end < 0 ? query.length() : end + 1;
+    }
+
+    /** Discesa ricorsiva: or := and (OR and)*, and := unary (AND? unary)*, unary := NOT unary | primary */
+    private static final class Parser {
+
+        private final List<Token> tokens;
+        private int position;
+        private boolean structured;
+
+        Parser(List<Token> tokens) {
+            this.tokens = tokens;
+        }
+
+        SearchQuery parse() {
+            List<SearchQuery.Node> parts = new ArrayList<>();
+            while (peek() != null) {
+                if (peek().type == TokenType.RPAREN) {
+                    // Parentesi chiusa senza apertura: ignorata
+                    position++;
+                    structured = true;
+                    continue;
+                }
+                add(parts, parseOr());
+            }
+            return new SearchQuery(combine(parts, true), !structured);
+        }
+
+        private SearchQuery.Node parseOr() {
+            List<SearchQuery.Node> alternatives = new ArrayList<>();
+            add(alternatives, parseAnd());
+            while (peek() != null && peek().type == TokenType.OR) {
+                position++;
+                structured = true;
+                add(alternatives, parseAnd());
+            }
+            return combine(alternatives, false);
+        }
+
+        private SearchQuery.Node parseAnd() {
+            List<SearchQuery.Node> operands = new ArrayList<>();
+            while (peek() != null && peek().type != TokenType.OR && peek().type != TokenType.RPAREN) {
+                if (peek().type == TokenType.AND) {
+                    position++;
+                    structured = true;
+                    continue;
+                }
+                add(operands, parseUnary());
+            }
+            return combine(operands, true);
+        }
+
+        private SearchQuery.Node parseUnary() {
+            if (peek().type == TokenType.NOT) {
+                position++;
+                structured = true;
+                if (peek() == null || peek().type == TokenType.OR || peek().type == TokenType.RPAREN) {
+                    return null;
+                }
+                SearchQuery.Node child = parseUnary();
+                return child != null ? new SearchQuery.Not(child) : null;
+            }
+            return parsePrimary();
+        }
+
+        private SearchQuery.Node parsePrimary() {
+            Token token = tokens.get(position++);
+            switch (token.type) {
+                case LPAREN: {
+                    structured = true;
+                    SearchQuery.Node group = parseOr();
+                    if (peek() != null && peek().type == TokenType.RPAREN) {
+                        position++;
+                    }
+                    return group;
+                }
+                case PHRASE:
+                    structured = true;
+                    return text(token, true);
+                case DATE:
+                    structured = true;
+                    return dateRange(token);
+                case WORD:
+                    structured |= token.field != null;
+                    return text(token, false);
+                default:
+                    return null;
+            }
+        }
+
+        private SearchQuery.Node text(Token token, boolean phrase) {
+            String text = token.text.toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+            SearchQuery.Field field = token.field != null ? TEXT_FIELDS.get(token.field) : SearchQuery.Field.ANY;
+            return new SearchQuery.Text(field, text, phrase);
+        }
+
+        private Token peek() {
+            return position < tokens.size() ? tokens.get(position) : null;
+        }
+
+        private static void add(List<SearchQuery.Node> nodes, SearchQuery.Node node) {
+            if (node != null) {
+                nodes.add(node);
+            }
+        }
+
+        private static SearchQuery.Node combine(List<SearchQuery.Node> nodes, boolean and) {
+            if (nodes.isEmpty()) {
+                return null;
+            }
+            if (nodes.size() == 1) {
+                return nodes.get(0);
+            }
+            return and ? new SearchQuery.And(nodes) : new SearchQuery.Or(nodes);
+        }
+    }
+
+    /**
+     * Intervalli: "2024-01-01..2024-03-31", "2024-01..", "..2024-06-15"; una data singola
+     * vale per tutto il giorno (o il mese, con yyyy-MM). La fine è inclusa.
+     */
+    private static SearchQuery.DateRange dateRange(Token token) {
+        SearchQuery.DateField field = DATE_FIELDS.get(token.field);
+        String value = token.text;
+        int range = value.indexOf(RANGE);
+        if (range < 0) {
+            return new SearchQuery.DateRange(field, startOf(value), endOf(value));
+        }
+        String from = value.substring(0, range);
+        String to = value.substring(range + RANGE.length());
+        return new SearchQuery.DateRange(field,
+                from.isEmpty() ? null : startOf(from),
+                to.isEmpty() ? null : endOf(to));
+    }
+
+    private static LocalDateTime startOf(String date) {
+        try {
+            if (date.length() == 7) {
+                return YearMonth.parse(date).atDay(1).atStartOfDay();
+            }
+            return LocalDate.parse(date).atStartOfDay();
+        } catch (DateTimeParseException e) {
+            throw new ValidationException("Invalid date in query: " + date);
+        }
+    }
+
+    // Fine esclusa: inizio del giorno (o mese) successivo
+    private static LocalDateTime endOf(String date) {
+        LocalDateTime start = startOf(date);
+        return date.length() == 7 ? start.plusMonths(1) : start.plusDays(1);
+    }
+}
@@ -0,0 +1,84 @@
+package com.unibo.notes.search;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Tempi di una ricerca fase per fase e piano eseguito (percorso, hit dell'indice, JPQL...),
+ * raccolti durante la richiesta. Registrati da SearchMetrics negli istogrammi e nel log
+ * delle ricerche lente; restituiti al client con debug=true.
+ * Può essere aggiornato da più thread (ricerca unificata).
+ */
+public final class SearchTrace {
+
+    public enum Stage {
+        PARSE,
+        /** Indice full-text e query sul database (la query keyset carica anche le entità) */
+        QUERY,
+        /** Punteggi BM25 dei candidati */
+        RANKING,
+        /** Caricamento delle entità per id */
+        HYDRATION,
+        PERMISSIONS,
+        /** Costruzione dei DTO, evidenziazione esclusa */
+        MAPPING,
+        HIGHLIGHT,
+        FACETS;
+
+        public String label() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final long startNanos = System.nanoTime();
+    private final long[] stageNanos = new long[Stage.values().length];
+    private final Map<String, Object> plan = new LinkedHashMap<>();
+
+    public <T> T time(Stage stage, Supplier<T> task) {
+        long start = System.nanoTime();
+        try {
+            return task.get();
+        } finally {
+            add(stage, System.nanoTime() - start);
+        }
+    }
+
+    public synchronized void add(Stage stage, long nanos) {
+        stageNanos[stage.ordinal()] += nanos;
+    }
+
+    public synchronized long nanos(Stage stage) {
+        return stageNanos[stage.ordinal()];
+    }
+
+    /** Voce del piano: l'ultimo valore per la stessa chiave vince */
+    public synchronized void plan(String key, Object value) {
+        plan.put(key, value);
+    }
+
+    public synchronized Map<String, Object> plan() {
+        return new LinkedHashMap<>(plan);
+    }
+
+    public long elapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    public long elapsedMillis() {
+        return elapsedNanos() / 1_000_000;
+    }
+
+    /** Millisecondi per fase, solo per le fasi eseguite */
+    public synchronized Map<String, Double> breakdownMillis() {
+        Map<String, Double> breakdown = new LinkedHashMap<>();
+        for (Stage stage : Stage.values()) {
+            long nanos = stageNanos[stage.ordinal()];
+            if (nanos > 0) {
+                breakdown.put(stage.label(), nanos / 1_000_000.0);
+            }
+        }
+        return breakdown;
+    }
+}
@@ -0,0 +1,202 @@
+package com.unibo.notes.search;
+
+import com.unibo.notes.entity.Note;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Indice in memoria dei suggerimenti per /search/suggestions, uno per utente:
+ * titoli delle note, termini più frequenti, nomi delle cartelle e username dei collaboratori.
+ * Per ogni utente tiene anche il dizionario dei soli termini, usato dalla ricerca fuzzy.
+ * Viene costruito all'avvio e poi aggiornato dopo ogni commit: le richieste non toccano mai il database.
+ */
+@ApplicationScoped
+public class SuggestionIndex {
+
+    // Pesi per tipo di suggerimento: a parità di occorrenze vince il titolo
+    static final int TITLE_WEIGHT = 4;
+    static final int FOLDER_WEIGHT = 3;
+    static final int COLLABORATOR_WEIGHT = 2;
+    static final int TERM_WEIGHT = 1;
+
+    private static final int MIN_TERM_LENGTH = 3;
+
+    // Distanza massima ammessa per lunghezza del termine: le parole corte cambiano troppo con un errore
+    private static final int ONE_EDIT_MIN_LENGTH = 3;
+    private static final int TWO_EDITS_MIN_LENGTH = 6;
+
+    private static final class NoteEntry {
+        Long ownerId;
+        String ownerUsername;
+        String title;
+        Set<String> terms;
+        // Utenti con cui la nota è condivisa, con il loro username
+        final Map<Long, String> readers = new LinkedHashMap<>();
+    }
+
+    private final Map<Long, SuggestionTrie> users = new ConcurrentHashMap<>();
+
+    // Termini delle note visibili a ogni utente, pesati per numero di note
+    private final Map<Long, SuggestionTrie> dictionaries = new ConcurrentHashMap<>();
+
+    // Contributo attuale di ogni nota, per poterlo sottrarre alla modifica successiva
+    private final Map<Long, NoteEntry> notes = new HashMap<>();
+
+    public List<String> suggest(Long userId, String prefix, int limit) {
+        if (prefix == null || prefix.isBlank()) {
+            return List.of();
+        }
+        SuggestionTrie trie = users.get(userId);
+        if (trie == null) {
+            return List.of();
+        }
+        return trie.complete(normalize(prefix.trim()), limit);
+    }
+
+    /**
+     * Termini del dizionario dell'utente entro maxEdits modifiche dal termine dato
+     * (limitate in base alla sua lunghezza), escluso il termine stesso, dal più vicino
+     */
+    public List<String> fuzzyTerms(Long userId, String term, int maxEdits, int limit) {
+        String normalized = normalize(term);
+        int edits = Math.min(maxEdits, normalized.length() >= TWO_EDITS_MIN_LENGTH ? 2
+                : normalized.length() >= ONE_EDIT_MIN_LENGTH ? 1 : 0);
+        SuggestionTrie dictionary = dictionaries.get(userId);
+        if (edits <= 0 || dictionary == null) {
+            return List.of();
+        }
+        // Un posto in più: il termine stesso, se presente, è sempre il primo
+        List<String> matches = dictionary.fuzzy(new LevenshteinAutomaton(normalized, edits), limit + 1);
+        return matches.stream().filter(match -> !match.equals(normalized)).limit(limit).toList();
+    }
+
+    /**
+     * Applica le modifiche alle note: un valore null indica una nota eliminata
+     */
+    public synchronized void applyNotes(Map<Long, Note> changes) {
+        for (Map.Entry<Long, Note> change : changes.entrySet()) {
+            NoteEntry previous = notes.remove(change.getKey());
+            if (previous != null) {
+                contributeToAll(previous, -1);
+            }
+
+            Note note = change.getValue();
+            if (note == null) {
+                if (previous != null) {
+                    for (Map.Entry<Long, String> reader : previous.readers.entrySet()) {
+                        collaborators(previous, reader.getKey(), reader.getValue(), -1);
+                    }
+                }
+                continue;
+            }
+
+            NoteEntry entry = new NoteEntry();
+            entry.ownerId = note.owner.id;
+            entry.title = note.title;
+            entry.terms = terms(note.title, note.content);
+            if (previous != null) {
+                entry.ownerUsername = previous.ownerUsername;
+                entry.readers.putAll(previous.readers);
+            }
+            notes.put(change.getKey(), entry);
+            contributeToAll(entry, 1);
+        }
+    }
+
+    public synchronized void noteShared(Long noteId, String ownerUsername, Long userId, String username) {
+        NoteEntry entry = notes.get(noteId);
+        if (entry == null || entry.readers.containsKey(userId)) {
+            return;
+        }
+        entry.ownerUsername = ownerUsername;
+        entry.readers.put(userId, username);
+        contribute(entry, userId, 1);
+        collaborators(entry, userId, username, 1);
+    }
+
+    public synchronized void noteUnshared(Long noteId, Long userId) {
+        NoteEntry entry = notes.get(noteId);
+        if (entry == null || !entry.readers.containsKey(userId)) {
+            return;
+        }
+        String username = entry.readers.remove(userId);
+        contribute(entry, userId, -1);
+        collaborators(entry, userId, username, -1);
+    }
+
+    public synchronized void folderChanged(Long ownerId, String oldName, String newName) {
+        if (oldName != null) {
+            trie(ownerId).add(normalize(oldName), oldName, -FOLDER_WEIGHT);
+        }
+        if (newName != null) {
+            trie(ownerId).add(normalize(newName), newName, FOLDER_WEIGHT);
+        }
+    }
+
+    public synchronized void clear() {
+        notes.clear();
+        users.clear();
+        dictionaries.clear();
+    }
+
+    private void contributeToAll(NoteEntry entry, int sign) {
+        contribute(entry, entry.ownerId, sign);
+        for (Long reader : entry.readers.keySet()) {
+            contribute(entry, reader, sign);
+        }
+    }
+
+    private void contribute(NoteEntry entry, Long userId, int sign) {
+        SuggestionTrie trie = trie(userId);
+        SuggestionTrie dictionary = dictionaries.computeIfAbsent(userId, id -> new SuggestionTrie());
+        trie.add(normalize(entry.title), entry.title, (long) sign * TITLE_WEIGHT);
+        for (String term : entry.terms) {
+            trie.add(term, term, (long) sign * TERM_WEIGHT);
+            dictionary.add(term, term, sign);
+        }
+    }
+
+    // Proprietario e lettore si suggeriscono a vicenda
+    private void collaborators(NoteEntry entry, Long userId, String username, int sign) {
+        if (username != null) {
+            trie(entry.ownerId).add(normalize(username), username, (long) sign * COLLABORATOR_WEIGHT);
+        }
+        if (entry.ownerUsername != null) {
+            trie(userId).add(normalize(entry.ownerUsername), entry.ownerUsername, (long) sign * COLLABORATOR_WEIGHT);
+        }
+    }
+
+    private SuggestionTrie trie(Long userId) {
+        return users.computeIfAbsent(userId, id -> new SuggestionTrie());
+    }
+
+    /**
+     * Termini distinti di titolo e contenuto (lettere e cifre, almeno MIN_TERM_LENGTH caratteri)
+     */
+    static Set<String> terms(String title, String content) {
+        Set<String> terms = new LinkedHashSet<>();
+        collectTerms(title, terms);
+        collectTerms(content, terms);
+        return terms;
+    }
+
+    private static void collectTerms(String text, Set<String> terms) {
+        for (String term : Terms.tokenize(text)) {
+            if (term.length() >= MIN_TERM_LENGTH) {
+                terms.add(term);
+            }
+        }
+    }
+
+    private static String normalize(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+}
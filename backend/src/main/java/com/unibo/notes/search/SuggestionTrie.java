@@ -0,0 +1,198 @@
+package com.unibo.notes.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Trie dei suggerimenti di un utente: ogni chiave ha un peso che cresce con le occorrenze.
+ * I figli di ogni nodo sono array ordinati per carattere, senza mappe né boxing.
+ */
+final class SuggestionTrie {
+
+    private static final char[] NO_CHARS = new char[0];
+    private static final Node[] NO_NODES = new Node[0];
+
+    private static final Comparator<Node> BY_WEIGHT = Comparator
+            .comparingLong((Node node) -> node.weight)
+            .thenComparing(node -> node.display, Comparator.reverseOrder());
+
+    private static final class Node {
+        char[] chars = NO_CHARS;
+        Node[] children = NO_NODES;
+        int size;
+        // Testo mostrato all'utente e peso: presenti solo se una chiave termina qui
+        String display;
+        long weight;
+
+        Node child(char c) {
+            int index = Arrays.binarySearch(chars, 0, size, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node addChild(char c) {
+            if (size == chars.length) {
+                int capacity = Math.max(2, size * 2);
+                chars = Arrays.copyOf(chars, capacity);
+                children = Arrays.copyOf(children, capacity);
+            }
+            int index = -(Arrays.binarySearch(chars, 0, size, c) + 1);
+            System.arraycopy(chars, index, chars, index + 1, size - index);
+            System.arraycopy(children, index, children, index + 1, size - index);
+            Node node = new Node();
+            chars[index] = c;
+            children[index] = node;
+            size++;
+            return node;
+        }
+
+        void removeChild(char c) {
+            int index = Arrays.binarySearch(chars, 0, size, c);
+            if (index >= 0) {
+                System.arraycopy(chars, index + 1, chars, index, size - index - 1);
+                System.arraycopy(children, index + 1, children, index, size - index - 1);
+                children[--size] = null;
+            }
+        }
+
+        boolean isEmpty() {
+            return size == 0 && weight <= 0;
+        }
+    }
+
+    private final Node root = new Node();
+
+    /**
+     * Somma delta al peso della chiave; a peso zero la chiave (e i rami vuoti) vengono rimossi
+     */
+    synchronized void add(String key, String display, long delta) {
+        if (key.isEmpty() || delta == 0) {
+            return;
+        }
+        if (delta > 0) {
+            Node node = root;
+            for (int i = 0; i < key.length(); i++) {
+                Node next = node.child(key.charAt(i));
+                node = next != null ? next : node.addChild(key.charAt(i));
+            }
+            if (node.weight <= 0) {
+                node.display = display;
+            }
+            node.weight += delta;
+        } else {
+            decrement(root, key, 0, -delta);
+        }
+    }
+
+    private boolean decrement(Node node, String key, int depth, long amount) {
+        if (depth == key.length()) {
+            node.weight -= amount;
+            if (node.weight <= 0) {
+                node.weight = 0;
+                node.display = null;
+            }
+            return node.isEmpty();
+        }
+        char c = key.charAt(depth);
+        Node child = node.child(c);
+        if (child != null && decrement(child, key, depth + 1, amount)) {
+            node.removeChild(c);
+        }
+        return node != root && node.isEmpty();
+    }
+
+    /**
+     * Le chiavi con il prefisso dato, dalla più pesante, al massimo limit
+     */
+    synchronized List<String> complete(String prefix, int limit) {
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.child(prefix.charAt(i));
+        }
+        if (node == null || limit <= 0) {
+            return List.of();
+        }
+
+        // Heap minimo di dimensione limit: si tiene solo la top-K del sottoalbero
+        PriorityQueue<Node> best = new PriorityQueue<>(limit + 1, BY_WEIGHT);
+        List<Node> stack = new ArrayList<>();
+        stack.add(node);
+        while (!stack.isEmpty()) {
+            Node current = stack.remove(stack.size() - 1);
+            if (current.weight > 0) {
+                best.add(current);
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+            for (int i = 0; i < current.size; i++) {
+                stack.add(current.children[i]);
+            }
+        }
+
+        List<String> result = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            result.add(best.poll().display);
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * Le chiavi accettate dall'automa, dalla più vicina e a parità dalla più pesante, al massimo limit.
+     * I rami in cui l'automa non può più accettare vengono potati senza visitarli.
+     */
+    synchronized List<String> fuzzy(LevenshteinAutomaton automaton, int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        PriorityQueue<FuzzyMatch> best = new PriorityQueue<>(limit + 1, FuzzyMatch.WORST_FIRST);
+        fuzzy(root, automaton, automaton.start(), new StringBuilder(), best, limit);
+
+        List<String> result = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            result.add(best.poll().key);
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    private void fuzzy(Node node, LevenshteinAutomaton automaton, int[] state, StringBuilder key,
+                       PriorityQueue<FuzzyMatch> best, int limit) {
+        if (node.weight > 0 && automaton.isMatch(state)) {
+            best.add(new FuzzyMatch(key.toString(), automaton.distance(state), node.weight));
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        for (int i = 0; i < node.size; i++) {
+            int[] next = automaton.step(state, node.chars[i]);
+            if (automaton.canMatch(next)) {
+                key.append(node.chars[i]);
+                fuzzy(node.children[i], automaton, next, key, best, limit);
+                key.setLength(key.length() - 1);
+            }
+        }
+    }
+
+    private static final class FuzzyMatch {
+
+        static final Comparator<FuzzyMatch> WORST_FIRST = Comparator
+                .comparingInt((FuzzyMatch match) -> -match.distance)
+                .thenComparingLong(match -> match.weight)
+                .thenComparing(match -> match.key, Comparator.reverseOrder());
+
+        final String key;
+        final int distance;
+        final long weight;
+
+        FuzzyMatch(String key, int distance, long weight) {
+            this.key = key;
+            this.distance = distance;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.unibo.notes.search;
+
+import com.unibo.notes.entity.Note;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Statistiche del corpus per il ranking BM25: numero di note, lunghezza media di titolo
+ * e contenuto e document frequency di ogni termine. Aggiornate dopo ogni commit
+ * sottraendo il contributo precedente della nota, senza mai ricalcolarle da zero.
+ */
+@ApplicationScoped
+public class TermStatistics {
+
+    /** Statistiche lette in un colpo solo per una query */
+    public static final class Snapshot {
+        public final long documentCount;
+        public final double averageTitleLength;
+        public final double averageContentLength;
+        private final Map<String, Integer> documentFrequency;
+
+        Snapshot(long documentCount, double averageTitleLength, double averageContentLength,
+                 Map<String, Integer> documentFrequency) {
+            this.documentCount = documentCount;
+            this.averageTitleLength = averageTitleLength;
+            this.averageContentLength = averageContentLength;
+            this.documentFrequency = documentFrequency;
+        }
+
+        public int documentFrequency(String term) {
+            return documentFrequency.getOrDefault(term, 0);
+        }
+    }
+
+    private static final class TermCount {
+        final String term;
+        int documents;
+
+        TermCount(String term) {
+            this.term = term;
+        }
+    }
+
+    private static final class DocumentEntry {
+        // Termini distinti, condivisi con la mappa delle frequenze
+        TermCount[] terms;
+        int titleLength;
+        int contentLength;
+    }
+
+    @Inject
+    TextAnalyzer textAnalyzer;
+
+    private final Map<String, TermCount> documentFrequency = new HashMap<>();
+    private final Map<Long, DocumentEntry> documents = new HashMap<>();
+    private long totalTitleLength;
+    private long totalContentLength;
+
+    /**
+     * Applica le modifiche alle note: un valore null indica una nota eliminata
+     */
+    public synchronized void apply(Map<Long, Note> changes) {
+        for (Map.Entry<Long, Note> change : changes.entrySet()) {
+            DocumentEntry previous = documents.remove(change.getKey());
+            if (previous != null) {
+                remove(previous);
+            }
+            Note note = change.getValue();
+            if (note != null) {
+                documents.put(change.getKey(), add(note.title, note.content));
+            }
+        }
+    }
+
+    public synchronized Snapshot snapshot(Collection<String> terms) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String term : terms) {
+            TermCount count = documentFrequency.get(term);
+            frequencies.put(term, count != null ? count.documents : 0);
+        }
+        long count = documents.size();
+        return new Snapshot(count,
+                count > 0 ? (double) totalTitleLength / count : 0,
+                count > 0 ? (double) totalContentLength / count : 0,
+                frequencies);
+    }
+
+    public synchronized void clear() {
+        documentFrequency.clear();
+        documents.clear();
+        totalTitleLength = 0;
+        totalContentLength = 0;
+    }
+
+    private DocumentEntry add(String title, String content) {
+        List<String> titleTerms = textAnalyzer.terms(title);
+        List<String> contentTerms = textAnalyzer.terms(content);
+        Set<String> distinct = new LinkedHashSet<>(titleTerms);
+        distinct.addAll(contentTerms);
+
+        DocumentEntry entry = new DocumentEntry();
+        entry.terms = new TermCount[distinct.size()];
+        int i = 0;
+        for (String term : distinct) {
+            TermCount count = documentFrequency.computeIfAbsent(term, TermCount::new);
+            count.documents++;
+            entry.terms[i++] = count;
+        }
+        entry.titleLength = titleTerms.size();
+        entry.contentLength = contentTerms.size();
+        totalTitleLength += entry.titleLength;
+        totalContentLength += entry.contentLength;
+        return entry;
+    }
+
+    private void remove(DocumentEntry entry) {
+        for (TermCount count : entry.terms) {
+            if (--count.documents == 0) {
+                documentFrequency.remove(count.term);
+            }
+        }
+        totalTitleLength -= entry.titleLength;
+        totalContentLength -= entry.contentLength;
+    }
+}
@@ -0,0 +1,34 @@
+package com.unibo.notes.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Suddivisione del testo in parole: sequenze di lettere e cifre, in minuscolo.
+ * Le parole restano leggibili (suggerimenti e dizionario fuzzy); per confrontare
+ * documenti e query si usano i termini di TextAnalyzer.
+ */
+public final class Terms {
+
+    private Terms() {
+    }
+
+    public static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean letter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                terms.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return terms;
+    }
+}
@@ -0,0 +1,262 @@
+package com.unibo.notes.search;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.apache.lucene.analysis.CharArraySet;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Catena di analisi del testo usata da tutta la ricerca, sia in indicizzazione sia in query:
+ * suddivisione in termini (lettere e cifre), poi una sequenza configurabile di filtri
+ * (notes.search.analysis.filters) applicati sul posto a un buffer di caratteri riusato.
+ * Nessuna regex e nessuna stringa intermedia per termine: gira ad ogni salvataggio di una nota.
+ */
+@ApplicationScoped
+public class TextAnalyzer {
+
+    /**
+     * Filtro di un termine: modifica buffer[0, length) sul posto e restituisce la nuova
+     * lunghezza (mai maggiore), oppure 0 per scartare il termine
+     */
+    @FunctionalInterface
+    public interface Filter {
+        int apply(char[] buffer, int length);
+    }
+
+    /** Riceve i termini analizzati; il buffer viene riusato, va copiato se serve conservarlo */
+    @FunctionalInterface
+    public interface TermConsumer {
+        void accept(char[] buffer, int length, int position);
+    }
+
+    public static final String DEFAULT_FILTERS = "lowercase,ascii-folding,stop-it,stop-en,stem-en,stem-it";
+
+    private static final String[] ITALIAN_STOP_WORDS = {
+            "a", "ad", "al", "alla", "alle", "agli", "ai", "allo", "che", "chi", "con", "da", "dal", "dalla",
+            "dalle", "dai", "dagli", "dallo", "del", "della", "delle", "dei", "degli", "dello", "di", "e", "ed",
+            "gli", "i", "il", "in", "la", "le", "lo", "ma", "ne", "nel", "nella", "nelle", "nei", "negli", "nello",
+            "non", "o", "per", "se", "si", "su", "sul", "sulla", "sulle", "sui", "sugli", "sullo", "tra", "fra",
+            "un", "una", "uno", "è"
+    };
+
+    private static final String[] ENGLISH_STOP_WORDS = {
+            "an", "and", "are", "as", "at", "be", "but", "by", "for", "if", "into", "is", "it", "no", "not",
+            "of", "on", "or", "such", "that", "the", "their", "then", "there", "these", "they", "this", "to",
+            "was", "will", "with"
+    };
+
+    private static final Map<String, Supplier<Filter>> FILTERS = new LinkedHashMap<>();
+
+    static {
+        FILTERS.put("lowercase", () -> TextAnalyzer::lowercase);
+        FILTERS.put("ascii-folding", () -> TextAnalyzer::foldAccents);
+        FILTERS.put("stop-it", () -> stopWords(ITALIAN_STOP_WORDS));
+        FILTERS.put("stop-en", () -> stopWords(ENGLISH_STOP_WORDS));
+        FILTERS.put("stem-en", () -> TextAnalyzer::stemEnglish);
+        FILTERS.put("stem-it", () -> TextAnalyzer::stemItalian);
+    }
+
+    // Lettere latine accentate (U+00C0-U+017F) ridotte alla lettera base; 0 = invariata
+    private static final char[] FOLDING = new char[0x180];
+
+    static {
+        fold("ÀÁÂÃÄÅàáâãäåĀāĂăĄą", 'a');
+        fold("ÇçĆćĈĉĊċČč", 'c');
+        fold("ÐďĎđĐ", 'd');
+        fold("ÈÉÊËèéêëĒēĔĕĖėĘęĚě", 'e');
+        fold("ĜĝĞğĠġĢģ", 'g');
+        fold("ĤĥĦħ", 'h');
+        fold("ÌÍÎÏìíîïĨĩĪīĬĭĮįİı", 'i');
+        fold("Ĵĵ", 'j');
+        fold("Ķķ", 'k');
+        fold("ĹĺĻļĽľĿŀŁł", 'l');
+        fold("ÑñŃńŅņŇň", 'n');
+        fold("ÒÓÔÕÖØòóôõöøŌōŎŏŐő", 'o');
+        fold("ŔŕŖŗŘř", 'r');
+        fold("ŚśŜŝŞşŠš", 's');
+        fold("ŢţŤťŦŧ", 't');
+        fold("ÙÚÛÜùúûüŨũŪūŬŭŮůŰűŲų", 'u');
+        fold("Ŵŵ", 'w');
+        fold("ÝýÿŶŷŸ", 'y');
+        fold("ŹźŻżŽž", 'z');
+    }
+
+    private static void fold(String accented, char base) {
+        for (int i = 0; i < accented.length(); i++) {
+            FOLDING[accented.charAt(i)] = base;
+        }
+    }
+
+    @ConfigProperty(name = "notes.search.analysis.filters", defaultValue = DEFAULT_FILTERS)
+    String filterNames;
+
+    private Filter[] filters;
+
+    public TextAnalyzer() {
+    }
+
+    /** Catena esplicita (test e strumenti), senza configurazione */
+    TextAnalyzer(String filterNames) {
+        this.filterNames = filterNames;
+        init();
+    }
+
+    @PostConstruct
+    void init() {
+        List<Filter> chain = new ArrayList<>();
+        for (String name : filterNames.split(",")) {
+            String trimmed = name.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            Supplier<Filter> filter = FILTERS.get(trimmed);
+            if (filter == null) {
+                throw new IllegalArgumentException("Unknown text analysis filter: " + trimmed
+                        + " (available: " + FILTERS.keySet() + ")");
+            }
+            chain.add(filter.get());
+        }
+        filters = chain.toArray(new Filter[0]);
+    }
+
+    /** Descrizione della catena: se cambia, l'indice full-text va ricostruito */
+    public String signature() {
+        return filterNames.replace(" ", "");
+    }
+
+    /**
+     * Analizza il testo e passa ogni termine al consumer con la sua posizione
+     * (i termini scartati lasciano un buco, così le frasi restano allineate)
+     */
+    public void analyze(CharSequence text, TermConsumer consumer) {
+        if (text == null) {
+            return;
+        }
+        char[] buffer = new char[32];
+        int length = 0;
+        int position = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, length * 2);
+                }
+                buffer[length++] = c;
+            } else if (length > 0) {
+                position++;
+                length = filter(buffer, length);
+                if (length > 0) {
+                    consumer.accept(buffer, length, position);
+                }
+                length = 0;
+            }
+        }
+    }
+
+    /** Termini analizzati come stringhe, per le query e dove servono chiavi di mappa */
+    public List<String> terms(CharSequence text) {
+        List<String> terms = new ArrayList<>();
+        analyze(text, (buffer, length, position) -> terms.add(new String(buffer, 0, length)));
+        return terms;
+    }
+
+    /** Applica i filtri a un termine già separato; 0 se va scartato */
+    int filter(char[] buffer, int length) {
+        for (Filter filter : filters) {
+            length = filter.apply(buffer, length);
+            if (length == 0) {
+                return 0;
+            }
+        }
+        return length;
+    }
+
+    /** Minuscola senza accenti di un singolo carattere (stessa lunghezza: gli offset non cambiano) */
+    public static char normalize(char c) {
+        char lower = Character.toLowerCase(c);
+        return lower < FOLDING.length && FOLDING[lower] != 0 ? FOLDING[lower] : lower;
+    }
+
+    static int lowercase(char[] buffer, int length) {
+        for (int i = 0; i < length; i++) {
+            buffer[i] = Character.toLowerCase(buffer[i]);
+        }
+        return length;
+    }
+
+    static int foldAccents(char[] buffer, int length) {
+        for (int i = 0; i < length; i++) {
+            char c = buffer[i];
+            if (c < FOLDING.length && FOLDING[c] != 0) {
+                buffer[i] = FOLDING[c];
+            }
+        }
+        return length;
+    }
+
+    private static Filter stopWords(String[] words) {
+        // CharArraySet confronta direttamente il buffer, senza creare stringhe; insensibile agli accenti
+        CharArraySet set = new CharArraySet(words.length * 2, true);
+        for (String word : words) {
+            set.add(word);
+            char[] folded = word.toCharArray();
+            foldAccents(folded, folded.length);
+            set.add(folded);
+        }
+        return (buffer, length) -> set.contains(buffer, 0, length) ? 0 : length;
+    }
+
+    /**
+     * Stemmer inglese minimo: solo i plurali (-s, -es, -ies)
+     */
+    static int stemEnglish(char[] s, int length) {
+        if (length < 3 || s[length - 1] != 's') {
+            return length;
+        }
+        switch (s[length - 2]) {
+            case 'u':
+            case 's':
+                return length;
+            case 'e':
+                if (length > 3 && s[length - 3] == 'i' && s[length - 4] != 'a' && s[length - 4] != 'e') {
+                    s[length - 3] = 'y';
+                    return length - 2;
+                }
+                if (s[length - 3] == 'i' || s[length - 3] == 'a' || s[length - 3] == 'o' || s[length - 3] == 'e') {
+                    return length;
+                }
+                return length - 1;
+            default:
+                return length - 1;
+        }
+    }
+
+    /**
+     * Stemmer italiano leggero (Savoy): toglie la vocale finale di genere e numero
+     * ("appunti", "appunto" -> "appunt") sulle parole di almeno 6 lettere
+     */
+    static int stemItalian(char[] s, int length) {
+        if (length < 6) {
+            return length;
+        }
+        char last = s[length - 1];
+        char previous = s[length - 2];
+        switch (last) {
+            case 'e':
+            case 'i':
+                return previous == 'i' || previous == 'h' ? length - 2 : length - 1;
+            case 'a':
+            case 'o':
+                return previous == 'i' ? length - 2 : length - 1;
+            default:
+                return length;
+        }
+    }
+}
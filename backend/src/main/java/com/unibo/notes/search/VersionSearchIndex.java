@@ -0,0 +1,340 @@
+package com.unibo.notes.search;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Indice full-text delle versioni passate (note_versions), separato da quello delle note:
+ * un documento per versione, aggiunto al commit che la crea e rimosso quando la versione
+ * o la nota vengono eliminate. Evita la scansione con LIKE della tabella più grande.
+ */
+@ApplicationScoped
+public class VersionSearchIndex {
+
+    private static final Logger LOGGER = Logger.getLogger(VersionSearchIndex.class.getName());
+
+    static final String ID = "id";
+    static final String NOTE_ID = "noteId";
+    static final String OWNER_ID = "ownerId";
+    static final String VERSION_NUMBER = "versionNumber";
+    static final String CONTENT = "content";
+    // Generazione del documento: a fine ricostruzione restano solo quelli dell'ultima
+    static final String GENERATION = "generation";
+
+    private static final String ANALYSIS_KEY = "analysis";
+    // Voce dei metadati scritta "true" solo dall'ultimo commit prima della chiusura
+    private static final String CLEAN_KEY = "clean";
+    private static final float FUZZY_BOOST = 0.5f;
+
+    /** Versione da indicizzare: valori letti nella transazione, l'entità non serve più dopo il commit */
+    public static final class IndexedVersion {
+        public final Long id;
+        public final Long noteId;
+        public final Long ownerId;
+        public final Long versionNumber;
+        public final String content;
+
+        public IndexedVersion(Long id, Long noteId, Long ownerId, Long versionNumber, String content) {
+            this.id = id;
+            this.noteId = noteId;
+            this.ownerId = ownerId;
+            this.versionNumber = versionNumber;
+            this.content = content;
+        }
+    }
+
+    /** Versioni di una nota che corrispondono alla query, con il punteggio della migliore */
+    public static final class Match {
+        public final double score;
+        public final List<Long> versionNumbers = new ArrayList<>();
+
+        public Match(double score) {
+            this.score = score;
+        }
+    }
+
+    @ConfigProperty(name = "notes.search.mode", defaultValue = "lucene")
+    SearchMode mode;
+
+    @ConfigProperty(name = "notes.search.history.directory", defaultValue = "data/history-index")
+    String indexDirectory;
+
+    @ConfigProperty(name = "notes.search.index.in-memory", defaultValue = "false")
+    boolean inMemory;
+
+    @Inject
+    TextAnalyzer textAnalyzer;
+
+    private boolean analysisChanged;
+    private boolean uncleanShutdown;
+    private Directory directory;
+    private IndexWriter writer;
+    private SearcherManager searcherManager;
+    private volatile String generation = UUID.randomUUID().toString();
+
+    @PostConstruct
+    void open() {
+        if (!isEnabled()) {
+            return;
+        }
+        try {
+            directory = inMemory ? new ByteBuffersDirectory() : FSDirectory.open(Path.of(indexDirectory));
+            writer = new IndexWriter(directory, new IndexWriterConfig(new LuceneTextAnalyzer(textAnalyzer))
+                    .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+
+            String indexedWith = null;
+            String clean = null;
+            Iterable<Map.Entry<String, String>> commitData = writer.getLiveCommitData();
+            if (commitData != null) {
+                for (Map.Entry<String, String> entry : commitData) {
+                    if (ANALYSIS_KEY.equals(entry.getKey())) {
+                        indexedWith = entry.getValue();
+                    }
+                    if (CLEAN_KEY.equals(entry.getKey())) {
+                        clean = entry.getValue();
+                    }
+                }
+            }
+            analysisChanged = writer.getDocStats().numDocs > 0 && !textAnalyzer.signature().equals(indexedWith);
+            // I commit sono periodici: senza chiusura regolare le ultime modifiche possono mancare
+            uncleanShutdown = writer.getDocStats().numDocs > 0 && !"true".equals(clean);
+            writer.setLiveCommitData(commitData(false));
+            writer.commit();
+
+            searcherManager = new SearcherManager(writer, null);
+            LOGGER.info("History index opened at " + (inMemory ? "memory" : indexDirectory)
+                    + " (" + writer.getDocStats().numDocs + " versions)");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open history index", e);
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.setLiveCommitData(commitData(true));
+            writer.commit();
+            searcherManager.close();
+            writer.close();
+            directory.close();
+        } catch (IOException e) {
+            LOGGER.warning("Error closing history index: " + e.getMessage());
+        }
+    }
+
+    /** Attivo con lo stesso modo di ricerca dell'indice delle note */
+    public boolean isEnabled() {
+        return mode == SearchMode.LUCENE;
+    }
+
+    public boolean isEmpty() {
+        return writer.getDocStats().numDocs == 0;
+    }
+
+    public boolean isAnalysisChanged() {
+        return analysisChanged;
+    }
+
+    /**
+     * L'applicazione non ha chiuso l'indice all'ultimo arresto: va riallineato con il database
+     */
+    public boolean isUncleanShutdown() {
+        return uncleanShutdown;
+    }
+
+    private Iterable<Map.Entry<String, String>> commitData(boolean clean) {
+        return Map.of(ANALYSIS_KEY, textAnalyzer.signature(), CLEAN_KEY, Boolean.toString(clean)).entrySet();
+    }
+
+    /**
+     * Aggiunge le nuove versioni e rimuove quelle eliminate (per id o per nota), visibili subito alle ricerche
+     */
+    public void apply(Collection<IndexedVersion> added, Collection<Long> deletedVersionIds,
+                      Collection<Long> deletedNoteIds) {
+        if (!isEnabled() || (added.isEmpty() && deletedVersionIds.isEmpty() && deletedNoteIds.isEmpty())) {
+            return;
+        }
+        try {
+            if (!deletedNoteIds.isEmpty()) {
+                writer.deleteDocuments(new TermInSetQuery(NOTE_ID, toBytes(deletedNoteIds)));
+            }
+            if (!deletedVersionIds.isEmpty()) {
+                writer.deleteDocuments(new TermInSetQuery(ID, toBytes(deletedVersionIds)));
+            }
+            for (IndexedVersion version : added) {
+                // Nota creata ed eliminata nella stessa transazione
+                if (deletedNoteIds.contains(version.noteId) || deletedVersionIds.contains(version.id)) {
+                    continue;
+                }
+                writer.updateDocument(new Term(ID, version.id.toString()), toDocument(version));
+            }
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot update history index", e);
+        }
+    }
+
+    /**
+     * Inizio di una ricostruzione: da qui i documenti scritti, dalla ricostruzione o dalle modifiche
+     * in corso, appartengono a una nuova generazione. Quelli vecchi restano e continuano a servire
+     * le ricerche finché non vengono sostituiti o eliminati da finishRebuild.
+     */
+    public void startRebuild() {
+        generation = UUID.randomUUID().toString();
+    }
+
+    /**
+     * Fine della ricostruzione: elimina i documenti delle generazioni precedenti, cioè quelli che
+     * la ricostruzione non ha riscritto, e salva tutto con un solo commit
+     */
+    public void finishRebuild() {
+        try {
+            writer.deleteDocuments(new BooleanQuery.Builder()
+                    .add(new MatchAllDocsQuery(), Occur.MUST)
+                    .add(new TermQuery(new Term(GENERATION, generation)), Occur.MUST_NOT)
+                    .build());
+            writer.commit();
+            analysisChanged = false;
+            uncleanShutdown = false;
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot finish history index rebuild", e);
+        }
+    }
+
+    /**
+     * Rende persistenti le modifiche: le ricerche le vedono già dopo apply, il commit (con fsync)
+     * viene fatto a intervalli e alla chiusura. Dopo un arresto brusco il mass indexer riallinea l'indice.
+     */
+    public void commit() {
+        if (writer == null || !writer.hasUncommittedChanges()) {
+            return;
+        }
+        try {
+            writer.commit();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot commit history index", e);
+        }
+    }
+
+    /**
+     * Note visibili all'utente con almeno una versione che contiene tutti i termini
+     * (l'ultimo anche come prefisso, o una variante fuzzy), dalla più pertinente.
+     * Vengono considerate al massimo maxHits versioni, trovate entro la scadenza.
+     */
+    public Map<Long, Match> search(Long userId, Collection<Long> sharedNoteIds, String text,
+                                   Map<String, List<String>> variants, int maxHits, SearchDeadline deadline) {
+        List<String> terms = textAnalyzer.terms(text);
+        if (terms.isEmpty()) {
+            return Map.of();
+        }
+
+        BooleanQuery.Builder access = new BooleanQuery.Builder()
+                .add(new TermQuery(new Term(OWNER_ID, userId.toString())), Occur.SHOULD);
+        if (sharedNoteIds != null && !sharedNoteIds.isEmpty()) {
+            access.add(new TermInSetQuery(NOTE_ID, toBytes(sharedNoteIds)), Occur.SHOULD);
+        }
+        BooleanQuery.Builder query = new BooleanQuery.Builder().add(access.build(), Occur.FILTER);
+        for (int i = 0; i < terms.size(); i++) {
+            String term = terms.get(i);
+            BooleanQuery.Builder termQuery = new BooleanQuery.Builder()
+                    .add(new TermQuery(new Term(CONTENT, term)), Occur.SHOULD);
+            if (i == terms.size() - 1) {
+                termQuery.add(new PrefixQuery(new Term(CONTENT, term)), Occur.SHOULD);
+            }
+            for (String variant : variants.getOrDefault(term, List.of())) {
+                termQuery.add(new BoostQuery(new TermQuery(new Term(CONTENT, variant)), FUZZY_BOOST), Occur.SHOULD);
+            }
+            query.add(termQuery.build(), Occur.MUST);
+        }
+
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                IndexSearcher timed = new IndexSearcher(searcher.getIndexReader());
+                timed.setTimeout(deadline);
+                TopDocs topDocs = timed.search(query.build(), maxHits);
+                if (timed.timedOut()) {
+                    deadline.markTimedOut();
+                }
+                StoredFields storedFields = searcher.storedFields();
+                // Ordine della prima (migliore) versione di ogni nota
+                Map<Long, Match> matches = new LinkedHashMap<>();
+                for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+                    Document doc = storedFields.document(scoreDoc.doc);
+                    Long noteId = Long.valueOf(doc.get(NOTE_ID));
+                    matches.computeIfAbsent(noteId, id -> new Match(scoreDoc.score))
+                            .versionNumbers.add(doc.getField(VERSION_NUMBER).numericValue().longValue());
+                }
+                for (Match match : matches.values()) {
+                    match.versionNumbers.sort(null);
+                }
+                return matches;
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("History index query failed", e);
+        }
+    }
+
+    private static List<BytesRef> toBytes(Collection<Long> ids) {
+        List<BytesRef> values = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            values.add(new BytesRef(id.toString()));
+        }
+        return values;
+    }
+
+    private Document toDocument(IndexedVersion version) {
+        Document doc = new Document();
+        doc.add(new StringField(GENERATION, generation, Field.Store.NO));
+        doc.add(new StringField(ID, version.id.toString(), Field.Store.NO));
+        doc.add(new StringField(NOTE_ID, version.noteId.toString(), Field.Store.YES));
+        doc.add(new StringField(OWNER_ID, version.ownerId.toString(), Field.Store.NO));
+        doc.add(new StoredField(VERSION_NUMBER, version.versionNumber));
+        doc.add(new TextField(CONTENT, version.content, Field.Store.NO));
+        return doc;
+    }
+}
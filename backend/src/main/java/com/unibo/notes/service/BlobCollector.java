@@ -0,0 +1,82 @@
+package com.unibo.notes.service;
+
+import com.unibo.notes.repository.ContentBlobRepository;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Manutenzione periodica dei blob di contenuto delle versioni, su un thread in background:
+ * sposta nei blob gli snapshot salvati in linea prima dei blob (a blocchi) ed elimina i blob
+ * rimasti senza riferimenti.
+ */
+@ApplicationScoped
+public class BlobCollector {
+
+    private static final Logger LOGGER = Logger.getLogger(BlobCollector.class.getName());
+
+    @Inject
+    VersionStorage versionStorage;
+
+    @Inject
+    ContentBlobRepository blobRepository;
+
+    @ConfigProperty(name = "notes.versions.blobs.collect-interval-seconds", defaultValue = "300")
+    long intervalSeconds;
+
+    @ConfigProperty(name = "notes.versions.blobs.batch-size", defaultValue = "500")
+    int batchSize;
+
+    private ScheduledExecutorService executor;
+
+    void onStart(@Observes StartupEvent event) {
+        if (intervalSeconds <= 0) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "blob-collector");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::run, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    void run() {
+        try {
+            int moved = moveInlineSnapshots();
+            int collected = collect();
+            if (moved > 0 || collected > 0) {
+                LOGGER.info("Content blobs: " + moved + " versions moved, " + collected + " blobs collected");
+            }
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Content blob collection failed", e);
+        }
+    }
+
+    @Transactional
+    public int moveInlineSnapshots() {
+        return versionStorage.moveInlineSnapshots(batchSize);
+    }
+
+    @Transactional
+    public int collect() {
+        return blobRepository.deleteUnreferenced();
+    }
+}
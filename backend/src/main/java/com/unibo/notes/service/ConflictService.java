@@ -7,7 +7,7 @@ import com.unibo.notes.exception.ConflictException;
 import com.unibo.notes.exception.ResourceNotFoundException;
 import com.unibo.notes.exception.UnauthorizedException;
 import com.unibo.notes.repository.NoteRepository;
-import com.unibo.notes.repository.NoteVersionRepository;
+import com.unibo.notes.search.NoteIndexer;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
@@ -23,7 +23,7 @@ public class ConflictService {
     NoteRepository noteRepository;
 
     @Inject
-    NoteVersionRepository versionRepository;
+    VersionStorage versionStorage;
 
     @Inject
     PermissionService permissionService;
@@ -31,6 +31,9 @@ public class ConflictService {
     @Inject
     UserService userService;
 
+    @Inject
+    NoteIndexer noteIndexer;
+
     /**
      * Rileva se c'è un conflitto prima di salvare
      */
@@ -103,6 +106,7 @@ public class ConflictService {
 
                 // Salva nuova versione
                 saveVersion(note, userId);
+                noteIndexer.reindex(note);
                 break;
 
             case "MERGE":
@@ -119,6 +123,7 @@ public class ConflictService {
 
                 // Salva nuova versione
                 saveVersion(note, userId);
+                noteIndexer.reindex(note);
                 break;
 
             default:
@@ -189,11 +194,7 @@ public class ConflictService {
     }
 
     private void saveVersion(Note note, Long userId) {
-        NoteVersion version = new NoteVersion();
-        version.noteId = note.id;
-        version.content = note.content;
-        version.versionNumber = versionRepository.getNextVersionNumber(note.id);
-        version.modifiedBy = userId;
-        versionRepository.persist(version);
+        NoteVersion version = versionStorage.save(note, note.nextVersionNumber(), userId);
+        noteIndexer.versionSaved(note, version);
     }
 }
\ No newline at end of file
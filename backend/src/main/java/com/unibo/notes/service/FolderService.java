@@ -7,11 +7,13 @@ import com.unibo.notes.exception.ResourceNotFoundException;
 import com.unibo.notes.exception.ValidationException;
 import com.unibo.notes.repository.FolderRepository;
 import com.unibo.notes.repository.NoteRepository;
+import com.unibo.notes.search.NoteIndexer;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 
 import java.util.List;
+import java.util.Map;
 
 @ApplicationScoped
 public class FolderService {
@@ -25,6 +27,9 @@ public class FolderService {
     @Inject
     UserService userService;
 
+    @Inject
+    NoteIndexer noteIndexer;
+
     public List<Folder> getRootFolders(Long userId) {
         return folderRepository.findRootFoldersByOwnerId(userId);
     }
@@ -72,12 +77,14 @@ public class FolderService {
         }
 
         folderRepository.persist(folder);
+        noteIndexer.folderChanged(userId, null, folder.name);
         return folder;
     }
 
     @Transactional
     public Folder updateFolder(Long folderId, String name, String description, Long userId) {
         Folder folder = getFolderById(folderId, userId);
+        String oldName = folder.name;
 
         if (name != null && !name.trim().isEmpty()) {
             if (!name.equals(folder.name) && folderRepository.existsByNameAndOwner(name, userId)) {
@@ -91,6 +98,9 @@ public class FolderService {
         }
 
         folderRepository.persist(folder);
+        if (!folder.name.equals(oldName)) {
+            noteIndexer.folderChanged(userId, oldName, folder.name);
+        }
         return folder;
     }
 
@@ -110,6 +120,7 @@ public class FolderService {
         }
 
         folderRepository.delete(folder);
+        noteIndexer.folderChanged(userId, folder.name, null);
     }
 
     public long countNotesByFolder(Long folderId, Long userId) {
@@ -119,4 +130,11 @@ public class FolderService {
         // Conta solo le note dell'utente in questa cartella
         return noteRepository.count("folder.id = ?1 and owner.id = ?2", folderId, userId);
     }
+
+    /**
+     * Conteggio delle note per una lista di cartelle già verificate (dell'utente)
+     */
+    public Map<Long, Long> countNotesByFolders(List<Folder> folders, Long userId) {
+        return folderRepository.countNotesByFolders(folders.stream().map(folder -> folder.id).toList(), userId);
+    }
 }
\ No newline at end of file
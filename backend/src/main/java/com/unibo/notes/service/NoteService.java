@@ -2,6 +2,8 @@ package com.unibo.notes.service;
 
 import com.unibo.notes.entity.User;
 import com.unibo.notes.dto.CreateNoteRequest;
+import com.unibo.notes.dto.SearchCriteria;
+import com.unibo.notes.dto.SearchFacets;
 import com.unibo.notes.dto.UpdateNoteRequest;
 import com.unibo.notes.entity.Folder;
 import com.unibo.notes.entity.Note;
@@ -11,19 +13,47 @@ import com.unibo.notes.exception.ResourceNotFoundException;
 import com.unibo.notes.exception.UnauthorizedException;
 import com.unibo.notes.exception.ValidationException;
 import com.unibo.notes.repository.FolderRepository;
+import com.unibo.notes.repository.NoteDTOPage;
+import com.unibo.notes.repository.NotePage;
 import com.unibo.notes.repository.NoteRepository;
-import com.unibo.notes.repository.NoteVersionRepository;
+import com.unibo.notes.repository.NotePermissionRepository;
+import com.unibo.notes.search.Bm25Ranker;
+import com.unibo.notes.search.NoteIndexer;
+import com.unibo.notes.search.NoteSearchIndex;
+import com.unibo.notes.search.SearchCache;
+import com.unibo.notes.search.SearchQuery;
+import com.unibo.notes.search.SearchTrace;
+import com.unibo.notes.search.SuggestionIndex;
+import com.unibo.notes.search.Terms;
+import com.unibo.notes.search.TextAnalyzer;
+import com.unibo.notes.search.VersionSearchIndex;
+import com.unibo.notes.util.PageCursor;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import jakarta.persistence.PersistenceException;
 import jakarta.transaction.Transactional;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.engine.spi.SessionImplementor;
 import com.unibo.notes.dto.NoteStatsDTO;
-import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections; // Import necessario per getAllTags
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
 
 @ApplicationScoped
 public class NoteService {
 
+    // Varianti fuzzy considerate per ogni termine della keyword
+    private static final int MAX_FUZZY_VARIANTS = 10;
+
     @Inject
     NoteRepository noteRepository;
 
@@ -31,7 +61,7 @@ public class NoteService {
     FolderRepository folderRepository;
 
     @Inject
-    NoteVersionRepository versionRepository;
+    VersionStorage versionStorage;
 
     @Inject
     UserService userService;
@@ -39,16 +69,52 @@ public class NoteService {
     @Inject
     PermissionService permissionService;
 
+    @Inject
+    NotePermissionRepository notePermissionRepository;
+
+    @Inject
+    NoteSearchIndex searchIndex;
+
+    @Inject
+    VersionSearchIndex versionIndex;
+
+    @Inject
+    NoteIndexer noteIndexer;
+
+    @Inject
+    Bm25Ranker ranker;
+
+    @Inject
+    SearchCache searchCache;
+
+    @Inject
+    SuggestionIndex suggestionIndex;
+
+    @Inject
+    TextAnalyzer textAnalyzer;
+
+    @ConfigProperty(name = "notes.search.max-hits", defaultValue = "1000")
+    int maxSearchHits;
+
     public List<Note> getAllNotesByUser(Long userId) {
         return noteRepository.findByOwnerId(userId);
     }
 
-    public List<Note> getNotesByFolder(Long folderId, Long userId) {
-        // Verifica che la cartella appartenga all'utente
-        Folder folder = folderRepository.findByIdAndOwner(folderId, userId)
-                .orElseThrow(() -> new ResourceNotFoundException("Folder", "id", folderId));
+    /**
+     * Pagina delle note dell'utente (tutte o di una cartella), dalla più recente, già convertita in DTO
+     * da una query di proiezione (liste in sola lettura)
+     */
+    public NoteDTOPage listNotes(Long userId, Long folderId, PageCursor after, int limit) {
+        if (folderId != null) {
+            // Verifica che la cartella appartenga all'utente
+            folderRepository.findByIdAndOwner(folderId, userId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Folder", "id", folderId));
+        }
+        return noteRepository.findDTOPageByOwnerId(userId, folderId, after, limit);
+    }
 
-        return noteRepository.list("folder.id = ?1 and owner.id = ?2", folderId, userId);
+    public long countNotes(Long userId, Long folderId) {
+        return noteRepository.countByOwnerAndFolder(userId, folderId);
     }
 
     public Note getNoteById(Long noteId, Long userId) {
@@ -90,10 +156,13 @@ public class NoteService {
             note.folder = folder;
         }
 
+        // Il numero della prima versione entra nell'INSERT della nota
+        long firstVersion = note.nextVersionNumber();
         noteRepository.persist(note);
 
         // Crea prima versione
-        saveVersion(note, userId);
+        saveVersion(note, firstVersion, userId);
+        noteIndexer.reindex(note);
 
         return note;
     }
@@ -139,7 +208,8 @@ public class NoteService {
         noteRepository.persist(note);
 
         // Salva nuova versione
-        saveVersion(note, userId);
+        saveVersion(note, note.nextVersionNumber(), userId);
+        noteIndexer.reindex(note);
 
         return note;
     }
@@ -154,6 +224,7 @@ public class NoteService {
             throw new UnauthorizedException("Only the owner can delete this note");
         }
 
+        noteIndexer.remove(note);
         noteRepository.delete(note);
     }
 
@@ -175,6 +246,7 @@ public class NoteService {
         }
 
         noteRepository.persist(note);
+        noteIndexer.reindex(note);
         return note;
     }
 
@@ -198,34 +270,480 @@ public class NoteService {
         copy.lastModifiedBy = userId;
 
         // Persiste la copia e forza l’assegnazione dell’ID
+        long firstVersion = copy.nextVersionNumber();
         noteRepository.persistAndFlush(copy);
 
         // Salva la prima versione della copia
-        saveVersion(copy, userId);
+        saveVersion(copy, firstVersion, userId);
+        noteIndexer.reindex(copy);
 
         return copy;
     }
 
-    public List<Note> searchNotes(String keyword, Long userId) {
-        return noteRepository.searchByContent(keyword, userId);
+    public NotePage searchNotesPage(String keyword, Long userId, PageCursor after, int limit) {
+        return noteRepository.searchByContent(keyword, userId, after, limit);
+    }
+
+    public long countSearchNotes(String keyword, Long userId) {
+        return noteRepository.countSearchByContent(keyword, userId);
+    }
+
+    public NotePage advancedSearch(SearchCriteria criteria) {
+        startSearch(criteria);
+        return cancellable(criteria, () -> cachedSearch(criteria));
+    }
+
+    private NotePage cachedSearch(SearchCriteria criteria) {
+        if (!searchCache.isEnabled()) {
+            return executeWithinDeadline(criteria);
+        }
+
+        SearchCache.CachedPage cached = searchCache.get(criteria);
+        criteria.trace.plan("cache", cached != null ? "hit" : "miss");
+        if (cached != null) {
+            criteria.truncated = cached.truncated;
+            List<Note> notes = criteria.trace.time(SearchTrace.Stage.HYDRATION, () -> loadInOrder(cached.noteIds));
+            return new NotePage(notes, cached.nextCursor, cached.scores, cached.versions);
+        }
+
+        // Generazione letta prima della ricerca: se nel frattempo arriva una modifica il risultato non viene salvato
+        long generation = searchCache.generation(criteria.userId);
+        NotePage page = executeWithinDeadline(criteria);
+        if (criteria.deadline.isTimedOut()) {
+            // Risultati parziali: non vanno in cache
+            return page;
+        }
+        List<Long> noteIds = new ArrayList<>(page.notes.size());
+        for (Note note : page.notes) {
+            noteIds.add(note.id);
+        }
+        searchCache.put(criteria, generation,
+                new SearchCache.CachedPage(noteIds, page.scores, page.nextCursor, page.versions, criteria.truncated));
+        return page;
     }
 
-    public List<Note> advancedSearch(Long userId, String keyword, String author,
-                                      Long folderId, LocalDateTime createdFrom,
-                                      LocalDateTime createdTo, LocalDateTime modifiedFrom,
-                                      LocalDateTime modifiedTo, boolean includeShared) {
-        return noteRepository.advancedSearch(userId, keyword, author, folderId,
-                createdFrom, createdTo, modifiedFrom, modifiedTo, includeShared);
+    /**
+     * Risultati per lo streaming, letti a blocchi con next(cursore). Fuori dalla cache, dove ogni blocco
+     * sarebbe una voce usata una volta sola; per la rilevanza la classifica completa viene calcolata
+     * al primo blocco e i successivi ne sono fette, invece di rieseguire il ranking ad ogni blocco.
+     */
+    public SearchStream streamSearch(SearchCriteria criteria) {
+        return new SearchStream(criteria);
     }
 
-    private void saveVersion(Note note, Long userId) {
-        NoteVersion version = new NoteVersion();
-        version.noteId = note.id;
-        version.content = note.content;
-        version.versionNumber = versionRepository.getNextVersionNumber(note.id);
-        version.modifiedBy = userId;
+    public final class SearchStream {
+        private final SearchCriteria criteria;
+        private Ranking ranking;
+
+        private SearchStream(SearchCriteria criteria) {
+            this.criteria = criteria;
+        }
+
+        public NotePage next(PageCursor after) {
+            criteria.after = after;
+            startSearch(criteria);
+            return cancellable(criteria, () -> {
+                if (!criteria.isRanked()) {
+                    return executeWithinDeadline(criteria);
+                }
+                if (ranking == null) {
+                    ranking = rank(criteria, Integer.MAX_VALUE);
+                }
+                return rankedPage(criteria, ranking);
+            });
+        }
+    }
+
+    private void startSearch(SearchCriteria criteria) {
+        if (criteria.after != null && criteria.after.isOffset() != criteria.isRanked()) {
+            throw new ValidationException("Invalid cursor");
+        }
+        prepareQuery(criteria);
+    }
+
+    /**
+     * Alla disconnessione del client la query in corso su questa sessione viene annullata dal database.
+     * L'azione vale solo per questa ricerca (o questo blocco dello stream): il blocco successivo
+     * la sostituisce con la propria sessione
+     */
+    private NotePage cancellable(SearchCriteria criteria, Supplier<NotePage> search) {
+        SessionImplementor session = noteRepository.getEntityManager().unwrap(SessionImplementor.class);
+        Runnable cancel = () -> session.getJdbcCoordinator().cancelLastQuery();
+        criteria.deadline.onCancel(cancel);
+        try {
+            return search.get();
+        } finally {
+            criteria.deadline.clearCancel(cancel);
+        }
+    }
+
+    // Query interrotta dal timeout JDBC o annullata: il database non restituisce righe parziali,
+    // quindi pagina vuota segnata come parziale (con l'indice Lucene arrivano invece i risultati già trovati)
+    private NotePage executeWithinDeadline(SearchCriteria criteria) {
+        try {
+            return executeSearch(criteria);
+        } catch (PersistenceException e) {
+            if (!criteria.deadline.isExpired()) {
+                throw e;
+            }
+            criteria.deadline.markTimedOut();
+            return new NotePage(List.of(), null, criteria.isRanked() ? Map.of() : null,
+                    criteria.history ? Map.of() : null);
+        }
+    }
+
+    private NotePage executeSearch(SearchCriteria criteria) {
+        SearchTrace trace = criteria.trace;
+        if (criteria.history) {
+            trace.plan("path", "history");
+            return historySearch(criteria);
+        }
+        if (criteria.isRanked()) {
+            trace.plan("path", "ranked");
+            return rankedSearch(criteria);
+        }
+        if (!criteria.hasKeyword() || !searchIndex.isEnabled()) {
+            trace.plan("path", "keyset");
+            return trace.time(SearchTrace.Stage.QUERY, () -> noteRepository.advancedSearch(criteria, null));
+        }
+
+        // La keyword viene risolta dall'indice: il database carica solo i migliori risultati
+        trace.plan("path", "index+keyset");
+        Set<Long> hits = indexHits(criteria).keySet();
+        if (hits.isEmpty()) {
+            return new NotePage(List.of(), null);
+        }
+        return trace.time(SearchTrace.Stage.QUERY, () -> noteRepository.advancedSearch(criteria, hits));
+    }
+
+    /**
+     * Totale dei risultati di una ricerca, calcolato solo su richiesta del client
+     */
+    public long countSearch(SearchCriteria criteria) {
+        prepareQuery(criteria);
+        if (criteria.history) {
+            Map<Long, VersionSearchIndex.Match> matches = historyHits(criteria);
+            return matches.isEmpty() ? 0 : noteRepository.countAdvancedSearch(criteria, matches.keySet());
+        }
+        if (!criteria.hasKeyword() || !searchIndex.isEnabled()) {
+            return noteRepository.countAdvancedSearch(criteria, null);
+        }
+
+        Set<Long> hits = indexHits(criteria).keySet();
+        if (hits.isEmpty()) {
+            return 0;
+        }
+        return noteRepository.countAdvancedSearch(criteria, hits);
+    }
+
+    /**
+     * Faccette della ricerca (cartelle, autori, mesi): un conteggio raggruppato per dimensione,
+     * in cache con i filtri della ricerca perché non cambiano tra pagine e ordinamenti
+     */
+    public SearchFacets searchFacets(SearchCriteria criteria) {
+        prepareQuery(criteria);
+        if (!searchCache.isEnabled()) {
+            return computeFacets(criteria);
+        }
+        SearchFacets cached = searchCache.getFacets(criteria);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = searchCache.generation(criteria.userId);
+        SearchFacets facets = computeFacets(criteria);
+        if (!criteria.deadline.isTimedOut()) {
+            searchCache.putFacets(criteria, generation, facets);
+        }
+        return facets;
+    }
+
+    private SearchFacets computeFacets(SearchCriteria criteria) {
+        Collection<Long> hits = null;
+        if (criteria.history) {
+            hits = historyHits(criteria).keySet();
+        } else if (criteria.hasKeyword() && searchIndex.isEnabled()) {
+            hits = indexHits(criteria).keySet();
+        }
+        SearchFacets facets = new SearchFacets();
+        if (hits != null && hits.isEmpty()) {
+            return facets;
+        }
+
+        for (Object[] row : noteRepository.searchFacetCounts(criteria, hits, NoteRepository.Facet.FOLDER)) {
+            facets.folders.add(new SearchFacets.Count(row[0] != null ? row[0].toString() : null, (String) row[1],
+                    ((Number) row[2]).longValue()));
+        }
+        for (Object[] row : noteRepository.searchFacetCounts(criteria, hits, NoteRepository.Facet.AUTHOR)) {
+            facets.authors.add(new SearchFacets.Count(row[0].toString(), (String) row[1], ((Number) row[2]).longValue()));
+        }
+        for (Object[] row : noteRepository.searchFacetCounts(criteria, hits, NoteRepository.Facet.MONTH)) {
+            String month = String.format("%04d-%02d", ((Number) row[0]).intValue(), ((Number) row[1]).intValue());
+            facets.months.add(new SearchFacets.Count(month, month, ((Number) row[2]).longValue()));
+        }
+        sortFacets(facets.folders);
+        sortFacets(facets.authors);
+        sortFacets(facets.months);
+        return facets;
+    }
+
+    private static void sortFacets(List<SearchFacets.Count> facets) {
+        facets.sort(Comparator.comparingLong((SearchFacets.Count facet) -> facet.count).reversed()
+                .thenComparing(facet -> facet.label, Comparator.nullsLast(Comparator.naturalOrder())));
+    }
+
+    // Classifica completa di una ricerca per rilevanza: id in ordine con il punteggio e,
+    // per scope=history, le versioni in cui la nota è stata trovata
+    private static final class Ranking {
+        final Map<Long, Double> scores = new LinkedHashMap<>();
+        final Map<Long, List<Long>> versions;
+
+        Ranking(boolean history) {
+            this.versions = history ? new HashMap<>() : null;
+        }
+    }
+
+    /**
+     * Ricerca ordinata per rilevanza: solo la pagina richiesta viene caricata come entità
+     */
+    private NotePage rankedSearch(SearchCriteria criteria) {
+        int offset = criteria.after != null ? criteria.after.offset : 0;
+        return rankedPage(criteria, rank(criteria, offset + criteria.limit + 1));
+    }
+
+    /**
+     * Con l'indice le note arrivano già ordinate con il loro punteggio BM25 e il database applica solo
+     * i filtri restanti; senza indice i candidati (al massimo maxSearchHits, i più recenti) vengono
+     * valutati qui con BM25, tenendo i primi needed. Per scope=history ordine e punteggio sono
+     * quelli dell'indice delle versioni.
+     */
+    private Ranking rank(SearchCriteria criteria, int needed) {
+        SearchTrace trace = criteria.trace;
+        Ranking ranking = new Ranking(criteria.history);
+        if (criteria.history) {
+            Map<Long, VersionSearchIndex.Match> matches = historyHits(criteria);
+            if (matches.isEmpty()) {
+                return ranking;
+            }
+            Set<Long> visible = trace.time(SearchTrace.Stage.QUERY,
+                    () -> new HashSet<>(noteRepository.advancedSearchIds(criteria, matches.keySet(), maxSearchHits)));
+            matches.forEach((id, match) -> {
+                if (visible.contains(id)) {
+                    ranking.scores.put(id, match.score);
+                    ranking.versions.put(id, match.versionNumbers);
+                }
+            });
+            return ranking;
+        }
+
+        if (searchIndex.isEnabled()) {
+            Map<Long, Double> hits = indexHits(criteria);
+            if (hits.isEmpty()) {
+                return ranking;
+            }
+            Set<Long> visible = trace.time(SearchTrace.Stage.QUERY,
+                    () -> new HashSet<>(noteRepository.advancedSearchIds(criteria, hits.keySet(), maxSearchHits)));
+            hits.forEach((id, score) -> {
+                if (visible.contains(id)) {
+                    ranking.scores.put(id, score);
+                }
+            });
+            trace.plan("candidates", ranking.scores.size());
+            return ranking;
+        }
+
+        List<Long> candidateIds = trace.time(SearchTrace.Stage.QUERY,
+                () -> noteRepository.advancedSearchIds(criteria, null, maxSearchHits));
+        trace.plan("candidates", candidateIds.size());
+        if (candidateIds.isEmpty()) {
+            return ranking;
+        }
+        List<Bm25Ranker.Candidate> candidates = trace.time(SearchTrace.Stage.QUERY, () -> {
+            List<Bm25Ranker.Candidate> texts = new ArrayList<>(candidateIds.size());
+            for (Object[] row : noteRepository.findSearchTexts(candidateIds)) {
+                texts.add(new Bm25Ranker.Candidate((Long) row[0], (String) row[1], (String) row[2]));
+            }
+            return texts;
+        });
+        List<Bm25Ranker.ScoredNote> ranked = trace.time(SearchTrace.Stage.RANKING, () -> ranker.top(
+                ranker.compile(criteria.rankingText(), criteria.variants), candidates, needed));
+        for (Bm25Ranker.ScoredNote scored : ranked) {
+            ranking.scores.put(scored.id, scored.score);
+        }
+        return ranking;
+    }
+
+    // Pagina della classifica a partire dall'offset del cursore
+    private NotePage rankedPage(SearchCriteria criteria, Ranking ranking) {
+        int offset = criteria.after != null ? criteria.after.offset : 0;
+        List<Long> ranked = new ArrayList<>(ranking.scores.keySet());
+        if (ranked.size() <= offset) {
+            return new NotePage(List.of(), null, Map.of(), ranking.versions != null ? Map.of() : null);
+        }
+
+        int end = Math.min(ranked.size(), offset + criteria.limit);
+        Map<Long, Double> scores = new LinkedHashMap<>();
+        Map<Long, List<Long>> versions = ranking.versions != null ? new HashMap<>() : null;
+        for (Long id : ranked.subList(offset, end)) {
+            scores.put(id, ranking.scores.get(id));
+            if (versions != null) {
+                versions.put(id, ranking.versions.get(id));
+            }
+        }
+
+        List<Note> notes = criteria.trace.time(SearchTrace.Stage.HYDRATION, () -> loadInOrder(scores.keySet()));
+        String nextCursor = ranked.size() > end ? PageCursor.ofOffset(end).encode() : null;
+        return new NotePage(notes, nextCursor, scores, versions);
+    }
+
+    /**
+     * scope=history: la keyword (per una query strutturata, i termini non negati) viene cercata
+     * nelle versioni passate; cartella, autore e date filtrano la nota nel suo stato attuale
+     */
+    private NotePage historySearch(SearchCriteria criteria) {
+        if (criteria.isRanked()) {
+            return rankedSearch(criteria);
+        }
+        SearchTrace trace = criteria.trace;
+        Map<Long, VersionSearchIndex.Match> matches = historyHits(criteria);
+        if (matches.isEmpty()) {
+            return new NotePage(List.of(), null, null, Map.of());
+        }
+
+        NotePage page = trace.time(SearchTrace.Stage.QUERY, () -> noteRepository.advancedSearch(criteria, matches.keySet()));
+        Map<Long, List<Long>> versions = new HashMap<>();
+        for (Note note : page.notes) {
+            versions.put(note.id, matches.get(note.id).versionNumbers);
+        }
+        return new NotePage(page.notes, page.nextCursor, page.scores, versions);
+    }
+
+    private Map<Long, VersionSearchIndex.Match> historyHits(SearchCriteria criteria) {
+        if (!criteria.hasKeyword()) {
+            throw new ValidationException("scope=history requires a query");
+        }
+        if (versionIndex.isEnabled()) {
+            List<Long> sharedNoteIds = sharedNoteIds(criteria);
+            Map<Long, VersionSearchIndex.Match> matches = criteria.trace.time(SearchTrace.Stage.QUERY,
+                    () -> versionIndex.search(criteria.userId, sharedNoteIds, criteria.rankingText(),
+                            criteria.variants, maxSearchHits, criteria.deadline));
+            criteria.trace.plan("historyHits", matches.size());
+            return matches;
+        }
+        // Senza indice (notes.search.mode diverso da lucene): scansione delle versioni delle note visibili
+        Map<Long, VersionSearchIndex.Match> matches = criteria.trace.time(SearchTrace.Stage.QUERY, () -> {
+            Map<Long, VersionSearchIndex.Match> scanned = new LinkedHashMap<>();
+            for (Object[] row : versionStorage.searchContent(criteria.userId, criteria.includeShared,
+                    Terms.tokenize(criteria.rankingText()), maxSearchHits)) {
+                scanned.computeIfAbsent((Long) row[0], id -> new VersionSearchIndex.Match(1.0))
+                        .versionNumbers.add((Long) row[1]);
+            }
+            return scanned;
+        });
+        matches.values().forEach(match -> match.versionNumbers.sort(null));
+        criteria.trace.plan("historyHits", matches.size());
+        return matches;
+    }
+
+    // Carica le note per id mantenendo l'ordine dato (le note eliminate vengono saltate)
+    private List<Note> loadInOrder(Collection<Long> noteIds) {
+        if (noteIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, Note> loaded = new HashMap<>();
+        for (Note note : noteRepository.findByIdsWithOwnerAndFolder(noteIds)) {
+            loaded.put(note.id, note);
+        }
+        List<Note> notes = new ArrayList<>(noteIds.size());
+        for (Long id : noteIds) {
+            Note note = loaded.get(id);
+            if (note != null) {
+                notes.add(note);
+            }
+        }
+        return notes;
+    }
+
+    private void prepareQuery(SearchCriteria criteria) {
+        if (criteria.query != null) {
+            resolveBindings(criteria);
+        } else {
+            resolveVariants(criteria);
+        }
+    }
+
+    /**
+     * L'indice conosce solo gli id: i nomi di folder: e author: vengono risolti una volta per richiesta
+     */
+    private void resolveBindings(SearchCriteria criteria) {
+        if (!searchIndex.isEnabled() || criteria.bindings != null) {
+            return;
+        }
+        Map<String, List<Long>> folders = new HashMap<>();
+        for (String name : criteria.query.folderNames()) {
+            folders.put(name, noteRepository.findVisibleFolderIds(criteria.userId, name));
+        }
+        Map<String, List<Long>> authors = new HashMap<>();
+        for (String name : criteria.query.authorNames()) {
+            authors.put(name, noteRepository.findVisibleOwnerIds(criteria.userId, name));
+        }
+        criteria.bindings = new SearchQuery.Bindings(folders, authors);
+    }
+
+    /**
+     * Ricerca fuzzy: le varianti dei termini vengono dal dizionario in memoria dell'utente,
+     * percorso con un automa di Levenshtein, e non da un confronto con ogni nota
+     */
+    private void resolveVariants(SearchCriteria criteria) {
+        if (criteria.fuzzy <= 0 || !criteria.hasKeyword()) {
+            return;
+        }
+        Map<String, List<String>> variants = new LinkedHashMap<>();
+        Set<String> surfaceVariants = new LinkedHashSet<>();
+        for (String term : Terms.tokenize(criteria.keyword)) {
+            // Il dizionario contiene parole leggibili; ranking e indice usano i termini analizzati
+            List<String> analyzed = textAnalyzer.terms(term);
+            if (analyzed.isEmpty()) {
+                continue;
+            }
+            String key = analyzed.get(0);
+            Set<String> stems = new LinkedHashSet<>();
+            for (String match : suggestionIndex.fuzzyTerms(criteria.userId, term, criteria.fuzzy, MAX_FUZZY_VARIANTS)) {
+                stems.addAll(textAnalyzer.terms(match));
+                surfaceVariants.add(match);
+            }
+            stems.remove(key);
+            if (!stems.isEmpty()) {
+                variants.merge(key, List.copyOf(stems), (a, b) -> a);
+            }
+        }
+        criteria.variants = variants;
+        criteria.surfaceVariants = List.copyOf(surfaceVariants);
+    }
+
+    private List<Long> sharedNoteIds(SearchCriteria criteria) {
+        if (!criteria.includeShared) {
+            return List.of();
+        }
+        return criteria.trace.time(SearchTrace.Stage.PERMISSIONS,
+                () -> notePermissionRepository.findNoteIdsByUserId(criteria.userId));
+    }
+
+    private Map<Long, Double> indexHits(SearchCriteria criteria) {
+        List<Long> sharedNoteIds = sharedNoteIds(criteria);
+        Map<Long, Double> hits = criteria.trace.time(SearchTrace.Stage.QUERY, () -> criteria.query != null
+                ? searchIndex.search(criteria.userId, sharedNoteIds, criteria.query, criteria.bindings,
+                        criteria.folderId, criteria.createdFrom, criteria.createdTo, criteria.modifiedFrom,
+                        criteria.modifiedTo, maxSearchHits, criteria.deadline)
+                : searchIndex.search(criteria.userId, sharedNoteIds, criteria.keyword, criteria.variants,
+                        criteria.folderId, criteria.createdFrom, criteria.createdTo, criteria.modifiedFrom,
+                        criteria.modifiedTo, maxSearchHits, criteria.deadline));
+        criteria.trace.plan("indexHits", hits.size());
+        return hits;
+    }
 
-        versionRepository.persist(version);
+    private void saveVersion(Note note, long versionNumber, Long userId) {
+        NoteVersion version = versionStorage.save(note, versionNumber, userId);
+        noteIndexer.versionSaved(note, version);
     }
 
     @Transactional
@@ -235,7 +753,7 @@ public class NoteService {
             long count = noteRepository.count("owner.id = ?1", userId);
 
             // Conta le note condivise con l'utente
-            long sharedCount = permissionService.getSharedNotes(userId).size();
+            long sharedCount = permissionService.countSharedNotes(userId);
 
             // Log di debug (utile se controlli i log del backend)
             System.out.println("Stats request for user " + userId + ": found " + count + " notes, " + sharedCount + " shared");
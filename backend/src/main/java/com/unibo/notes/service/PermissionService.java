@@ -10,51 +10,104 @@ import com.unibo.notes.exception.ConflictException;
 import com.unibo.notes.exception.ResourceNotFoundException;
 import com.unibo.notes.exception.UnauthorizedException;
 import com.unibo.notes.exception.ValidationException;
+import com.unibo.notes.repository.NoteDTOPage;
 import com.unibo.notes.repository.NotePermissionRepository;
 import com.unibo.notes.repository.NoteRepository;
+import com.unibo.notes.search.NoteIndexer;
+import com.unibo.notes.util.PageCursor;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @ApplicationScoped
 public class PermissionService {
 
+    // Limite di parametri per singola IN (PostgreSQL ne accetta al massimo 32767)
+    private static final int ACCESS_BATCH_SIZE = 1000;
+
+    /**
+     * Livello di accesso di un utente a una nota
+     */
+    public enum Access {
+        NONE,
+        READ,
+        WRITE,
+        OWNER;
+
+        public boolean canRead() {
+            return this != NONE;
+        }
+
+        public boolean canWrite() {
+            return this == WRITE || this == OWNER;
+        }
+
+        public boolean isOwner() {
+            return this == OWNER;
+        }
+    }
+
     @Inject
     NotePermissionRepository permissionRepository;
 
     @Inject
     NoteRepository noteRepository;
 
+    @Inject
+    NoteIndexer noteIndexer;
+
     @Inject
     UserService userService;
 
     public boolean hasReadPermission(Long noteId, Long userId) {
-        Note note = noteRepository.findByIdWithOwnerAndFolder(noteId)
-                .orElseThrow(() -> new ResourceNotFoundException("Note", "id", noteId));
-
-        // Il proprietario ha sempre permessi
-        if (note.owner.id.equals(userId)) {
-            return true;
-        }
-
-        // Controlla se ha permessi espliciti
-        return permissionRepository.hasPermission(noteId, userId, PermissionType.READ);
+        return getAccess(noteId, userId).canRead();
     }
 
     public boolean hasWritePermission(Long noteId, Long userId) {
-        Note note = noteRepository.findByIdWithOwnerAndFolder(noteId)
-                .orElseThrow(() -> new ResourceNotFoundException("Note", "id", noteId));
+        return getAccess(noteId, userId).canWrite();
+    }
 
-        // Il proprietario ha sempre permessi
-        if (note.owner.id.equals(userId)) {
-            return true;
+    public Access getAccess(Long noteId, Long userId) {
+        Access access = resolveAccess(List.of(noteId), userId).get(noteId);
+        if (access == null) {
+            throw new ResourceNotFoundException("Note", "id", noteId);
         }
+        return access;
+    }
 
-        // Controlla se ha permessi di scrittura
-        return permissionRepository.hasPermission(noteId, userId, PermissionType.WRITE);
+    /**
+     * Risolve in una sola query (per blocchi di 1000 id) il livello di accesso dell'utente
+     * a ciascuna nota. Le note inesistenti non compaiono nella mappa.
+     */
+    public Map<Long, Access> resolveAccess(Collection<Long> noteIds, Long userId) {
+        Map<Long, Access> result = new HashMap<>();
+        List<Long> ids = new ArrayList<>(noteIds);
+        for (int from = 0; from < ids.size(); from += ACCESS_BATCH_SIZE) {
+            List<Long> batch = ids.subList(from, Math.min(from + ACCESS_BATCH_SIZE, ids.size()));
+            for (Object[] row : permissionRepository.findAccessRows(batch, userId)) {
+                Long noteId = (Long) row[0];
+                Long ownerId = (Long) row[1];
+                PermissionType permission = (PermissionType) row[2];
+
+                if (ownerId.equals(userId)) {
+                    result.put(noteId, Access.OWNER);
+                } else if (permission == PermissionType.WRITE) {
+                    result.put(noteId, Access.WRITE);
+                } else if (permission == PermissionType.READ) {
+                    result.put(noteId, Access.READ);
+                } else {
+                    result.put(noteId, Access.NONE);
+                }
+            }
+        }
+        return result;
     }
 
     @Transactional
@@ -97,6 +150,7 @@ public class PermissionService {
         permission.permission = PermissionType.valueOf(request.permission);
 
         permissionRepository.persist(permission);
+        noteIndexer.shared(note, targetUser);
         return toDTO(permission);
     }
 
@@ -107,6 +161,7 @@ public class PermissionService {
                 .orElseThrow(() -> new UnauthorizedException("Only the owner can revoke permissions"));
 
         permissionRepository.deleteByNoteIdAndUserId(noteId, targetUserId);
+        noteIndexer.unshared(noteId, targetUserId);
     }
 
     @Transactional
@@ -141,11 +196,15 @@ public class PermissionService {
                 .collect(Collectors.toList());
     }
 
-    public List<Note> getSharedNotes(Long userId) {
-        List<NotePermission> permissions = permissionRepository.findByUserIdWithNotes(userId);
-        return permissions.stream()
-                .map(p -> p.note)
-                .collect(Collectors.toList());
+    /**
+     * Note condivise con l'utente, già convertite in DTO (con il permesso) da una sola query di proiezione
+     */
+    public NoteDTOPage listSharedNotes(Long userId, PageCursor after, int limit) {
+        return noteRepository.findSharedDTOPage(userId, after, limit);
+    }
+
+    public long countSharedNotes(Long userId) {
+        return permissionRepository.count("user.id", userId);
     }
 
     @Transactional
@@ -166,6 +225,7 @@ public class PermissionService {
 
         // Rimuovi il permesso
         permissionRepository.deleteByNoteIdAndUserId(noteId, userId);
+        noteIndexer.unshared(noteId, userId);
     }
 
     private PermissionDTO toDTO(NotePermission permission) {
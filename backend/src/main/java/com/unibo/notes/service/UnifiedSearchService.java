@@ -0,0 +1,246 @@
+package com.unibo.notes.service;
+
+import com.unibo.notes.dto.SearchCriteria;
+import com.unibo.notes.entity.Folder;
+import com.unibo.notes.entity.Note;
+import com.unibo.notes.entity.User;
+import com.unibo.notes.repository.FolderRepository;
+import com.unibo.notes.repository.NotePage;
+import com.unibo.notes.repository.UserRepository;
+import com.unibo.notes.search.SearchDeadline;
+import io.quarkus.arc.Arc;
+import io.quarkus.arc.ManagedContext;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Ricerca unificata (/search?types=...): note, cartelle e collaboratori vengono cercati
+ * in parallelo, ognuno con il proprio limite, e uniti in un'unica classifica
+ * con una coda di priorità limitata al numero di risultati richiesti.
+ */
+@ApplicationScoped
+public class UnifiedSearchService {
+
+    public enum Type { NOTE, FOLDER, COLLABORATOR }
+
+    /** Risultato di un tipo: item è una Note, una Folder o uno User */
+    public static final class Hit {
+        public final Type type;
+        public final Object item;
+        // Punteggio in [0, 1], confrontabile tra i tipi
+        public final double score;
+
+        Hit(Type type, Object item, double score) {
+            this.type = type;
+            this.item = item;
+            this.score = score;
+        }
+    }
+
+    public static final class Result {
+        public final List<Hit> hits;
+        // Pagina delle note (punteggi BM25 inclusi), null se le note non sono richieste
+        public final NotePage notePage;
+        // Qualche tipo aveva altri risultati oltre il proprio limite
+        public final boolean hasMore;
+
+        Result(List<Hit> hits, NotePage notePage, boolean hasMore) {
+            this.hits = hits;
+            this.notePage = notePage;
+            this.hasMore = hasMore;
+        }
+    }
+
+    // A parità di punteggio: prima le note, poi cartelle e collaboratori
+    private static final Comparator<Hit> BEST_FIRST = Comparator.comparingDouble((Hit hit) -> hit.score).reversed()
+            .thenComparing(hit -> hit.type);
+
+    @Inject
+    NoteService noteService;
+
+    @Inject
+    FolderRepository folderRepository;
+
+    @Inject
+    UserRepository userRepository;
+
+    @ConfigProperty(name = "notes.search.unified.threads", defaultValue = "4")
+    int threads;
+
+    @ConfigProperty(name = "notes.search.unified.folder-limit", defaultValue = "5")
+    int folderLimit;
+
+    @ConfigProperty(name = "notes.search.unified.collaborator-limit", defaultValue = "5")
+    int collaboratorLimit;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    void init() {
+        AtomicInteger counter = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "unified-search-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Esegue i tipi richiesti in parallelo: le note con i filtri e il limite di criteria,
+     * cartelle e collaboratori con i limiti configurati; restituisce al massimo criteria.limit risultati.
+     * I tipi non conclusi entro la scadenza restano fuori (risultati parziali).
+     */
+    public Result search(SearchCriteria criteria, Set<Type> types) {
+        String keyword = criteria.hasKeyword() ? criteria.rankingText().trim().toLowerCase(Locale.ROOT) : "";
+
+        CompletableFuture<NotePage> notes = types.contains(Type.NOTE)
+                ? submit(() -> noteService.advancedSearch(criteria)) : null;
+        CompletableFuture<List<Folder>> folders = types.contains(Type.FOLDER) && !keyword.isEmpty()
+                ? submit(() -> folderRepository.searchByNameOrDescription(criteria.userId, keyword, folderLimit + 1))
+                : null;
+        CompletableFuture<List<User>> collaborators = types.contains(Type.COLLABORATOR) && !keyword.isEmpty()
+                ? submit(() -> userRepository.searchCollaborators(criteria.userId, keyword, collaboratorLimit + 1))
+                : null;
+
+        PriorityQueue<Hit> top = new PriorityQueue<>(criteria.limit + 1, BEST_FIRST.reversed());
+        boolean hasMore = false;
+        int offered = 0;
+
+        NotePage notePage = join(notes, criteria.deadline);
+        if (notePage != null) {
+            List<Note> page = notePage.notes;
+            double best = bestScore(notePage);
+            for (int i = 0; i < page.size(); i++) {
+                Note note = page.get(i);
+                // Con i punteggi BM25 normalizzati sul migliore; altrimenti dall'ordine della pagina
+                double score = notePage.scores != null && best > 0
+                        ? notePage.scores.getOrDefault(note.id, 0.0) / best
+                        : 1.0 - (double) i / page.size();
+                offered++;
+                offer(top, new Hit(Type.NOTE, note, score), criteria.limit);
+            }
+            hasMore = notePage.hasMore();
+        }
+
+        List<Folder> folderHits = join(folders, criteria.deadline);
+        if (folderHits != null) {
+            hasMore |= folderHits.size() > folderLimit;
+            for (Folder folder : folderHits.subList(0, Math.min(folderLimit, folderHits.size()))) {
+                double score = Math.max(textScore(folder.name, keyword), 0.5 * textScore(folder.description, keyword));
+                offered++;
+                offer(top, new Hit(Type.FOLDER, folder, score), criteria.limit);
+            }
+        }
+
+        List<User> collaboratorHits = join(collaborators, criteria.deadline);
+        if (collaboratorHits != null) {
+            hasMore |= collaboratorHits.size() > collaboratorLimit;
+            for (User user : collaboratorHits.subList(0, Math.min(collaboratorLimit, collaboratorHits.size()))) {
+                offered++;
+                offer(top, new Hit(Type.COLLABORATOR, user, textScore(user.username, keyword)), criteria.limit);
+            }
+        }
+
+        // Risultati scartati dalla coda: la classifica unificata continua oltre questa pagina
+        hasMore |= top.size() < offered;
+        List<Hit> hits = new ArrayList<>(top);
+        hits.sort(BEST_FIRST);
+        return new Result(hits, notePage, hasMore);
+    }
+
+    // Coda limitata: in cima il peggiore dei risultati tenuti, scartato quando ne arriva uno migliore
+    private static void offer(PriorityQueue<Hit> top, Hit hit, int limit) {
+        top.offer(hit);
+        if (top.size() > limit) {
+            top.poll();
+        }
+    }
+
+    private static double bestScore(NotePage page) {
+        return page.scores == null || page.scores.isEmpty() ? 0 : Collections.max(page.scores.values());
+    }
+
+    /**
+     * Corrispondenza della parola in un nome: intero 1, inizio 0.8, inizio di una parola 0.6, altrove 0.4
+     */
+    static double textScore(String text, String keyword) {
+        if (text == null || keyword.isEmpty()) {
+            return 0;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        if (lower.equals(keyword)) {
+            return 1.0;
+        }
+        if (lower.startsWith(keyword)) {
+            return 0.8;
+        }
+        int index = lower.indexOf(keyword);
+        if (index < 0) {
+            return 0;
+        }
+        return Character.isLetterOrDigit(lower.charAt(index - 1)) ? 0.4 : 0.6;
+    }
+
+    /**
+     * Ogni tipo gira su un proprio thread con un contesto di richiesta nuovo,
+     * quindi con una propria sessione Hibernate (le sessioni non sono thread-safe)
+     */
+    private <T> CompletableFuture<T> submit(Supplier<T> task) {
+        return CompletableFuture.supplyAsync(() -> {
+            ManagedContext requestContext = Arc.container().requestContext();
+            requestContext.activate();
+            try {
+                return task.get();
+            } finally {
+                requestContext.terminate();
+            }
+        }, executor);
+    }
+
+    private static <T> T join(CompletableFuture<T> future, SearchDeadline deadline) {
+        if (future == null) {
+            return null;
+        }
+        try {
+            return future.get(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            deadline.markTimedOut();
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            deadline.markTimedOut();
+            return null;
+        } catch (ExecutionException e) {
+            // L'eccezione del tipo (es. ValidationException) arriva al chiamante così com'è
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new CompletionException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.unibo.notes.service;
+
+import com.unibo.notes.repository.NoteVersionRepository;
+import com.unibo.notes.search.NoteIndexer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pulizia periodica delle versioni di tutte le note, su un thread in background. Di ogni nota restano
+ * le ultime keep-last versioni, tutte quelle degli ultimi daily-after-days giorni e, prima, l'ultima
+ * di ogni giorno fino a max-age-days; le versioni delle note eliminate vengono tutte rimosse.
+ * Le note sono scorse a blocchi limitati per numero di note e di versioni, ognuno in una transazione
+ * breve con DELETE sull'insieme delle versioni scadute, e una pausa tra i blocchi lascia spazio alle
+ * richieste degli utenti. Un blocco che fallisce viene saltato: il giro prosegue con i successivi.
+ */
+@ApplicationScoped
+public class VersionRetention {
+
+    private static final Logger LOGGER = Logger.getLogger(VersionRetention.class.getName());
+    private static final ZoneId ROME_ZONE = ZoneId.of("Europe/Rome");
+
+    /**
+     * Esito di un giro di pulizia
+     */
+    public static class Report {
+        public long notes;
+        public long reclaimed;
+        public int chunks;
+        public int failedChunks;
+        public long millis;
+    }
+
+    /**
+     * Blocco di note: quelle con id in (afterNoteId, lastNoteId]
+     */
+    public static class Chunk {
+        public final long afterNoteId;
+        public final long lastNoteId;
+        public final int notes;
+
+        public Chunk(long afterNoteId, long lastNoteId, int notes) {
+            this.afterNoteId = afterNoteId;
+            this.lastNoteId = lastNoteId;
+            this.notes = notes;
+        }
+    }
+
+    @Inject
+    NoteVersionRepository versionRepository;
+
+    @Inject
+    VersionStorage versionStorage;
+
+    @Inject
+    NoteIndexer noteIndexer;
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "notes.versions.retention.interval-seconds", defaultValue = "3600")
+    long intervalSeconds;
+
+    @ConfigProperty(name = "notes.versions.retention.keep-last", defaultValue = "50")
+    int keepLast;
+
+    @ConfigProperty(name = "notes.versions.retention.daily-after-days", defaultValue = "30")
+    int dailyAfterDays;
+
+    // 0 = nessun limite di età
+    @ConfigProperty(name = "notes.versions.retention.max-age-days", defaultValue = "0")
+    int maxAgeDays;
+
+    @ConfigProperty(name = "notes.versions.retention.notes-per-chunk", defaultValue = "200")
+    int notesPerChunk;
+
+    @ConfigProperty(name = "notes.versions.retention.versions-per-chunk", defaultValue = "10000")
+    long versionsPerChunk;
+
+    @ConfigProperty(name = "notes.versions.retention.pause-ms", defaultValue = "50")
+    long pauseMillis;
+
+    private Counter reclaimedCounter;
+    private ScheduledExecutorService executor;
+
+    @PostConstruct
+    void init() {
+        reclaimedCounter = Counter.builder("notes.versions.retention.reclaimed").register(registry);
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        if (intervalSeconds <= 0) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "version-retention");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::runSafely, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    void runSafely() {
+        try {
+            run();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Version retention failed", e);
+        }
+    }
+
+    /**
+     * Un giro completo su tutte le note; si ferma prima se il thread viene interrotto
+     */
+    public Report run() {
+        long start = System.nanoTime();
+        LocalDateTime now = LocalDateTime.now(ROME_ZONE);
+        LocalDateTime dailyBefore = now.minusDays(dailyAfterDays);
+        LocalDateTime maxAgeBefore = maxAgeDays > 0 ? now.minusDays(maxAgeDays) : null;
+
+        Report report = new Report();
+        long afterNoteId = 0;
+        while (true) {
+            Chunk chunk = nextChunk(afterNoteId);
+            if (chunk == null) {
+                break;
+            }
+            try {
+                report.reclaimed += purgeChunk(chunk, dailyBefore, maxAgeBefore);
+                report.notes += chunk.notes;
+                report.chunks++;
+            } catch (RuntimeException e) {
+                // Senza saltarlo, ogni giro ripartirebbe dall'inizio e si fermerebbe sempre qui
+                LOGGER.log(Level.WARNING, "Version retention failed for notes " + (chunk.afterNoteId + 1)
+                        + ".." + chunk.lastNoteId + ", skipped", e);
+                report.failedChunks++;
+            }
+            afterNoteId = chunk.lastNoteId;
+            if (!pause()) {
+                break;
+            }
+        }
+        report.millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        reclaimedCounter.increment(report.reclaimed);
+        LOGGER.info("Version retention: " + report.reclaimed + " versions reclaimed from " + report.notes
+                + " notes in " + report.chunks + " chunks, " + report.failedChunks + " failed ("
+                + report.millis + " ms)");
+        return report;
+    }
+
+    /**
+     * Prossimo blocco dopo afterNoteId: fino a notes-per-chunk note e versions-per-chunk versioni
+     * (la prima nota entra comunque); null se non ci sono altre note
+     */
+    @Transactional
+    public Chunk nextChunk(long afterNoteId) {
+        List<Object[]> counts = versionRepository.countVersionsAfter(afterNoteId, notesPerChunk);
+        if (counts.isEmpty()) {
+            return null;
+        }
+        long lastNoteId = afterNoteId;
+        long versions = 0;
+        int notes = 0;
+        for (Object[] row : counts) {
+            long count = (Long) row[1];
+            if (notes > 0 && versions + count > versionsPerChunk) {
+                break;
+            }
+            lastNoteId = (Long) row[0];
+            versions += count;
+            notes++;
+        }
+        return new Chunk(afterNoteId, lastNoteId, notes);
+    }
+
+    /**
+     * Elimina le versioni scadute delle note del blocco; restituisce quante ne sono state eliminate
+     */
+    @Transactional
+    public int purgeChunk(Chunk chunk, LocalDateTime dailyBefore, LocalDateTime maxAgeBefore) {
+        List<Long> expired = versionRepository.findExpired(chunk.afterNoteId, chunk.lastNoteId, keepLast,
+                dailyBefore, maxAgeBefore);
+        versionStorage.purge(expired, chunk.afterNoteId, chunk.lastNoteId);
+        noteIndexer.versionsExpired(expired);
+        return expired.size();
+    }
+
+    private boolean pause() {
+        if (pauseMillis <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(pauseMillis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.unibo.notes.service;
+
+import com.unibo.notes.repository.NoteRepository;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import jakarta.transaction.Transactional;
+
+import java.util.logging.Logger;
+
+/**
+ * Aggiorna le tabelle delle versioni create prima del contatore e delle differenze:
+ * allinea il contatore (notes.last_version_number) alle versioni già salvate, crea l'indice
+ * univoco (note_id, version_number) e rende facoltativo il contenuto (null nelle differenze),
+ * vincolo che l'aggiornamento dello schema di Hibernate non modifica.
+ * Ogni passo legge prima lo stato dal catalogo: dopo il primo avvio non modifica più nulla.
+ */
+@ApplicationScoped
+public class VersionSchema {
+
+    private static final Logger LOGGER = Logger.getLogger(VersionSchema.class.getName());
+
+    private static final String UNIQUE_INDEX = "uk_note_versions_note_number";
+
+    @Inject
+    NoteRepository noteRepository;
+
+    void onStart(@Observes StartupEvent event) {
+        allowDeltaRows();
+        // Con l'indice già creato anche il contatore è stato allineato (il passo lo precede)
+        if (hasUniqueIndex()) {
+            return;
+        }
+        backfill();
+        try {
+            createUniqueIndex();
+        } catch (PersistenceException e) {
+            // Numeri doppi assegnati prima del contatore: le nuove versioni sono comunque uniche
+            LOGGER.warning("Unique index on note version numbers not created: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Toglie il NOT NULL dal contenuto solo se c'è ancora: l'ALTER prende un lock esclusivo sulla tabella
+     */
+    @Transactional
+    public void allowDeltaRows() {
+        EntityManager em = noteRepository.getEntityManager();
+        // Nomi in minuscolo su PostgreSQL, in maiuscolo su H2
+        Number required = (Number) em.createNativeQuery("SELECT COUNT(*) FROM information_schema.columns"
+                        + " WHERE table_schema = current_schema AND LOWER(table_name) = 'note_versions'"
+                        + " AND LOWER(column_name) = 'content' AND is_nullable = 'NO'")
+                .getSingleResult();
+        if (required.intValue() > 0) {
+            em.createNativeQuery("ALTER TABLE note_versions ALTER COLUMN content DROP NOT NULL").executeUpdate();
+            LOGGER.info("Note version content made nullable for delta rows");
+        }
+    }
+
+    @Transactional
+    public boolean hasUniqueIndex() {
+        String sql = noteRepository.isPostgres()
+                ? "SELECT COUNT(*) FROM pg_indexes WHERE schemaname = current_schema AND indexname = :name"
+                : "SELECT COUNT(*) FROM information_schema.indexes"
+                        + " WHERE index_schema = current_schema AND LOWER(index_name) = :name";
+        Number found = (Number) noteRepository.getEntityManager().createNativeQuery(sql)
+                .setParameter("name", UNIQUE_INDEX)
+                .getSingleResult();
+        return found.intValue() > 0;
+    }
+
+    /**
+     * Solo le note ancora al valore di default della colonna: quelle salvate dopo l'aggiornamento
+     * hanno già il contatore allineato alle proprie versioni
+     */
+    @Transactional
+    public void backfill() {
+        int updated = noteRepository.getEntityManager()
+                .createQuery("UPDATE Note n SET n.lastVersionNumber ="
+                        + " (SELECT MAX(v.versionNumber) FROM NoteVersion v WHERE v.noteId = n.id)"
+                        + " WHERE n.lastVersionNumber = 0"
+                        + " AND EXISTS (SELECT v.id FROM NoteVersion v WHERE v.noteId = n.id)")
+                .executeUpdate();
+        if (updated > 0) {
+            LOGGER.info("Version counter aligned for " + updated + " notes");
+        }
+    }
+
+    @Transactional
+    public void createUniqueIndex() {
+        noteRepository.getEntityManager()
+                .createNativeQuery("CREATE UNIQUE INDEX IF NOT EXISTS " + UNIQUE_INDEX
+                        + " ON note_versions (note_id, version_number)")
+                .executeUpdate();
+    }
+}
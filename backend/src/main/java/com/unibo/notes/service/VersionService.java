@@ -1,17 +1,24 @@
 package com.unibo.notes.service;
 
 import com.unibo.notes.dto.NoteVersionDTO;
+import com.unibo.notes.dto.NoteVersionSummaryDTO;
+import com.unibo.notes.dto.VersionHistoryResponse;
 import com.unibo.notes.entity.Note;
 import com.unibo.notes.entity.NoteVersion;
 import com.unibo.notes.exception.ResourceNotFoundException;
 import com.unibo.notes.exception.UnauthorizedException;
+import com.unibo.notes.exception.ValidationException;
 import com.unibo.notes.repository.NoteRepository;
 import com.unibo.notes.repository.NoteVersionRepository;
+import com.unibo.notes.repository.UserRepository;
+import com.unibo.notes.search.NoteIndexer;
+import com.unibo.notes.util.PageCursor;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @ApplicationScoped
@@ -20,6 +27,9 @@ public class VersionService {
     @Inject
     NoteVersionRepository versionRepository;
 
+    @Inject
+    VersionStorage versionStorage;
+
     @Inject
     NoteRepository noteRepository;
 
@@ -27,7 +37,10 @@ public class VersionService {
     PermissionService permissionService;
 
     @Inject
-    UserService userService;
+    UserRepository userRepository;
+
+    @Inject
+    NoteIndexer noteIndexer;
 
     public List<NoteVersionDTO> getNoteVersions(Long noteId, Long userId) {
         // Verifica che l'utente abbia accesso alla nota
@@ -39,11 +52,41 @@ public class VersionService {
         }
 
         List<NoteVersion> versions = versionRepository.findByNoteId(noteId);
+        Map<Long, String> contents = versionStorage.contents(versions);
+        Map<Long, String> usernames = userRepository.findUsernames(
+                versions.stream().map(version -> version.modifiedBy).collect(Collectors.toSet()));
         return versions.stream()
-                .map(this::toDTO)
+                .map(version -> toDTO(version, contents.get(version.id), usernames.get(version.modifiedBy)))
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Pagina della cronologia, dalla versione più recente: solo metadati (autore, data, dimensione,
+     * snapshot o differenza), senza ricostruire i contenuti
+     */
+    public VersionHistoryResponse getVersionHistory(Long noteId, Long userId, PageCursor after, int limit,
+                                                    boolean includeTotal) {
+        Note note = noteRepository.findByIdWithOwnerAndFolder(noteId)
+                .orElseThrow(() -> new ResourceNotFoundException("Note", "id", noteId));
+
+        if (!note.owner.id.equals(userId) && !permissionService.hasReadPermission(noteId, userId)) {
+            throw new UnauthorizedException("You don't have permission to view versions of this note");
+        }
+        if (after != null && !PageCursor.VERSION_NUMBER.equals(after.field)) {
+            throw new ValidationException("Invalid cursor");
+        }
+
+        List<NoteVersionSummaryDTO> fetched = versionRepository.findHistoryPage(noteId, after, limit);
+        List<NoteVersionSummaryDTO> versions = fetched.size() > limit ? fetched.subList(0, limit) : fetched;
+        String nextCursor = null;
+        if (fetched.size() > limit) {
+            NoteVersionSummaryDTO last = versions.get(limit - 1);
+            nextCursor = new PageCursor(PageCursor.VERSION_NUMBER, last.versionNumber, last.id).encode();
+        }
+        Long total = includeTotal ? versionRepository.countByNoteId(noteId) : null;
+        return new VersionHistoryResponse(versions, limit, nextCursor, total);
+    }
+
     public NoteVersionDTO getSpecificVersion(Long noteId, Long versionNumber, Long userId) {
         // Verifica permessi
         Note note = noteRepository.findByIdWithOwnerAndFolder(noteId)
@@ -56,7 +99,8 @@ public class VersionService {
         NoteVersion version = versionRepository.findByNoteIdAndVersionNumber(noteId, versionNumber)
                 .orElseThrow(() -> new ResourceNotFoundException("Version " + versionNumber + " not found for note " + noteId));
 
-        return toDTO(version);
+        return toDTO(version, versionStorage.content(version),
+                userRepository.findByIdOptional(version.modifiedBy).map(user -> user.username).orElse(null));
     }
 
     @Transactional
@@ -74,17 +118,14 @@ public class VersionService {
                 .orElseThrow(() -> new ResourceNotFoundException("Version " + versionNumber + " not found"));
 
         // Ripristina il contenuto
-        note.content = versionToRestore.content;
+        note.content = versionStorage.content(versionToRestore);
         note.lastModifiedBy = userId;
         noteRepository.persist(note);
 
         // Crea una nuova versione per il ripristino
-        NoteVersion newVersion = new NoteVersion();
-        newVersion.noteId = note.id;
-        newVersion.content = note.content;
-        newVersion.versionNumber = versionRepository.getNextVersionNumber(note.id);
-        newVersion.modifiedBy = userId;
-        versionRepository.persist(newVersion);
+        NoteVersion newVersion = versionStorage.save(note, note.nextVersionNumber(), userId);
+        noteIndexer.versionSaved(note, newVersion);
+        noteIndexer.reindex(note);
 
         return note;
     }
@@ -95,7 +136,9 @@ public class VersionService {
         Note note = noteRepository.findByIdAndOwner(noteId, userId)
                 .orElseThrow(() -> new UnauthorizedException("Only the owner can delete versions"));
 
-        versionRepository.deleteOldVersions(noteId, keepLast);
+        // Solo le ultime keepLast versioni
+        List<Long> deleted = versionStorage.purge(versionRepository.findIdsBeyond(noteId, keepLast), noteId - 1, noteId);
+        noteIndexer.versionsDeleted(note, deleted);
     }
 
     public long getVersionCount(Long noteId, Long userId) {
@@ -110,20 +153,14 @@ public class VersionService {
         return versionRepository.countByNoteId(noteId);
     }
 
-    private NoteVersionDTO toDTO(NoteVersion version) {
+    private NoteVersionDTO toDTO(NoteVersion version, String content, String username) {
         NoteVersionDTO dto = new NoteVersionDTO();
         dto.id = version.id;
         dto.noteId = version.noteId;
-        dto.content = version.content;
+        dto.content = content;
         dto.versionNumber = version.versionNumber;
         dto.modifiedAt = version.modifiedAt;
-
-        // Trova username di chi ha modificato
-        try {
-            dto.modifiedByUsername = userService.findById(version.modifiedBy).username;
-        } catch (Exception e) {
-            dto.modifiedByUsername = "Unknown";
-        }
+        dto.modifiedByUsername = username != null ? username : "Unknown";
 
         return dto;
     }
@@ -0,0 +1,345 @@
+package com.unibo.notes.service;
+
+import com.unibo.notes.entity.Note;
+import com.unibo.notes.entity.NoteVersion;
+import com.unibo.notes.repository.ContentBlobRepository;
+import com.unibo.notes.repository.NoteVersionRepository;
+import com.unibo.notes.util.BinaryDelta;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Memorizzazione delle versioni. Gli snapshot puntano a un blob (content_blobs) indirizzato dallo
+ * SHA-256 del contenuto: un contenuto già salvato, da qualunque nota, costa solo un riferimento.
+ * In modalità DELTA una versione ogni snapshot-interval è uno snapshot e le altre conservano solo
+ * la differenza binaria dal proprio snapshot: la ricostruzione applica una sola differenza,
+ * qualunque sia la lunghezza della cronologia.
+ * I contenuti ricostruiti restano in una cache LRU per id di versione (immutabile: gli id non
+ * vengono riusati e la ricodifica di una versione non ne cambia il contenuto).
+ * Le righe dicono da sole come sono salvate: il cambio di modalità vale per le nuove versioni.
+ */
+@ApplicationScoped
+public class VersionStorage {
+
+    public enum Mode {
+        FULL,
+        DELTA
+    }
+
+    @Inject
+    NoteVersionRepository versionRepository;
+
+    @Inject
+    ContentBlobRepository blobRepository;
+
+    @ConfigProperty(name = "notes.versions.storage", defaultValue = "full")
+    Mode mode;
+
+    @ConfigProperty(name = "notes.versions.snapshot-interval", defaultValue = "10")
+    int snapshotInterval;
+
+    @ConfigProperty(name = "notes.versions.cache.max-entries", defaultValue = "2000")
+    int cacheMaxEntries;
+
+    // Id per istruzione nelle eliminazioni: le liste IN restano sotto il limite di parametri del driver
+    @ConfigProperty(name = "notes.versions.delete-batch-size", defaultValue = "500")
+    int deleteBatchSize;
+
+    // LinkedHashMap in ordine di accesso: le note consultate spesso restano in cache
+    private Map<Long, String> cache;
+
+    @PostConstruct
+    void init() {
+        cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+                return size() > cacheMaxEntries;
+            }
+        };
+    }
+
+    /**
+     * Salva la versione numero versionNumber (da Note.nextVersionNumber) con il contenuto attuale della nota.
+     * La nota viene scritta prima dell'INSERT: un salvataggio concorrente si ferma sul controllo di @Version
+     * della nota (conflitto) senza arrivare all'indice univoco (note_id, version_number).
+     */
+    public NoteVersion save(Note note, long versionNumber, Long userId) {
+        versionRepository.flush();
+
+        NoteVersion version = new NoteVersion();
+        version.noteId = note.id;
+        version.versionNumber = versionNumber;
+        version.modifiedBy = userId;
+        encode(version, note.content, mode == Mode.DELTA
+                ? versionRepository.findLatestSnapshot(note.id).orElse(null)
+                : null);
+        versionRepository.persist(version);
+        return version;
+    }
+
+    public String content(NoteVersion version) {
+        if (version.isSnapshot() && version.blobId != null) {
+            return blobContent(version.id, version.blobId);
+        }
+        return content(version.id, version.content, version.delta, version.baseId);
+    }
+
+    /**
+     * Contenuto di una versione a partire dalle colonne della riga (per le query che non caricano entità,
+     * con il contenuto degli snapshot già letto dal blob)
+     */
+    public String content(Long id, String content, byte[] delta, Long baseId) {
+        if (delta == null) {
+            return content;
+        }
+        String cached = cached(id);
+        if (cached != null) {
+            return cached;
+        }
+        String rebuilt = apply(snapshotContent(baseId), delta);
+        remember(id, rebuilt);
+        return rebuilt;
+    }
+
+    /**
+     * Contenuti di più versioni della stessa nota (per id): i blob degli snapshot sono letti con una
+     * sola query e fanno da base alle differenze della lista
+     */
+    public Map<Long, String> contents(List<NoteVersion> versions) {
+        Map<Long, String> contents = new HashMap<>();
+        List<NoteVersion> inBlobs = new ArrayList<>();
+        for (NoteVersion version : versions) {
+            if (!version.isSnapshot()) {
+                continue;
+            }
+            String cached = version.blobId != null ? cached(version.id) : version.content;
+            if (cached != null) {
+                contents.put(version.id, cached);
+            } else {
+                inBlobs.add(version);
+            }
+        }
+        Map<Long, String> blobs = blobRepository.findContents(
+                inBlobs.stream().map(version -> version.blobId).collect(Collectors.toSet()));
+        for (NoteVersion version : inBlobs) {
+            String content = blobs.get(version.blobId);
+            remember(version.id, content);
+            contents.put(version.id, content);
+        }
+        for (NoteVersion version : versions) {
+            if (!version.isSnapshot()) {
+                String cached = cached(version.id);
+                if (cached == null) {
+                    String base = contents.get(version.baseId);
+                    cached = apply(base != null ? base : snapshotContent(version.baseId), version.delta);
+                    remember(version.id, cached);
+                }
+                contents.put(version.id, cached);
+            }
+        }
+        return contents;
+    }
+
+    /**
+     * Versioni delle note visibili all'utente che contengono tutte le parole, dalla più recente:
+     * righe [noteId, versionNumber]. Le differenze candidate vengono ricostruite e verificate qui.
+     */
+    public List<Object[]> searchContent(Long userId, boolean includeShared, List<String> words, int maxHits) {
+        List<Object[]> matches = new ArrayList<>();
+        for (int offset = 0; matches.size() < maxHits; offset += maxHits) {
+            List<Object[]> rows = versionRepository.searchContent(userId, includeShared, words, offset, maxHits);
+            for (Object[] row : rows) {
+                if (row[4] == null || containsAll(content((Long) row[2], (String) row[3], (byte[]) row[4], (Long) row[5]), words)) {
+                    matches.add(new Object[]{row[0], row[1]});
+                    if (matches.size() == maxHits) {
+                        break;
+                    }
+                }
+            }
+            if (rows.size() < maxHits) {
+                break;
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Elimina le versioni expired delle note con id in (afterNoteId, untilNoteId] con istruzioni
+     * sull'insieme, senza caricarle. Le differenze conservate il cui snapshot viene eliminato
+     * (individuate dalle differenze delle stesse note) sono caricate, insieme ai soli snapshot da cui
+     * dipendono, e ricodificate prima dell'eliminazione. Restituisce gli id eliminati.
+     */
+    public List<Long> purge(Collection<Long> expired, long afterNoteId, long untilNoteId) {
+        if (expired.isEmpty()) {
+            return List.of();
+        }
+        Set<Long> expiredIds = new HashSet<>(expired);
+        Set<Long> pinned = new HashSet<>();
+        List<Long> orphanIds = new ArrayList<>();
+        for (Object[] row : versionRepository.findDeltaBases(afterNoteId, untilNoteId)) {
+            if (expiredIds.contains((Long) row[1]) && !expiredIds.contains((Long) row[0])) {
+                pinned.add((Long) row[1]);
+                orphanIds.add((Long) row[0]);
+            }
+        }
+        if (!orphanIds.isEmpty()) {
+            List<Long> loaded = new ArrayList<>(orphanIds);
+            loaded.addAll(pinned);
+            // Gli snapshot nella stessa lista: i loro blob sono letti con una query e fanno da base
+            List<NoteVersion> versions = versionRepository.list("id in ?1", loaded);
+            Map<Long, String> contents = contents(versions);
+            versions.stream()
+                    .filter(version -> !pinned.contains(version.id))
+                    .collect(Collectors.groupingBy(version -> version.noteId))
+                    .values()
+                    .forEach(orphans -> reencode(orphans, contents));
+        }
+        deleteByIds(List.copyOf(expired));
+        return List.copyOf(expired);
+    }
+
+    /**
+     * Ricodifica le differenze di una nota rimaste senza snapshot: la più vecchia diventa il nuovo
+     * snapshot, le altre differenze da questo
+     */
+    private void reencode(List<NoteVersion> orphans, Map<Long, String> contents) {
+        orphans.sort(Comparator.comparing(version -> version.versionNumber));
+        NoteVersion snapshot = null;
+        for (NoteVersion orphan : orphans) {
+            encode(orphan, contents.get(orphan.id), snapshot);
+            if (orphan.isSnapshot()) {
+                snapshot = orphan;
+            }
+        }
+    }
+
+    // Rilascia i riferimenti ai blob, poi elimina le righe, a blocchi di deleteBatchSize id
+    private void deleteByIds(List<Long> ids) {
+        for (int from = 0; from < ids.size(); from += deleteBatchSize) {
+            List<Long> batch = ids.subList(from, Math.min(ids.size(), from + deleteBatchSize));
+            blobRepository.releaseVersions(batch);
+            versionRepository.delete("id in ?1", batch);
+            forget(batch);
+        }
+    }
+
+    /**
+     * Sposta nei blob il contenuto in linea di al più limit snapshot salvati prima dei blob.
+     * Restituisce il numero di versioni spostate.
+     */
+    public int moveInlineSnapshots(int limit) {
+        List<NoteVersion> versions = versionRepository.findInlineSnapshots(limit);
+        for (NoteVersion version : versions) {
+            version.blobId = acquireBlob(version.content);
+            version.content = null;
+        }
+        return versions.size();
+    }
+
+    /**
+     * Riferimento a un blob già esistente con lo stesso contenuto, altrimenti differenza da base
+     * (se entro l'intervallo degli snapshot e più piccola del contenuto), altrimenti nuovo blob
+     */
+    private void encode(NoteVersion version, String content, NoteVersion base) {
+        version.content = null;
+        version.delta = null;
+        version.baseId = null;
+        version.blobId = null;
+
+        String hash = hash(content);
+        Optional<Long> existing = blobRepository.referenceByHash(hash);
+        if (existing.isPresent()) {
+            version.blobId = existing.get();
+            return;
+        }
+        if (base != null && version.versionNumber - base.versionNumber < snapshotInterval) {
+            byte[] full = content.getBytes(StandardCharsets.UTF_8);
+            byte[] delta = BinaryDelta.encode(content(base).getBytes(StandardCharsets.UTF_8), full);
+            if (delta.length < full.length) {
+                version.delta = delta;
+                version.baseId = base.id;
+                return;
+            }
+        }
+        version.blobId = blobRepository.acquire(hash, content);
+    }
+
+    private Long acquireBlob(String content) {
+        return blobRepository.acquire(hash(content), content);
+    }
+
+    private String blobContent(Long versionId, Long blobId) {
+        String cached = cached(versionId);
+        if (cached != null) {
+            return cached;
+        }
+        String content = blobRepository.findContent(blobId)
+                .orElseThrow(() -> new IllegalStateException("Missing content blob " + blobId + " of a note version"));
+        remember(versionId, content);
+        return content;
+    }
+
+    private String snapshotContent(Long baseId) {
+        String cached = cached(baseId);
+        if (cached != null) {
+            return cached;
+        }
+        String content = versionRepository.findSnapshotContent(baseId)
+                .orElseThrow(() -> new IllegalStateException("Missing snapshot " + baseId + " of a note version"));
+        remember(baseId, content);
+        return content;
+    }
+
+    private static String hash(String content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static String apply(String base, byte[] delta) {
+        return new String(BinaryDelta.apply(base.getBytes(StandardCharsets.UTF_8), delta), StandardCharsets.UTF_8);
+    }
+
+    private static boolean containsAll(String content, List<String> words) {
+        String lower = content.toLowerCase(Locale.ROOT);
+        return words.stream().allMatch(lower::contains);
+    }
+
+    private synchronized String cached(Long id) {
+        return cache.get(id);
+    }
+
+    private synchronized void remember(Long id, String content) {
+        cache.put(id, content);
+    }
+
+    private synchronized void forget(Collection<Long> ids) {
+        ids.forEach(cache::remove);
+    }
+
+    public synchronized void clearCache() {
+        cache.clear();
+    }
+}
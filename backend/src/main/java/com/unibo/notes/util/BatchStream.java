@@ -0,0 +1,62 @@
+package com.unibo.notes.util;
+
+import io.quarkus.arc.Arc;
+import io.quarkus.arc.ManagedContext;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Risposte in streaming (NDJSON / SSE) lette a blocchi con la paginazione keyset:
+ * ogni blocco è una query breve eseguita su un worker con un proprio contesto di richiesta
+ * (quindi una propria sessione Hibernate) e il successivo viene letto solo quando il client
+ * ha consumato il precedente. Memoria costante e primo risultato dopo il primo blocco,
+ * qualunque sia il numero di risultati; se il client si disconnette lo stream si ferma.
+ */
+public final class BatchStream {
+
+    /** Un blocco di elementi e il cursore del successivo (null se è l'ultimo) */
+    public static final class Batch<T> {
+        final List<T> items;
+        final String nextCursor;
+
+        public Batch(List<T> items, String nextCursor) {
+            this.items = items;
+            this.nextCursor = nextCursor;
+        }
+    }
+
+    private BatchStream() {
+    }
+
+    /**
+     * Legge i blocchi con fetch, partendo dal cursore null, finché un blocco non ha cursore successivo
+     */
+    public static <T> Multi<T> of(Function<PageCursor, Batch<T>> fetch) {
+        return Multi.createBy().repeating()
+                .uni(Position::new, position -> Uni.createFrom()
+                        .item(() -> inRequestContext(fetch, position.next))
+                        .invoke(batch -> position.next = PageCursor.decode(batch.nextCursor))
+                        .runSubscriptionOn(Infrastructure.getDefaultWorkerPool()))
+                .whilst(batch -> batch.nextCursor != null)
+                .onItem().transformToIterable(batch -> batch.items);
+    }
+
+    private static <T> Batch<T> inRequestContext(Function<PageCursor, Batch<T>> fetch, PageCursor after) {
+        ManagedContext requestContext = Arc.container().requestContext();
+        requestContext.activate();
+        try {
+            return fetch.apply(after);
+        } finally {
+            requestContext.terminate();
+        }
+    }
+
+    // Cursore del prossimo blocco; i blocchi sono letti uno alla volta
+    private static final class Position {
+        volatile PageCursor next;
+    }
+}
@@ -0,0 +1,129 @@
+package com.unibo.notes.util;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Differenza binaria compatta tra due sequenze di byte, come sequenza di operazioni
+ * COPY (intervallo della base) e INSERT (byte nuovi), codificate con varint:
+ *
+ *   lunghezzaTarget, poi per ogni operazione (len << 1 | 0) offset  oppure  (len << 1 | 1) byte...
+ *
+ * Le corrispondenze sono cercate con un indice dei blocchi di MIN_MATCH byte della base:
+ * una modifica locale costa pochi byte, qualunque sia la sua posizione nel testo.
+ */
+public final class BinaryDelta {
+
+    private static final int MIN_MATCH = 4;
+
+    private BinaryDelta() {
+    }
+
+    public static byte[] encode(byte[] base, byte[] target) {
+        // Prima posizione di ogni blocco della base
+        Map<Integer, Integer> blocks = new HashMap<>();
+        for (int i = 0; i + MIN_MATCH <= base.length; i++) {
+            blocks.putIfAbsent(block(base, i), i);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarint(out, target.length);
+        int literalStart = 0;
+        int i = 0;
+        while (i + MIN_MATCH <= target.length) {
+            Integer candidate = blocks.get(block(target, i));
+            int length = candidate != null ? matchLength(base, candidate, target, i) : 0;
+            if (length < MIN_MATCH) {
+                i++;
+                continue;
+            }
+            // Estende all'indietro dentro i byte letterali non ancora scritti
+            int offset = candidate;
+            while (offset > 0 && i > literalStart && base[offset - 1] == target[i - 1]) {
+                offset--;
+                i--;
+                length++;
+            }
+            writeInsert(out, target, literalStart, i);
+            writeVarint(out, (long) length << 1);
+            writeVarint(out, offset);
+            i += length;
+            literalStart = i;
+        }
+        writeInsert(out, target, literalStart, target.length);
+        return out.toByteArray();
+    }
+
+    public static byte[] apply(byte[] base, byte[] delta) {
+        int[] position = {0};
+        byte[] target = new byte[(int) readVarint(delta, position)];
+        int written = 0;
+        while (position[0] < delta.length) {
+            long op = readVarint(delta, position);
+            int length = (int) (op >>> 1);
+            if ((op & 1) == 0) {
+                int offset = (int) readVarint(delta, position);
+                System.arraycopy(base, offset, target, written, length);
+            } else {
+                System.arraycopy(delta, position[0], target, written, length);
+                position[0] += length;
+            }
+            written += length;
+        }
+        if (written != target.length) {
+            throw new IllegalArgumentException("Corrupted delta: " + written + " of " + target.length + " bytes");
+        }
+        return target;
+    }
+
+    /**
+     * Lunghezza in byte del contenuto che la differenza produce, senza applicarla
+     */
+    public static int targetLength(byte[] delta) {
+        return (int) readVarint(delta, new int[]{0});
+    }
+
+    // I MIN_MATCH (4) byte del blocco in un int: chiave esatta, senza collisioni
+    private static int block(byte[] bytes, int from) {
+        return (bytes[from] & 0xFF) << 24 | (bytes[from + 1] & 0xFF) << 16
+                | (bytes[from + 2] & 0xFF) << 8 | (bytes[from + 3] & 0xFF);
+    }
+
+    private static int matchLength(byte[] base, int offset, byte[] target, int from) {
+        int length = 0;
+        while (offset + length < base.length && from + length < target.length
+                && base[offset + length] == target[from + length]) {
+            length++;
+        }
+        return length;
+    }
+
+    private static void writeInsert(ByteArrayOutputStream out, byte[] target, int from, int to) {
+        if (to > from) {
+            writeVarint(out, ((long) (to - from) << 1) | 1);
+            out.write(target, from, to - from);
+        }
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(byte[] bytes, int[] position) {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = bytes[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.unibo.notes.util;
+
+import com.unibo.notes.exception.ValidationException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Cursore opaco per la paginazione keyset sulle note: contiene il campo di ordinamento,
+ * il suo valore nell'ultima nota della pagina e l'id come spareggio.
+ * Per i risultati ordinati per rilevanza contiene invece la posizione nella classifica.
+ * Il client lo riceve come nextCursor e lo rimanda invariato per la pagina successiva.
+ */
+public final class PageCursor {
+
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 200;
+
+    public static final String UPDATED_AT = "updatedAt";
+    public static final String CREATED_AT = "createdAt";
+    public static final String TITLE = "title";
+    // Cronologia delle versioni di una nota, dalla più recente
+    public static final String VERSION_NUMBER = "versionNumber";
+
+    private static final String OFFSET_PREFIX = "#";
+
+    // Campo dell'ordinamento e valore (LocalDateTime per le date, String per il titolo)
+    public final String field;
+    public final Object value;
+    public final Long id;
+    // Solo per i risultati ordinati per rilevanza
+    public final Integer offset;
+
+    public PageCursor(String field, Object value, Long id) {
+        this.field = field;
+        this.value = value;
+        this.id = id;
+        this.offset = null;
+    }
+
+    private PageCursor(int offset) {
+        this.field = null;
+        this.value = null;
+        this.id = null;
+        this.offset = offset;
+    }
+
+    public static PageCursor ofOffset(int offset) {
+        return new PageCursor(offset);
+    }
+
+    public boolean isOffset() {
+        return offset != null;
+    }
+
+    public String encode() {
+        String raw = isOffset() ? OFFSET_PREFIX + offset : field + ":" + value + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static PageCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (raw.startsWith(OFFSET_PREFIX)) {
+                int offset = Integer.parseInt(raw.substring(OFFSET_PREFIX.length()));
+                if (offset < 0) {
+                    throw new ValidationException("Invalid cursor");
+                }
+                return new PageCursor(offset);
+            }
+
+            // Il titolo può contenere sia ':' sia '|': campo prima del primo, id dopo l'ultimo
+            int colon = raw.indexOf(':');
+            int separator = raw.lastIndexOf('|');
+            String field = raw.substring(0, colon);
+            String value = raw.substring(colon + 1, separator);
+            Long id = Long.valueOf(raw.substring(separator + 1));
+            return switch (field) {
+                case UPDATED_AT, CREATED_AT -> new PageCursor(field, LocalDateTime.parse(value), id);
+                case TITLE -> new PageCursor(field, value, id);
+                case VERSION_NUMBER -> new PageCursor(field, Long.valueOf(value), id);
+                default -> throw new ValidationException("Invalid cursor");
+            };
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new ValidationException("Invalid cursor");
+        }
+    }
+
+    /**
+     * Dimensione pagina richiesta, limitata a [1, MAX_LIMIT]
+     */
+    public static int clampLimit(Integer limit) {
+        if (limit == null || limit <= 0) {
+            return DEFAULT_LIMIT;
+        }
+        return Math.min(limit, MAX_LIMIT);
+    }
+}
@@ -0,0 +1,28 @@
+package com.unibo.notes.benchmark;
+
+import io.quarkus.test.junit.QuarkusTestProfile;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Profilo dei benchmark: usa un PostgreSQL reale al posto di H2.
+ * Connessione configurabile con -Dbenchmark.jdbc.url, -Dbenchmark.username, -Dbenchmark.password
+ * (default: il database di docker-compose esposto su localhost).
+ */
+public class BenchmarkProfile implements QuarkusTestProfile {
+
+    @Override
+    public Map<String, String> getConfigOverrides() {
+        Map<String, String> config = new HashMap<>();
+        config.put("%test.quarkus.datasource.db-kind", "postgresql");
+        config.put("%test.quarkus.datasource.jdbc.url",
+                System.getProperty("benchmark.jdbc.url", "jdbc:postgresql://localhost:5432/notesapp"));
+        config.put("%test.quarkus.datasource.username", System.getProperty("benchmark.username", "notesapp"));
+        config.put("%test.quarkus.datasource.password", System.getProperty("benchmark.password", "password123"));
+        config.put("%test.quarkus.hibernate-orm.dialect", "org.hibernate.dialect.PostgreSQLDialect");
+        config.put("%test.quarkus.hibernate-orm.database.generation", "update");
+        config.put("%test.notes.search.mode", "postgres");
+        return config;
+    }
+}
@@ -0,0 +1,159 @@
+package com.unibo.notes.benchmark;
+
+import com.unibo.notes.dto.NoteDTO;
+import com.unibo.notes.entity.Note;
+import com.unibo.notes.entity.User;
+import com.unibo.notes.repository.NoteOrder;
+import com.unibo.notes.repository.NoteRepository;
+import com.unibo.notes.repository.UserRepository;
+import com.unibo.notes.util.PageCursor;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.TestProfile;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Transactional;
+import org.hibernate.jpa.SpecHints;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Confronta la lista delle note caricata come entità (e poi mappata, con owner e cartella lazy)
+ * con la query di proiezione sui DTO: latenza e memoria allocata per pagina.
+ * Esecuzione: ./mvnw test -Pbenchmark -Dtest=NoteListBenchmark [-Dbenchmark.rows=200000]
+ */
+@QuarkusTest
+@TestProfile(BenchmarkProfile.class)
+@Tag("benchmark")
+class NoteListBenchmark {
+
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 200_000);
+    private static final int FOLDERS = 50;
+    private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 200);
+    private static final String USERNAME = "list-benchmark";
+
+    @Inject
+    NoteRepository noteRepository;
+
+    @Inject
+    UserRepository userRepository;
+
+    @Test
+    void compareEntitiesAndProjection() {
+        Long ownerId = seed();
+        int limit = PageCursor.DEFAULT_LIMIT;
+
+        Supplier<List<NoteDTO>> entities = () -> findEntityPage(ownerId, limit).stream()
+                .map(NoteListBenchmark::toDTO).toList();
+        Supplier<List<NoteDTO>> projection = () -> noteRepository.findDTOPageByOwnerId(ownerId, null, null, limit).notes;
+
+        // Riscaldamento di JIT, cache e piani di esecuzione
+        run(entities, 20);
+        run(projection, 20);
+
+        report("entities", run(entities, ITERATIONS));
+        report("projection", run(projection, ITERATIONS));
+    }
+
+    @Transactional
+    Long seed() {
+        User owner = userRepository.findByUsername(USERNAME).orElse(null);
+        if (owner == null) {
+            owner = new User();
+            owner.username = USERNAME;
+            owner.email = USERNAME + "@example.com";
+            owner.passwordHash = "hash";
+            userRepository.persistAndFlush(owner);
+
+            noteRepository.getEntityManager().createNativeQuery(
+                            "INSERT INTO folders (name, owner_id, created_at, is_shared) "
+                                    + "SELECT 'Cartella ' || g, :ownerId, now(), false FROM generate_series(1, :folders) g")
+                    .setParameter("ownerId", owner.id)
+                    .setParameter("folders", FOLDERS)
+                    .executeUpdate();
+        }
+
+        long existing = noteRepository.countByOwner(owner.id);
+        if (existing < ROWS) {
+            // Contenuti fino al limite della colonna (280 caratteri); una nota su cinque fuori da ogni cartella
+            noteRepository.getEntityManager().createNativeQuery(
+                            "INSERT INTO notes (title, content, owner_id, folder_id, created_at, updated_at, version, last_modified_by) "
+                                    + "SELECT 'Appunti ' || g, left(repeat('lezione ' || g || ' ', 40), 280), :ownerId, "
+                                    + "CASE WHEN g % 5 = 0 THEN NULL ELSE f.ids[1 + g % array_length(f.ids, 1)] END, "
+                                    + "now() - g * interval '1 second', now() - g * interval '1 second', 0, :ownerId "
+                                    + "FROM generate_series(:from, :to) g, "
+                                    + "(SELECT array_agg(id) AS ids FROM folders WHERE owner_id = :ownerId) f")
+                    .setParameter("ownerId", owner.id)
+                    .setParameter("from", existing + 1)
+                    .setParameter("to", (long) ROWS)
+                    .executeUpdate();
+            noteRepository.getEntityManager().createNativeQuery("ANALYZE notes").executeUpdate();
+        }
+        return owner.id;
+    }
+
+    // La query che facevano gli endpoint di lista prima della proiezione: entità con owner e cartella
+    private List<Note> findEntityPage(Long ownerId, int limit) {
+        EntityManager entityManager = noteRepository.getEntityManager();
+        return entityManager.createQuery("SELECT n FROM Note n WHERE n.owner.id = :ownerId"
+                        + NoteOrder.RECENT.orderBy(), Note.class)
+                .setParameter("ownerId", ownerId)
+                .setHint(SpecHints.HINT_SPEC_FETCH_GRAPH, entityManager.getEntityGraph(Note.WITH_OWNER_AND_FOLDER))
+                .setMaxResults(limit + 1)
+                .getResultList();
+    }
+
+    // La mappatura che facevano gli endpoint di lista prima della proiezione
+    private static NoteDTO toDTO(Note note) {
+        NoteDTO dto = new NoteDTO();
+        dto.id = note.id;
+        dto.title = note.title;
+        dto.content = note.content;
+        dto.ownerId = note.owner.id;
+        dto.ownerUsername = note.owner.username;
+        dto.createdAt = note.createdAt;
+        dto.setUpdatedAt(note.updatedAt);
+        dto.setVersion(note.version);
+        dto.folderId = note.folder != null ? note.folder.id : null;
+        dto.folderName = note.folder != null ? note.folder.name : null;
+        dto.canEdit = true;
+        dto.canDelete = true;
+        return dto;
+    }
+
+    // Una transazione (e una sessione) per pagina, come una richiesta
+    private Sample run(Supplier<List<NoteDTO>> list, int iterations) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        Sample sample = new Sample();
+        for (int i = 0; i < iterations; i++) {
+            long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            QuarkusTransaction.requiringNew().call(list::get);
+            sample.timings.add(System.nanoTime() - start);
+            sample.allocated += threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+        }
+        return sample;
+    }
+
+    private void report(String mode, Sample sample) {
+        List<Long> timings = sample.timings;
+        Collections.sort(timings);
+        double avg = timings.stream().mapToLong(Long::longValue).average().orElse(0) / 1_000_000.0;
+        double p50 = timings.get(timings.size() / 2) / 1_000_000.0;
+        double p99 = timings.get((int) (timings.size() * 0.99)) / 1_000_000.0;
+        System.out.printf("[%s] rows=%d pages=%d avg=%.2fms p50=%.2fms p99=%.2fms allocated=%.1fKB/page%n",
+                mode, ROWS, timings.size(), avg, p50, p99, sample.allocated / 1024.0 / timings.size());
+    }
+
+    private static final class Sample {
+        final List<Long> timings = new ArrayList<>();
+        long allocated;
+    }
+}
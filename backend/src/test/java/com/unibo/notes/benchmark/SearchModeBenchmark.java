@@ -0,0 +1,106 @@
+package com.unibo.notes.benchmark;
+
+import com.unibo.notes.entity.User;
+import com.unibo.notes.repository.NoteRepository;
+import com.unibo.notes.repository.UserRepository;
+import com.unibo.notes.util.PageCursor;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.TestProfile;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Confronta la ricerca LIKE con la modalità POSTGRES (tsvector + pg_trgm).
+ * Esecuzione: ./mvnw test -Pbenchmark -Dtest=SearchModeBenchmark [-Dbenchmark.rows=2000000]
+ */
+@QuarkusTest
+@TestProfile(BenchmarkProfile.class)
+@Tag("benchmark")
+class SearchModeBenchmark {
+
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 2_000_000);
+    private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 30);
+    private static final String USERNAME = "search-benchmark";
+    private static final List<String> KEYWORDS = List.of("tema17", "tema1234", "tema4999", "derivate", "inesistente");
+
+    @Inject
+    NoteRepository noteRepository;
+
+    @Inject
+    UserRepository userRepository;
+
+    @Test
+    void compareLikeAndFullText() {
+        assumeTrue(noteRepository.isPostgresFullText(), "Richiede PostgreSQL con notes.search.mode=postgres");
+
+        Long ownerId = seed();
+
+        // Riscaldamento di cache e piani di esecuzione
+        run(keyword -> noteRepository.searchByContentLike(keyword, ownerId, null, PageCursor.MAX_LIMIT).notes, 3);
+        run(keyword -> noteRepository.searchByContentFullText(keyword, ownerId, null, PageCursor.MAX_LIMIT).notes, 3);
+
+        report("like", run(keyword -> noteRepository.searchByContentLike(keyword, ownerId, null, PageCursor.MAX_LIMIT).notes, ITERATIONS));
+        report("postgres", run(keyword -> noteRepository.searchByContentFullText(keyword, ownerId, null, PageCursor.MAX_LIMIT).notes, ITERATIONS));
+    }
+
+    @Transactional
+    Long seed() {
+        User owner = userRepository.findByUsername(USERNAME).orElse(null);
+        if (owner == null) {
+            owner = new User();
+            owner.username = USERNAME;
+            owner.email = USERNAME + "@example.com";
+            owner.passwordHash = "hash";
+            userRepository.persistAndFlush(owner);
+        }
+
+        long existing = noteRepository.countByOwner(owner.id);
+        if (existing < ROWS) {
+            // Ogni "temaN" compare in circa ROWS / 5000 note, il resto è testo comune
+            noteRepository.getEntityManager().createNativeQuery(
+                            "INSERT INTO notes (title, content, owner_id, created_at, updated_at, version, last_modified_by) "
+                                    + "SELECT 'Appunti ' || g, "
+                                    + "w[1 + g % 10] || ' ' || w[1 + (g / 10) % 10] || ' tema' || (g % 5000) || ' ' || w[1 + (g / 100) % 10], "
+                                    + ":ownerId, now(), now(), 0, :ownerId "
+                                    + "FROM generate_series(:from, :to) g, "
+                                    + "(SELECT ARRAY['algebra', 'lineare', 'analisi', 'limiti', 'derivate', "
+                                    + "'integrali', 'matrici', 'vettori', 'lezione', 'esercizi'] AS w) words")
+                    .setParameter("ownerId", owner.id)
+                    .setParameter("from", existing + 1)
+                    .setParameter("to", (long) ROWS)
+                    .executeUpdate();
+            noteRepository.getEntityManager().createNativeQuery("ANALYZE notes").executeUpdate();
+        }
+        return owner.id;
+    }
+
+    private List<Long> run(Function<String, List<?>> search, int iterations) {
+        List<Long> timings = new ArrayList<>();
+        for (int i = 0; i < iterations; i++) {
+            for (String keyword : KEYWORDS) {
+                long start = System.nanoTime();
+                search.apply(keyword);
+                timings.add(System.nanoTime() - start);
+            }
+        }
+        return timings;
+    }
+
+    private void report(String mode, List<Long> timings) {
+        Collections.sort(timings);
+        double avg = timings.stream().mapToLong(Long::longValue).average().orElse(0) / 1_000_000.0;
+        double p50 = timings.get(timings.size() / 2) / 1_000_000.0;
+        double p99 = timings.get((int) (timings.size() * 0.99)) / 1_000_000.0;
+        System.out.printf("[%s] rows=%d queries=%d avg=%.2fms p50=%.2fms p99=%.2fms%n",
+                mode, ROWS, timings.size(), avg, p50, p99);
+    }
+}
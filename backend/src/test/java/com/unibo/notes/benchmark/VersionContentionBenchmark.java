@@ -0,0 +1,112 @@
+package com.unibo.notes.benchmark;
+
+import com.unibo.notes.dto.CreateNoteRequest;
+import com.unibo.notes.dto.UpdateNoteRequest;
+import com.unibo.notes.entity.Note;
+import com.unibo.notes.entity.User;
+import com.unibo.notes.repository.NoteVersionRepository;
+import com.unibo.notes.repository.UserRepository;
+import com.unibo.notes.service.NoteService;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.TestProfile;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Molti thread salvano la stessa nota: i numeri di versione devono restare unici e contigui.
+ * Ogni conflitto (lock ottimistico sulla nota) viene ritentato; riporta salvataggi al secondo e conflitti.
+ * Esecuzione: ./mvnw test -Pbenchmark -Dtest=VersionContentionBenchmark [-Dbenchmark.threads=32]
+ */
+@QuarkusTest
+@TestProfile(BenchmarkProfile.class)
+@Tag("benchmark")
+class VersionContentionBenchmark {
+
+    private static final int THREADS = Integer.getInteger("benchmark.threads", 16);
+    private static final int SAVES_PER_THREAD = Integer.getInteger("benchmark.saves", 50);
+    private static final String USERNAME = "version-benchmark";
+
+    @Inject
+    NoteService noteService;
+
+    @Inject
+    NoteVersionRepository versionRepository;
+
+    @Inject
+    UserRepository userRepository;
+
+    @Test
+    void saveSameNoteConcurrently() throws Exception {
+        Long userId = seedUser();
+        CreateNoteRequest create = new CreateNoteRequest();
+        create.title = "Contesa";
+        create.content = "v0";
+        Note note = noteService.createNote(create, userId);
+
+        AtomicLong conflicts = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                writers.add(executor.submit(() -> {
+                    for (int i = 0; i < SAVES_PER_THREAD; i++) {
+                        UpdateNoteRequest update = new UpdateNoteRequest();
+                        update.content = "t" + thread + " s" + i;
+                        while (true) {
+                            try {
+                                noteService.updateNote(note.id, update, userId);
+                                break;
+                            } catch (RuntimeException e) {
+                                conflicts.incrementAndGet();
+                            }
+                        }
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        long saves = (long) THREADS * SAVES_PER_THREAD;
+        System.out.printf("[versions] threads=%d saves=%d conflicts=%d throughput=%.1f saves/s%n",
+                THREADS, saves, conflicts.get(), saves / seconds);
+
+        // Versione iniziale più un numero per ogni salvataggio riuscito, senza buchi né doppioni
+        List<Long> numbers = versionRepository.findByNoteId(note.id).stream()
+                .map(version -> version.versionNumber)
+                .sorted()
+                .toList();
+        assertThat(numbers).containsExactlyElementsOf(LongStream.rangeClosed(1, saves + 1).boxed().toList());
+    }
+
+    @Transactional
+    Long seedUser() {
+        User user = userRepository.findByUsername(USERNAME).orElse(null);
+        if (user == null) {
+            user = new User();
+            user.username = USERNAME;
+            user.email = USERNAME + "@example.com";
+            user.passwordHash = "hash";
+            userRepository.persistAndFlush(user);
+        }
+        return user.id;
+    }
+}
@@ -0,0 +1,133 @@
+package com.unibo.notes.benchmark;
+
+import com.unibo.notes.dto.CreateNoteRequest;
+import com.unibo.notes.dto.UpdateNoteRequest;
+import com.unibo.notes.entity.Note;
+import com.unibo.notes.entity.User;
+import com.unibo.notes.repository.NoteVersionRepository;
+import com.unibo.notes.repository.UserRepository;
+import com.unibo.notes.service.NoteService;
+import com.unibo.notes.service.VersionService;
+import com.unibo.notes.service.VersionStorage;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.TestProfile;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Una nota modificata molte volte con piccole correzioni: byte salvati per le sue versioni
+ * (righe e blob di contenuto) rispetto ai contenuti completi, e latenza di getSpecificVersion a cache vuota e piena.
+ * Esecuzione: ./mvnw test -Pbenchmark -Dtest=VersionStorageBenchmark [-Dbenchmark.edits=2000]
+ * (confronto: -Dnotes.versions.storage=full)
+ */
+@QuarkusTest
+@TestProfile(BenchmarkProfile.class)
+@Tag("benchmark")
+class VersionStorageBenchmark {
+
+    private static final int EDITS = Integer.getInteger("benchmark.edits", 1000);
+    private static final int READS = Integer.getInteger("benchmark.iterations", 500);
+    private static final String USERNAME = "storage-benchmark";
+
+    @Inject
+    NoteService noteService;
+
+    @Inject
+    VersionService versionService;
+
+    @Inject
+    VersionStorage versionStorage;
+
+    @Inject
+    NoteVersionRepository versionRepository;
+
+    @Inject
+    UserRepository userRepository;
+
+    @Test
+    void measureStorageAndReadLatency() {
+        Long userId = seedUser();
+        Note note = seedHistory(userId);
+
+        Object[] bytes = (Object[]) versionRepository.getEntityManager().createNativeQuery(
+                        "SELECT COALESCE(SUM(octet_length(v.content)), 0) + COALESCE(SUM(octet_length(v.delta)), 0)"
+                                + " + (SELECT COALESCE(SUM(octet_length(b.content)), 0) FROM content_blobs b"
+                                + " WHERE b.id IN (SELECT blob_id FROM note_versions WHERE note_id = :noteId)),"
+                                + " COUNT(*) FILTER (WHERE v.delta IS NULL) FROM note_versions v WHERE v.note_id = :noteId")
+                .setParameter("noteId", note.id)
+                .getSingleResult();
+        long stored = ((Number) bytes[0]).longValue();
+        long full = versionService.getNoteVersions(note.id, userId).stream()
+                .mapToLong(version -> version.content.getBytes(StandardCharsets.UTF_8).length)
+                .sum();
+        System.out.printf("[storage] versions=%d snapshots=%d stored=%.1fKB full=%.1fKB ratio=%.2f%n",
+                EDITS + 1, ((Number) bytes[1]).longValue(), stored / 1024.0, full / 1024.0, (double) stored / full);
+
+        Random random = new Random(42);
+        report("cold", read(note.id, userId, random, true));
+        report("warm", read(note.id, userId, random, false));
+    }
+
+    private List<Long> read(Long noteId, Long userId, Random random, boolean cold) {
+        List<Long> timings = new ArrayList<>();
+        for (int i = 0; i < READS; i++) {
+            long number = 1 + random.nextInt(EDITS + 1);
+            if (cold) {
+                versionStorage.clearCache();
+            }
+            long start = System.nanoTime();
+            versionService.getSpecificVersion(noteId, number, userId);
+            timings.add(System.nanoTime() - start);
+        }
+        return timings;
+    }
+
+    private void report(String cache, List<Long> timings) {
+        Collections.sort(timings);
+        double avg = timings.stream().mapToLong(Long::longValue).average().orElse(0) / 1_000_000.0;
+        double p50 = timings.get(timings.size() / 2) / 1_000_000.0;
+        double p99 = timings.get((int) (timings.size() * 0.99)) / 1_000_000.0;
+        System.out.printf("[read-%s] reads=%d avg=%.3fms p50=%.3fms p99=%.3fms%n", cache, timings.size(), avg, p50, p99);
+    }
+
+    // Ogni salvataggio corregge un carattere in un punto diverso del testo
+    private Note seedHistory(Long userId) {
+        String text = "Appunti di fisica: cinematica, dinamica del punto, lavoro ed energia, quantità di moto, "
+                + "urti elastici e anelastici, gravitazione. Esercizi svolti dal numero 1 al 40, "
+                + "da ripassare prima dello scritto di giugno insieme alle domande dell'orale.";
+        CreateNoteRequest create = new CreateNoteRequest();
+        create.title = "Storico";
+        create.content = text;
+        Note note = noteService.createNote(create, userId);
+        Random random = new Random(7);
+        for (int i = 0; i < EDITS; i++) {
+            int at = random.nextInt(text.length() - 10);
+            text = text.substring(0, at) + (char) ('a' + random.nextInt(26)) + text.substring(at + 1);
+            UpdateNoteRequest update = new UpdateNoteRequest();
+            update.content = text;
+            noteService.updateNote(note.id, update, userId);
+        }
+        return note;
+    }
+
+    @Transactional
+    Long seedUser() {
+        User user = userRepository.findByUsername(USERNAME).orElse(null);
+        if (user == null) {
+            user = new User();
+            user.username = USERNAME;
+            user.email = USERNAME + "@example.com";
+            user.passwordHash = "hash";
+            userRepository.persistAndFlush(user);
+        }
+        return user.id;
+    }
+}
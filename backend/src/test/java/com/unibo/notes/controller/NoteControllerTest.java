@@ -14,6 +14,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import static io.restassured.RestAssured.given;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.*;
 
 @QuarkusTest
@@ -250,6 +251,78 @@ class NoteControllerTest {
                 .body("total", greaterThan(0));
     }
 
+    @Test
+    void shouldStreamNotesAndSearchResultsAsNdjson() {
+        for (String title : new String[]{"Stream uno", "Stream due", "Stream tre"}) {
+            CreateNoteRequest request = new CreateNoteRequest();
+            request.title = title;
+            request.content = "Contenuto in streaming";
+            given()
+                    .header("Authorization", "Bearer " + authToken)
+                    .contentType(ContentType.JSON)
+                    .body(request)
+                    .when()
+                    .post("/api/notes");
+        }
+
+        // Una nota per riga, letta a blocchi (notes.stream.batch-size=2 nei test)
+        String notes = given()
+                .header("Authorization", "Bearer " + authToken)
+                .accept("application/x-ndjson")
+                .when()
+                .get("/api/notes")
+                .then()
+                .statusCode(200)
+                .contentType(containsString("application/x-ndjson"))
+                .extract().body().asString();
+        assertThat(notes.lines().filter(line -> !line.isBlank()))
+                .hasSize(3)
+                .allSatisfy(line -> assertThat(line).startsWith("{").contains("\"title\":\"Stream"));
+
+        String results = given()
+                .header("Authorization", "Bearer " + authToken)
+                .accept("application/x-ndjson")
+                .queryParam("q", "streaming")
+                .when()
+                .get("/api/search")
+                .then()
+                .statusCode(200)
+                .extract().body().asString();
+        assertThat(results.lines().filter(line -> !line.isBlank())).hasSize(3);
+
+        String events = given()
+                .header("Authorization", "Bearer " + authToken)
+                .accept("text/event-stream")
+                .when()
+                .get("/api/notes")
+                .then()
+                .statusCode(200)
+                .extract().body().asString();
+        assertThat(events.lines().filter(line -> line.startsWith("data:"))).hasSize(3);
+
+        // Senza Accept esplicito la risposta resta quella paginata
+        given()
+                .header("Authorization", "Bearer " + authToken)
+                .when()
+                .get("/api/notes")
+                .then()
+                .statusCode(200)
+                .body("notes.size()", is(3));
+    }
+
+    @Test
+    void shouldRejectSearchDebugUnlessEnabled() {
+        // notes.search.debug.enabled è disattivato di default: JPQL e piano restano sul server
+        given()
+                .header("Authorization", "Bearer " + authToken)
+                .queryParam("q", "appunti")
+                .queryParam("debug", true)
+                .when()
+                .get("/api/search")
+                .then()
+                .statusCode(400);
+    }
+
     @Test
     void shouldReturn401WhenNoAuthToken() {
         given()
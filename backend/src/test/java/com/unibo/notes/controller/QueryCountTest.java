@@ -0,0 +1,193 @@
+package com.unibo.notes.controller;
+
+import com.unibo.notes.entity.Folder;
+import com.unibo.notes.entity.Note;
+import com.unibo.notes.entity.NotePermission;
+import com.unibo.notes.entity.User;
+import com.unibo.notes.repository.ContentBlobRepository;
+import com.unibo.notes.repository.FolderRepository;
+import com.unibo.notes.repository.NotePermissionRepository;
+import com.unibo.notes.repository.NoteRepository;
+import com.unibo.notes.repository.NoteVersionRepository;
+import com.unibo.notes.repository.UserRepository;
+import com.unibo.notes.service.VersionStorage;
+import com.unibo.notes.util.JWTUtil;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.restassured.RestAssured.given;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Numero massimo di query SQL per endpoint, misurato con le statistiche di Hibernate.
+ * I dati hanno più righe del limite: un N+1 (una query per nota, cartella o collaboratore)
+ * supera il limite e fa fallire la build.
+ */
+@QuarkusTest
+class QueryCountTest {
+
+    private static final int ROWS = 6;
+
+    @Inject
+    SessionFactory sessionFactory;
+
+    @Inject
+    NoteRepository noteRepository;
+
+    @Inject
+    FolderRepository folderRepository;
+
+    @Inject
+    NotePermissionRepository permissionRepository;
+
+    @Inject
+    UserRepository userRepository;
+
+    @Inject
+    NoteVersionRepository versionRepository;
+
+    @Inject
+    ContentBlobRepository blobRepository;
+
+    @Inject
+    VersionStorage versionStorage;
+
+    @Inject
+    JWTUtil jwtUtil;
+
+    private String authToken;
+    private Long sharedNoteId;
+    private Long folderId;
+
+    @BeforeEach
+    @Transactional
+    void setup() {
+        versionRepository.deleteAll();
+        blobRepository.deleteAll();
+        permissionRepository.deleteAll();
+        noteRepository.deleteAll();
+        folderRepository.deleteAll();
+        userRepository.deleteAll();
+
+        User owner = createUser("querycount");
+        authToken = jwtUtil.generateToken(owner.id, owner.username, 1);
+
+        // Note in cartelle diverse, condivise con utenti diversi, e note di altri condivise con l'owner
+        List<User> others = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            User other = createUser("collega" + i);
+            others.add(other);
+
+            Folder folder = new Folder();
+            folder.name = "Cartella " + i;
+            folder.owner = owner;
+            folderRepository.persist(folder);
+            folderId = folder.id;
+
+            Note note = createNote(owner, folder, "Appunti " + i);
+            Note shared = createNote(other, null, "Condivisa " + i);
+            share(note, other, NotePermission.PermissionType.READ);
+            share(shared, owner, i % 2 == 0 ? NotePermission.PermissionType.READ : NotePermission.PermissionType.WRITE);
+        }
+        Note withCollaborators = createNote(owner, null, "Appunti condivisi");
+        others.forEach(other -> share(withCollaborators, other, NotePermission.PermissionType.WRITE));
+        sharedNoteId = withCollaborators.id;
+
+        // Una versione per collaboratore: autori diversi, snapshot e differenze
+        for (User other : others) {
+            withCollaborators.content = withCollaborators.content + " (rivisto da " + other.username + ")";
+            versionStorage.save(withCollaborators, withCollaborators.nextVersionNumber(), other.id);
+        }
+    }
+
+    @AfterEach
+    @Transactional
+    void cleanup() {
+        versionRepository.deleteAll();
+        blobRepository.deleteAll();
+        permissionRepository.deleteAll();
+        noteRepository.deleteAll();
+        folderRepository.deleteAll();
+    }
+
+    @Test
+    void shouldListNotesWithBoundedQueries() {
+        assertMaxStatements(1, "/api/notes");
+        assertMaxStatements(2, "/api/notes/folder/" + folderId);
+        assertMaxStatements(2, "/api/permissions/shared-with-me");
+    }
+
+    @Test
+    void shouldSearchWithBoundedQueries() {
+        assertMaxStatements(2, "/api/notes/search?q=appunti");
+        assertMaxStatements(2, "/api/search?q=appunti&includeShared=true");
+        // Faccette: un conteggio raggruppato per cartelle, autori e mesi
+        assertMaxStatements(5, "/api/search?q=appunti&includeShared=true&facets=true&sortBy=date");
+    }
+
+    @Test
+    void shouldListFoldersAndCollaboratorsWithBoundedQueries() {
+        assertMaxStatements(2, "/api/folders");
+        assertMaxStatements(2, "/api/permissions/notes/" + sharedNoteId);
+    }
+
+    @Test
+    void shouldListVersionsWithBoundedQueries() {
+        // Nota e pagina della cronologia, con gli autori nella stessa query
+        assertMaxStatements(2, "/api/notes/" + sharedNoteId + "/versions/history?limit=" + (ROWS - 1));
+        // Nota, versioni, blob degli snapshot e autori in una query ciascuno
+        assertMaxStatements(4, "/api/notes/" + sharedNoteId + "/versions");
+    }
+
+    private void assertMaxStatements(int max, String path) {
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.clear();
+
+        given()
+                .header("Authorization", "Bearer " + authToken)
+                .when()
+                .get(path)
+                .then()
+                .statusCode(200);
+
+        assertThat(statistics.getPrepareStatementCount())
+                .as("SQL statements for GET %s", path)
+                .isLessThanOrEqualTo(max);
+    }
+
+    private Note createNote(User owner, Folder folder, String title) {
+        Note note = new Note();
+        note.title = title;
+        note.content = "Contenuto di " + title;
+        note.owner = owner;
+        note.folder = folder;
+        noteRepository.persist(note);
+        return note;
+    }
+
+    private void share(Note note, User user, NotePermission.PermissionType type) {
+        NotePermission permission = new NotePermission();
+        permission.note = note;
+        permission.user = user;
+        permission.permission = type;
+        permissionRepository.persist(permission);
+    }
+
+    private User createUser(String username) {
+        User user = new User();
+        user.username = username;
+        user.email = username + "@example.com";
+        user.passwordHash = "hash";
+        userRepository.persist(user);
+        return user;
+    }
+}
@@ -0,0 +1,159 @@
+package com.unibo.notes.search;
+
+import com.unibo.notes.dto.CreateNoteRequest;
+import com.unibo.notes.dto.SearchCriteria;
+import com.unibo.notes.entity.Note;
+import com.unibo.notes.entity.User;
+import com.unibo.notes.repository.FolderRepository;
+import com.unibo.notes.repository.NotePage;
+import com.unibo.notes.repository.NotePermissionRepository;
+import com.unibo.notes.repository.NoteRepository;
+import com.unibo.notes.repository.UserRepository;
+import com.unibo.notes.service.NoteService;
+import com.unibo.notes.util.PageCursor;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@QuarkusTest
+class Bm25RankerTest {
+
+    @Inject
+    Bm25Ranker ranker;
+
+    @Inject
+    NoteService noteService;
+
+    @Inject
+    NoteRepository noteRepository;
+
+    @Inject
+    NotePermissionRepository permissionRepository;
+
+    @Inject
+    FolderRepository folderRepository;
+
+    @Inject
+    UserRepository userRepository;
+
+    private User owner;
+
+    @BeforeEach
+    @Transactional
+    void setup() {
+        permissionRepository.deleteAll();
+        noteRepository.deleteAll();
+        folderRepository.deleteAll();
+        userRepository.deleteAll();
+
+        owner = new User();
+        owner.username = "rankowner";
+        owner.email = "rankowner@example.com";
+        owner.passwordHash = "hash";
+        userRepository.persist(owner);
+    }
+
+    @AfterEach
+    @Transactional
+    void cleanup() {
+        permissionRepository.deleteAll();
+        noteRepository.deleteAll();
+    }
+
+    @Test
+    void shouldPreferTitleMatchesAndRareTerms() {
+        Bm25Ranker.Query query = ranker.compile("integrali");
+
+        double inTitle = query.score("Integrali definiti", "Esercizi svolti");
+        double inContent = query.score("Esercizi svolti", "Integrali definiti");
+        double missing = query.score("Esercizi svolti", "Derivate");
+
+        assertThat(inTitle).isGreaterThan(inContent);
+        assertThat(inContent).isGreaterThan(missing);
+        assertThat(missing).isZero();
+    }
+
+    @Test
+    void shouldKeepOnlyTopK() {
+        Bm25Ranker.Query query = ranker.compile("java");
+        List<Bm25Ranker.Candidate> candidates = List.of(
+                new Bm25Ranker.Candidate(1L, "Python", "niente"),
+                new Bm25Ranker.Candidate(2L, "Java", "java java"),
+                new Bm25Ranker.Candidate(3L, "Appunti", "java"),
+                new Bm25Ranker.Candidate(4L, "Java", "altro"));
+
+        List<Bm25Ranker.ScoredNote> top = ranker.top(query, candidates, 2);
+
+        assertThat(top).extracting(scored -> scored.id).containsExactly(2L, 4L);
+    }
+
+    @Test
+    void shouldOrderSearchByRelevanceAndPage() {
+        createNote("Varie", "Una nota che cita la termodinamica di sfuggita");
+        createNote("Termodinamica", "Primo principio della termodinamica");
+        createNote("Meccanica", "Leggi di Newton");
+        createNote("Termodinamica applicata", "Cicli termici");
+
+        SearchCriteria criteria = new SearchCriteria();
+        criteria.userId = owner.id;
+        criteria.keyword = "termodinamica";
+        criteria.sort = SearchCriteria.Sort.RELEVANCE;
+        criteria.limit = 2;
+
+        NotePage first = noteService.advancedSearch(criteria);
+        assertThat(first.notes).extracting(note -> note.title)
+                .containsExactly("Termodinamica", "Termodinamica applicata");
+        assertThat(first.scores).hasSize(2);
+
+        criteria.after = PageCursor.decode(first.nextCursor);
+        NotePage second = noteService.advancedSearch(criteria);
+        assertThat(second.notes).extracting(note -> note.title).containsExactly("Varie");
+        assertThat(second.hasMore()).isFalse();
+    }
+
+    @Test
+    void shouldRankFuzzyMatchesBelowExactOnes() {
+        createNote("Cartelli", "Cartello cartello cartello stradale");
+        createNote("Appunti", "Visita al castello");
+        createNote("Meccanica", "Leggi di Newton");
+
+        SearchCriteria criteria = new SearchCriteria();
+        criteria.userId = owner.id;
+        criteria.keyword = "castello";
+        criteria.sort = SearchCriteria.Sort.RELEVANCE;
+        assertThat(noteService.advancedSearch(criteria).notes).extracting(note -> note.title)
+                .containsExactly("Appunti");
+
+        // La variante compare più spesso e nel titolo, ma resta sotto la corrispondenza esatta;
+        // le varianti sono termini analizzati, come quelli della query
+        criteria.fuzzy = 1;
+        NotePage fuzzy = noteService.advancedSearch(criteria);
+        assertThat(fuzzy.notes).extracting(note -> note.title).containsExactly("Appunti", "Cartelli");
+        assertThat(criteria.variants).containsEntry("castell", List.of("cartell"));
+
+        // Un errore di battitura nella query trova comunque le note
+        SearchCriteria typo = new SearchCriteria();
+        typo.userId = owner.id;
+        typo.keyword = "casstello";
+        typo.sort = SearchCriteria.Sort.RELEVANCE;
+        assertThat(noteService.advancedSearch(typo).notes).isEmpty();
+        typo.fuzzy = 1;
+        // "cartello" dista due modifiche da "casstello"
+        assertThat(noteService.advancedSearch(typo).notes).extracting(note -> note.title)
+                .containsExactly("Appunti");
+    }
+
+    private Note createNote(String title, String content) {
+        CreateNoteRequest request = new CreateNoteRequest();
+        request.title = title;
+        request.content = content;
+        return noteService.createNote(request, owner.id);
+    }
+}
@@ -0,0 +1,60 @@
+package com.unibo.notes.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HighlighterTest {
+
+    @Test
+    void shouldFindAllTermsIgnoringCase() {
+        Highlighter highlighter = Highlighter.compile("java Quarkus");
+
+        List<Highlighter.Span> spans = highlighter.find("Quarkus usa Java, java ovunque");
+
+        assertThat(spans).extracting(span -> span.start).containsExactly(0, 12, 18);
+        assertThat(spans).extracting(span -> span.end).containsExactly(7, 16, 22);
+    }
+
+    @Test
+    void shouldMergeOverlappingMatches() {
+        // "b" viene trovato prima di "abc", che inizia prima: un solo intervallo
+        Highlighter highlighter = Highlighter.compile("b abc cd");
+
+        List<Highlighter.Span> spans = highlighter.find("xabcdx");
+
+        assertThat(spans).hasSize(1);
+        assertThat(spans.get(0).start).isEqualTo(1);
+        assertThat(spans.get(0).end).isEqualTo(5);
+    }
+
+    @Test
+    void shouldFollowFailureLinks() {
+        Highlighter highlighter = Highlighter.compile("she he hers");
+
+        List<Highlighter.Span> spans = highlighter.find("ushers");
+
+        assertThat(spans).hasSize(1);
+        assertThat(spans.get(0).start).isEqualTo(1);
+        assertThat(spans.get(0).end).isEqualTo(6);
+    }
+
+    @Test
+    void shouldCenterExcerptOnFirstHit() {
+        String text = "Lorem ipsum dolor sit amet ".repeat(10) + "determinante " + "consectetur adipiscing ".repeat(10);
+        Highlighter highlighter = Highlighter.compile("determinante");
+
+        String excerpt = Highlighter.excerpt(text, highlighter.find(text), 100);
+
+        assertThat(excerpt).contains("determinante").startsWith("...").endsWith("...");
+        assertThat(excerpt.length()).isLessThanOrEqualTo(106);
+    }
+
+    @Test
+    void shouldKeepShortTextAndHandleEmptyQuery() {
+        assertThat(Highlighter.compile("  ")).isNull();
+        assertThat(Highlighter.excerpt("Breve", List.of(), 100)).isEqualTo("Breve");
+    }
+}
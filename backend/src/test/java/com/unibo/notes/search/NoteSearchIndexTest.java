@@ -0,0 +1,357 @@
+package com.unibo.notes.search;
+
+import com.unibo.notes.dto.CreateNoteRequest;
+import com.unibo.notes.dto.SearchCriteria;
+import com.unibo.notes.dto.ShareNoteRequest;
+import com.unibo.notes.dto.UpdateNoteRequest;
+import com.unibo.notes.entity.Folder;
+import com.unibo.notes.entity.Note;
+import com.unibo.notes.entity.User;
+import com.unibo.notes.repository.FolderRepository;
+import com.unibo.notes.repository.NotePermissionRepository;
+import com.unibo.notes.repository.NotePage;
+import com.unibo.notes.repository.NoteRepository;
+import com.unibo.notes.repository.UserRepository;
+import com.unibo.notes.service.FolderService;
+import com.unibo.notes.service.NoteService;
+import com.unibo.notes.service.PermissionService;
+import com.unibo.notes.service.VersionService;
+import com.unibo.notes.util.PageCursor;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@QuarkusTest
+class NoteSearchIndexTest {
+
+    @Inject
+    NoteService noteService;
+
+    @Inject
+    PermissionService permissionService;
+
+    @Inject
+    FolderService folderService;
+
+    @Inject
+    VersionService versionService;
+
+    @Inject
+    SearchQueryParser queryParser;
+
+    @Inject
+    NoteMassIndexer massIndexer;
+
+    @Inject
+    NoteSearchIndex searchIndex;
+
+    @Inject
+    SearchCache searchCache;
+
+    @Inject
+    NoteRepository noteRepository;
+
+    @Inject
+    NotePermissionRepository permissionRepository;
+
+    @Inject
+    FolderRepository folderRepository;
+
+    @Inject
+    UserRepository userRepository;
+
+    private User owner;
+    private User otherUser;
+
+    @BeforeEach
+    @Transactional
+    void setup() {
+        permissionRepository.deleteAll();
+        noteRepository.deleteAll();
+        folderRepository.deleteAll();
+        userRepository.deleteAll();
+
+        owner = new User();
+        owner.username = "indexowner";
+        owner.email = "indexowner@example.com";
+        owner.passwordHash = "hash";
+        userRepository.persist(owner);
+
+        otherUser = new User();
+        otherUser.username = "indexother";
+        otherUser.email = "indexother@example.com";
+        otherUser.passwordHash = "hash";
+        userRepository.persist(otherUser);
+    }
+
+    @AfterEach
+    @Transactional
+    void cleanup() {
+        // I dati sono committati: le altre classi di test non li ripuliscono nell'ordine corretto
+        permissionRepository.deleteAll();
+        noteRepository.deleteAll();
+    }
+
+    // I metodi di test non sono transazionali: l'indice si aggiorna al commit di ogni servizio
+
+    @Test
+    void shouldFindNoteAfterCommit() {
+        createNote("Appunti di algebra", "Matrici e determinanti", owner.id);
+        createNote("Ricette", "Pasta al pomodoro", owner.id);
+
+        List<Note> results = search("determinanti", owner.id, true);
+
+        assertThat(results).hasSize(1);
+        assertThat(results.get(0).title).isEqualTo("Appunti di algebra");
+    }
+
+    @Test
+    void shouldMatchLastTermAsPrefix() {
+        createNote("Analisi matematica", "Limiti e derivate", owner.id);
+
+        assertThat(search("deriv", owner.id, true)).hasSize(1);
+        assertThat(search("analisi limiti", owner.id, true)).hasSize(1);
+        assertThat(search("analisi integrali", owner.id, true)).isEmpty();
+    }
+
+    @Test
+    void shouldReflectUpdatesAndDeletes() {
+        Note note = createNote("Bozza", "Contenuto iniziale", owner.id);
+
+        UpdateNoteRequest update = new UpdateNoteRequest();
+        update.content = "Contenuto revisionato";
+        noteService.updateNote(note.id, update, owner.id);
+
+        assertThat(search("iniziale", owner.id, true)).isEmpty();
+        assertThat(search("revisionato", owner.id, true)).hasSize(1);
+
+        noteService.deleteNote(note.id, owner.id);
+
+        assertThat(search("revisionato", owner.id, true)).isEmpty();
+    }
+
+    @Test
+    void shouldOnlyReturnOwnedOrSharedNotes() {
+        Note note = createNote("Segreto", "Nota riservata", owner.id);
+
+        assertThat(search("riservata", otherUser.id, true)).isEmpty();
+
+        ShareNoteRequest share = new ShareNoteRequest();
+        share.username = otherUser.username;
+        share.permission = "READ";
+        permissionService.shareNote(note.id, share, owner.id);
+
+        assertThat(search("riservata", otherUser.id, true)).hasSize(1);
+        assertThat(search("riservata", otherUser.id, false)).isEmpty();
+    }
+
+    @Test
+    void shouldRebuildIndexFromDatabase() {
+        createNote("Fisica", "Termodinamica", owner.id);
+
+        long indexed = massIndexer.rebuild();
+
+        assertThat(indexed).isEqualTo(1);
+        assertThat(search("termodinamica", owner.id, true)).hasSize(1);
+    }
+
+    @Test
+    void shouldRunStructuredQueriesOnIndexAndDatabase() {
+        Folder folder = folderService.createFolder("Università", null, null, owner.id);
+        CreateNoteRequest exam = new CreateNoteRequest();
+        exam.title = "Esame di analisi";
+        exam.content = "Serie di Taylor e limiti";
+        exam.folderId = folder.id;
+        noteService.createNote(exam, owner.id);
+        createNote("Analisi dei dati", "Regressione lineare", owner.id);
+        createNote("Ricette", "Serie di ricette di Taylor", owner.id);
+
+        String today = LocalDate.now().toString();
+        assertThat(structuredSearch("\"serie di taylor\"")).containsExactly("Esame di analisi");
+        assertThat(structuredSearch("title:analisi -dati")).containsExactly("Esame di analisi");
+        assertThat(structuredSearch("analisi OR ricette")).hasSize(3);
+        assertThat(structuredSearch("folder:univ")).containsExactly("Esame di analisi");
+        // Le note senza cartella non hanno un nome di cartella da escludere
+        assertThat(structuredSearch("-folder:univ")).containsExactlyInAnyOrder("Analisi dei dati", "Ricette");
+        // _ è un carattere del nome, non un jolly di LIKE
+        assertThat(structuredSearch("author:indexowne_")).isEmpty();
+        assertThat(structuredSearch("author:indexowner AND taylor"))
+                .containsExactlyInAnyOrder("Esame di analisi", "Ricette");
+        assertThat(structuredSearch("(limiti OR regressione) NOT esame")).containsExactly("Analisi dei dati");
+        assertThat(structuredSearch("created:" + today + " ricette")).containsExactly("Ricette");
+        assertThat(structuredSearch("modified:..2000-01-01")).isEmpty();
+    }
+
+    @Test
+    void shouldKeepServingOldDocumentsUntilRebuildFinishes() {
+        createNote("Chimica", "Legami covalenti", owner.id);
+
+        searchIndex.startRebuild();
+        // L'indice non viene svuotato: fino alla fine della ricostruzione risponde con i documenti esistenti
+        assertThat(search("covalenti", owner.id, true)).extracting(n -> n.title).containsExactly("Chimica");
+        createNote("Biochimica", "Legami a idrogeno", owner.id);
+        searchIndex.finishRebuild();
+
+        // Restano solo i documenti scritti dopo l'inizio (qui la nota salvata durante la ricostruzione)
+        assertThat(search("legami", owner.id, true)).extracting(n -> n.title).containsExactly("Biochimica");
+    }
+
+    @Test
+    void shouldSearchVersionHistory() {
+        Note note = createNote("Relazione", "Prima stesura con bozza", owner.id);
+        UpdateNoteRequest update = new UpdateNoteRequest();
+        update.content = "Versione definitiva";
+        noteService.updateNote(note.id, update, owner.id);
+        update.content = "Versione definitiva rivista";
+        noteService.updateNote(note.id, update, owner.id);
+
+        assertThat(search("stesura", owner.id, true)).isEmpty();
+        NotePage history = historySearch("stesura", owner.id);
+        assertThat(history.notes).extracting(n -> n.title).containsExactly("Relazione");
+        assertThat(history.versions.get(note.id)).containsExactly(1L);
+        assertThat(historySearch("definitiva", owner.id).versions.get(note.id)).containsExactly(2L, 3L);
+        assertThat(historySearch("stesura", otherUser.id).notes).isEmpty();
+
+        // Le versioni eliminate escono dall'indice al commit
+        versionService.deleteOldVersions(note.id, 1, owner.id);
+        assertThat(historySearch("stesura", owner.id).notes).isEmpty();
+        assertThat(historySearch("definitiva", owner.id).versions.get(note.id)).containsExactly(3L);
+
+        assertThat(massIndexer.rebuildHistory()).isGreaterThanOrEqualTo(1);
+        assertThat(historySearch("definitiva", owner.id).versions.get(note.id)).containsExactly(3L);
+    }
+
+    @Test
+    void shouldTraceSearchStagesAndPlan() {
+        createNote("Termodinamica", "Entropia e calore", owner.id);
+        createNote("Ottica", "Lenti e specchi", owner.id);
+
+        SearchCriteria criteria = new SearchCriteria();
+        criteria.userId = owner.id;
+        criteria.keyword = "entropia";
+        criteria.sort = SearchCriteria.Sort.RELEVANCE;
+        assertThat(noteService.advancedSearch(criteria).notes).extracting(n -> n.title).containsExactly("Termodinamica");
+
+        SearchTrace trace = criteria.trace;
+        assertThat(trace.plan()).containsEntry("cache", "miss").containsEntry("path", "ranked")
+                .containsEntry("indexHits", 1).containsEntry("candidates", 1);
+        assertThat((String) trace.plan().get("jpql")).startsWith("SELECT DISTINCT n.id, n.updatedAt FROM Note n")
+                .endsWith("ORDER BY n.updatedAt DESC, n.id DESC");
+        // Punteggi già calcolati dall'indice: nessun ranking sui testi
+        assertThat(trace.breakdownMillis()).containsKeys("permissions", "query", "hydration")
+                .doesNotContainKeys("parse", "mapping", "ranking");
+
+        // Dalla cache: solo il caricamento delle entità
+        SearchCriteria again = new SearchCriteria();
+        again.userId = owner.id;
+        again.keyword = "entropia";
+        again.sort = SearchCriteria.Sort.RELEVANCE;
+        noteService.advancedSearch(again);
+        assertThat(again.trace.plan()).containsEntry("cache", "hit").doesNotContainKey("path");
+        assertThat(again.trace.breakdownMillis()).containsOnlyKeys("hydration");
+    }
+
+    @Test
+    void shouldStreamRankedResultsInSlicesOutsideTheCache() {
+        createNote("Vettori", "Vettori vettori vettori", owner.id);
+        createNote("Matrici", "Vettori e matrici", owner.id);
+        createNote("Spazi", "Spazi di vettori, basi e dimensione degli spazi", owner.id);
+
+        SearchCriteria single = new SearchCriteria();
+        single.userId = owner.id;
+        single.keyword = "vettori";
+        single.sort = SearchCriteria.Sort.RELEVANCE;
+        List<String> expected = noteService.advancedSearch(single).notes.stream().map(note -> note.title).toList();
+        assertThat(expected).hasSize(3);
+
+        searchCache.clear();
+        SearchCriteria criteria = new SearchCriteria();
+        criteria.userId = owner.id;
+        criteria.keyword = "vettori";
+        criteria.sort = SearchCriteria.Sort.RELEVANCE;
+        criteria.limit = 1;
+        NoteService.SearchStream stream = noteService.streamSearch(criteria);
+
+        // Classifica calcolata al primo blocco, poi una fetta per blocco nello stesso ordine
+        List<String> streamed = new ArrayList<>();
+        PageCursor after = null;
+        do {
+            NotePage page = stream.next(after);
+            page.notes.forEach(note -> streamed.add(note.title));
+            after = page.nextCursor != null ? PageCursor.decode(page.nextCursor) : null;
+        } while (after != null);
+        assertThat(streamed).containsExactlyElementsOf(expected);
+        assertThat(searchCache.size()).isZero();
+    }
+
+    @Test
+    void shouldReturnPartialResultsAfterDeadlineOrCancellation() throws InterruptedException {
+        createNote("Geometria", "Triangoli e poligoni", owner.id);
+
+        SearchCriteria expired = new SearchCriteria();
+        expired.userId = owner.id;
+        expired.keyword = "triangoli";
+        expired.deadline = SearchDeadline.after(1);
+        Thread.sleep(5);
+        assertThat(noteService.advancedSearch(expired).notes).isEmpty();
+        assertThat(expired.deadline.isTimedOut()).isTrue();
+
+        SearchCriteria cancelled = new SearchCriteria();
+        cancelled.userId = owner.id;
+        cancelled.keyword = "triangoli";
+        cancelled.sort = SearchCriteria.Sort.RELEVANCE;
+        cancelled.deadline.cancel();
+        assertThat(noteService.advancedSearch(cancelled).notes).isEmpty();
+        assertThat(cancelled.deadline.isTimedOut()).isTrue();
+
+        // I risultati parziali non restano in cache
+        assertThat(search("triangoli", owner.id, true)).extracting(n -> n.title).containsExactly("Geometria");
+    }
+
+    private NotePage historySearch(String keyword, Long userId) {
+        SearchCriteria criteria = new SearchCriteria();
+        criteria.userId = userId;
+        criteria.keyword = keyword;
+        criteria.history = true;
+        return noteService.advancedSearch(criteria);
+    }
+
+    // Stessi risultati dall'indice (servizio) e dalla clausola SQL compilata (repository)
+    private List<String> structuredSearch(String query) {
+        SearchCriteria criteria = new SearchCriteria();
+        criteria.userId = owner.id;
+        criteria.keyword = query;
+        criteria.query = queryParser.parse(query);
+        assertThat(criteria.query.isSimple()).isFalse();
+
+        List<String> fromIndex = noteService.advancedSearch(criteria).notes.stream().map(note -> note.title).toList();
+        List<String> fromDatabase = noteRepository.advancedSearch(criteria, null).notes.stream()
+                .map(note -> note.title).toList();
+        assertThat(fromDatabase).containsExactlyInAnyOrderElementsOf(fromIndex);
+        return fromIndex;
+    }
+
+    private Note createNote(String title, String content, Long userId) {
+        CreateNoteRequest request = new CreateNoteRequest();
+        request.title = title;
+        request.content = content;
+        return noteService.createNote(request, userId);
+    }
+
+    private List<Note> search(String keyword, Long userId, boolean includeShared) {
+        SearchCriteria criteria = new SearchCriteria();
+        criteria.userId = userId;
+        criteria.keyword = keyword;
+        criteria.includeShared = includeShared;
+        return noteService.advancedSearch(criteria).notes;
+    }
+}
@@ -0,0 +1,30 @@
+package com.unibo.notes.search;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PostgresSearchSchemaTest {
+
+    private static final String COLLATION = "it-IT-x-icu";
+
+    @Test
+    void shouldLeaveTitleAloneWhenCollationMatches() {
+        assertThat(PostgresSearchSchema.collationStatements(COLLATION, "character varying(100)", true, COLLATION))
+                .isEmpty();
+    }
+
+    @Test
+    void shouldKeepColumnTypeWhenChangingCollation() {
+        // Colonna creata da Hibernate con la collation predefinita del database
+        assertThat(PostgresSearchSchema.collationStatements("default", "character varying(255)", false, COLLATION))
+                .containsExactly("ALTER TABLE notes ALTER COLUMN title TYPE character varying(255) COLLATE \"it-IT-x-icu\"");
+    }
+
+    @Test
+    void shouldDropGeneratedColumnBeforeChangingCollation() {
+        assertThat(PostgresSearchSchema.collationStatements("default", "character varying(100)", true, COLLATION))
+                .containsExactly("ALTER TABLE notes DROP COLUMN search_vector",
+                        "ALTER TABLE notes ALTER COLUMN title TYPE character varying(100) COLLATE \"it-IT-x-icu\"");
+    }
+}
@@ -0,0 +1,184 @@
+package com.unibo.notes.search;
+
+import com.unibo.notes.dto.CreateNoteRequest;
+import com.unibo.notes.dto.SearchCriteria;
+import com.unibo.notes.dto.ShareNoteRequest;
+import com.unibo.notes.dto.UpdateNoteRequest;
+import com.unibo.notes.entity.Note;
+import com.unibo.notes.entity.User;
+import com.unibo.notes.repository.FolderRepository;
+import com.unibo.notes.repository.NotePermissionRepository;
+import com.unibo.notes.repository.NoteRepository;
+import com.unibo.notes.repository.UserRepository;
+import com.unibo.notes.service.NoteService;
+import com.unibo.notes.service.PermissionService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@QuarkusTest
+class SearchCacheTest {
+
+    @Inject
+    SearchCache searchCache;
+
+    @Inject
+    MeterRegistry registry;
+
+    @Inject
+    NoteService noteService;
+
+    @Inject
+    PermissionService permissionService;
+
+    @Inject
+    NoteRepository noteRepository;
+
+    @Inject
+    NotePermissionRepository permissionRepository;
+
+    @Inject
+    FolderRepository folderRepository;
+
+    @Inject
+    UserRepository userRepository;
+
+    private User owner;
+    private User otherUser;
+
+    @BeforeEach
+    @Transactional
+    void setup() {
+        permissionRepository.deleteAll();
+        noteRepository.deleteAll();
+        folderRepository.deleteAll();
+        userRepository.deleteAll();
+
+        owner = new User();
+        owner.username = "cacheowner";
+        owner.email = "cacheowner@example.com";
+        owner.passwordHash = "hash";
+        userRepository.persist(owner);
+
+        otherUser = new User();
+        otherUser.username = "cacheother";
+        otherUser.email = "cacheother@example.com";
+        otherUser.passwordHash = "hash";
+        userRepository.persist(otherUser);
+    }
+
+    @AfterEach
+    @Transactional
+    void cleanup() {
+        permissionRepository.deleteAll();
+        noteRepository.deleteAll();
+    }
+
+    @Test
+    void shouldServeRepeatedSearchFromCache() {
+        createNote("Reti", "Protocollo TCP");
+        double hits = counter("notes.search.cache.hits");
+
+        assertThat(search(owner.id, "tcp")).hasSize(1);
+        // Stessa ricerca a meno di spazi e maiuscole
+        assertThat(search(owner.id, "  TCP ")).hasSize(1);
+
+        assertThat(counter("notes.search.cache.hits")).isEqualTo(hits + 1);
+    }
+
+    @Test
+    void shouldInvalidateOnNoteWrites() {
+        Note note = createNote("Reti", "Protocollo TCP");
+        assertThat(search(owner.id, "udp")).isEmpty();
+
+        UpdateNoteRequest update = new UpdateNoteRequest();
+        update.content = "Protocollo UDP";
+        noteService.updateNote(note.id, update, owner.id);
+
+        assertThat(search(owner.id, "udp")).hasSize(1);
+
+        noteService.deleteNote(note.id, owner.id);
+
+        assertThat(search(owner.id, "udp")).isEmpty();
+    }
+
+    @Test
+    void shouldInvalidateReadersOnShareAndRevoke() {
+        Note note = createNote("Verbale", "Riunione di gruppo");
+        assertThat(search(otherUser.id, "riunione")).isEmpty();
+
+        ShareNoteRequest share = new ShareNoteRequest();
+        share.username = otherUser.username;
+        share.permission = "READ";
+        permissionService.shareNote(note.id, share, owner.id);
+
+        assertThat(search(otherUser.id, "riunione")).hasSize(1);
+
+        // Una modifica del proprietario invalida anche le ricerche del lettore
+        UpdateNoteRequest update = new UpdateNoteRequest();
+        update.content = "Riunione rinviata";
+        noteService.updateNote(note.id, update, owner.id);
+        assertThat(search(otherUser.id, "rinviata")).hasSize(1);
+
+        permissionService.revokePermission(note.id, otherUser.id, owner.id);
+
+        assertThat(search(otherUser.id, "riunione")).isEmpty();
+    }
+
+    @Test
+    void shouldNotStoreResultsComputedBeforeInvalidation() {
+        SearchCriteria criteria = criteria(owner.id, "tcp");
+        long generation = searchCache.generation(owner.id);
+
+        searchCache.invalidate(List.of(owner.id));
+        searchCache.put(criteria, generation, new SearchCache.CachedPage(List.of(), null, null));
+
+        assertThat(searchCache.get(criteria)).isNull();
+    }
+
+    @Test
+    void shouldShareFacetsAcrossSortsAndPagesUntilInvalidated() {
+        Note note = createNote("Reti", "Protocollo TCP");
+        SearchCriteria byDate = criteria(owner.id, "tcp");
+        byDate.sort = SearchCriteria.Sort.MODIFIED;
+        assertThat(noteService.searchFacets(byDate).months).singleElement()
+                .satisfies(month -> assertThat(month.count).isEqualTo(1L));
+
+        SearchCriteria byTitle = criteria(owner.id, "tcp");
+        byTitle.sort = SearchCriteria.Sort.TITLE;
+        assertThat(searchCache.getFacets(byTitle)).isNotNull();
+
+        noteService.deleteNote(note.id, owner.id);
+        assertThat(searchCache.getFacets(byTitle)).isNull();
+    }
+
+    private double counter(String name) {
+        return registry.get(name).functionCounter().count();
+    }
+
+    private Note createNote(String title, String content) {
+        CreateNoteRequest request = new CreateNoteRequest();
+        request.title = title;
+        request.content = content;
+        return noteService.createNote(request, owner.id);
+    }
+
+    private List<Note> search(Long userId, String keyword) {
+        return noteService.advancedSearch(criteria(userId, keyword)).notes;
+    }
+
+    private SearchCriteria criteria(Long userId, String keyword) {
+        SearchCriteria criteria = new SearchCriteria();
+        criteria.userId = userId;
+        criteria.keyword = keyword;
+        return criteria;
+    }
+}
@@ -0,0 +1,83 @@
+package com.unibo.notes.search;
+
+import com.unibo.notes.exception.ValidationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SearchQueryParserTest {
+
+    private SearchQueryParser parser;
+
+    @BeforeEach
+    void setup() {
+        parser = new SearchQueryParser();
+        parser.maxEntries = 10;
+        parser.init();
+    }
+
+    @Test
+    void shouldKeepPlainWordsSimple() {
+        SearchQuery query = parser.parse("Algebra  lineare");
+
+        assertThat(query.isSimple()).isTrue();
+        assertThat(query.rankingText()).isEqualTo("algebra lineare");
+        // Operatori solo in maiuscolo
+        assertThat(parser.parse("cani and gatti").isSimple()).isTrue();
+        assertThat(parser.parse("   ")).isNull();
+    }
+
+    @Test
+    void shouldGiveAndPrecedenceOverOr() {
+        SearchQuery query = parser.parse("a b OR c NOT d");
+
+        SearchQuery.Or or = (SearchQuery.Or) query.root;
+        assertThat(or.children).hasSize(2);
+        assertThat(((SearchQuery.And) or.children.get(0)).children).hasSize(2);
+        SearchQuery.And right = (SearchQuery.And) or.children.get(1);
+        assertThat(right.children.get(1)).isInstanceOf(SearchQuery.Not.class);
+        // I termini negati non contano per ranking ed evidenziazione
+        assertThat(query.rankingText()).isEqualTo("a b c");
+    }
+
+    @Test
+    void shouldParsePhrasesFieldsAndGroups() {
+        SearchQuery query = parser.parse("title:\"Serie di Taylor\" (folder:uni OR author:Mario) -bozza");
+
+        SearchQuery.And and = (SearchQuery.And) query.root;
+        SearchQuery.Text phrase = (SearchQuery.Text) and.children.get(0);
+        assertThat(phrase.field).isEqualTo(SearchQuery.Field.TITLE);
+        assertThat(phrase.phrase).isTrue();
+        assertThat(phrase.text).isEqualTo("serie di taylor");
+        assertThat(and.children.get(1)).isInstanceOf(SearchQuery.Or.class);
+        assertThat(query.folderNames()).containsExactly("uni");
+        assertThat(query.authorNames()).containsExactly("mario");
+    }
+
+    @Test
+    void shouldParseDateRanges() {
+        SearchQuery.DateRange month = (SearchQuery.DateRange) parser.parse("modified:2024-02").root;
+        assertThat(month.field).isEqualTo(SearchQuery.DateField.MODIFIED);
+        assertThat(month.from).isEqualTo(LocalDateTime.of(2024, 2, 1, 0, 0));
+        assertThat(month.to).isEqualTo(LocalDateTime.of(2024, 3, 1, 0, 0));
+
+        SearchQuery.DateRange open = (SearchQuery.DateRange) parser.parse("created:..2024-01-31").root;
+        assertThat(open.from).isNull();
+        assertThat(open.to).isEqualTo(LocalDateTime.of(2024, 2, 1, 0, 0));
+
+        assertThatThrownBy(() -> parser.parse("created:ieri")).isInstanceOf(ValidationException.class);
+    }
+
+    @Test
+    void shouldTolerateUnbalancedInputAndCachePlans() {
+        assertThat(parser.parse("(a OR \"b c").root).isInstanceOf(SearchQuery.Or.class);
+        assertThat(parser.parse("a ) AND").rankingText()).isEqualTo("a");
+        assertThat(parser.parse("()").root).isNull();
+
+        assertThat(parser.parse("x OR y")).isSameAs(parser.parse(" x OR y "));
+    }
+}
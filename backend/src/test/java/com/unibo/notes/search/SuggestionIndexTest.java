@@ -0,0 +1,181 @@
+package com.unibo.notes.search;
+
+import com.unibo.notes.dto.CreateNoteRequest;
+import com.unibo.notes.dto.ShareNoteRequest;
+import com.unibo.notes.dto.UpdateNoteRequest;
+import com.unibo.notes.entity.Note;
+import com.unibo.notes.entity.User;
+import com.unibo.notes.repository.FolderRepository;
+import com.unibo.notes.repository.NotePermissionRepository;
+import com.unibo.notes.repository.NoteRepository;
+import com.unibo.notes.repository.UserRepository;
+import com.unibo.notes.service.FolderService;
+import com.unibo.notes.service.NoteService;
+import com.unibo.notes.service.PermissionService;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@QuarkusTest
+class SuggestionIndexTest {
+
+    @Inject
+    SuggestionIndex suggestionIndex;
+
+    @Inject
+    MemoryIndexBuilder memoryIndexBuilder;
+
+    @Inject
+    NoteService noteService;
+
+    @Inject
+    FolderService folderService;
+
+    @Inject
+    PermissionService permissionService;
+
+    @Inject
+    NoteRepository noteRepository;
+
+    @Inject
+    NotePermissionRepository permissionRepository;
+
+    @Inject
+    FolderRepository folderRepository;
+
+    @Inject
+    UserRepository userRepository;
+
+    private User owner;
+    private User otherUser;
+
+    @BeforeEach
+    @Transactional
+    void setup() {
+        permissionRepository.deleteAll();
+        noteRepository.deleteAll();
+        folderRepository.deleteAll();
+        userRepository.deleteAll();
+
+        owner = new User();
+        owner.username = "suggestowner";
+        owner.email = "suggestowner@example.com";
+        owner.passwordHash = "hash";
+        userRepository.persist(owner);
+
+        otherUser = new User();
+        otherUser.username = "suggestother";
+        otherUser.email = "suggestother@example.com";
+        otherUser.passwordHash = "hash";
+        userRepository.persist(otherUser);
+    }
+
+    @AfterEach
+    @Transactional
+    void cleanup() {
+        permissionRepository.deleteAll();
+        noteRepository.deleteAll();
+        folderRepository.deleteAll();
+    }
+
+    // I metodi di test non sono transazionali: l'indice si aggiorna al commit di ogni servizio
+
+    @Test
+    void shouldSuggestTitlesAndTermsByPrefix() {
+        createNote("Algebra lineare", "Autovalori e autovettori");
+
+        assertThat(suggestionIndex.suggest(owner.id, "alg", 10)).containsExactly("Algebra lineare", "algebra");
+        assertThat(suggestionIndex.suggest(owner.id, "AUTO", 10)).containsExactlyInAnyOrder("autovalori", "autovettori");
+        assertThat(suggestionIndex.suggest(otherUser.id, "alg", 10)).isEmpty();
+    }
+
+    @Test
+    void shouldFollowUpdatesAndDeletes() {
+        Note note = createNote("Bozza", "Contenuto provvisorio");
+
+        UpdateNoteRequest update = new UpdateNoteRequest();
+        update.title = "Definitiva";
+        update.content = "Contenuto finale";
+        noteService.updateNote(note.id, update, owner.id);
+
+        assertThat(suggestionIndex.suggest(owner.id, "bozza", 10)).isEmpty();
+        assertThat(suggestionIndex.suggest(owner.id, "prov", 10)).isEmpty();
+        assertThat(suggestionIndex.suggest(owner.id, "defin", 10)).contains("Definitiva");
+
+        noteService.deleteNote(note.id, owner.id);
+
+        assertThat(suggestionIndex.suggest(owner.id, "defin", 10)).isEmpty();
+    }
+
+    @Test
+    void shouldSuggestSharedNotesAndCollaborators() {
+        Note note = createNote("Verbale riunione", "Decisioni prese");
+
+        ShareNoteRequest share = new ShareNoteRequest();
+        share.username = otherUser.username;
+        share.permission = "READ";
+        permissionService.shareNote(note.id, share, owner.id);
+
+        assertThat(suggestionIndex.suggest(otherUser.id, "verb", 10)).contains("Verbale riunione");
+        assertThat(suggestionIndex.suggest(otherUser.id, "suggest", 10)).containsExactly("suggestowner");
+        assertThat(suggestionIndex.suggest(owner.id, "suggest", 10)).containsExactly("suggestother");
+
+        permissionService.revokePermission(note.id, otherUser.id, owner.id);
+
+        assertThat(suggestionIndex.suggest(otherUser.id, "verb", 10)).isEmpty();
+        assertThat(suggestionIndex.suggest(owner.id, "suggest", 10)).isEmpty();
+    }
+
+    @Test
+    void shouldSuggestFolderNames() {
+        var folder = folderService.createFolder("Università", null, null, owner.id);
+        assertThat(suggestionIndex.suggest(owner.id, "univ", 10)).containsExactly("Università");
+
+        folderService.updateFolder(folder.id, "Lavoro", null, owner.id);
+        assertThat(suggestionIndex.suggest(owner.id, "univ", 10)).isEmpty();
+        assertThat(suggestionIndex.suggest(owner.id, "lav", 10)).containsExactly("Lavoro");
+    }
+
+    @Test
+    void shouldFindFuzzyTermsInUserDictionary() {
+        createNote("Termodinamica", "Entropia ed entalpia");
+
+        assertThat(suggestionIndex.fuzzyTerms(owner.id, "termodinamca", 1, 10)).containsExactly("termodinamica");
+        assertThat(suggestionIndex.fuzzyTerms(owner.id, "entropia", 1, 10)).isEmpty();
+        // Lo scambio di due lettere costa due modifiche
+        assertThat(suggestionIndex.fuzzyTerms(owner.id, "etnropia", 1, 10)).isEmpty();
+        assertThat(suggestionIndex.fuzzyTerms(owner.id, "etnropia", 2, 10)).containsExactly("entropia");
+        // Il più vicino per primo
+        assertThat(suggestionIndex.fuzzyTerms(owner.id, "entapia", 2, 10)).containsExactly("entalpia", "entropia");
+        // Termini corti: nessuna tolleranza
+        assertThat(suggestionIndex.fuzzyTerms(owner.id, "ed", 2, 10)).isEmpty();
+        assertThat(suggestionIndex.fuzzyTerms(otherUser.id, "termodinamca", 1, 10)).isEmpty();
+    }
+
+    @Test
+    void shouldRebuildFromDatabase() {
+        Note note = createNote("Fisica", "Termodinamica");
+        ShareNoteRequest share = new ShareNoteRequest();
+        share.username = otherUser.username;
+        share.permission = "WRITE";
+        permissionService.shareNote(note.id, share, owner.id);
+
+        memoryIndexBuilder.rebuild();
+
+        assertThat(suggestionIndex.suggest(owner.id, "termo", 10)).containsExactly("termodinamica");
+        assertThat(suggestionIndex.suggest(otherUser.id, "fis", 10)).contains("Fisica");
+        assertThat(suggestionIndex.suggest(otherUser.id, "suggest", 10)).containsExactly("suggestowner");
+    }
+
+    private Note createNote(String title, String content) {
+        CreateNoteRequest request = new CreateNoteRequest();
+        request.title = title;
+        request.content = content;
+        return noteService.createNote(request, owner.id);
+    }
+}
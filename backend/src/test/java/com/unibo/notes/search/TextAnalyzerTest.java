@@ -0,0 +1,52 @@
+package com.unibo.notes.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TextAnalyzerTest {
+
+    private final TextAnalyzer analyzer = new TextAnalyzer(TextAnalyzer.DEFAULT_FILTERS);
+
+    @Test
+    void shouldFoldAccentsAndCase() {
+        assertThat(analyzer.terms("Perché")).isEqualTo(analyzer.terms("perche"));
+        assertThat(analyzer.terms("CITTÀ")).containsExactly("citta");
+    }
+
+    @Test
+    void shouldStemItalianAndEnglishPlurals() {
+        assertThat(analyzer.terms("appunti appunto")).containsExactly("appunt", "appunt");
+        assertThat(analyzer.terms("notes studies")).containsExactly("note", "study");
+        // Parole corte: nessuno stemming italiano
+        assertThat(analyzer.terms("casa")).containsExactly("casa");
+    }
+
+    @Test
+    void shouldDropStopWordsLeavingPositionGaps() {
+        List<Integer> positions = new ArrayList<>();
+        List<String> terms = new ArrayList<>();
+        analyzer.analyze("Serie di Taylor and the limits", (buffer, length, position) -> {
+            terms.add(new String(buffer, 0, length));
+            positions.add(position);
+        });
+
+        assertThat(terms).containsExactly("serie", "taylor", "limit");
+        assertThat(positions).containsExactly(0, 2, 5);
+    }
+
+    @Test
+    void shouldApplyOnlyConfiguredFilters() {
+        TextAnalyzer lowercaseOnly = new TextAnalyzer("lowercase");
+
+        assertThat(lowercaseOnly.terms("Gli Appunti")).containsExactly("gli", "appunti");
+        assertThat(lowercaseOnly.signature()).isEqualTo("lowercase");
+        assertThatThrownBy(() -> new TextAnalyzer("lowercase, snowball"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("snowball");
+    }
+}
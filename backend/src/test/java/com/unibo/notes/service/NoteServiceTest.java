@@ -1,22 +1,33 @@
 package com.unibo.notes.service;
 
 import com.unibo.notes.dto.CreateNoteRequest;
+import com.unibo.notes.dto.NoteDTO;
+import com.unibo.notes.dto.SearchCriteria;
+import com.unibo.notes.dto.SearchFacets;
+import com.unibo.notes.entity.Folder;
 import com.unibo.notes.dto.UpdateNoteRequest;
 import com.unibo.notes.entity.Note;
+import com.unibo.notes.entity.NoteVersion;
 import com.unibo.notes.entity.User;
 import com.unibo.notes.exception.ConflictException;
 import com.unibo.notes.exception.ResourceNotFoundException;
 import com.unibo.notes.exception.UnauthorizedException;
 import com.unibo.notes.exception.ValidationException;
 import com.unibo.notes.repository.FolderRepository;
+import com.unibo.notes.repository.NoteDTOPage;
+import com.unibo.notes.repository.NotePage;
 import com.unibo.notes.repository.NoteRepository;
+import com.unibo.notes.repository.NoteVersionRepository;
 import com.unibo.notes.repository.UserRepository;
+import com.unibo.notes.util.PageCursor;
 import io.quarkus.test.junit.QuarkusTest;
 import jakarta.inject.Inject;
+import jakarta.persistence.PersistenceException;
 import jakarta.transaction.Transactional;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -37,6 +48,9 @@ class NoteServiceTest {
     @Inject
     UserRepository userRepository;
 
+    @Inject
+    NoteVersionRepository versionRepository;
+
     private User testUser;
     private User otherUser;
 
@@ -120,6 +134,138 @@ class NoteServiceTest {
         assertThat(notes).hasSize(2);
     }
 
+    @Test
+    @Transactional
+    void shouldPageNotesWithCursor() {
+        for (int i = 1; i <= 5; i++) {
+            CreateNoteRequest request = new CreateNoteRequest();
+            request.title = "Note " + i;
+            request.content = "Content " + i;
+            noteService.createNote(request, testUser.id);
+        }
+
+        NoteDTOPage first = noteService.listNotes(testUser.id, null, null, 2);
+        NoteDTOPage second = noteService.listNotes(testUser.id, null, PageCursor.decode(first.nextCursor), 2);
+        NoteDTOPage last = noteService.listNotes(testUser.id, null, PageCursor.decode(second.nextCursor), 2);
+
+        assertThat(first.notes).hasSize(2);
+        assertThat(second.notes).hasSize(2);
+        assertThat(last.notes).hasSize(1);
+        assertThat(last.hasMore()).isFalse();
+
+        // Nessun duplicato né buco tra le pagine, anche con updatedAt uguali
+        List<Long> ids = new ArrayList<>();
+        for (NoteDTOPage page : List.of(first, second, last)) {
+            page.notes.forEach(note -> ids.add(note.id));
+        }
+        assertThat(ids).doesNotHaveDuplicates().hasSize(5);
+        assertThat(last.total(PageCursor.decode(second.nextCursor), true,
+                () -> noteService.countNotes(testUser.id, null))).isEqualTo(5L);
+    }
+
+    @Test
+    @Transactional
+    void shouldListNotesAsProjectedDTOs() {
+        Folder folder = new Folder();
+        folder.name = "Analisi";
+        folder.owner = testUser;
+        folderRepository.persist(folder);
+
+        for (int i = 1; i <= 3; i++) {
+            CreateNoteRequest request = new CreateNoteRequest();
+            request.title = "Note " + i;
+            request.content = "Content " + i;
+            request.folderId = i == 1 ? null : folder.id;
+            noteService.createNote(request, testUser.id);
+        }
+
+        NoteDTOPage first = noteService.listNotes(testUser.id, null, null, 2);
+        NoteDTOPage last = noteService.listNotes(testUser.id, null, PageCursor.decode(first.nextCursor), 2);
+
+        assertThat(first.notes).hasSize(2);
+        assertThat(last.notes).hasSize(1);
+        assertThat(last.hasMore()).isFalse();
+        List<NoteDTO> all = new ArrayList<>(first.notes);
+        all.addAll(last.notes);
+        assertThat(all).extracting(note -> note.id).doesNotHaveDuplicates();
+        assertThat(all).allSatisfy(note -> {
+            assertThat(note.ownerUsername).isEqualTo("testuser");
+            assertThat(note.isShared).isFalse();
+            assertThat(note.canEdit).isTrue();
+            assertThat(note.canDelete).isTrue();
+        });
+
+        // Filtro per cartella con il nome letto nella stessa query
+        NoteDTOPage inFolder = noteService.listNotes(testUser.id, folder.id, null, 10);
+        assertThat(inFolder.notes).hasSize(2)
+                .allSatisfy(note -> assertThat(note.folderName).isEqualTo("Analisi"));
+    }
+
+    @Test
+    @Transactional
+    void shouldSortSearchByTitleAndCreationWithCursor() {
+        for (String title : List.of("Chimica", "Algebra", "Biologia", "Diritto")) {
+            CreateNoteRequest request = new CreateNoteRequest();
+            request.title = title;
+            request.content = "Appunti di " + title;
+            noteService.createNote(request, testUser.id);
+        }
+
+        SearchCriteria criteria = new SearchCriteria();
+        criteria.userId = testUser.id;
+        criteria.sort = SearchCriteria.Sort.TITLE;
+        criteria.ascending = true;
+        criteria.limit = 3;
+        NotePage first = noteService.advancedSearch(criteria);
+        criteria.after = PageCursor.decode(first.nextCursor);
+        NotePage second = noteService.advancedSearch(criteria);
+
+        assertThat(first.notes).extracting(note -> note.title).containsExactly("Algebra", "Biologia", "Chimica");
+        assertThat(second.notes).extracting(note -> note.title).containsExactly("Diritto");
+        assertThat(second.hasMore()).isFalse();
+
+        SearchCriteria byCreation = new SearchCriteria();
+        byCreation.userId = testUser.id;
+        byCreation.sort = SearchCriteria.Sort.CREATED;
+        byCreation.ascending = false;
+        byCreation.limit = 10;
+        assertThat(noteService.advancedSearch(byCreation).notes).extracting(note -> note.title)
+                .containsExactly("Diritto", "Biologia", "Algebra", "Chimica");
+
+        // Un cursore di un altro ordinamento non è valido
+        byCreation.after = PageCursor.decode(first.nextCursor);
+        assertThatThrownBy(() -> noteService.advancedSearch(byCreation)).isInstanceOf(ValidationException.class);
+    }
+
+    @Test
+    @Transactional
+    void shouldCountSearchFacetsByFolderAuthorAndMonth() {
+        Folder folder = new Folder();
+        folder.name = "Analisi";
+        folder.owner = testUser;
+        folderRepository.persist(folder);
+
+        for (int i = 1; i <= 3; i++) {
+            CreateNoteRequest request = new CreateNoteRequest();
+            request.title = "Lezione " + i;
+            request.content = "Limiti e derivate";
+            request.folderId = i < 3 ? folder.id : null;
+            noteService.createNote(request, testUser.id);
+        }
+
+        SearchCriteria criteria = new SearchCriteria();
+        criteria.userId = testUser.id;
+        SearchFacets facets = noteService.searchFacets(criteria);
+
+        assertThat(facets.folders).extracting(facet -> facet.label).containsExactly("Analisi", null);
+        assertThat(facets.folders).extracting(facet -> facet.count).containsExactly(2L, 1L);
+        assertThat(facets.authors).singleElement().satisfies(facet -> {
+            assertThat(facet.key).isEqualTo(testUser.id.toString());
+            assertThat(facet.count).isEqualTo(3L);
+        });
+        assertThat(facets.months).singleElement().satisfies(facet -> assertThat(facet.count).isEqualTo(3L));
+    }
+
     @Test
     @Transactional
     void shouldGetNoteById() {
@@ -159,6 +305,35 @@ class NoteServiceTest {
         assertThat(updated.content).isEqualTo("Updated content");
     }
 
+    @Test
+    @Transactional
+    void shouldNumberVersionsFromNoteCounter() {
+        CreateNoteRequest createRequest = new CreateNoteRequest();
+        createRequest.title = "Versioned";
+        createRequest.content = "v1";
+        Note note = noteService.createNote(createRequest, testUser.id);
+
+        for (String content : List.of("v2", "v3")) {
+            UpdateNoteRequest updateRequest = new UpdateNoteRequest();
+            updateRequest.content = content;
+            noteService.updateNote(note.id, updateRequest, testUser.id);
+        }
+
+        assertThat(note.lastVersionNumber).isEqualTo(3L);
+        assertThat(versionRepository.findByNoteId(note.id))
+                .extracting(version -> version.versionNumber)
+                .containsExactly(3L, 2L, 1L);
+
+        // Un numero già assegnato viene rifiutato dall'indice univoco
+        NoteVersion duplicate = new NoteVersion();
+        duplicate.noteId = note.id;
+        duplicate.content = "v3";
+        duplicate.versionNumber = 3L;
+        duplicate.modifiedBy = testUser.id;
+        assertThatThrownBy(() -> versionRepository.persistAndFlush(duplicate))
+                .isInstanceOf(PersistenceException.class);
+    }
+
     @Test
     @Transactional
     void shouldThrowConflictExceptionWhenVersionMismatch() {
@@ -218,23 +393,4 @@ class NoteServiceTest {
         assertThat(copy.title).contains("Copia");
         assertThat(copy.content).isEqualTo(original.content);
     }
-
-    @Test
-    @Transactional
-    void shouldSearchNotes() {
-        CreateNoteRequest request1 = new CreateNoteRequest();
-        request1.title = "Java Tutorial";
-        request1.content = "Learning Java";
-        noteService.createNote(request1, testUser.id);
-
-        CreateNoteRequest request2 = new CreateNoteRequest();
-        request2.title = "Python Guide";
-        request2.content = "Learning Python";
-        noteService.createNote(request2, testUser.id);
-
-        List<Note> javaResults = noteService.searchNotes("Java", testUser.id);
-
-        assertThat(javaResults).hasSize(1);
-        assertThat(javaResults.get(0).title).contains("Java");
-    }
 }
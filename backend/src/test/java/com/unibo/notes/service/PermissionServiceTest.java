@@ -1,6 +1,7 @@
 package com.unibo.notes.service;
 
 import com.unibo.notes.dto.CreateNoteRequest;
+import com.unibo.notes.dto.NoteDTO;
 import com.unibo.notes.dto.PermissionDTO;
 import com.unibo.notes.dto.ShareNoteRequest;
 import com.unibo.notes.entity.Note;
@@ -8,6 +9,7 @@ import com.unibo.notes.entity.User;
 import com.unibo.notes.exception.ConflictException;
 import com.unibo.notes.exception.UnauthorizedException;
 import com.unibo.notes.exception.ValidationException;
+import com.unibo.notes.repository.NoteDTOPage;
 import com.unibo.notes.repository.NotePermissionRepository;
 import com.unibo.notes.repository.NoteRepository;
 import com.unibo.notes.repository.UserRepository;
@@ -18,6 +20,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -211,15 +214,57 @@ class PermissionServiceTest {
 
     @Test
     @Transactional
-    void shouldGetSharedNotes() {
+    void shouldListSharedNotesWithPermissionFlags() {
         ShareNoteRequest request = new ShareNoteRequest();
         request.username = "shared";
-        request.permission = "READ";
+        request.permission = "WRITE";
         permissionService.shareNote(testNote.id, request, owner.id);
 
-        List<Note> sharedNotes = permissionService.getSharedNotes(sharedUser.id);
+        NoteDTOPage page = permissionService.listSharedNotes(sharedUser.id, null, 10);
+
+        assertThat(page.notes).hasSize(1);
+        NoteDTO note = page.notes.get(0);
+        assertThat(note.id).isEqualTo(testNote.id);
+        assertThat(note.ownerUsername).isEqualTo(owner.username);
+        assertThat(note.isShared).isTrue();
+        assertThat(note.canEdit).isTrue();
+        assertThat(note.canDelete).isFalse();
+
+        request.permission = "READ";
+        permissionService.shareNote(testNote.id, request, owner.id);
+        assertThat(permissionService.listSharedNotes(sharedUser.id, null, 10).notes.get(0).canEdit).isFalse();
+    }
 
-        assertThat(sharedNotes).hasSize(1);
-        assertThat(sharedNotes.get(0).id).isEqualTo(testNote.id);
+    @Test
+    @Transactional
+    void shouldResolveAccessForManyNotesAtOnce() {
+        CreateNoteRequest request = new CreateNoteRequest();
+        request.title = "Writable Note";
+        request.content = "Shared with write access";
+        Note writableNote = noteService.createNote(request, owner.id);
+
+        request.title = "Private Note";
+        request.content = "Not shared";
+        Note privateNote = noteService.createNote(request, owner.id);
+
+        ShareNoteRequest readShare = new ShareNoteRequest();
+        readShare.username = "shared";
+        readShare.permission = "READ";
+        permissionService.shareNote(testNote.id, readShare, owner.id);
+
+        ShareNoteRequest writeShare = new ShareNoteRequest();
+        writeShare.username = "shared";
+        writeShare.permission = "WRITE";
+        permissionService.shareNote(writableNote.id, writeShare, owner.id);
+
+        Map<Long, PermissionService.Access> access = permissionService.resolveAccess(
+                List.of(testNote.id, writableNote.id, privateNote.id, 999_999L), sharedUser.id);
+
+        assertThat(access).hasSize(3);
+        assertThat(access.get(testNote.id)).isEqualTo(PermissionService.Access.READ);
+        assertThat(access.get(writableNote.id)).isEqualTo(PermissionService.Access.WRITE);
+        assertThat(access.get(privateNote.id)).isEqualTo(PermissionService.Access.NONE);
+        assertThat(permissionService.resolveAccess(List.of(privateNote.id), owner.id).get(privateNote.id))
+                .isEqualTo(PermissionService.Access.OWNER);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,136 @@
+package com.unibo.notes.service;
+
+import com.unibo.notes.dto.CreateNoteRequest;
+import com.unibo.notes.dto.SearchCriteria;
+import com.unibo.notes.dto.ShareNoteRequest;
+import com.unibo.notes.entity.Note;
+import com.unibo.notes.entity.User;
+import com.unibo.notes.repository.FolderRepository;
+import com.unibo.notes.repository.NotePermissionRepository;
+import com.unibo.notes.repository.NoteRepository;
+import com.unibo.notes.repository.UserRepository;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@QuarkusTest
+class UnifiedSearchServiceTest {
+
+    @Inject
+    UnifiedSearchService unifiedSearchService;
+
+    @Inject
+    NoteService noteService;
+
+    @Inject
+    FolderService folderService;
+
+    @Inject
+    PermissionService permissionService;
+
+    @Inject
+    NotePermissionRepository permissionRepository;
+
+    @Inject
+    NoteRepository noteRepository;
+
+    @Inject
+    FolderRepository folderRepository;
+
+    @Inject
+    UserRepository userRepository;
+
+    private User owner;
+
+    @BeforeEach
+    @Transactional
+    void setup() {
+        permissionRepository.deleteAll();
+        noteRepository.deleteAll();
+        folderRepository.deleteAll();
+        userRepository.deleteAll();
+
+        owner = createUser("unifiedowner");
+        createUser("geologa");
+        createUser("geometra");
+    }
+
+    @AfterEach
+    @Transactional
+    void cleanup() {
+        // Dati committati: i tipi vengono cercati su thread e sessioni separati
+        permissionRepository.deleteAll();
+        noteRepository.deleteAll();
+        folderRepository.deleteAll();
+    }
+
+    @Test
+    void shouldMergeNotesFoldersAndCollaboratorsInOneRanking() {
+        folderService.createFolder("Geologia", "Rocce e minerali", null, owner.id);
+        folderService.createFolder("Archivio", "Vecchi appunti di geologia", null, owner.id);
+        Note note = createNote("Appunti", "Geologia del quaternario");
+        share(note, "geologa");
+
+        UnifiedSearchService.Result result = search("geologia", EnumSet.allOf(UnifiedSearchService.Type.class), 10);
+
+        // Nome della cartella uguale alla parola e nota migliore a pari merito: prima la nota
+        assertThat(result.hits).extracting(hit -> hit.type).containsExactly(UnifiedSearchService.Type.NOTE,
+                UnifiedSearchService.Type.FOLDER, UnifiedSearchService.Type.FOLDER);
+        assertThat(result.hits).extracting(hit -> hit.score).containsExactly(1.0, 1.0, 0.3);
+
+        // Solo chi collabora con l'utente: "geometra" non ha note condivise
+        UnifiedSearchService.Result people = search("geo", EnumSet.of(UnifiedSearchService.Type.COLLABORATOR), 10);
+        assertThat(people.hits).extracting(hit -> ((User) hit.item).username).containsExactly("geologa");
+    }
+
+    @Test
+    void shouldKeepOnlyTheBestResultsWithinTheLimit() {
+        folderService.createFolder("Fisica", null, null, owner.id);
+        folderService.createFolder("Fisica nucleare", null, null, owner.id);
+        folderService.createFolder("Astrofisica", null, null, owner.id);
+
+        UnifiedSearchService.Result result = search("fisica", EnumSet.of(UnifiedSearchService.Type.FOLDER), 2);
+
+        assertThat(result.hits).extracting(hit -> hit.score).containsExactly(1.0, 0.8);
+        assertThat(result.hasMore).isTrue();
+    }
+
+    private UnifiedSearchService.Result search(String keyword, EnumSet<UnifiedSearchService.Type> types, int limit) {
+        SearchCriteria criteria = new SearchCriteria();
+        criteria.userId = owner.id;
+        criteria.keyword = keyword;
+        criteria.sort = SearchCriteria.Sort.RELEVANCE;
+        criteria.limit = limit;
+        return unifiedSearchService.search(criteria, types);
+    }
+
+    private Note createNote(String title, String content) {
+        CreateNoteRequest request = new CreateNoteRequest();
+        request.title = title;
+        request.content = content;
+        return noteService.createNote(request, owner.id);
+    }
+
+    private void share(Note note, String username) {
+        ShareNoteRequest share = new ShareNoteRequest();
+        share.username = username;
+        share.permission = "READ";
+        permissionService.shareNote(note.id, share, owner.id);
+    }
+
+    private User createUser(String username) {
+        User user = new User();
+        user.username = username;
+        user.email = username + "@example.com";
+        user.passwordHash = "hash";
+        userRepository.persist(user);
+        return user;
+    }
+}
@@ -0,0 +1,131 @@
+package com.unibo.notes.service;
+
+import com.unibo.notes.dto.CreateNoteRequest;
+import com.unibo.notes.dto.UpdateNoteRequest;
+import com.unibo.notes.entity.Note;
+import com.unibo.notes.entity.NoteVersion;
+import com.unibo.notes.entity.User;
+import com.unibo.notes.repository.ContentBlobRepository;
+import com.unibo.notes.repository.NoteRepository;
+import com.unibo.notes.repository.NoteVersionRepository;
+import com.unibo.notes.repository.UserRepository;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@QuarkusTest
+class VersionRetentionTest {
+
+    // Nel profilo di test: keep-last=2, daily-after-days=30, 4 versioni per blocco, snapshot-interval=3,
+    // eliminazioni a gruppi di 2 id
+
+    @Inject
+    VersionRetention retention;
+
+    @Inject
+    VersionService versionService;
+
+    @Inject
+    VersionStorage versionStorage;
+
+    @Inject
+    NoteService noteService;
+
+    @Inject
+    NoteRepository noteRepository;
+
+    @Inject
+    NoteVersionRepository versionRepository;
+
+    @Inject
+    ContentBlobRepository blobRepository;
+
+    @Inject
+    UserRepository userRepository;
+
+    private User owner;
+
+    @BeforeEach
+    @Transactional
+    void setup() {
+        versionRepository.deleteAll();
+        blobRepository.deleteAll();
+        noteRepository.deleteAll();
+        userRepository.deleteAll();
+
+        owner = new User();
+        owner.username = "retentionowner";
+        owner.email = "retentionowner@example.com";
+        owner.passwordHash = "hash";
+        userRepository.persist(owner);
+    }
+
+    @Test
+    @Transactional
+    void shouldApplyPoliciesAcrossNotesInChunks() {
+        Note note = createNote("Storia", 6);
+        LocalDateTime now = LocalDateTime.now(ZoneId.of("Europe/Rome"));
+        // 1 e 2 nello stesso giorno di 40 giorni fa, 3 il giorno dopo, 4 entro i 30 giorni, 5 e 6 oggi
+        setModifiedAt(note.id, 1, now.minusDays(40).withHour(9));
+        setModifiedAt(note.id, 2, now.minusDays(40).withHour(18));
+        setModifiedAt(note.id, 3, now.minusDays(39));
+        setModifiedAt(note.id, 4, now.minusDays(10));
+        List<String> contents = versionService.getNoteVersions(note.id, owner.id).stream()
+                .map(version -> version.content)
+                .toList();
+
+        // Le versioni di una nota eliminata sono tutte scadute
+        Note deleted = createNote("Eliminata", 2);
+        noteService.deleteNote(deleted.id, owner.id);
+
+        VersionRetention.Report report = retention.run();
+
+        // La prima nota supera da sola il limite di versioni del blocco: la seconda va nel blocco successivo
+        assertThat(report.reclaimed).isEqualTo(3);
+        assertThat(report.notes).isEqualTo(2);
+        assertThat(report.chunks).isEqualTo(2);
+        assertThat(report.failedChunks).isZero();
+        assertThat(versionRepository.countByNoteId(deleted.id)).isZero();
+
+        // La 1 era lo snapshot delle differenze 2 e 3: la 2 diventa il nuovo snapshot
+        versionRepository.getEntityManager().flush();
+        versionRepository.getEntityManager().clear();
+        versionStorage.clearCache();
+        assertThat(versionService.getNoteVersions(note.id, owner.id))
+                .extracting(version -> version.versionNumber)
+                .containsExactly(6L, 5L, 4L, 3L, 2L);
+        assertThat(versionService.getNoteVersions(note.id, owner.id))
+                .extracting(version -> version.content)
+                .containsExactlyElementsOf(contents.subList(0, 5));
+        assertThat(versionRepository.findByNoteIdAndVersionNumber(note.id, 2L).orElseThrow().isSnapshot()).isTrue();
+
+        assertThat(retention.run().reclaimed).isZero();
+    }
+
+    private Note createNote(String title, int versions) {
+        CreateNoteRequest create = new CreateNoteRequest();
+        create.title = title;
+        create.content = "Riassunto del capitolo sulle reti di calcolatori, livello di trasporto e protocolli";
+        Note note = noteService.createNote(create, owner.id);
+        for (int i = 2; i <= versions; i++) {
+            UpdateNoteRequest update = new UpdateNoteRequest();
+            update.content = create.content + ", revisione " + i;
+            noteService.updateNote(note.id, update, owner.id);
+        }
+        return note;
+    }
+
+    private void setModifiedAt(Long noteId, long versionNumber, LocalDateTime modifiedAt) {
+        NoteVersion version = versionRepository.findByNoteIdAndVersionNumber(noteId, versionNumber).orElseThrow();
+        version.modifiedAt = modifiedAt;
+        versionRepository.flush();
+    }
+}
@@ -0,0 +1,277 @@
+package com.unibo.notes.service;
+
+import com.unibo.notes.dto.CreateNoteRequest;
+import com.unibo.notes.dto.NoteVersionDTO;
+import com.unibo.notes.dto.NoteVersionSummaryDTO;
+import com.unibo.notes.dto.VersionHistoryResponse;
+import com.unibo.notes.dto.UpdateNoteRequest;
+import com.unibo.notes.entity.ContentBlob;
+import com.unibo.notes.entity.Note;
+import com.unibo.notes.entity.NoteVersion;
+import com.unibo.notes.entity.User;
+import com.unibo.notes.repository.ContentBlobRepository;
+import com.unibo.notes.repository.NoteRepository;
+import com.unibo.notes.repository.NoteVersionRepository;
+import com.unibo.notes.repository.UserRepository;
+import com.unibo.notes.util.PageCursor;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@QuarkusTest
+class VersionServiceTest {
+
+    // Nel profilo di test: notes.versions.storage=delta, snapshot-interval=3
+    private static final String TEXT = "Lezione 3: limiti notevoli, derivate e integrali per parti. "
+            + "Esercizi a pagina 42, soluzioni in fondo al capitolo. Ripassare i teoremi.";
+
+    @Inject
+    VersionService versionService;
+
+    @Inject
+    VersionStorage versionStorage;
+
+    @Inject
+    NoteService noteService;
+
+    @Inject
+    NoteRepository noteRepository;
+
+    @Inject
+    NoteVersionRepository versionRepository;
+
+    @Inject
+    UserRepository userRepository;
+
+    @Inject
+    ContentBlobRepository blobRepository;
+
+    @Inject
+    BlobCollector blobCollector;
+
+    private User owner;
+
+    @BeforeEach
+    @Transactional
+    void setup() {
+        versionRepository.deleteAll();
+        blobRepository.deleteAll();
+        noteRepository.deleteAll();
+        userRepository.deleteAll();
+
+        owner = new User();
+        owner.username = "versionowner";
+        owner.email = "versionowner@example.com";
+        owner.passwordHash = "hash";
+        userRepository.persist(owner);
+    }
+
+    @Test
+    @Transactional
+    void shouldStoreDeltasBetweenSnapshotsAndRebuildEveryVersion() {
+        List<String> contents = saveVersions(5);
+
+        // Snapshot ogni 3 versioni (1 e 4), differenze dallo snapshot per le altre
+        assertThat(storedAsSnapshot(contents.size())).containsExactly(true, false, false, true, false);
+
+        versionStorage.clearCache();
+        Long noteId = noteId();
+        assertThat(versionService.getNoteVersions(noteId, owner.id))
+                .extracting(version -> version.content)
+                .containsExactly(contents.get(4), contents.get(3), contents.get(2), contents.get(1), contents.get(0));
+        NoteVersionDTO third = versionService.getSpecificVersion(noteId, 3L, owner.id);
+        assertThat(third.content).isEqualTo(contents.get(2));
+
+        Note restored = versionService.restoreVersion(noteId, 2L, owner.id);
+        assertThat(restored.content).isEqualTo(contents.get(1));
+        assertThat(versionService.getSpecificVersion(noteId, 6L, owner.id).content).isEqualTo(contents.get(1));
+    }
+
+    @Test
+    @Transactional
+    void shouldRebaseDeltasWhenTheirSnapshotIsDeleted() {
+        List<String> contents = saveVersions(5);
+        Long noteId = noteId();
+
+        // Restano 3, 4 e 5: la 3 era una differenza dallo snapshot 1 e diventa snapshot
+        versionService.deleteOldVersions(noteId, 3, owner.id);
+        versionRepository.getEntityManager().flush();
+        versionRepository.getEntityManager().clear();
+        versionStorage.clearCache();
+
+        assertThat(versionService.getNoteVersions(noteId, owner.id))
+                .extracting(version -> version.content)
+                .containsExactly(contents.get(4), contents.get(3), contents.get(2));
+        assertThat(versionRepository.findByNoteIdAndVersionNumber(noteId, 3L).orElseThrow().isSnapshot()).isTrue();
+    }
+
+    @Test
+    @Transactional
+    void shouldShareOneBlobAcrossCopiesAndRestores() {
+        List<String> contents = saveVersions(2);
+        Long noteId = noteId();
+        NoteVersion first = versionRepository.findByNoteIdAndVersionNumber(noteId, 1L).orElseThrow();
+
+        versionService.restoreVersion(noteId, 1L, owner.id);
+        Note copy = noteService.copyNote(noteId, owner.id);
+
+        // La prima versione della copia e la versione 3 (ripristino della 1) puntano allo stesso blob
+        NoteVersion copied = versionRepository.findByNoteIdAndVersionNumber(copy.id, 1L).orElseThrow();
+        NoteVersion restored = versionRepository.findByNoteIdAndVersionNumber(noteId, 3L).orElseThrow();
+        assertThat(copied.blobId).isEqualTo(first.blobId);
+        assertThat(restored.blobId).isEqualTo(first.blobId);
+        assertThat(blobRepository.count()).isEqualTo(1);
+        blobRepository.getEntityManager().clear();
+        assertThat(blob(first.blobId).refCount).isEqualTo(3);
+
+        versionStorage.clearCache();
+        assertThat(versionService.getSpecificVersion(copy.id, 1L, owner.id).content).isEqualTo(contents.get(0));
+        assertThat(versionService.getSpecificVersion(noteId, 3L, owner.id).content).isEqualTo(contents.get(0));
+    }
+
+    @Test
+    @Transactional
+    void shouldCollectBlobsWithoutReferences() {
+        List<String> contents = saveVersions(4);
+        Long noteId = noteId();
+        Long firstBlob = versionRepository.findByNoteIdAndVersionNumber(noteId, 1L).orElseThrow().blobId;
+        Long fourthBlob = versionRepository.findByNoteIdAndVersionNumber(noteId, 4L).orElseThrow().blobId;
+
+        // La versione 1 era l'unico riferimento al suo blob
+        versionService.deleteOldVersions(noteId, 1, owner.id);
+        blobRepository.getEntityManager().clear();
+        assertThat(blob(firstBlob).refCount).isZero();
+
+        assertThat(blobCollector.collect()).isEqualTo(1);
+        blobRepository.getEntityManager().clear();
+        assertThat(blobRepository.findByIdOptional(firstBlob)).isEmpty();
+        versionStorage.clearCache();
+        assertThat(versionService.getSpecificVersion(noteId, 4L, owner.id).content).isEqualTo(contents.get(3));
+        assertThat(blob(fourthBlob).refCount).isEqualTo(1);
+    }
+
+    @Test
+    @Transactional
+    void shouldMoveInlineSnapshotsIntoBlobs() {
+        saveVersions(1);
+        Long noteId = noteId();
+        // Snapshot salvato in linea, come prima dei blob, con lo stesso contenuto della versione 1
+        NoteVersion legacy = new NoteVersion();
+        legacy.noteId = noteId;
+        legacy.versionNumber = 2L;
+        legacy.modifiedBy = owner.id;
+        legacy.content = TEXT;
+        versionRepository.persist(legacy);
+
+        assertThat(blobCollector.moveInlineSnapshots()).isEqualTo(1);
+        assertThat(legacy.content).isNull();
+        assertThat(legacy.blobId)
+                .isEqualTo(versionRepository.findByNoteIdAndVersionNumber(noteId, 1L).orElseThrow().blobId);
+        versionStorage.clearCache();
+        assertThat(versionService.getSpecificVersion(noteId, 2L, owner.id).content).isEqualTo(TEXT);
+    }
+
+    @Test
+    void shouldShareOneBlobAcrossConcurrentSaves() throws Exception {
+        int writers = 4;
+        String hash = "concurrent-" + System.nanoTime();
+        CyclicBarrier start = new CyclicBarrier(writers);
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        try {
+            // Ogni thread in una propria transazione: tutti trovano il blob assente e provano a crearlo
+            List<Future<Long>> acquired = new ArrayList<>();
+            for (int i = 0; i < writers; i++) {
+                acquired.add(executor.submit(() -> {
+                    start.await();
+                    return QuarkusTransaction.requiringNew().call(() -> blobRepository.acquire(hash, TEXT));
+                }));
+            }
+            List<Long> blobIds = new ArrayList<>();
+            for (Future<Long> future : acquired) {
+                blobIds.add(future.get(30, TimeUnit.SECONDS));
+            }
+            assertThat(blobIds).containsOnly(blobIds.get(0));
+            assertThat(QuarkusTransaction.requiringNew().call(() -> blob(blobIds.get(0)).refCount)).isEqualTo(writers);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private ContentBlob blob(Long id) {
+        return blobRepository.findByIdOptional(id).orElseThrow();
+    }
+
+    @Test
+    @Transactional
+    void shouldPageVersionHistoryWithoutContent() {
+        List<String> contents = saveVersions(5);
+        Long noteId = noteId();
+
+        VersionHistoryResponse first = versionService.getVersionHistory(noteId, owner.id, null, 3, true);
+        assertThat(first.versions).extracting(version -> version.versionNumber).containsExactly(5L, 4L, 3L);
+        assertThat(first.total).isEqualTo(5);
+        assertThat(first.hasMore).isTrue();
+
+        // 5 è una differenza dallo snapshot 4, che ha il contenuto completo
+        NoteVersionSummaryDTO latest = first.versions.get(0);
+        assertThat(latest.snapshot).isFalse();
+        assertThat(latest.baseVersionNumber).isEqualTo(4L);
+        assertThat(latest.size).isEqualTo(contents.get(4).getBytes(StandardCharsets.UTF_8).length);
+        assertThat(latest.storedBytes).isLessThan(latest.size);
+        assertThat(latest.modifiedByUsername).isEqualTo("versionowner");
+        NoteVersionSummaryDTO snapshot = first.versions.get(1);
+        assertThat(snapshot.snapshot).isTrue();
+        assertThat(snapshot.size).isEqualTo(contents.get(3).getBytes(StandardCharsets.UTF_8).length);
+
+        VersionHistoryResponse second = versionService.getVersionHistory(noteId, owner.id,
+                PageCursor.decode(first.nextCursor), 3, false);
+        assertThat(second.versions).extracting(version -> version.versionNumber).containsExactly(2L, 1L);
+        assertThat(second.hasMore).isFalse();
+        assertThat(second.total).isNull();
+    }
+
+    // Crea la nota e la modifica: contenuti delle versioni 1..count
+    private List<String> saveVersions(int count) {
+        List<String> contents = new ArrayList<>();
+        CreateNoteRequest create = new CreateNoteRequest();
+        create.title = "Analisi";
+        create.content = TEXT;
+        Note note = noteService.createNote(create, owner.id);
+        contents.add(TEXT);
+        for (int i = 2; i <= count; i++) {
+            UpdateNoteRequest update = new UpdateNoteRequest();
+            update.content = TEXT.replace("pagina 42", "pagina " + (40 + i)) + " Nota " + i + ".";
+            noteService.updateNote(note.id, update, owner.id);
+            contents.add(update.content);
+        }
+        return contents;
+    }
+
+    private Long noteId() {
+        return noteRepository.findByOwnerId(owner.id).get(0).id;
+    }
+
+    private List<Boolean> storedAsSnapshot(int count) {
+        List<NoteVersion> versions = versionRepository.findByNoteId(noteId());
+        assertThat(versions).hasSize(count);
+        return versions.stream()
+                .sorted(Comparator.comparing(version -> version.versionNumber))
+                .map(NoteVersion::isSnapshot)
+                .toList();
+    }
+}
@@ -0,0 +1,43 @@
+package com.unibo.notes.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BinaryDeltaTest {
+
+    private static final String BASE = "Lezione 3: limiti notevoli, derivate e integrali per parti. Esercizi a pagina 42.";
+
+    @Test
+    void shouldRebuildTargetFromBaseAndDelta() {
+        for (String target : List.of(
+                BASE.replace("derivate", "derivate parziali"),
+                BASE.replace(" e integrali per parti", ""),
+                "Titolo. " + BASE + " Ripasso finale.",
+                "Tutto diverso",
+                "",
+                BASE.replace("limiti", "limiti è perché città"))) {
+            assertThat(roundTrip(BASE, target)).isEqualTo(target);
+        }
+        assertThat(roundTrip("", BASE)).isEqualTo(BASE);
+    }
+
+    @Test
+    void shouldEncodeLocalEditsInFewBytes() {
+        byte[] target = BASE.replace("pagina 42", "pagina 43").getBytes(StandardCharsets.UTF_8);
+
+        byte[] delta = BinaryDelta.encode(BASE.getBytes(StandardCharsets.UTF_8), target);
+
+        // Due copie e un byte nuovo: la dimensione non dipende dalla lunghezza del testo
+        assertThat(delta.length).isLessThan(12);
+    }
+
+    private static String roundTrip(String base, String target) {
+        byte[] baseBytes = base.getBytes(StandardCharsets.UTF_8);
+        byte[] delta = BinaryDelta.encode(baseBytes, target.getBytes(StandardCharsets.UTF_8));
+        return new String(BinaryDelta.apply(baseBytes, delta), StandardCharsets.UTF_8);
+    }
+}
@@ -30,9 +30,11 @@ export interface Note {
 // ---- Interfaccia per le Risposte API (AGGIUNTA) ----
 export interface NoteResponse {
   notes: Note[];
-  total: number;
+  total: number | null; // null se non richiesto con includeTotal
   page?: number;
   limit?: number;
+  nextCursor?: string | null; // da passare come ?cursor= per la pagina successiva
+  hasMore?: boolean;
 }
 
 // ---- Creazione / modifica ----
@@ -88,6 +90,27 @@ export interface NoteVersion {
   isCurrent?: boolean;
 }
 
+// Voce della cronologia paginata: solo metadati, il contenuto si legge con getVersion
+export interface NoteVersionSummary {
+  id: number;
+  noteId: number;
+  versionNumber: number;
+  modifiedByUsername: string;
+  modifiedAt: Date;
+  size: number;
+  snapshot: boolean;
+  baseVersionNumber?: number | null;
+  storedBytes: number;
+}
+
+export interface VersionHistoryResponse {
+  versions: NoteVersionSummary[];
+  total?: number | null;
+  limit: number;
+  nextCursor?: string | null;
+  hasMore: boolean;
+}
+
 export interface NoteDiff {
   additions: string[];
   deletions: string[];
@@ -1,8 +1,8 @@
 import { Injectable } from '@angular/core';
 import { HttpClient, HttpParams } from '@angular/common/http';
-import { BehaviorSubject, Observable, of } from 'rxjs';
-import { map, tap, switchMap, finalize } from 'rxjs/operators';
-import { Note, NoteRequest, NoteFilter, NoteResponse, NoteStats, NoteVersion } from '../models/note.model';
+import { BehaviorSubject, EMPTY, Observable, of } from 'rxjs';
+import { tap, switchMap, finalize, expand, reduce } from 'rxjs/operators';
+import { Note, NoteRequest, NoteFilter, NoteResponse, NoteStats, NoteVersion, VersionHistoryResponse } from '../models/note.model';
 import { environment } from '../../../environments/environment';
 
 @Injectable({
@@ -28,14 +28,16 @@ export class NoteService {
   constructor(private http: HttpClient) {}
 
   /**
-   * Get all notes with filtering and pagination
+   * Get a page of notes with filtering; pass the previous page's nextCursor to load the next one
+   * (the backend returns at most `limit` notes per page)
    */
-  getNotes(filter: NoteFilter = {}, page: number = 1, limit: number = 20): Observable<NoteResponse> {
+  getNotes(filter: NoteFilter = {}, cursor?: string | null, limit: number = 50): Observable<NoteResponse> {
     this.loadingSubject.next(true);
 
-    let params = new HttpParams()
-      .set('page', page.toString())
-      .set('limit', limit.toString());
+    let params = new HttpParams().set('limit', limit.toString());
+    if (cursor) {
+      params = params.set('cursor', cursor);
+    }
 
     if (filter.search) {
       params = params.set('search', filter.search);
@@ -59,7 +61,8 @@ export class NoteService {
     return this.http.get<NoteResponse>(this.apiUrl, { params })
       .pipe(
         tap(response => {
-          this.notesSubject.next(response.notes || []);
+          const notes = response.notes || [];
+          this.notesSubject.next(cursor ? [...this.notesSubject.value, ...notes] : notes);
           this.loadingSubject.next(false);
         }),
         finalize(() => this.loadingSubject.next(false))
@@ -183,14 +186,15 @@ export class NoteService {
   }
 
   /**
-   * Search notes
+   * Search notes, following nextCursor until every page has been read
    */
   searchNotes(query: string): Observable<Note[]> {
     if (!query.trim()) {
       return of([]);
     }
     return this.getNotes({ search: query }).pipe(
-      map(res => res.notes)
+      expand(res => res.nextCursor ? this.getNotes({ search: query }, res.nextCursor) : EMPTY),
+      reduce((notes: Note[], res: NoteResponse) => [...notes, ...res.notes], [])
     );
   }
 
@@ -213,6 +217,17 @@ export class NoteService {
     return this.http.get<NoteVersion[]>(`${this.apiUrl}/${noteId}/versions`);
   }
 
+  /**
+   * Get a page of version history (metadata only), newest first
+   */
+  getVersionHistory(noteId: string | number, cursor?: string | null, limit: number = 50): Observable<VersionHistoryResponse> {
+    let params = new HttpParams().set('limit', limit.toString());
+    if (cursor) {
+      params = params.set('cursor', cursor);
+    }
+    return this.http.get<VersionHistoryResponse>(`${this.apiUrl}/${noteId}/versions/history`, { params });
+  }
+
   /**
    * Get specific version
    */
@@ -1,8 +1,8 @@
 import { Injectable } from '@angular/core';
-import { HttpClient } from '@angular/common/http';
+import { HttpClient, HttpParams } from '@angular/common/http';
 import { Observable } from 'rxjs';
 import { Permission, ShareNoteRequest } from '../models/permission.model';
-import { Note } from '../models/note.model';
+import { NoteResponse } from '../models/note.model';
 import { environment } from '../../../environments/environment';
 
 @Injectable({
@@ -44,8 +44,12 @@ export class PermissionService {
   /**
    * Get notes shared with current user
    */
-  getSharedNotes(): Observable<Note[]> {
-    return this.http.get<Note[]>(`${this.apiUrl}/shared-with-me`);
+  getSharedNotes(cursor?: string | null, limit: number = 50): Observable<NoteResponse> {
+    let params = new HttpParams().set('limit', limit.toString());
+    if (cursor) {
+      params = params.set('cursor', cursor);
+    }
+    return this.http.get<NoteResponse>(`${this.apiUrl}/shared-with-me`, { params });
   }
 
   /**
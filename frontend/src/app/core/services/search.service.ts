@@ -7,22 +7,23 @@ import { environment } from '../../../environments/environment';
 
 export interface SearchResult {
   id: string;
-  type: 'note' | 'folder' | 'tag';
+  type: 'note' | 'folder' | 'collaborator' | 'tag';
   title: string;
   excerpt?: string;
   matches: SearchMatch[];
   relevanceScore: number;
   lastModified: Date;
+  matchedVersions?: number[] | null; // solo con scope=history
 }
 
 export interface SearchMatch {
   field: string;
   value: string;
-  highlights: { start: number; end: number }[];
+  highlights: { start: number; end: number }[]; // end esclusivo
 }
 
 export interface SearchFilters {
-  types?: ('note' | 'folder')[];
+  types?: ('note' | 'folder' | 'collaborator')[]; // più tipi: un'unica richiesta, classifica unita
   author?: string;
   dateFrom?: Date;
   dateTo?: Date;
@@ -37,19 +38,43 @@ export interface SearchFilters {
 }
 
 export interface SearchOptions {
-  fuzzy?: boolean;
+  fuzzy?: 0 | 1 | 2; // distanza di Levenshtein massima
+  scope?: 'notes' | 'history'; // history = cerca nelle versioni passate
   caseSensitive?: boolean;
   wholeWords?: boolean;
   includeArchived?: boolean;
-  sortBy?: 'relevance' | 'date' | 'title';
+  sortBy?: 'relevance' | 'date' | 'title' | 'created' | 'modified';
   sortOrder?: 'asc' | 'desc';
 }
 
 export interface SearchResponse {
   results: SearchResult[];
-  total: number;
+  total: number | null; // null se non richiesto con includeTotal
   took: number; // Time taken in milliseconds
   suggestions?: string[];
+  nextCursor?: string | null;
+  hasMore?: boolean;
+  facets?: SearchFacets | null; // solo sulla prima pagina
+  timedOut?: boolean; // scadenza raggiunta: risultati parziali dall'indice, pagina vuota se è scaduta una query sul database
+  truncated?: boolean; // troppe corrispondenze (full-text PostgreSQL): le pagine contengono solo le più pertinenti
+  debug?: SearchDebug | null; // solo con debug=true
+}
+
+export interface SearchDebug {
+  stages: { [stage: string]: number }; // millisecondi per fase
+  plan: { [key: string]: unknown };
+}
+
+export interface FacetCount {
+  key: string | null; // id cartella/autore, 'yyyy-MM' per i mesi; null = senza cartella
+  label: string | null;
+  count: number;
+}
+
+export interface SearchFacets {
+  folders: FacetCount[];
+  authors: FacetCount[];
+  months: FacetCount[];
 }
 
 export interface SearchHistory {
@@ -75,10 +100,13 @@ export class SearchService {
   private resultsSubject = new BehaviorSubject<SearchResult[]>([]);
   private loadingSubject = new BehaviorSubject<boolean>(false);
   private historySubject = new BehaviorSubject<SearchHistory[]>([]);
+  // Cursore della pagina successiva dell'ultima ricerca, null se non ci sono altri risultati
+  private nextCursorSubject = new BehaviorSubject<string | null>(null);
 
   public results$ = this.resultsSubject.asObservable();
   public loading$ = this.loadingSubject.asObservable();
   public history$ = this.historySubject.asObservable();
+  public nextCursor$ = this.nextCursorSubject.asObservable();
 
   private currentQuery = '';
   private currentFilters: SearchFilters = {};
@@ -109,10 +137,11 @@ export class SearchService {
       })
     ).subscribe(response => {
       this.resultsSubject.next(response.results);
+      this.nextCursorSubject.next(response.nextCursor ?? null);
       this.loadingSubject.next(false);
 
       if (this.currentQuery.trim()) {
-        this.addToHistory(this.currentQuery, response.total);
+        this.addToHistory(this.currentQuery, response.total ?? response.results.length);
       }
     });
   }
@@ -147,13 +176,15 @@ export class SearchService {
       this.loadingSubject.next(true);
       this.performSearch(query, filters, options).subscribe(response => {
         this.resultsSubject.next(response.results);
+        this.nextCursorSubject.next(response.nextCursor ?? null);
         this.loadingSubject.next(false);
         if (query.trim()) {
-          this.addToHistory(query, response.total);
+          this.addToHistory(query, response.total ?? response.results.length);
         }
       });
     } else {
       this.resultsSubject.next([]);
+      this.nextCursorSubject.next(null);
     }
   }
 
@@ -174,8 +205,9 @@ export class SearchService {
       .pipe(
         tap(response => {
           this.resultsSubject.next(response.results);
+          this.nextCursorSubject.next(response.nextCursor ?? null);
           this.loadingSubject.next(false);
-          this.addToHistory(query, response.total);
+          this.addToHistory(query, response.total ?? response.results.length);
         })
       );
   }
@@ -186,9 +218,13 @@ export class SearchService {
   private performSearch(
     query: string,
     filters: SearchFilters,
-    options: SearchOptions
+    options: SearchOptions,
+    cursor?: string
   ): Observable<SearchResponse> {
     let params = new HttpParams().set('q', query);
+    if (cursor) {
+      params = params.set('cursor', cursor);
+    }
 
     // Add filters
     if (filters.types && filters.types.length > 0) {
@@ -232,6 +268,9 @@ export class SearchService {
     if (options.fuzzy !== undefined) {
       params = params.set('fuzzy', options.fuzzy.toString());
     }
+    if (options.scope) {
+      params = params.set('scope', options.scope);
+    }
     if (options.caseSensitive !== undefined) {
       params = params.set('caseSensitive', options.caseSensitive.toString());
     }
@@ -279,6 +318,24 @@ export class SearchService {
   clearResults(): void {
     this.currentQuery = '';
     this.resultsSubject.next([]);
+    this.nextCursorSubject.next(null);
+  }
+
+  /**
+   * Load the next page of the last search and append it to the results
+   */
+  loadMore(): void {
+    const cursor = this.nextCursorSubject.value;
+    if (!cursor) {
+      return;
+    }
+    this.loadingSubject.next(true);
+    this.performSearch(this.currentQuery, this.currentFilters, this.currentOptions, cursor)
+      .subscribe(response => {
+        this.resultsSubject.next([...this.resultsSubject.value, ...response.results]);
+        this.nextCursorSubject.next(response.nextCursor ?? null);
+        this.loadingSubject.next(false);
+      });
   }
 
   /**
@@ -4,7 +4,7 @@ import { Router, ActivatedRoute } from '@angular/router';
 import { MatSnackBar } from '@angular/material/snack-bar';
 import { NoteService } from '../../core/services/note.service';
 import { FolderService } from '../../core/services/folder.service';
-import { Note, NoteVersion } from '../../core/models/note.model';
+import { Note, NoteVersion, NoteVersionSummary } from '../../core/models/note.model';
 import { Folder } from '../../core/models/folder.model';
 
 @Component({
@@ -48,7 +48,7 @@ import { Folder } from '../../core/models/folder.model';
                            (click)="selectVersion(version)">
               <mat-icon matListItemIcon>description</mat-icon>
               <div matListItemTitle>Versione {{ version.versionNumber }} - {{ version.modifiedByUsername || 'Sconosciuto' }}</div>
-              <div matListItemLine>{{ formatDate(version.modifiedAt) }}</div>
+              <div matListItemLine>{{ formatDate(version.modifiedAt) }} · {{ version.size }} byte</div>
               <button mat-icon-button matListItemMeta color="primary"
                       (click)="restoreVersion(version); $event.stopPropagation()"
                       matTooltip="Ripristina questa versione"
@@ -57,6 +57,11 @@ import { Folder } from '../../core/models/folder.model';
               </button>
             </mat-list-item>
           </mat-list>
+          <div *ngIf="!isLoadingVersions && versionsCursor" class="more-versions">
+            <button mat-button color="primary" (click)="loadMoreVersions()" [disabled]="isLoadingMoreVersions">
+              {{ isLoadingMoreVersions ? 'Caricamento...' : 'Carica altre versioni' }}
+            </button>
+          </div>
           <div *ngIf="!isLoadingVersions && versions.length === 0" class="no-versions">
             <mat-icon>info</mat-icon>
             <p>Nessuna versione precedente disponibile</p>
@@ -169,6 +174,7 @@ import { Folder } from '../../core/models/folder.model';
     .versions-card mat-list-item:hover { background-color: #f5f5f5; }
     .versions-card mat-list-item.selected { background-color: #e3f2fd; }
     .loading-versions { display: flex; align-items: center; gap: 12px; padding: 16px; }
+    .more-versions { display: flex; justify-content: center; padding: 8px; }
     .no-versions { display: flex; align-items: center; gap: 8px; color: #666; padding: 16px; }
     .version-preview-card { margin-bottom: 20px; border: 2px solid #3f51b5; }
     .version-content {
@@ -214,9 +220,12 @@ export class NoteEditorComponent implements OnInit {
 
   // Versioning
   showVersions = false;
-  versions: NoteVersion[] = [];
+  versions: NoteVersionSummary[] = [];
+  // Cursore della pagina successiva della cronologia (null = finita)
+  versionsCursor: string | null = null;
   selectedVersion: NoteVersion | null = null;
   isLoadingVersions = false;
+  isLoadingMoreVersions = false;
   isRestoring = false;
 
   constructor(
@@ -305,9 +314,10 @@ export class NoteEditorComponent implements OnInit {
   loadVersions(): void {
     if (!this.noteId) return;
     this.isLoadingVersions = true;
-    this.noteService.getVersions(this.noteId).subscribe({
-      next: (versions) => {
-        this.versions = versions;
+    this.noteService.getVersionHistory(this.noteId).subscribe({
+      next: (history) => {
+        this.versions = history.versions;
+        this.versionsCursor = history.nextCursor ?? null;
         this.isLoadingVersions = false;
       },
       error: (err) => {
@@ -318,11 +328,36 @@ export class NoteEditorComponent implements OnInit {
     });
   }
 
-  selectVersion(version: NoteVersion): void {
-    this.selectedVersion = version;
+  loadMoreVersions(): void {
+    if (!this.noteId || !this.versionsCursor) return;
+    this.isLoadingMoreVersions = true;
+    this.noteService.getVersionHistory(this.noteId, this.versionsCursor).subscribe({
+      next: (history) => {
+        this.versions = [...this.versions, ...history.versions];
+        this.versionsCursor = history.nextCursor ?? null;
+        this.isLoadingMoreVersions = false;
+      },
+      error: (err) => {
+        console.error('Errore caricamento versioni:', err);
+        this.showError('Impossibile caricare le versioni');
+        this.isLoadingMoreVersions = false;
+      }
+    });
+  }
+
+  // Il contenuto viene letto solo per la versione selezionata
+  selectVersion(version: NoteVersionSummary): void {
+    if (!this.noteId) return;
+    this.noteService.getVersion(this.noteId, version.versionNumber).subscribe({
+      next: (full) => this.selectedVersion = full,
+      error: (err) => {
+        console.error('Errore caricamento versione:', err);
+        this.showError('Impossibile caricare la versione');
+      }
+    });
   }
 
-  restoreVersion(version: NoteVersion): void {
+  restoreVersion(version: { versionNumber: number }): void {
     if (!this.noteId) return;
     this.isRestoring = true;
     this.noteService.restoreVersion(this.noteId, version.versionNumber).subscribe({
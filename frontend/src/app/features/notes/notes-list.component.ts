@@ -35,11 +35,15 @@ import { ShareDialogComponent } from '../../shared/components/share-dialog/share
     .shared-icon { color: #1976d2; font-size: 20px; }
     .folder-filter { display: flex; align-items: center; gap: 8px; margin-bottom: 16px; padding: 12px; background: #e3f2fd; border-radius: 8px; }
     .folder-filter mat-icon { color: #1976d2; }
+    .load-more { display: flex; justify-content: center; margin-top: 24px; }
   `]
 })
 export class NotesListComponent implements OnInit {
   notes: Note[] = [];
   isLoading = true;
+  // Cursore della pagina successiva, null se le note sono state caricate tutte
+  nextCursor: string | null = null;
+  isLoadingMore = false;
   currentFolderId: number | null = null;
   currentFolderName: string = '';
 
@@ -65,6 +69,7 @@ export class NotesListComponent implements OnInit {
     this.noteService.getNotes(filter).subscribe({
       next: (response) => {
         this.notes = response.notes;
+        this.nextCursor = response.nextCursor ?? null;
         if (this.currentFolderId && this.notes.length > 0 && this.notes[0].folderName) {
           this.currentFolderName = this.notes[0].folderName;
         }
@@ -77,6 +82,24 @@ export class NotesListComponent implements OnInit {
     });
   }
 
+  loadMoreNotes(): void {
+    if (!this.nextCursor) return;
+    this.isLoadingMore = true;
+    const filter = this.currentFolderId ? { folderId: this.currentFolderId } : {};
+    this.noteService.getNotes(filter, this.nextCursor).subscribe({
+      next: (response) => {
+        this.notes = [...this.notes, ...response.notes];
+        this.nextCursor = response.nextCursor ?? null;
+        this.isLoadingMore = false;
+      },
+      error: (err) => {
+        console.error('Errore caricamento note:', err);
+        this.snackBar.open('Impossibile caricare altre note', 'Chiudi', { duration: 5000 });
+        this.isLoadingMore = false;
+      }
+    });
+  }
+
   clearFolderFilter(): void {
     this.currentFolderId = null;
     this.currentFolderName = '';
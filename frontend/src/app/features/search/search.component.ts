@@ -17,6 +17,7 @@ export class SearchComponent implements OnInit, OnDestroy {
   searchResults: any[] = [];
   isLoading = false;
   hasSearched = false;
+  nextCursor: string | null = null;
 
   searchTime = 0;
   private searchStartTime = 0;
@@ -59,6 +60,13 @@ export class SearchComponent implements OnInit, OnDestroy {
         }
       });
 
+    // Cursore per caricare altri risultati
+    this.searchService.nextCursor$
+      .pipe(takeUntil(this.destroy$))
+      .subscribe(cursor => {
+        this.nextCursor = cursor;
+      });
+
     // 2. Ascolta lo stato di caricamento
     this.searchService.loading$
       .pipe(takeUntil(this.destroy$))
@@ -104,6 +112,10 @@ export class SearchComponent implements OnInit, OnDestroy {
     this.searchService.search(formValue.query || '', filters);
   }
 
+  loadMore(): void {
+    this.searchService.loadMore();
+  }
+
   // Format date as start of day in local timezone (00:00:00)
   private formatDateStart(date: Date): string {
     const year = date.getFullYear();
@@ -1,6 +1,6 @@
 import { Component, OnInit } from '@angular/core';
 import { Router } from '@angular/router';
-import { HttpClient } from '@angular/common/http';
+import { HttpClient, HttpParams } from '@angular/common/http';
 import { environment } from '../../../environments/environment';
 
 interface SharedNote {
@@ -15,8 +15,11 @@ interface SharedNote {
 
 interface NoteListResponse {
   notes: SharedNote[];
+  nextCursor?: string | null;
 }
 
+const PAGE_SIZE = 50;
+
 @Component({
   selector: 'app-shared-notes-list',
   template: `
@@ -75,6 +78,12 @@ interface NoteListResponse {
         </mat-card>
       </div>
 
+      <div *ngIf="!isLoading && nextCursor" class="load-more">
+        <button mat-stroked-button color="primary" (click)="loadMoreSharedNotes()" [disabled]="isLoadingMore">
+          {{ isLoadingMore ? 'Caricamento...' : 'Carica altre note' }}
+        </button>
+      </div>
+
       <div *ngIf="error" class="error-message">
         <mat-icon>error</mat-icon>
         <p>{{ error }}</p>
@@ -106,6 +115,12 @@ interface NoteListResponse {
       }
     }
 
+    .load-more {
+      display: flex;
+      justify-content: center;
+      margin-top: 24px;
+    }
+
     .loading-container {
       display: flex;
       flex-direction: column;
@@ -232,6 +247,9 @@ export class SharedNotesListComponent implements OnInit {
   sharedNotes: SharedNote[] = [];
   isLoading = false;
   error: string | null = null;
+  // Cursore della pagina successiva, null se le note sono state caricate tutte
+  nextCursor: string | null = null;
+  isLoadingMore = false;
 
   constructor(
     private http: HttpClient,
@@ -246,18 +264,45 @@ export class SharedNotesListComponent implements OnInit {
     this.isLoading = true;
     this.error = null;
 
-    this.http.get<NoteListResponse>(`${environment.apiUrl}/permissions/shared-with-me`)
-      .subscribe({
-        next: (response) => {
-          this.sharedNotes = response.notes || [];
-          this.isLoading = false;
-        },
-        error: (err) => {
-          console.error('Errore caricamento note condivise:', err);
-          this.error = 'Impossibile caricare le note condivise. Riprova.';
-          this.isLoading = false;
-        }
-      });
+    this.fetchPage(null).subscribe({
+      next: (response) => {
+        this.sharedNotes = response.notes || [];
+        this.nextCursor = response.nextCursor ?? null;
+        this.isLoading = false;
+      },
+      error: (err) => {
+        console.error('Errore caricamento note condivise:', err);
+        this.error = 'Impossibile caricare le note condivise. Riprova.';
+        this.isLoading = false;
+      }
+    });
+  }
+
+  loadMoreSharedNotes(): void {
+    if (!this.nextCursor) return;
+    this.isLoadingMore = true;
+    this.error = null;
+
+    this.fetchPage(this.nextCursor).subscribe({
+      next: (response) => {
+        this.sharedNotes = [...this.sharedNotes, ...(response.notes || [])];
+        this.nextCursor = response.nextCursor ?? null;
+        this.isLoadingMore = false;
+      },
+      error: (err) => {
+        console.error('Errore caricamento note condivise:', err);
+        this.error = 'Impossibile caricare altre note condivise. Riprova.';
+        this.isLoadingMore = false;
+      }
+    });
+  }
+
+  private fetchPage(cursor: string | null) {
+    let params = new HttpParams().set('limit', String(PAGE_SIZE));
+    if (cursor) {
+      params = params.set('cursor', cursor);
+    }
+    return this.http.get<NoteListResponse>(`${environment.apiUrl}/permissions/shared-with-me`, { params });
   }
 
   openNote(noteId: number): void {